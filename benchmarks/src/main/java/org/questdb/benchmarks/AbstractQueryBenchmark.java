@@ -0,0 +1,87 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package org.questdb.benchmarks;
+
+import com.questdb.ex.JournalException;
+import com.questdb.ex.ParserException;
+import com.questdb.factory.JournalFactory;
+import com.questdb.misc.Files;
+import com.questdb.ql.RecordCursor;
+import com.questdb.ql.RecordSource;
+import com.questdb.ql.parser.QueryCompiler;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates "trades", "quotes" and "instruments" journals once per trial. Subclasses compile
+ * their queries in setup, so that benchmarks measure cursor preparation and iteration only.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public abstract class AbstractQueryBenchmark {
+    protected static final int TRADE_COUNT = 1000000;
+    protected static final int QUOTE_COUNT = 1000000;
+
+    protected final QueryCompiler compiler = new QueryCompiler();
+    protected JournalFactory factory;
+    private File dir;
+
+    @Setup(Level.Trial)
+    public void createData() throws JournalException, ParserException {
+        dir = Files.makeTempDir();
+        factory = new JournalFactory(dir.getAbsolutePath());
+        BenchmarkData.createTrades(factory, TRADE_COUNT);
+        BenchmarkData.createQuotes(factory, QUOTE_COUNT);
+        BenchmarkData.createInstruments(factory);
+        compile();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteData() {
+        close();
+        factory.close();
+        BenchmarkData.delete(dir);
+    }
+
+    protected abstract void close();
+
+    protected abstract void compile() throws ParserException;
+
+    protected long count(RecordSource rs) {
+        RecordCursor cursor = rs.prepareCursor(factory);
+        long count = 0;
+        while (cursor.hasNext()) {
+            cursor.next();
+            count++;
+        }
+        return count;
+    }
+}
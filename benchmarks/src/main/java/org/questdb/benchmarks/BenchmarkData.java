@@ -0,0 +1,151 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package org.questdb.benchmarks;
+
+import com.questdb.JournalEntryWriter;
+import com.questdb.JournalWriter;
+import com.questdb.PartitionBy;
+import com.questdb.ex.JournalException;
+import com.questdb.ex.JournalRuntimeException;
+import com.questdb.factory.JournalFactory;
+import com.questdb.factory.configuration.JournalStructure;
+import com.questdb.misc.Dates;
+import com.questdb.misc.Files;
+import com.questdb.misc.Rnd;
+
+import java.io.File;
+
+/**
+ * Generates benchmark datasets. Every dataset is derived from fixed seed, so that
+ * consecutive runs and different builds operate on exactly same data.
+ */
+public final class BenchmarkData {
+    public static final long SEED0 = 0x5ee1d0c7L;
+    public static final long SEED1 = 0x2a5f17e3L;
+    public static final int SYMBOL_COUNT = 256;
+    public static final long EPOCH = Dates.toMillis(2016, 1, 1, 0, 0);
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Creates "instruments" dimension journal with one row per symbol.
+     */
+    public static void createInstruments(JournalFactory factory) throws JournalException {
+        Rnd rnd = rnd();
+        String symbols[] = symbols();
+        try (JournalWriter w = factory.writer(new JournalStructure("instruments")
+                .$sym("sym").index().buckets(SYMBOL_COUNT)
+                .$sym("sector")
+                .$int("lot")
+                .$())) {
+            for (int i = 0; i < SYMBOL_COUNT; i++) {
+                JournalEntryWriter ew = w.entryWriter();
+                ew.putSym(0, symbols[i]);
+                ew.putSym(1, "S" + (i % 16));
+                ew.putInt(2, 1 + rnd.nextPositiveInt() % 1000);
+                ew.append();
+            }
+            w.commit();
+        }
+    }
+
+    /**
+     * Creates "quotes" journal partitioned by day. Quotes are timestamped between trades
+     * of {@link #createTrades(JournalFactory, int)}, which makes them suitable for as-of join.
+     */
+    public static void createQuotes(JournalFactory factory, int count) throws JournalException {
+        Rnd rnd = new Rnd(SEED1, SEED0);
+        String symbols[] = symbols();
+        try (JournalWriter w = factory.writer(new JournalStructure("quotes")
+                .$sym("sym").index().buckets(SYMBOL_COUNT)
+                .$double("bid")
+                .$double("ask")
+                .$ts()
+                .partitionBy(PartitionBy.DAY)
+                .$())) {
+            long t = EPOCH;
+            for (int i = 0; i < count; i++) {
+                JournalEntryWriter ew = w.entryWriter(t += 500 + rnd.nextPositiveInt() % 1000);
+                ew.putSym(0, symbols[rnd.nextPositiveInt() % SYMBOL_COUNT]);
+                double bid = rnd.nextDouble() * 1000;
+                ew.putDouble(1, bid);
+                ew.putDouble(2, bid + rnd.nextDouble());
+                ew.append();
+            }
+            w.commit();
+        }
+    }
+
+    /**
+     * Creates "trades" journal partitioned by day.
+     */
+    public static void createTrades(JournalFactory factory, int count) throws JournalException {
+        Rnd rnd = rnd();
+        String symbols[] = symbols();
+        try (JournalWriter w = factory.writer(new JournalStructure("trades")
+                .$sym("sym").index().buckets(SYMBOL_COUNT)
+                .$double("px")
+                .$int("qty")
+                .$str("venue")
+                .$ts()
+                .partitionBy(PartitionBy.DAY)
+                .$())) {
+            long t = EPOCH;
+            for (int i = 0; i < count; i++) {
+                JournalEntryWriter ew = w.entryWriter(t += 1 + rnd.nextPositiveInt() % 1000);
+                ew.putSym(0, symbols[rnd.nextPositiveInt() % SYMBOL_COUNT]);
+                ew.putDouble(1, rnd.nextDouble() * 1000);
+                ew.putInt(2, rnd.nextPositiveInt() % 10000);
+                ew.putStr(3, rnd.nextString(4));
+                ew.append();
+            }
+            w.commit();
+        }
+    }
+
+    public static void delete(File dir) {
+        if (dir != null && !Files.delete(dir)) {
+            throw new JournalRuntimeException("Cannot delete %s", dir);
+        }
+    }
+
+    public static Rnd rnd() {
+        return new Rnd(SEED0, SEED1);
+    }
+
+    public static String[] strings(int count, int len) {
+        Rnd rnd = rnd();
+        String values[] = new String[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = rnd.nextString(len);
+        }
+        return values;
+    }
+
+    public static String[] symbols() {
+        return strings(SYMBOL_COUNT, 6);
+    }
+}
@@ -0,0 +1,79 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package org.questdb.benchmarks;
+
+import java.util.Arrays;
+
+/**
+ * Runs benchmarks with JMH command line and writes results as CSV, unless result format or file
+ * are given explicitly:
+ * <pre>
+ *     java -jar benchmarks/target/benchmarks.jar [JMH options] [benchmark regex]
+ * </pre>
+ * Results of two runs can then be compared with:
+ * <pre>
+ *     java -jar benchmarks/target/benchmarks.jar compare base.csv current.csv
+ * </pre>
+ */
+public final class BenchmarkMain {
+    public static final String DEFAULT_RESULT_FILE = "benchmark-results.csv";
+
+    private BenchmarkMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && "compare".equals(args[0])) {
+            CompareResults.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
+        String jmhArgs[] = args;
+        if (!contains(args, "-rf")) {
+            jmhArgs = prepend(jmhArgs, "-rf", "csv");
+        }
+
+        if (!contains(args, "-rff")) {
+            jmhArgs = prepend(jmhArgs, "-rff", DEFAULT_RESULT_FILE);
+        }
+        org.openjdk.jmh.Main.main(jmhArgs);
+    }
+
+    private static boolean contains(String args[], String option) {
+        for (int i = 0, n = args.length; i < n; i++) {
+            if (option.equals(args[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String[] prepend(String args[], String option, String value) {
+        String result[] = new String[args.length + 2];
+        result[0] = option;
+        result[1] = value;
+        System.arraycopy(args, 0, result, 2, args.length);
+        return result;
+    }
+}
@@ -0,0 +1,186 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package org.questdb.benchmarks;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares two JMH CSV result files benchmark by benchmark. Score change is reported as
+ * regression or improvement only when it exceeds sum of score errors of both runs, otherwise
+ * it is considered noise. Exits with status 1 when there is at least one regression.
+ * <pre>
+ *     java -cp benchmarks.jar org.questdb.benchmarks.CompareResults base.csv current.csv
+ * </pre>
+ */
+public final class CompareResults {
+    private static final int COL_BENCHMARK = 0;
+    private static final int COL_MODE = 1;
+    private static final int COL_SCORE = 4;
+    private static final int COL_ERROR = 5;
+    private static final int COL_UNIT = 6;
+    private static final int COL_PARAMS = 7;
+
+    private CompareResults() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: " + CompareResults.class.getName() + " <base.csv> <current.csv>");
+            System.exit(2);
+        }
+
+        Map<String, Result> base = read(new File(args[0]));
+        Map<String, Result> current = read(new File(args[1]));
+        int regressions = 0;
+
+        System.out.println(String.format("%-80s %-6s %24s %24s %-8s %8s", "Benchmark", "Mode", "Base", "Current", "Units", "Change"));
+        for (Map.Entry<String, Result> e : current.entrySet()) {
+            Result c = e.getValue();
+            Result b = base.get(e.getKey());
+            if (b == null) {
+                System.out.println(String.format("%-80s %-6s %24s %24s %-8s %8s", e.getKey(), c.mode, "-", c.format(), c.unit, "NEW"));
+                continue;
+            }
+
+            double change = b.score == 0 ? 0 : (c.score - b.score) * 100 / b.score;
+            String verdict = "";
+            if (Math.abs(c.score - b.score) > b.error + c.error) {
+                // throughput is better when higher, all other modes measure time
+                boolean better = "thrpt".equals(c.mode) ? c.score > b.score : c.score < b.score;
+                if (better) {
+                    verdict = " IMPROVEMENT";
+                } else {
+                    verdict = " REGRESSION";
+                    regressions++;
+                }
+            }
+            System.out.println(String.format("%-80s %-6s %24s %24s %-8s %+7.1f%%%s", e.getKey(), c.mode, b.format(), c.format(), c.unit, change, verdict));
+        }
+
+        for (String key : base.keySet()) {
+            if (!current.containsKey(key)) {
+                Result b = base.get(key);
+                System.out.println(String.format("%-80s %-6s %24s %24s %-8s %8s", key, b.mode, b.format(), "-", b.unit, "MISSING"));
+            }
+        }
+
+        if (regressions > 0) {
+            System.out.println(regressions + " regression(s)");
+            System.exit(1);
+        }
+    }
+
+    private static List<String> parseLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder b = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0, n = line.length(); i < n; i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                if (quoted && i + 1 < n && line.charAt(i + 1) == '"') {
+                    b.append('"');
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+            } else if (c == ',' && !quoted) {
+                fields.add(b.toString());
+                b.setLength(0);
+            } else {
+                b.append(c);
+            }
+        }
+        fields.add(b.toString());
+        return fields;
+    }
+
+    private static double parseNumber(String value) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    private static Map<String, Result> read(File file) throws IOException {
+        Map<String, Result> results = new LinkedHashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line = reader.readLine();
+            if (line == null) {
+                return results;
+            }
+
+            List<String> header = parseLine(line);
+            while ((line = reader.readLine()) != null) {
+                if (line.length() == 0) {
+                    continue;
+                }
+
+                List<String> fields = parseLine(line);
+                // parameter columns are shared by all benchmarks of the file, blank ones do not apply
+                StringBuilder key = new StringBuilder(fields.get(COL_BENCHMARK));
+                int paramCount = 0;
+                for (int i = COL_PARAMS, n = Math.min(header.size(), fields.size()); i < n; i++) {
+                    if (fields.get(i).length() > 0) {
+                        key.append(paramCount++ == 0 ? " [" : ", ");
+                        key.append(header.get(i).replace("Param: ", "")).append('=').append(fields.get(i));
+                    }
+                }
+
+                if (paramCount > 0) {
+                    key.append(']');
+                }
+
+                Result r = new Result();
+                r.mode = fields.get(COL_MODE);
+                r.score = parseNumber(fields.get(COL_SCORE));
+                r.error = parseNumber(fields.get(COL_ERROR));
+                // single sample runs have no error estimate
+                if (r.error != r.error) {
+                    r.error = 0;
+                }
+                r.unit = fields.get(COL_UNIT);
+                results.put(key.toString(), r);
+            }
+        }
+        return results;
+    }
+
+    private static class Result {
+        String mode;
+        double score;
+        double error;
+        String unit;
+
+        String format() {
+            return String.format("%.3f +/- %.3f", score, error);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package org.questdb.benchmarks;
+
+import com.questdb.misc.Rnd;
+import com.questdb.ql.impl.map.DirectMap;
+import com.questdb.ql.impl.map.DirectMapValues;
+import com.questdb.std.IntList;
+import com.questdb.store.ColumnType;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts occurrences of long and string keys the way aggregation does. Parameter controls
+ * number of distinct keys and therefore ratio between new and existing entries in map.
+ * Map is cleared every iteration.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class DirectMapBenchmark {
+    private static final int KEY_SAMPLE_SIZE = 1024 * 1024;
+
+    @Param({"1024", "1048576"})
+    public int distinctKeys;
+
+    private final long longKeys[] = new long[KEY_SAMPLE_SIZE];
+    private final String strKeys[] = new String[KEY_SAMPLE_SIZE];
+    private DirectMap longMap;
+    private DirectMap strMap;
+    private int index;
+
+    @TearDown(Level.Iteration)
+    public void clear() {
+        longMap.clear();
+        strMap.clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void free() {
+        longMap.close();
+        strMap.close();
+    }
+
+    @Setup(Level.Trial)
+    public void generate() {
+        Rnd rnd = BenchmarkData.rnd();
+        String distinct[] = BenchmarkData.strings(distinctKeys, 8);
+        for (int i = 0; i < KEY_SAMPLE_SIZE; i++) {
+            int k = rnd.nextPositiveInt() % distinctKeys;
+            longKeys[i] = k * 7919L;
+            strKeys[i] = distinct[k];
+        }
+
+        IntList valueTypes = new IntList();
+        valueTypes.add(ColumnType.LONG);
+        longMap = new DirectMap(4 * 1024 * 1024, 1, valueTypes);
+        strMap = new DirectMap(4 * 1024 * 1024, 1, valueTypes);
+        index = 0;
+    }
+
+    @Benchmark
+    public long getOrCreateLong() {
+        DirectMap.KeyWriter kw = longMap.keyWriter();
+        kw.putLong(longKeys[index++ & (KEY_SAMPLE_SIZE - 1)]);
+        return count(longMap.getOrCreateValues(kw));
+    }
+
+    @Benchmark
+    public long getOrCreateStr() {
+        DirectMap.KeyWriter kw = strMap.keyWriter();
+        kw.putStr(strKeys[index++ & (KEY_SAMPLE_SIZE - 1)]);
+        return count(strMap.getOrCreateValues(kw));
+    }
+
+    private static long count(DirectMapValues values) {
+        long n = values.isNew() ? 1 : values.getLong(0) + 1;
+        values.putLong(0, n);
+        return n;
+    }
+}
@@ -0,0 +1,68 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package org.questdb.benchmarks;
+
+import com.questdb.ex.ParserException;
+import com.questdb.misc.Misc;
+import com.questdb.ql.RecordSource;
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * Hash join of trades with instrument dimension and as-of joins of trades with quotes.
+ */
+public class JoinBenchmark extends AbstractQueryBenchmark {
+    private RecordSource hashJoin;
+    private RecordSource asOfJoin;
+    private RecordSource asOfJoinKeyed;
+
+    @Benchmark
+    public long asOfJoin() {
+        return count(asOfJoin);
+    }
+
+    @Benchmark
+    public long asOfJoinKeyed() {
+        return count(asOfJoinKeyed);
+    }
+
+    @Benchmark
+    public long hashJoin() {
+        return count(hashJoin);
+    }
+
+    @Override
+    protected void close() {
+        hashJoin = Misc.free(hashJoin);
+        asOfJoin = Misc.free(asOfJoin);
+        asOfJoinKeyed = Misc.free(asOfJoinKeyed);
+    }
+
+    @Override
+    protected void compile() throws ParserException {
+        hashJoin = compiler.compile(factory, "trades t join instruments i on t.sym = i.sym");
+        asOfJoin = compiler.compile(factory, "trades t asof join quotes q");
+        asOfJoinKeyed = compiler.compile(factory, "trades t asof join quotes q on (sym)");
+    }
+}
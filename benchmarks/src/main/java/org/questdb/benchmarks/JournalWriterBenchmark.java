@@ -0,0 +1,142 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package org.questdb.benchmarks;
+
+import com.questdb.ColumnBatch;
+import com.questdb.JournalEntryWriter;
+import com.questdb.JournalWriter;
+import com.questdb.PartitionBy;
+import com.questdb.ex.JournalException;
+import com.questdb.factory.JournalFactory;
+import com.questdb.factory.configuration.JournalStructure;
+import com.questdb.misc.Files;
+import com.questdb.misc.Rnd;
+import com.questdb.misc.Unsafe;
+import com.questdb.std.ObjList;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Appends and commits batches of rows, one entry at a time and as column batch.
+ * Journal is re-created for every iteration to keep its size independent of iteration count.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class JournalWriterBenchmark {
+    private static final int BATCH_SIZE = 10000;
+    private static final long TIMESTAMP_STEP = 100;
+
+    private final ObjList<String> symbols = new ObjList<>(BATCH_SIZE);
+    private final double prices[] = new double[BATCH_SIZE];
+    private final int quantities[] = new int[BATCH_SIZE];
+    private File dir;
+    private JournalFactory factory;
+    private JournalWriter writer;
+    private ColumnBatch batch;
+    private long pxAddress;
+    private long qtyAddress;
+    private long tsAddress;
+    private long timestamp;
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void appendAndCommit() throws JournalException {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            JournalEntryWriter ew = writer.entryWriter(timestamp += TIMESTAMP_STEP);
+            ew.putSym(0, symbols.getQuick(i));
+            ew.putDouble(1, prices[i]);
+            ew.putInt(2, quantities[i]);
+            ew.append();
+        }
+        writer.commit();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void appendBatchAndCommit() throws JournalException {
+        // timestamps have to move forward, shifting them costs fraction of append itself
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            Unsafe.getUnsafe().putLong(tsAddress + i * 8, timestamp += TIMESTAMP_STEP);
+        }
+        writer.appendBatch(batch);
+        writer.commit();
+    }
+
+    @Setup(Level.Iteration)
+    public void createJournal() throws JournalException {
+        dir = Files.makeTempDir();
+        factory = new JournalFactory(dir.getAbsolutePath());
+        writer = factory.writer(new JournalStructure("quote")
+                .$sym("sym").index().buckets(BenchmarkData.SYMBOL_COUNT)
+                .$double("px")
+                .$int("qty")
+                .$ts()
+                .partitionBy(PartitionBy.DAY)
+                .$());
+        timestamp = BenchmarkData.EPOCH;
+
+        batch = new ColumnBatch(writer.getMetadata()).of(BATCH_SIZE);
+        batch.putStr(0, symbols);
+        batch.put(1, pxAddress);
+        batch.put(2, qtyAddress);
+        batch.put(3, tsAddress);
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteJournal() {
+        writer.close();
+        factory.close();
+        BenchmarkData.delete(dir);
+    }
+
+    @TearDown(Level.Trial)
+    public void free() {
+        Unsafe.free(pxAddress, BATCH_SIZE * 8);
+        Unsafe.free(qtyAddress, BATCH_SIZE * 4);
+        Unsafe.free(tsAddress, BATCH_SIZE * 8);
+    }
+
+    @Setup(Level.Trial)
+    public void generate() {
+        Rnd rnd = BenchmarkData.rnd();
+        String s[] = BenchmarkData.symbols();
+        pxAddress = Unsafe.malloc(BATCH_SIZE * 8);
+        qtyAddress = Unsafe.malloc(BATCH_SIZE * 4);
+        tsAddress = Unsafe.malloc(BATCH_SIZE * 8);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            symbols.add(s[rnd.nextPositiveInt() % s.length]);
+            prices[i] = rnd.nextDouble() * 1000;
+            quantities[i] = rnd.nextPositiveInt() % 10000;
+            Unsafe.getUnsafe().putDouble(pxAddress + i * 8, prices[i]);
+            Unsafe.getUnsafe().putInt(qtyAddress + i * 4, quantities[i]);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package org.questdb.benchmarks;
+
+import com.questdb.ex.ParserException;
+import com.questdb.factory.configuration.RecordMetadata;
+import com.questdb.io.sink.StringSink;
+import com.questdb.misc.Misc;
+import com.questdb.net.http.handlers.QueryHandler;
+import com.questdb.ql.Record;
+import com.questdb.ql.RecordCursor;
+import com.questdb.ql.RecordSource;
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * Encodes every row of trades as JSON array, using same value encoding as query handler.
+ * Row text is discarded after each row, which is what handler does once it is sent.
+ */
+public class JsonEncodingBenchmark extends AbstractQueryBenchmark {
+    private final StringSink sink = new StringSink();
+    private RecordSource trades;
+
+    @Benchmark
+    public long encodeTrades() {
+        RecordMetadata m = trades.getMetadata();
+        int columnCount = m.getColumnCount();
+        int types[] = new int[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            types[i] = m.getColumnQuick(i).getType();
+        }
+
+        RecordCursor cursor = trades.prepareCursor(factory);
+        long len = 0;
+        while (cursor.hasNext()) {
+            Record r = cursor.next();
+            sink.clear();
+            sink.put('[');
+            for (int i = 0; i < columnCount; i++) {
+                if (i > 0) {
+                    sink.put(',');
+                }
+                QueryHandler.putValue(sink, types[i], r, i);
+            }
+            sink.put(']');
+            len += sink.length();
+        }
+        return len;
+    }
+
+    @Override
+    protected void close() {
+        trades = Misc.free(trades);
+    }
+
+    @Override
+    protected void compile() throws ParserException {
+        trades = compiler.compile(factory, "trades");
+    }
+}
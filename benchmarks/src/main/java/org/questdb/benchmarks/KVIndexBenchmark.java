@@ -0,0 +1,114 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package org.questdb.benchmarks;
+
+import com.questdb.JournalMode;
+import com.questdb.ex.JournalException;
+import com.questdb.misc.Files;
+import com.questdb.misc.Rnd;
+import com.questdb.store.IndexCursor;
+import com.questdb.store.KVIndex;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adds values to index with random key distribution and iterates values of single key.
+ * Index written by "add" benchmark is re-created every iteration, index read by "cursor"
+ * benchmark is created once per trial.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class KVIndexBenchmark {
+    private static final int BATCH_SIZE = 1024;
+    private static final int KEY_COUNT = 1024;
+    private static final int VALUE_COUNT = 4 * 1024 * 1024;
+
+    private final int keys[] = new int[BATCH_SIZE];
+    private File dir;
+    private KVIndex writeIndex;
+    private KVIndex readIndex;
+    private long value;
+    private int cursorKey;
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void addAndCommit() {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            writeIndex.add(keys[i], value++);
+        }
+        writeIndex.commit();
+    }
+
+    @Benchmark
+    public void cursor(Blackhole bh) {
+        IndexCursor cursor = readIndex.cursor(cursorKey++ & (KEY_COUNT - 1));
+        long sum = 0;
+        while (cursor.hasNext()) {
+            sum += cursor.next();
+        }
+        bh.consume(sum);
+    }
+
+    @Setup(Level.Iteration)
+    public void createWriteIndex() throws JournalException {
+        writeIndex = new KVIndex(new File(dir, "write"), KEY_COUNT, VALUE_COUNT, 1, JournalMode.APPEND, 0);
+        value = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteWriteIndex() {
+        writeIndex.close();
+        KVIndex.delete(new File(dir, "write"));
+    }
+
+    @TearDown(Level.Trial)
+    public void free() {
+        readIndex.close();
+        BenchmarkData.delete(dir);
+    }
+
+    @Setup(Level.Trial)
+    public void generate() throws JournalException {
+        Rnd rnd = BenchmarkData.rnd();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            keys[i] = rnd.nextPositiveInt() % KEY_COUNT;
+        }
+
+        dir = Files.makeTempDir();
+        readIndex = new KVIndex(new File(dir, "read"), KEY_COUNT, VALUE_COUNT, 1, JournalMode.APPEND, 0);
+        for (int i = 0; i < VALUE_COUNT; i++) {
+            readIndex.add(rnd.nextPositiveInt() % KEY_COUNT, i);
+        }
+        readIndex.commit();
+        cursorKey = 0;
+    }
+}
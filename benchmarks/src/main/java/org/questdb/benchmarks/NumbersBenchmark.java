@@ -0,0 +1,134 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package org.questdb.benchmarks;
+
+import com.questdb.ex.NumericException;
+import com.questdb.io.sink.StringSink;
+import com.questdb.misc.Numbers;
+import com.questdb.misc.Rnd;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formats and parses int, long and double values. Text of values to be parsed is produced
+ * by {@link Numbers#append} in setup.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class NumbersBenchmark {
+    private static final int COUNT = 1024;
+    private static final int SCALE = 6;
+
+    private final int ints[] = new int[COUNT];
+    private final long longs[] = new long[COUNT];
+    private final double doubles[] = new double[COUNT];
+    private final String intText[] = new String[COUNT];
+    private final String longText[] = new String[COUNT];
+    private final String doubleText[] = new String[COUNT];
+    private final StringSink sink = new StringSink();
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public int appendDouble() {
+        sink.clear();
+        for (int i = 0; i < COUNT; i++) {
+            Numbers.append(sink, doubles[i], SCALE);
+        }
+        return sink.length();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public int appendInt() {
+        sink.clear();
+        for (int i = 0; i < COUNT; i++) {
+            Numbers.append(sink, ints[i]);
+        }
+        return sink.length();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public int appendLong() {
+        sink.clear();
+        for (int i = 0; i < COUNT; i++) {
+            Numbers.append(sink, longs[i]);
+        }
+        return sink.length();
+    }
+
+    @Setup
+    public void generate() {
+        Rnd rnd = BenchmarkData.rnd();
+        StringSink s = new StringSink();
+        for (int i = 0; i < COUNT; i++) {
+            ints[i] = rnd.nextInt();
+            longs[i] = rnd.nextLong();
+            doubles[i] = (rnd.nextDouble() - 0.5) * Math.pow(10, rnd.nextPositiveInt() % 12);
+
+            s.clear();
+            Numbers.append(s, ints[i]);
+            intText[i] = s.toString();
+
+            s.clear();
+            Numbers.append(s, longs[i]);
+            longText[i] = s.toString();
+
+            s.clear();
+            Numbers.append(s, doubles[i], SCALE);
+            doubleText[i] = s.toString();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void parseDouble(Blackhole bh) throws NumericException {
+        for (int i = 0; i < COUNT; i++) {
+            bh.consume(Numbers.parseDouble(doubleText[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void parseInt(Blackhole bh) throws NumericException {
+        for (int i = 0; i < COUNT; i++) {
+            bh.consume(Numbers.parseInt(intText[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void parseLong(Blackhole bh) throws NumericException {
+        for (int i = 0; i < COUNT; i++) {
+            bh.consume(Numbers.parseLong(longText[i]));
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package org.questdb.benchmarks;
+
+import com.questdb.ex.ParserException;
+import com.questdb.misc.Misc;
+import com.questdb.ql.RecordSource;
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * Sorts trades by single double column and by symbol and int columns. Both queries are
+ * compiled to {@link com.questdb.ql.impl.sort.RadixSortedRecordSource}.
+ */
+public class RadixSortBenchmark extends AbstractQueryBenchmark {
+    private RecordSource byPrice;
+    private RecordSource bySymbolQty;
+
+    @Benchmark
+    public long orderByPrice() {
+        return count(byPrice);
+    }
+
+    @Benchmark
+    public long orderBySymbolQty() {
+        return count(bySymbolQty);
+    }
+
+    @Override
+    protected void close() {
+        byPrice = Misc.free(byPrice);
+        bySymbolQty = Misc.free(bySymbolQty);
+    }
+
+    @Override
+    protected void compile() throws ParserException {
+        byPrice = compiler.compile(factory, "trades order by px");
+        bySymbolQty = compiler.compile(factory, "trades order by sym, qty");
+    }
+}
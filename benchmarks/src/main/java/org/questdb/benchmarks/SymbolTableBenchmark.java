@@ -0,0 +1,109 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package org.questdb.benchmarks;
+
+import com.questdb.JournalMode;
+import com.questdb.ex.JournalException;
+import com.questdb.misc.Files;
+import com.questdb.store.MMappedSymbolTable;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Puts values to symbol table and looks them up, with and without value cache. Values put are
+ * taken from fixed set of distinct strings in order, so that first pass of every iteration adds
+ * new values and following passes find existing ones.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SymbolTableBenchmark {
+    private static final int DISTINCT_COUNT = 64 * 1024;
+    private static final int AVG_LEN = 12;
+
+    @Param({"false", "true"})
+    public boolean noCache;
+
+    private String values[];
+    private File dir;
+    private File writeDir;
+    private MMappedSymbolTable writeTable;
+    private MMappedSymbolTable readTable;
+    private int putIndex;
+    private int getIndex;
+
+    @Setup(Level.Iteration)
+    public void createWriteTable() throws JournalException {
+        writeDir = new File(dir, "write");
+        Files.mkDirsOrException(writeDir);
+        writeTable = new MMappedSymbolTable(DISTINCT_COUNT, AVG_LEN, 1, writeDir, "sym", JournalMode.APPEND, 0, 0, noCache);
+        putIndex = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteWriteTable() {
+        writeTable.close();
+        BenchmarkData.delete(writeDir);
+    }
+
+    @TearDown(Level.Trial)
+    public void free() {
+        readTable.close();
+        BenchmarkData.delete(dir);
+    }
+
+    @Setup(Level.Trial)
+    public void generate() throws JournalException {
+        values = BenchmarkData.strings(DISTINCT_COUNT, AVG_LEN);
+        dir = Files.makeTempDir();
+        readTable = new MMappedSymbolTable(DISTINCT_COUNT, AVG_LEN, 1, dir, "sym", JournalMode.APPEND, 0, 0, noCache);
+        for (int i = 0; i < DISTINCT_COUNT; i++) {
+            readTable.put(values[i]);
+        }
+        readTable.commit();
+        getIndex = 0;
+    }
+
+    @Benchmark
+    public int get() {
+        return readTable.get(values[getIndex++ & (DISTINCT_COUNT - 1)]);
+    }
+
+    @Benchmark
+    public int put() {
+        return writeTable.put(values[putIndex++ & (DISTINCT_COUNT - 1)]);
+    }
+
+    @Benchmark
+    public void value(Blackhole bh) {
+        bh.consume(readTable.value(getIndex++ & (DISTINCT_COUNT - 1)));
+    }
+}
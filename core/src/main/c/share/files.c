@@ -33,8 +33,13 @@
  *
  ******************************************************************************/
 
+#if defined(__linux__) && !defined(_GNU_SOURCE)
+#define _GNU_SOURCE
+#endif
+
 #include <unistd.h>
 #include <sys/stat.h>
+#include <sys/mman.h>
 #include <sys/fcntl.h>
 #include <sys/time.h>
 #include <string.h>
@@ -70,6 +75,73 @@ JNIEXPORT jlong JNICALL Java_com_questdb_misc_Files_read
     return pread((int) fd, (void *) address, (size_t) len, (off_t) offset);
 }
 
+JNIEXPORT jlong JNICALL Java_com_questdb_misc_Files_mmap
+        (JNIEnv *e, jclass cl,
+         jlong fd,
+         jlong len,
+         jlong offset,
+         jint flags) {
+    int prot = flags == com_questdb_misc_Files_MAP_RW ? PROT_READ | PROT_WRITE : PROT_READ;
+    void *addr = mmap(NULL, (size_t) len, prot, MAP_SHARED, (int) fd, (off_t) offset);
+    return addr == MAP_FAILED ? -1 : (jlong) addr;
+}
+
+JNIEXPORT jlong JNICALL Java_com_questdb_misc_Files_mremap
+        (JNIEnv *e, jclass cl,
+         jlong address,
+         jlong previousLen,
+         jlong newLen) {
+#ifdef __linux__
+    // no MREMAP_MAYMOVE, region either grows in place or stays as it is
+    void *addr = mremap((void *) address, (size_t) previousLen, (size_t) newLen, 0);
+    return addr == MAP_FAILED ? -1 : (jlong) addr;
+#else
+    return -1;
+#endif
+}
+
+JNIEXPORT jint JNICALL Java_com_questdb_misc_Files_munmap
+        (JNIEnv *e, jclass cl,
+         jlong address,
+         jlong len) {
+    return munmap((void *) address, (size_t) len);
+}
+
+JNIEXPORT jint JNICALL Java_com_questdb_misc_Files_madvise
+        (JNIEnv *e, jclass cl,
+         jlong address,
+         jlong len,
+         jint advice) {
+    int adv;
+    switch (advice) {
+        case com_questdb_misc_Files_MADV_SEQUENTIAL:
+            adv = MADV_SEQUENTIAL;
+            break;
+        case com_questdb_misc_Files_MADV_DONTNEED:
+            adv = MADV_DONTNEED;
+            break;
+        default:
+            adv = MADV_NORMAL;
+            break;
+    }
+    return madvise((void *) address, (size_t) len, adv);
+}
+
+JNIEXPORT jint JNICALL Java_com_questdb_misc_Files_msync
+        (JNIEnv *e, jclass cl,
+         jlong address,
+         jlong len,
+         jboolean async) {
+    return msync((void *) address, (size_t) len, async ? MS_ASYNC : MS_SYNC);
+}
+
+JNIEXPORT jboolean JNICALL Java_com_questdb_misc_Files_truncate
+        (JNIEnv *e, jclass cl,
+         jlong fd,
+         jlong size) {
+    return (jboolean) (ftruncate((int) fd, (off_t) size) == 0);
+}
+
 JNIEXPORT jlong JNICALL Java_com_questdb_misc_Files_getLastModified
         (JNIEnv *e, jclass cl, jlong pchar) {
 
@@ -109,6 +181,14 @@ JNIEXPORT jlong JNICALL Java_com_questdb_misc_Files_length
     return r == 0 ? st.st_size : r;
 }
 
+JNIEXPORT jlong JNICALL Java_com_questdb_misc_Files_getFileSize
+        (JNIEnv *e, jclass cl, jlong fd) {
+    struct stat st;
+
+    int r = fstat((int) fd, &st);
+    return r == 0 ? st.st_size : r;
+}
+
 #ifdef __APPLE__
 
 JNIEXPORT jboolean JNICALL Java_com_questdb_misc_Files_setLastModified
@@ -25,6 +25,14 @@ extern "C" {
 #define com_questdb_misc_Files_DT_SOCK 12L
 #undef com_questdb_misc_Files_DT_WHT
 #define com_questdb_misc_Files_DT_WHT 14L
+#undef com_questdb_misc_Files_MAP_RO
+#define com_questdb_misc_Files_MAP_RO 1L
+#undef com_questdb_misc_Files_MAP_RW
+#define com_questdb_misc_Files_MAP_RW 2L
+#undef com_questdb_misc_Files_MADV_SEQUENTIAL
+#define com_questdb_misc_Files_MADV_SEQUENTIAL 1L
+#undef com_questdb_misc_Files_MADV_DONTNEED
+#define com_questdb_misc_Files_MADV_DONTNEED 2L
 /*
  * Class:     com_questdb_misc_Files
  * Method:    append
@@ -105,6 +113,14 @@ JNIEXPORT jlong JNICALL Java_com_questdb_misc_Files_write
 JNIEXPORT jlong JNICALL Java_com_questdb_misc_Files_getLastModified
         (JNIEnv *, jclass, jlong);
 
+/*
+ * Class:     com_questdb_misc_Files
+ * Method:    getFileSize
+ * Signature: (J)J
+ */
+JNIEXPORT jlong JNICALL Java_com_questdb_misc_Files_getFileSize
+        (JNIEnv *, jclass, jlong);
+
 /*
  * Class:     com_questdb_misc_Files
  * Method:    length
@@ -153,6 +169,54 @@ JNIEXPORT jlong JNICALL Java_com_questdb_misc_Files_findFirst
 JNIEXPORT jboolean JNICALL Java_com_questdb_misc_Files_setLastModified
         (JNIEnv *, jclass, jlong, jlong);
 
+/*
+ * Class:     com_questdb_misc_Files
+ * Method:    mmap
+ * Signature: (JJJI)J
+ */
+JNIEXPORT jlong JNICALL Java_com_questdb_misc_Files_mmap
+        (JNIEnv *, jclass, jlong, jlong, jlong, jint);
+
+/*
+ * Class:     com_questdb_misc_Files
+ * Method:    mremap
+ * Signature: (JJJ)J
+ */
+JNIEXPORT jlong JNICALL Java_com_questdb_misc_Files_mremap
+        (JNIEnv *, jclass, jlong, jlong, jlong);
+
+/*
+ * Class:     com_questdb_misc_Files
+ * Method:    munmap
+ * Signature: (JJ)I
+ */
+JNIEXPORT jint JNICALL Java_com_questdb_misc_Files_munmap
+        (JNIEnv *, jclass, jlong, jlong);
+
+/*
+ * Class:     com_questdb_misc_Files
+ * Method:    madvise
+ * Signature: (JJI)I
+ */
+JNIEXPORT jint JNICALL Java_com_questdb_misc_Files_madvise
+        (JNIEnv *, jclass, jlong, jlong, jint);
+
+/*
+ * Class:     com_questdb_misc_Files
+ * Method:    msync
+ * Signature: (JJZ)I
+ */
+JNIEXPORT jint JNICALL Java_com_questdb_misc_Files_msync
+        (JNIEnv *, jclass, jlong, jlong, jboolean);
+
+/*
+ * Class:     com_questdb_misc_Files
+ * Method:    truncate
+ * Signature: (JJ)Z
+ */
+JNIEXPORT jboolean JNICALL Java_com_questdb_misc_Files_truncate
+        (JNIEnv *, jclass, jlong, jlong);
+
 #ifdef __cplusplus
 }
 #endif
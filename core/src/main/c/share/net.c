@@ -42,6 +42,12 @@
 #include <sys/errno.h>
 #include "net.h"
 
+#ifdef __APPLE__
+#include <sys/uio.h>
+#else
+#include <sys/sendfile.h>
+#endif
+
 JNIEXPORT jlong JNICALL Java_com_questdb_misc_Net_socketTcp
         (JNIEnv *e, jobject cl, jboolean blocking) {
     int fd = socket(AF_INET, SOCK_STREAM, 0);
@@ -101,6 +107,21 @@ JNIEXPORT jint JNICALL Java_com_questdb_misc_Net_send
 }
 
 
+JNIEXPORT jint JNICALL Java_com_questdb_misc_Net_sendFile
+        (JNIEnv *e, jclass cl, jlong fd, jlong fileFd, jlong offset, jint len) {
+#ifdef __APPLE__
+    off_t sent = (off_t) len;
+    if (sendfile((int) fileFd, (int) fd, (off_t) offset, &sent, NULL, 0) == 0 || sent > 0) {
+        // partial write of non-blocking socket is reported as EAGAIN together with number of bytes sent
+        return convert_error(sent);
+    }
+    return convert_error(-1);
+#else
+    off_t off = (off_t) offset;
+    return convert_error(sendfile((int) fd, (int) fileFd, &off, (size_t) len));
+#endif
+}
+
 JNIEXPORT jint JNICALL Java_com_questdb_misc_Net_recv
         (JNIEnv *e, jclass cl, jlong fd, jlong ptr, jint len) {
     return convert_error(recv((int) fd, (void *) ptr, (size_t) len, 0));
@@ -93,6 +93,14 @@ JNIEXPORT jboolean JNICALL Java_com_questdb_misc_Net_isDead
 JNIEXPORT jint JNICALL Java_com_questdb_misc_Net_send
         (JNIEnv *, jclass, jlong, jlong, jint);
 
+/*
+ * Class:     com_questdb_misc_Net
+ * Method:    sendFile
+ * Signature: (JJJI)I
+ */
+JNIEXPORT jint JNICALL Java_com_questdb_misc_Net_sendFile
+        (JNIEnv *, jclass, jlong, jlong, jlong, jint);
+
 /*
  * Class:     com_questdb_misc_Net
  * Method:    setRcvBuf
@@ -34,6 +34,8 @@
  ******************************************************************************/
 
 #include <stdlib.h>
+#include <stdint.h>
+#include <string.h>
 #include <src/main/c/share/zlib-1.2.8/zutil.h>
 #include <src/main/c/share/zip.h>
 
@@ -146,3 +148,271 @@ JNIEXPORT jint JNICALL Java_com_questdb_misc_Zip_deflateReset
         (JNIEnv *e, jclass cl, jlong ptr) {
     return (jint) deflateReset((z_streamp) ptr);
 }
+
+/*
+ * LZ4 block format codec. Compressor is greedy single pass with 4K entry hash table,
+ * it trades ratio for speed same way reference implementation does in its fast mode.
+ */
+
+#define LZ4_MIN_MATCH 4
+#define LZ4_HASH_LOG 12
+#define LZ4_MF_LIMIT 12
+#define LZ4_LAST_LITERALS 5
+#define LZ4_MAX_DISTANCE 65535
+#define LZ4_SKIP_TRIGGER 6
+
+#define XXH_PRIME1 2654435761U
+#define XXH_PRIME2 2246822519U
+#define XXH_PRIME3 3266489917U
+#define XXH_PRIME4 668265263U
+#define XXH_PRIME5 374761393U
+
+static inline uint32_t lz4_read32(const uint8_t *p) {
+    uint32_t v;
+    memcpy(&v, p, 4);
+    return v;
+}
+
+static inline uint64_t lz4_read64(const uint8_t *p) {
+    uint64_t v;
+    memcpy(&v, p, 8);
+    return v;
+}
+
+static inline uint32_t lz4_hash(uint32_t v) {
+    return (v * XXH_PRIME1) >> (32 - LZ4_HASH_LOG);
+}
+
+static inline uint8_t *lz4_put_length(uint8_t *op, size_t len) {
+    while (len >= 255) {
+        *op++ = 255;
+        len -= 255;
+    }
+    *op++ = (uint8_t) len;
+    return op;
+}
+
+static inline size_t lz4_count(const uint8_t *ip, const uint8_t *ref, const uint8_t *limit) {
+    const uint8_t *start = ip;
+    while (ip + 8 <= limit) {
+        uint64_t diff = lz4_read64(ip) ^ lz4_read64(ref);
+        if (diff) {
+            return ip - start + (__builtin_ctzll(diff) >> 3);
+        }
+        ip += 8;
+        ref += 8;
+    }
+    while (ip < limit && *ip == *ref) {
+        ip++;
+        ref++;
+    }
+    return ip - start;
+}
+
+static int lz4_compress(const uint8_t *src, int srcLen, uint8_t *dst, int dstCap) {
+    const uint8_t *ip = src;
+    const uint8_t *anchor = src;
+    const uint8_t *const iend = src + srcLen;
+    const uint8_t *const mflimit = iend - LZ4_MF_LIMIT;
+    const uint8_t *const matchlimit = iend - LZ4_LAST_LITERALS;
+    uint8_t *op = dst;
+    uint8_t *const oend = dst + dstCap;
+    uint32_t table[1 << LZ4_HASH_LOG];
+
+    if (srcLen > LZ4_MF_LIMIT) {
+        memset(table, 0, sizeof(table));
+        ip++;
+        uint32_t attempts = 1 << LZ4_SKIP_TRIGGER;
+
+        while (ip <= mflimit) {
+            uint32_t seq = lz4_read32(ip);
+            uint32_t h = lz4_hash(seq);
+            const uint8_t *ref = src + table[h];
+            table[h] = (uint32_t) (ip - src);
+
+            if (ip - ref > LZ4_MAX_DISTANCE || lz4_read32(ref) != seq) {
+                // step over incompressible data faster the longer it goes on
+                ip += attempts++ >> LZ4_SKIP_TRIGGER;
+                continue;
+            }
+            attempts = 1 << LZ4_SKIP_TRIGGER;
+
+            while (ip > anchor && ref > src && ip[-1] == ref[-1]) {
+                ip--;
+                ref--;
+            }
+
+            size_t litLen = ip - anchor;
+            size_t matchLen = lz4_count(ip + LZ4_MIN_MATCH, ref + LZ4_MIN_MATCH, matchlimit);
+
+            if (op + 1 + litLen + litLen / 255 + 1 + 2 + matchLen / 255 + 1 + 1 + LZ4_LAST_LITERALS > oend) {
+                return 0;
+            }
+
+            uint8_t *token = op++;
+            if (litLen >= 15) {
+                *token = 15 << 4;
+                op = lz4_put_length(op, litLen - 15);
+            } else {
+                *token = (uint8_t) (litLen << 4);
+            }
+            memcpy(op, anchor, litLen);
+            op += litLen;
+
+            uint16_t offset = (uint16_t) (ip - ref);
+            *op++ = (uint8_t) offset;
+            *op++ = (uint8_t) (offset >> 8);
+
+            if (matchLen >= 15) {
+                *token |= 15;
+                op = lz4_put_length(op, matchLen - 15);
+            } else {
+                *token |= (uint8_t) matchLen;
+            }
+
+            ip += matchLen + LZ4_MIN_MATCH;
+            anchor = ip;
+
+            if (ip <= mflimit) {
+                table[lz4_hash(lz4_read32(ip - 2))] = (uint32_t) (ip - 2 - src);
+            }
+        }
+    }
+
+    size_t litLen = iend - anchor;
+    if (op + 1 + litLen + litLen / 255 + 1 > oend) {
+        return 0;
+    }
+
+    if (litLen >= 15) {
+        *op++ = 15 << 4;
+        op = lz4_put_length(op, litLen - 15);
+    } else {
+        *op++ = (uint8_t) (litLen << 4);
+    }
+    memcpy(op, anchor, litLen);
+    op += litLen;
+    return (int) (op - dst);
+}
+
+static int lz4_decompress(const uint8_t *src, int srcLen, uint8_t *dst, int dstCap) {
+    const uint8_t *ip = src;
+    const uint8_t *const iend = src + srcLen;
+    uint8_t *op = dst;
+    uint8_t *const oend = dst + dstCap;
+
+    while (ip < iend) {
+        unsigned token = *ip++;
+        size_t len = token >> 4;
+        if (len == 15) {
+            unsigned b;
+            do {
+                if (ip == iend) {
+                    return -1;
+                }
+                len += b = *ip++;
+            } while (b == 255);
+        }
+
+        if ((size_t) (iend - ip) < len || (size_t) (oend - op) < len) {
+            return -1;
+        }
+        memcpy(op, ip, len);
+        op += len;
+        ip += len;
+
+        // last sequence has literals only
+        if (ip == iend) {
+            break;
+        }
+
+        if (iend - ip < 2) {
+            return -1;
+        }
+        size_t offset = ip[0] | (ip[1] << 8);
+        ip += 2;
+        if (offset == 0 || offset > (size_t) (op - dst)) {
+            return -1;
+        }
+
+        len = token & 15;
+        if (len == 15) {
+            unsigned b;
+            do {
+                if (ip == iend) {
+                    return -1;
+                }
+                len += b = *ip++;
+            } while (b == 255);
+        }
+        len += LZ4_MIN_MATCH;
+
+        if ((size_t) (oend - op) < len) {
+            return -1;
+        }
+
+        const uint8_t *ref = op - offset;
+        if (offset >= len) {
+            memcpy(op, ref, len);
+            op += len;
+        } else {
+            // overlapping match repeats last offset bytes
+            while (len-- > 0) {
+                *op++ = *ref++;
+            }
+        }
+    }
+    return (int) (op - dst);
+}
+
+static inline uint32_t xxh_rotl(uint32_t v, int r) {
+    return (v << r) | (v >> (32 - r));
+}
+
+// XXH32 with zero seed of input shorter than 16 bytes
+static uint32_t xxh32_small(const uint8_t *p, int len) {
+    uint32_t h = XXH_PRIME5 + (uint32_t) len;
+    for (; len >= 4; len -= 4, p += 4) {
+        h += lz4_read32(p) * XXH_PRIME3;
+        h = xxh_rotl(h, 17) * XXH_PRIME4;
+    }
+    for (; len > 0; len--) {
+        h += (*p++) * XXH_PRIME5;
+        h = xxh_rotl(h, 11) * XXH_PRIME1;
+    }
+    h ^= h >> 15;
+    h *= XXH_PRIME2;
+    h ^= h >> 13;
+    h *= XXH_PRIME3;
+    h ^= h >> 16;
+    return h;
+}
+
+JNIEXPORT jint JNICALL Java_com_questdb_misc_Zip_lz4Compress
+        (JNIEnv *e, jclass cl, jlong src, jint len, jlong dst, jint cap) {
+    return (jint) lz4_compress((const uint8_t *) src, len, (uint8_t *) dst, cap);
+}
+
+JNIEXPORT jint JNICALL Java_com_questdb_misc_Zip_lz4Decompress
+        (JNIEnv *e, jclass cl, jlong src, jint len, jlong dst, jint cap) {
+    return (jint) lz4_decompress((const uint8_t *) src, len, (uint8_t *) dst, cap);
+}
+
+JNIEXPORT jint JNICALL Java_com_questdb_misc_Zip_lz4FrameHeader
+        (JNIEnv *e, jclass cl, jlong address, jint maxBlockSize) {
+    uint8_t *p = (uint8_t *) address;
+    int id = 4;
+    while (id < 7 && (1 << (8 + 2 * id)) < maxBlockSize) {
+        id++;
+    }
+    // magic number
+    p[0] = 0x04;
+    p[1] = 0x22;
+    p[2] = 0x4D;
+    p[3] = 0x18;
+    // version 01, independent blocks, no checksums, no content size
+    p[4] = 0x60;
+    p[5] = (uint8_t) (id << 4);
+    p[6] = (uint8_t) (xxh32_small(p + 4, 2) >> 8);
+    return 7;
+}
@@ -115,6 +115,30 @@ JNIEXPORT jint JNICALL Java_com_questdb_misc_Zip_totalOut
 JNIEXPORT void JNICALL Java_com_questdb_misc_Zip_setInput
         (JNIEnv *, jclass, jlong, jlong, jint);
 
+/*
+ * Class:     com_questdb_misc_Zip
+ * Method:    lz4Compress
+ * Signature: (JIJI)I
+ */
+JNIEXPORT jint JNICALL Java_com_questdb_misc_Zip_lz4Compress
+        (JNIEnv *, jclass, jlong, jint, jlong, jint);
+
+/*
+ * Class:     com_questdb_misc_Zip
+ * Method:    lz4Decompress
+ * Signature: (JIJI)I
+ */
+JNIEXPORT jint JNICALL Java_com_questdb_misc_Zip_lz4Decompress
+        (JNIEnv *, jclass, jlong, jint, jlong, jint);
+
+/*
+ * Class:     com_questdb_misc_Zip
+ * Method:    lz4FrameHeader
+ * Signature: (JI)I
+ */
+JNIEXPORT jint JNICALL Java_com_questdb_misc_Zip_lz4FrameHeader
+        (JNIEnv *, jclass, jlong, jint);
+
 #ifdef __cplusplus
 }
 #endif
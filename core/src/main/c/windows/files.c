@@ -73,6 +73,75 @@ JNIEXPORT jlong JNICALL Java_com_questdb_misc_Files_read
            ReadFile((HANDLE) fd, (LPVOID) address, (DWORD) len, &count, NULL) ? count : 0;
 }
 
+JNIEXPORT jlong JNICALL Java_com_questdb_misc_Files_mmap
+        (JNIEnv *e, jclass cl,
+         jlong fd,
+         jlong len,
+         jlong offset,
+         jint flags) {
+    jlong size = offset + len;
+    HANDLE hMapping = CreateFileMapping(
+            (HANDLE) fd,
+            NULL,
+            flags == com_questdb_misc_Files_MAP_RW ? PAGE_READWRITE : PAGE_READONLY,
+            (DWORD) (size >> 32),
+            (DWORD) size,
+            NULL
+    );
+    if (hMapping == NULL) {
+        return -1;
+    }
+    LPVOID addr = MapViewOfFile(
+            hMapping,
+            flags == com_questdb_misc_Files_MAP_RW ? FILE_MAP_WRITE : FILE_MAP_READ,
+            (DWORD) (offset >> 32),
+            (DWORD) offset,
+            (SIZE_T) len
+    );
+    // view keeps mapping object alive
+    CloseHandle(hMapping);
+    return addr == NULL ? -1 : (jlong) addr;
+}
+
+JNIEXPORT jlong JNICALL Java_com_questdb_misc_Files_mremap
+        (JNIEnv *e, jclass cl,
+         jlong address,
+         jlong previousLen,
+         jlong newLen) {
+    // views cannot be extended in place
+    return -1;
+}
+
+JNIEXPORT jint JNICALL Java_com_questdb_misc_Files_munmap
+        (JNIEnv *e, jclass cl,
+         jlong address,
+         jlong len) {
+    return UnmapViewOfFile((LPCVOID) address) ? 0 : -1;
+}
+
+JNIEXPORT jint JNICALL Java_com_questdb_misc_Files_madvise
+        (JNIEnv *e, jclass cl,
+         jlong address,
+         jlong len,
+         jint advice) {
+    return 0;
+}
+
+JNIEXPORT jint JNICALL Java_com_questdb_misc_Files_msync
+        (JNIEnv *e, jclass cl,
+         jlong address,
+         jlong len,
+         jboolean async) {
+    return FlushViewOfFile((LPCVOID) address, (SIZE_T) len) ? 0 : -1;
+}
+
+JNIEXPORT jboolean JNICALL Java_com_questdb_misc_Files_truncate
+        (JNIEnv *e, jclass cl,
+         jlong fd,
+         jlong size) {
+    return (jboolean) (set_file_pos((HANDLE) fd, size) && SetEndOfFile((HANDLE) fd));
+}
+
 JNIEXPORT jlong JNICALL Java_com_questdb_misc_Files_getLastModified
         (JNIEnv *e, jclass cl, jlong pchar) {
 
@@ -127,7 +196,7 @@ JNIEXPORT jlong JNICALL Java_com_questdb_misc_Files_openRO
     return (jlong) CreateFile(
             (LPCSTR) lpszName,
             GENERIC_READ,
-            FILE_SHARE_READ,
+            FILE_SHARE_READ | FILE_SHARE_WRITE,
             NULL,
             OPEN_EXISTING,
             FILE_ATTRIBUTE_NORMAL,
@@ -142,10 +211,11 @@ JNIEXPORT jint JNICALL Java_com_questdb_misc_Files_close
 
 JNIEXPORT jlong JNICALL Java_com_questdb_misc_Files_openRW
         (JNIEnv *e, jclass cl, jlong lpszName) {
+    // read access is required to map file for writing
     return (jlong) CreateFile(
             (LPCSTR) lpszName,
-            GENERIC_WRITE,
-            FILE_SHARE_READ,
+            GENERIC_READ | GENERIC_WRITE,
+            FILE_SHARE_READ | FILE_SHARE_WRITE,
             NULL,
             OPEN_ALWAYS,
             FILE_ATTRIBUTE_NORMAL,
@@ -186,6 +256,12 @@ JNIEXPORT jlong JNICALL Java_com_questdb_misc_Files_length
     return r == 0 ? st.st_size : r;
 }
 
+JNIEXPORT jlong JNICALL Java_com_questdb_misc_Files_getFileSize
+        (JNIEnv *e, jclass cl, jlong fd) {
+    LARGE_INTEGER size;
+    return GetFileSizeEx((HANDLE) fd, &size) ? size.QuadPart : -1;
+}
+
 JNIEXPORT jlong JNICALL Java_com_questdb_misc_Files_getStdOutFd
         (JNIEnv *e, jclass cl) {
     return (jlong) GetStdHandle(STD_OUTPUT_HANDLE);
@@ -129,6 +129,20 @@ JNIEXPORT jint JNICALL Java_com_questdb_misc_Net_send
     return convert_error(send((SOCKET) fd, (const char *) addr, len, 0));
 }
 
+JNIEXPORT jint JNICALL Java_com_questdb_misc_Net_sendFile
+        (JNIEnv *e, jclass cl, jlong fd, jlong fileFd, jlong offset, jint len) {
+    // TransmitFile does not play well with non-blocking sockets, bounce file through stack buffer instead
+    char buf[65536];
+    DWORD count;
+    OVERLAPPED ov = {0};
+    ov.Offset = (DWORD) offset;
+    ov.OffsetHigh = (DWORD) (offset >> 32);
+    if (!ReadFile((HANDLE) fileFd, buf, (DWORD) (len < sizeof(buf) ? len : sizeof(buf)), &count, &ov) || count == 0) {
+        return com_questdb_misc_Net_EOTHERDISCONNECT;
+    }
+    return convert_error(send((SOCKET) fd, buf, (int) count, 0));
+}
+
 JNIEXPORT jint JNICALL Java_com_questdb_misc_Net_setSndBuf
         (JNIEnv *e, jclass cl, jlong fd, jint size) {
     jint sz = size;
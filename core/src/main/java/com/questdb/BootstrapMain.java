@@ -34,6 +34,8 @@ import com.questdb.net.http.HttpServer;
 import com.questdb.net.http.ServerConfiguration;
 import com.questdb.net.http.SimpleUrlMatcher;
 import com.questdb.net.http.handlers.*;
+import com.questdb.ql.impl.parallel.QueryWorkerPool;
+import com.questdb.store.TxEventBus;
 import sun.misc.Signal;
 import sun.misc.SignalHandler;
 
@@ -82,10 +84,17 @@ class BootstrapMain {
         final SimpleUrlMatcher matcher = new SimpleUrlMatcher();
         JournalFactory factory = new JournalFactory(configuration.getDbPath().getAbsolutePath());
         JournalFactoryPool pool = new JournalFactoryPool(factory.getConfiguration(), configuration.getJournalPoolSize());
-        matcher.put("/imp", new ImportHandler(factory));
-        matcher.put("/js", new QueryHandler(pool, configuration, factory));
-        matcher.put("/csv", new CsvHandler(pool, configuration));
+        QueryWorkerPool workerPool = null;
+        if (configuration.getDbParallelWorkers() > 0) {
+            workerPool = new QueryWorkerPool(configuration.getDbParallelWorkers(), configuration.getDbParallelQueueDepth());
+            workerPool.start();
+        }
+        matcher.put("/imp", new ImportHandler(factory, configuration));
+        matcher.put("/js", new QueryHandler(pool, configuration, factory, workerPool));
+        matcher.put("/csv", new CsvHandler(pool, configuration, workerPool));
+        matcher.put("/bin", new BinaryHandler(pool, configuration, workerPool));
         matcher.put("/chk", new ExistenceCheckHandler(factory));
+        matcher.put("/txn", new TxPollHandler(pool, TxEventBus.INSTANCE));
         matcher.setDefaultHandler(new StaticContentHandler(configuration));
 
         StringBuilder welcome = Misc.getThreadLocalBuilder();
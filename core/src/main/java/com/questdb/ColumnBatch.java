@@ -0,0 +1,112 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb;
+
+import com.questdb.ex.JournalRuntimeException;
+import com.questdb.factory.configuration.JournalMetadata;
+import com.questdb.std.LongList;
+import com.questdb.std.Mutable;
+import com.questdb.std.ObjList;
+import com.questdb.store.ColumnType;
+
+/**
+ * Rows appended by {@link JournalWriter#appendBatch(ColumnBatch)} column at a time. Values of fixed-width
+ * column are given as address of array of values in column's own format: 8 byte longs for LONG and DATE,
+ * 4 byte symbol keys for SYMBOL and so on. Values of STRING and SYMBOL columns can also be given as list
+ * of char sequences. Columns without values are appended as nulls.
+ * <p>
+ * Batch does not own memory it points to, which must stay valid until batch is appended.
+ */
+public class ColumnBatch implements Mutable {
+    private final JournalMetadata metadata;
+    private final LongList addresses = new LongList();
+    private final ObjList<ObjList<? extends CharSequence>> strings = new ObjList<>();
+    private int size;
+
+    public ColumnBatch(JournalMetadata metadata) {
+        this.metadata = metadata;
+        clear();
+    }
+
+    @Override
+    public final void clear() {
+        int n = metadata.getColumnCount();
+        addresses.seed(n, 0);
+        strings.setAll(n, null);
+        size = 0;
+    }
+
+    public long getAddress(int columnIndex) {
+        return addresses.getQuick(columnIndex);
+    }
+
+    public ObjList<? extends CharSequence> getStrings(int columnIndex) {
+        return strings.getQuick(columnIndex);
+    }
+
+    public ColumnBatch of(int size) {
+        clear();
+        this.size = size;
+        return this;
+    }
+
+    /**
+     * Sets values of fixed-width column.
+     *
+     * @param columnIndex index of column
+     * @param address     address of first value, values of following rows must be laid out contiguously
+     * @return this batch
+     */
+    public ColumnBatch put(int columnIndex, long address) {
+        int type = metadata.getColumnQuick(columnIndex).getType();
+        if (type == ColumnType.STRING || type == ColumnType.BINARY) {
+            throw new JournalRuntimeException("Column %s is not fixed width", metadata.getColumnQuick(columnIndex).getName());
+        }
+        addresses.setQuick(columnIndex, address);
+        strings.setQuick(columnIndex, null);
+        return this;
+    }
+
+    /**
+     * Sets values of STRING or SYMBOL column.
+     *
+     * @param columnIndex index of column
+     * @param values      values, one for each row of batch
+     * @return this batch
+     */
+    public ColumnBatch putStr(int columnIndex, ObjList<? extends CharSequence> values) {
+        int type = metadata.getColumnQuick(columnIndex).getType();
+        if (type != ColumnType.STRING && type != ColumnType.SYMBOL) {
+            throw new JournalRuntimeException("Column %s is not STRING or SYMBOL", metadata.getColumnQuick(columnIndex).getName());
+        }
+        addresses.setQuick(columnIndex, 0);
+        strings.setQuick(columnIndex, values);
+        return this;
+    }
+
+    public int size() {
+        return size;
+    }
+}
@@ -55,8 +55,8 @@ public class Journal<T> implements Iterable<T>, Closeable {
     public static final long TX_LIMIT_EVAL = -1L;
     private static final Log LOG = LogFactory.getLog(Journal.class);
     final ObjList<Partition<T>> partitions = new ObjList<>();
-    // empty container for current transaction
-    final Tx tx = new Tx();
+    // container for current transaction, readers share head transaction instead, which must not be modified
+    Tx tx = new Tx();
     final JournalMetadata<T> metadata;
     private final Comparator<Partition<T>> partitionAccessTimeComparator = new Comparator<Partition<T>>() {
         @Override
@@ -85,6 +85,7 @@ public class Journal<T> implements Iterable<T>, Closeable {
     };
     private final BitSet inactiveColumns;
     private final ObjList<Partition<T>> toClose = new ObjList<>();
+    private final Tx found = new Tx();
     TxLog txLog;
     boolean open;
     private volatile Partition<T> irregularPartition;
@@ -193,8 +194,8 @@ public class Journal<T> implements Iterable<T>, Closeable {
             return null;
         }
 
-        txLog.read(address, tx);
-        return tx;
+        txLog.read(address, found);
+        return found;
     }
 
     public Partition<T> getIrregularPartition() {
@@ -480,7 +481,9 @@ public class Journal<T> implements Iterable<T>, Closeable {
     }
 
     public boolean refresh() {
-        if (isOpen() && txLog.head(tx)) {
+        Tx t;
+        if (isOpen() && (t = txLog.snapshotIfChanged(tx)) != null) {
+            tx = t;
             refreshInternal();
             for (int i = 0, sz = symbolTables.size(); i < sz; i++) {
                 symbolTables.getQuick(i).applyTx(tx.symbolTableSizes[i], tx.symbolTableIndexPointers[i]);
@@ -550,7 +553,7 @@ public class Journal<T> implements Iterable<T>, Closeable {
     }
 
     void configure() throws JournalException {
-        txLog.head(tx);
+        tx = txLog.snapshot(tx);
         configureColumns();
         configureSymbolTableSynonyms();
         configurePartitions();
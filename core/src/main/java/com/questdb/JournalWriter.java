@@ -68,6 +68,8 @@ public class JournalWriter<T> extends Journal<T> {
     private final JournalEntryWriterImpl journalEntryWriter;
     // discard.txt related
     private final File discardTxt;
+    // partitions writer has moved past are compressed
+    private final boolean compressed;
     private Lock writeLock;
     private TxListener txListener;
     private boolean txActive = false;
@@ -82,6 +84,7 @@ public class JournalWriter<T> extends Journal<T> {
     private long appendTimestampHi = -1;
     private RandomAccessFile discardTxtRaf;
     private FlexBufferSink discardSink;
+    private int sealFrom = -1;
 
     public JournalWriter(JournalMetadata<T> metadata, JournalKey<T> key) throws JournalException {
         super(metadata, key);
@@ -94,6 +97,11 @@ public class JournalWriter<T> extends Journal<T> {
         this.checkOrder = key.isOrdered() && getTimestampOffset() != -1;
         this.journalEntryWriter = new JournalEntryWriterImpl(this);
         this.discardTxt = new File(metadata.getLocation(), "discard.txt");
+        boolean compressed = false;
+        for (int i = 0, n = metadata.getColumnCount(); i < n; i++) {
+            compressed |= metadata.getColumnQuick(i).compressed;
+        }
+        this.compressed = compressed;
     }
 
     /**
@@ -168,6 +176,65 @@ public class JournalWriter<T> extends Journal<T> {
         }
     }
 
+    /**
+     * Appends rows of column batch. Batch is split between partitions when its timestamps cross partition
+     * boundary. Timestamps must be in order, both within batch and with respect to rows already in journal.
+     * Rows of batch preceding out of order timestamp are appended, the rest is rejected.
+     *
+     * @param batch rows to append
+     * @throws com.questdb.ex.JournalException if timestamps are out of order or batch cannot be written
+     */
+    public void appendBatch(ColumnBatch batch) throws JournalException {
+        final int size = batch.size();
+        if (size == 0) {
+            return;
+        }
+
+        if (!txActive) {
+            beginTx();
+        }
+
+        if (!checkOrder) {
+            getAppendPartition().append(batch, 0, size);
+            return;
+        }
+
+        final long timestamps = batch.getAddress(getMetadata().getTimestampIndex());
+        if (timestamps == 0) {
+            throw new JournalException("Batch without timestamps cannot be appended to %s", this);
+        }
+
+        int lo = 0;
+        while (lo < size) {
+            long timestamp = Unsafe.getUnsafe().getLong(timestamps + lo * 8L);
+
+            if (timestamp > appendTimestampHi) {
+                switchAppendPartition(timestamp);
+            }
+
+            if (timestamp < appendTimestampLo) {
+                throw new JournalException("Cannot insert records out of order. maxHardTimestamp=%d (%s), timestamp=%d (%s): %s"
+                        , appendTimestampLo, Dates.toString(appendTimestampLo), timestamp, Dates.toString(timestamp), this);
+            }
+
+            // rows up to partition boundary or out of order timestamp go in one piece
+            int hi = lo + 1;
+            long last = timestamp;
+            while (hi < size) {
+                long t = Unsafe.getUnsafe().getLong(timestamps + hi * 8L);
+                if (t < last || t > appendTimestampHi) {
+                    break;
+                }
+                last = t;
+                hi++;
+            }
+
+            appendPartition.append(batch, lo, hi);
+            appendTimestampLo = last;
+            lo = hi;
+        }
+    }
+
     public void beginTx() {
         if (!txActive) {
             this.txActive = true;
@@ -273,6 +340,7 @@ public class JournalWriter<T> extends Journal<T> {
         if (txActive) {
             commit(force ? Tx.TX_FORCE : Tx.TX_NORMAL, txn, txPin);
             notifyTxListener();
+            sealPartitions();
             expireOpenFiles();
             txActive = false;
         }
@@ -686,6 +754,7 @@ public class JournalWriter<T> extends Journal<T> {
         if (txListener != null) {
             txListener.onCommit();
         }
+        TxEventBus.INSTANCE.publish(getMetadata().getLocation(), txLog.getCurrentTxn());
     }
 
     private void replaceIrregularPartition(Partition<T> temp) {
@@ -738,6 +807,7 @@ public class JournalWriter<T> extends Journal<T> {
         appendTimestampLo = -1;
         appendTimestampHi = -1;
         appendPartition = null;
+        sealFrom = -1;
         txLog.writeTxAddress(tx.address);
         txActive = false;
     }
@@ -779,6 +849,18 @@ public class JournalWriter<T> extends Journal<T> {
         }
     }
 
+    private void sealPartitions() throws JournalException {
+        if (sealFrom == -1) {
+            return;
+        }
+
+        // last partition is still appended to
+        for (int i = sealFrom, n = nonLagPartitionCount() - 1; i < n; i++) {
+            getPartition(i, true).seal();
+        }
+        sealFrom = -1;
+    }
+
     private void splitAppend(Iterator<T> it, long hard, long soft, Partition<T> partition) throws JournalException {
         while (it.hasNext()) {
             T obj = it.next();
@@ -806,9 +888,14 @@ public class JournalWriter<T> extends Journal<T> {
 
     private void switchAppendPartition(long timestamp) throws JournalException {
         boolean computeTimestampLo = appendPartition == null;
+        Partition<T> previous = appendPartition;
 
         appendPartition = getAppendPartition(timestamp);
 
+        if (compressed && previous != null && previous != appendPartition && (sealFrom == -1 || previous.getPartitionIndex() < sealFrom)) {
+            sealFrom = previous.getPartitionIndex();
+        }
+
         Interval interval = appendPartition.getInterval();
         if (interval == null) {
             appendTimestampHi = Long.MAX_VALUE;
@@ -24,6 +24,7 @@
 package com.questdb;
 
 import com.questdb.ex.JournalException;
+import com.questdb.ex.JournalNoSuchFileException;
 import com.questdb.ex.JournalRuntimeException;
 import com.questdb.factory.configuration.ColumnMetadata;
 import com.questdb.factory.configuration.JournalMetadata;
@@ -50,6 +51,7 @@ public class Partition<T> implements Closeable {
     private final Interval interval;
     private final int columnCount;
     private final ColumnMetadata[] columnMetadata;
+    private final BitmapIndex bitmapIndexes[];
     SymbolIndexProxy<T> sparseIndexProxies[];
     AbstractColumn[] columns;
     private int partitionIndex;
@@ -57,6 +59,8 @@ public class Partition<T> implements Closeable {
     private long lastAccessed = System.currentTimeMillis();
     private long txLimit;
     private FixedColumn timestampColumn;
+    private PartitionStats stats;
+    private boolean sealed;
 
     Partition(Journal<T> journal, Interval interval, int partitionIndex, long txLimit, long[] indexTxAddresses) {
         JournalMetadata<T> meta = journal.getMetadata();
@@ -66,6 +70,7 @@ public class Partition<T> implements Closeable {
         this.txLimit = txLimit;
         this.columnCount = meta.getColumnCount();
         this.columnMetadata = new ColumnMetadata[columnCount];
+        this.bitmapIndexes = new BitmapIndex[columnCount];
         meta.copyColumnMetadata(columnMetadata);
         if (interval != null) {
             setPartitionDir(new File(this.journal.getLocation(), interval.getDirName(meta.getPartitionBy())), indexTxAddresses);
@@ -96,12 +101,14 @@ public class Partition<T> implements Closeable {
                 Misc.free(Unsafe.arrayGet(columns, i));
             }
             columns = null;
+            sealed = false;
             LOG.debug().$("Partition").$(partitionDir).$(" is closed").$();
         }
 
         for (int i = 0, k = indexProxies.size(); i < k; i++) {
             Misc.free(indexProxies.getQuick(i));
         }
+        closeBitmapIndexes();
     }
 
     public void commitColumns() {
@@ -131,6 +138,12 @@ public class Partition<T> implements Closeable {
         for (int i = 0, k = indexProxies.size(); i < k; i++) {
             indexProxies.getQuick(i).getIndex().compact();
         }
+
+        for (int i = 0; i < columnCount; i++) {
+            if (Unsafe.arrayGet(columnMetadata, i).bitmapIndexed) {
+                getBitmapIndex(i).compact();
+            }
+        }
     }
 
     public FixedColumn fixCol(int i) {
@@ -141,6 +154,19 @@ public class Partition<T> implements Closeable {
         return Unsafe.arrayGet(columns, i);
     }
 
+    public BitmapIndex getBitmapIndex(int columnIndex) throws JournalException {
+        BitmapIndex index = Unsafe.arrayGet(bitmapIndexes, columnIndex);
+        if (index == null) {
+            ColumnMetadata m = Unsafe.arrayGet(columnMetadata, columnIndex);
+            if (!m.bitmapIndexed) {
+                throw new JournalException("There is no bitmap index for column '%s' in %s", m.name, this);
+            }
+            index = new BitmapIndex(new File(partitionDir, m.name), m.bitHint, journal.getMode());
+            Unsafe.arrayPut(bitmapIndexes, columnIndex, index);
+        }
+        return index;
+    }
+
     public void getBin(long localRowID, int columnIndex, OutputStream s) {
         varCol(columnIndex).getBin(localRowID, s);
     }
@@ -335,9 +361,16 @@ public class Partition<T> implements Closeable {
             throw new JournalException("Cannot rebuild indexes in closed partition: %s", this);
         }
         for (int i = 0; i < columnCount; i++) {
-            if (Unsafe.arrayGet(columnMetadata, i).indexed) {
+            ColumnMetadata m = Unsafe.arrayGet(columnMetadata, i);
+            if (m.indexed) {
                 rebuildIndex(i);
             }
+
+            if (m.bitmapIndexed) {
+                Unsafe.arrayPut(bitmapIndexes, i, Misc.free(Unsafe.arrayGet(bitmapIndexes, i)));
+                BitmapIndex.delete(new File(partitionDir, m.name));
+                getBitmapIndex(i).update(fixCol(i), size());
+            }
         }
     }
 
@@ -480,6 +513,133 @@ public class Partition<T> implements Closeable {
         }
     }
 
+    /**
+     * Appends rows lo to hi (exclusive) of batch. Fixed-width values are copied column at a time
+     * and index entries of each indexed column are added in single pass over copied keys.
+     */
+    void append(ColumnBatch batch, int lo, int hi) throws JournalException {
+        final int count = hi - lo;
+        try {
+            for (int i = 0; i < columnCount; i++) {
+                ColumnMetadata m = Unsafe.arrayGet(columnMetadata, i);
+                AbstractColumn col = Unsafe.arrayGet(columns, i);
+                KVIndex index = m.indexed ? sparseIndexProxies[i].getIndex() : null;
+                ObjList<? extends CharSequence> strings = batch.getStrings(i);
+                long address = batch.getAddress(i);
+
+                switch (m.type) {
+                    case ColumnType.STRING:
+                        for (int r = lo; r < hi; r++) {
+                            CharSequence s = strings == null ? null : strings.getQuick(r);
+                            long offset = ((VariableColumn) col).putStr(s);
+                            col.commit();
+                            if (index != null) {
+                                index.add(s == null ? SymbolTable.VALUE_IS_NULL : Hash.boundedHash(s, m.distinctCountHint), offset);
+                            }
+                        }
+                        break;
+                    case ColumnType.BINARY:
+                        for (int r = lo; r < hi; r++) {
+                            ((VariableColumn) col).putNull();
+                            col.commit();
+                        }
+                        break;
+                    case ColumnType.SYMBOL:
+                        if (address == 0) {
+                            for (int r = lo; r < hi; r++) {
+                                CharSequence s = strings == null ? null : strings.getQuick(r);
+                                int key = s == null ? SymbolTable.VALUE_IS_NULL : m.symbolTable.put(s);
+                                long row = ((FixedColumn) col).putInt(key);
+                                col.commit();
+                                if (index != null) {
+                                    index.add(key, row);
+                                }
+                            }
+                        } else {
+                            long p = address + lo * 4L;
+                            long row = ((FixedColumn) col).putVector(p, count);
+                            if (index != null) {
+                                for (int r = 0; r < count; r++) {
+                                    index.add(Unsafe.getUnsafe().getInt(p + r * 4L), row + r);
+                                }
+                            }
+                        }
+                        break;
+                    default:
+                        if (address == 0) {
+                            appendNulls((FixedColumn) col, m, index, count);
+                        } else {
+                            int width = ColumnType.sizeOf(m.type);
+                            long p = address + (long) lo * width;
+                            long row = ((FixedColumn) col).putVector(p, count);
+                            if (index != null) {
+                                addIndexKeys(index, m, p, row, count);
+                            }
+                        }
+                        break;
+                }
+
+                col.commit();
+            }
+
+            applyTx(Journal.TX_LIMIT_EVAL, null);
+        } catch (Throwable e) {
+            ((JournalWriter) this.journal).rollback();
+            throw e;
+        }
+    }
+
+    private static void addIndexKeys(KVIndex index, ColumnMetadata m, long address, long row, int count) {
+        switch (m.type) {
+            case ColumnType.INT:
+                for (int r = 0; r < count; r++) {
+                    index.add(Unsafe.getUnsafe().getInt(address + r * 4L) & m.distinctCountHint, row + r);
+                }
+                break;
+            case ColumnType.LONG:
+                for (int r = 0; r < count; r++) {
+                    index.add((int) (Unsafe.getUnsafe().getLong(address + r * 8L) & m.distinctCountHint), row + r);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static void appendNulls(FixedColumn col, ColumnMetadata m, KVIndex index, int count) {
+        for (int r = 0; r < count; r++) {
+            long row;
+            switch (m.type) {
+                case ColumnType.INT:
+                    row = col.putInt(Numbers.INT_NaN);
+                    if (index != null) {
+                        index.add(Numbers.INT_NaN & m.distinctCountHint, row);
+                    }
+                    break;
+                case ColumnType.LONG:
+                    row = col.putLong(Numbers.LONG_NaN);
+                    if (index != null) {
+                        index.add((int) (Numbers.LONG_NaN & m.distinctCountHint), row);
+                    }
+                    break;
+                case ColumnType.DATE:
+                    col.putLong(Numbers.LONG_NaN);
+                    break;
+                case ColumnType.DOUBLE:
+                    col.putDouble(Double.NaN);
+                    break;
+                case ColumnType.FLOAT:
+                    col.putFloat(Float.NaN);
+                    break;
+                default:
+                    col.putNull();
+                    break;
+            }
+            // values are put at committed offset
+            col.commit();
+        }
+    }
+
     private void appendBin(T obj, int i, ColumnMetadata meta) {
         ByteBuffer buf = (ByteBuffer) Unsafe.getUnsafe().getObject(obj, meta.offset);
         if (buf == null) {
@@ -493,6 +653,12 @@ public class Partition<T> implements Closeable {
         applyTx(Journal.TX_LIMIT_EVAL, null);
     }
 
+    private void closeBitmapIndexes() {
+        for (int i = 0; i < columnCount; i++) {
+            Unsafe.arrayPut(bitmapIndexes, i, Misc.free(Unsafe.arrayGet(bitmapIndexes, i)));
+        }
+    }
+
     private void closePartiallyOpenColumns() {
         for (int i = 0, n = columns.length; i < n; i++) {
             AbstractColumn c = columns[i];
@@ -507,6 +673,16 @@ public class Partition<T> implements Closeable {
         for (int i = 0, k = indexProxies.size(); i < k; i++) {
             indexProxies.getQuick(i).getIndex().commit();
         }
+
+        if (getStats().update(columns, size())) {
+            stats.write(partitionDir);
+        }
+
+        for (int i = 0; i < columnCount; i++) {
+            if (Unsafe.arrayGet(columnMetadata, i).bitmapIndexed) {
+                getBitmapIndex(i).update(fixCol(i), size());
+            }
+        }
     }
 
     @SuppressWarnings("unchecked")
@@ -540,6 +716,13 @@ public class Partition<T> implements Closeable {
                 }
             }
         }
+
+        for (int i = 0; i < columnCount; i++) {
+            BitmapIndex index = Unsafe.arrayGet(bitmapIndexes, i);
+            if (index != null) {
+                index.force();
+            }
+        }
     }
 
     void getIndexPointers(long[] pointers) throws JournalException {
@@ -549,8 +732,17 @@ public class Partition<T> implements Closeable {
         }
     }
 
+    private PartitionStats getStats() throws JournalException {
+        if (stats == null) {
+            stats = new PartitionStats(journal.getMetadata());
+            stats.read(partitionDir);
+        }
+        return stats;
+    }
+
     private void open0() throws JournalException {
         columns = new AbstractColumn[journal.getMetadata().getColumnCount()];
+        sealed = false;
 
         try {
             for (int i = 0; i < columns.length; i++) {
@@ -572,16 +764,7 @@ public class Partition<T> implements Closeable {
                         );
                         break;
                     default:
-                        Unsafe.arrayPut(columns, i,
-                                new FixedColumn(
-                                        new MemoryFile(
-                                                new File(partitionDir, Unsafe.arrayGet(columnMetadata, i).name + ".d"),
-                                                Unsafe.arrayGet(columnMetadata, i).bitHint,
-                                                journal.getMode()
-                                        ),
-                                        Unsafe.arrayGet(columnMetadata, i).size
-                                )
-                        );
+                        Unsafe.arrayPut(columns, i, openFixedColumn(Unsafe.arrayGet(columnMetadata, i)));
                         break;
                 }
             }
@@ -596,6 +779,26 @@ public class Partition<T> implements Closeable {
         }
     }
 
+    private FixedColumn openFixedColumn(ColumnMetadata m) throws JournalException {
+        boolean compressible = ColumnCodec.isSupported(m.type);
+        File compressedFile = new File(partitionDir, m.name + CompressedColumn.FILE_SUFFIX);
+        if (compressible && compressedFile.exists()) {
+            sealed = true;
+            return new CompressedColumn(new MemoryFile(compressedFile, m.bitHint, journal.getMode()), m.size);
+        }
+
+        try {
+            return new FixedColumn(new MemoryFile(new File(partitionDir, m.name + ".d"), m.bitHint, journal.getMode()), m.size);
+        } catch (JournalNoSuchFileException e) {
+            // writer could have sealed partition after the check above
+            if (compressible && compressedFile.exists()) {
+                sealed = true;
+                return new CompressedColumn(new MemoryFile(compressedFile, m.bitHint, journal.getMode()), m.size);
+            }
+            throw e;
+        }
+    }
+
     private void readBin(long localRowID, T obj, int i, ColumnMetadata m) {
         int size = ((VariableColumn) Unsafe.arrayGet(columns, i)).getBinLen(localRowID);
         ByteBuffer buf = (ByteBuffer) Unsafe.getUnsafe().getObject(obj, m.offset);
@@ -659,19 +862,68 @@ public class Partition<T> implements Closeable {
         LOG.debug().$("REBUILT ").$(base).$(" in ").$(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - time)).$("ms").$();
     }
 
+    /**
+     * Replaces raw files of columns opted in for compression with encoded copies and closes partition,
+     * so that it is reopened with compressed columns. Readers that have raw files open keep reading them.
+     *
+     * @throws JournalException when encoded file cannot be written
+     */
+    void seal() throws JournalException {
+        open();
+        boolean changed = false;
+        for (int i = 0; i < columnCount; i++) {
+            ColumnMetadata m = Unsafe.arrayGet(columnMetadata, i);
+            if (m.compressed && !(Unsafe.arrayGet(columns, i) instanceof CompressedColumn)) {
+                File tmp = new File(partitionDir, m.name + CompressedColumn.FILE_SUFFIX + ".tmp");
+                File file = new File(partitionDir, m.name + CompressedColumn.FILE_SUFFIX);
+                CompressedColumn.write(fixCol(i), m.type, tmp, m.bitHint);
+                if (!tmp.renameTo(file)) {
+                    throw new JournalException("Cannot rename %s to %s", tmp, file);
+                }
+                changed = true;
+            }
+        }
+
+        if (changed) {
+            close();
+            for (int i = 0; i < columnCount; i++) {
+                ColumnMetadata m = Unsafe.arrayGet(columnMetadata, i);
+                File raw = new File(partitionDir, m.name + ".d");
+                if (m.compressed && raw.exists() && !Files.delete(raw)) {
+                    // compressed file takes precedence, raw file is just wasted space
+                    LOG.info().$("Cannot delete ").$(raw.getAbsolutePath()).$();
+                }
+            }
+            LOG.debug().$("Partition").$(partitionDir).$(" is sealed").$();
+        }
+    }
+
     final void setPartitionDir(File partitionDir, long[] indexTxAddresses) {
         boolean create = partitionDir != null && !partitionDir.equals(this.partitionDir);
         this.partitionDir = partitionDir;
         if (create) {
             createSymbolIndexProxies(indexTxAddresses);
+            closeBitmapIndexes();
+            stats = null;
         }
     }
 
     void truncate(long newSize) throws JournalException {
+        if (sealed) {
+            // partition is about to become last one and will be appended to
+            unseal();
+        }
+
         if (isOpen() && size() > newSize) {
+            getStats().truncate(newSize);
             for (int i = 0, k = indexProxies.size(); i < k; i++) {
                 indexProxies.getQuick(i).getIndex().truncate(newSize);
             }
+            for (int i = 0; i < columnCount; i++) {
+                if (Unsafe.arrayGet(columnMetadata, i).bitmapIndexed) {
+                    getBitmapIndex(i).truncate(newSize);
+                }
+            }
             for (int i = 0; i < columns.length; i++) {
                 if (Unsafe.arrayGet(columns, i) != null) {
                     Unsafe.arrayGet(columns, i).truncate(newSize);
@@ -682,4 +934,28 @@ public class Partition<T> implements Closeable {
             clearTx();
         }
     }
+
+    private void unseal() throws JournalException {
+        for (int i = 0; i < columnCount; i++) {
+            AbstractColumn c = Unsafe.arrayGet(columns, i);
+            if (c instanceof CompressedColumn) {
+                ColumnMetadata m = Unsafe.arrayGet(columnMetadata, i);
+                try (FixedColumn raw = new FixedColumn(new MemoryFile(new File(partitionDir, m.name + ".d"), m.bitHint, journal.getMode()), m.size)) {
+                    raw.truncate(0);
+                    raw.commit();
+                    ((CompressedColumn) c).decodeTo(raw);
+                    raw.force();
+                }
+            }
+        }
+
+        close();
+        for (int i = 0; i < columnCount; i++) {
+            File file = new File(partitionDir, Unsafe.arrayGet(columnMetadata, i).name + CompressedColumn.FILE_SUFFIX);
+            if (file.exists()) {
+                Files.deleteOrException(file);
+            }
+        }
+        open();
+    }
 }
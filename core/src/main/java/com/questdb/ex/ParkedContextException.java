@@ -21,32 +21,14 @@
  *
  ******************************************************************************/
 
-package com.questdb.store;
+package com.questdb.ex;
 
-import com.questdb.misc.ByteBuffers;
+import java.io.IOException;
 
-import java.io.Closeable;
-import java.nio.MappedByteBuffer;
+@SuppressWarnings("ThrowableInstanceNeverThrown")
+public final class ParkedContextException extends IOException {
+    public final static ParkedContextException INSTANCE = new ParkedContextException();
 
-class ByteBufferWrapper implements Closeable {
-    private final long offset;
-    private MappedByteBuffer byteBuffer;
-
-    public ByteBufferWrapper(long offset, MappedByteBuffer byteBuffer) {
-        this.offset = offset;
-        this.byteBuffer = byteBuffer;
-    }
-
-    @Override
-    public void close() {
-        byteBuffer = ByteBuffers.release(byteBuffer);
-    }
-
-    public MappedByteBuffer getByteBuffer() {
-        return byteBuffer;
-    }
-
-    public long getOffset() {
-        return offset;
+    private ParkedContextException() {
     }
 }
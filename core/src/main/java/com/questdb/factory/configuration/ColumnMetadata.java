@@ -39,6 +39,8 @@ public class ColumnMetadata implements RecordColumnMetadata {
     public int distinctCountHint;
     public String sameAs;
     public boolean noCache = false;
+    public boolean compressed = false;
+    public boolean bitmapIndexed = false;
     public MMappedSymbolTable symbolTable;
 
     public ColumnMetadata copy(ColumnMetadata from) {
@@ -53,6 +55,8 @@ public class ColumnMetadata implements RecordColumnMetadata {
         this.distinctCountHint = from.distinctCountHint;
         this.sameAs = from.sameAs;
         this.noCache = from.noCache;
+        this.compressed = from.compressed;
+        this.bitmapIndexed = from.bitmapIndexed;
         return this;
     }
 
@@ -102,7 +106,9 @@ public class ColumnMetadata implements RecordColumnMetadata {
         result = 31 * result + indexBitHint;
         result = 31 * result + distinctCountHint;
         result = 31 * result + (sameAs != null ? sameAs.hashCode() : 0);
-        return 31 * result + (noCache ? 1 : 0);
+        result = 31 * result + (noCache ? 1 : 0);
+        result = 31 * result + (compressed ? 1 : 0);
+        return 31 * result + (bitmapIndexed ? 1 : 0);
     }
 
     @Override
@@ -118,6 +124,8 @@ public class ColumnMetadata implements RecordColumnMetadata {
                 && indexBitHint == that.indexBitHint
                 && indexed == that.indexed
                 && noCache == that.noCache
+                && compressed == that.compressed
+                && bitmapIndexed == that.bitmapIndexed
                 && size == that.size
                 && name.equals(that.name)
                 && !(sameAs != null ? !sameAs.equals(that.sameAs) : that.sameAs != null)
@@ -139,6 +147,8 @@ public class ColumnMetadata implements RecordColumnMetadata {
                 ", distinctCountHint=" + distinctCountHint +
                 ", sameAs='" + sameAs + '\'' +
                 ", noCache=" + noCache +
+                ", compressed=" + compressed +
+                ", bitmapIndexed=" + bitmapIndexed +
                 '}';
     }
 
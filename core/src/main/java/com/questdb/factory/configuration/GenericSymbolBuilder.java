@@ -30,6 +30,11 @@ public class GenericSymbolBuilder extends GenericIndexedBuilder {
         super(parent, meta, ColumnType.SYMBOL, 4);
     }
 
+    public GenericSymbolBuilder bitmapIndex() {
+        this.meta.bitmapIndexed = true;
+        return this;
+    }
+
     public GenericSymbolBuilder noCache() {
         this.meta.noCache = true;
         return this;
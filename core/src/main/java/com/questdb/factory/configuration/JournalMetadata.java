@@ -126,6 +126,17 @@ public class JournalMetadata<T> extends AbstractRecordMetadata {
         ioBlockTxCount = buf.getInt();
         keyColumn = buf.getStr();
         lag = buf.getInt();
+        // metadata written by earlier versions ends here
+        if (buf.getPos() < buf.getAppendOffset()) {
+            for (int i = 0; i < columnCount; i++) {
+                columnMetadata[i].compressed = buf.getBool();
+            }
+        }
+        if (buf.getPos() < buf.getAppendOffset()) {
+            for (int i = 0; i < columnCount; i++) {
+                columnMetadata[i].bitmapIndexed = buf.getBool();
+            }
+        }
         constructor = null;
         partialMapping = false;
         this.key = new JournalKey<>(id);
@@ -316,6 +327,12 @@ public class JournalMetadata<T> extends AbstractRecordMetadata {
         buf.put(ioBlockTxCount);
         buf.put(keyColumn);
         buf.put(lag);
+        for (int i = 0; i < columnMetadata.length; i++) {
+            buf.put(columnMetadata[i].compressed);
+        }
+        for (int i = 0; i < columnMetadata.length; i++) {
+            buf.put(columnMetadata[i].bitmapIndexed);
+        }
         buf.setAppendOffset(buf.getPos());
     }
 
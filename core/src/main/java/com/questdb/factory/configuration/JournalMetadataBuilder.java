@@ -30,6 +30,7 @@ import com.questdb.misc.Numbers;
 import com.questdb.misc.Unsafe;
 import com.questdb.std.CharSequenceIntHashMap;
 import com.questdb.std.ObjObjHashMap;
+import com.questdb.store.ColumnCodec;
 import com.questdb.store.ColumnType;
 
 import java.io.File;
@@ -134,6 +135,10 @@ public class JournalMetadataBuilder<T> implements MetadataBuilder<T> {
                 throw new JournalConfigurationException("Invalid size for column %s.%s", modelClass.getName(), meta.name);
             }
 
+            if (meta.compressed && !ColumnCodec.isSupported(meta.type)) {
+                throw new JournalConfigurationException("Column %s.%s cannot be compressed", modelClass.getName(), meta.name);
+            }
+
             // distinctCount
             if (meta.distinctCountHint < 1 && meta.type == ColumnType.SYMBOL) {
                 meta.distinctCountHint = Numbers.ceilPow2((int) (recordCountHint * 0.2)) - 1; //20%
@@ -175,6 +180,17 @@ public class JournalMetadataBuilder<T> implements MetadataBuilder<T> {
         );
     }
 
+    /**
+     * Opts column in for compression of sealed partitions, see {@link JournalStructure#compress(String)}.
+     *
+     * @param name field name
+     * @return this builder
+     */
+    public JournalMetadataBuilder<T> compress(String name) {
+        getMeta(name).compressed = true;
+        return this;
+    }
+
     public String getLocation() {
         return location;
     }
@@ -33,6 +33,7 @@ import com.questdb.misc.Numbers;
 import com.questdb.misc.Unsafe;
 import com.questdb.std.CharSequenceIntHashMap;
 import com.questdb.std.ObjList;
+import com.questdb.store.ColumnCodec;
 import com.questdb.store.ColumnType;
 
 import java.io.File;
@@ -176,6 +177,10 @@ public class JournalStructure implements MetadataBuilder<Object> {
                 throw new JournalConfigurationException("Invalid size for column %s.%s", location, meta.name);
             }
 
+            if (meta.compressed && !ColumnCodec.isSupported(meta.type)) {
+                throw new JournalConfigurationException("Column %s.%s cannot be compressed", location, meta.name);
+            }
+
             // distinctCount
             if (meta.distinctCountHint < 1 && meta.type == ColumnType.SYMBOL) {
                 meta.distinctCountHint = Numbers.ceilPow2((int) (recordCountHint * 0.2)) - 1; //20%
@@ -217,6 +222,22 @@ public class JournalStructure implements MetadataBuilder<Object> {
         );
     }
 
+    /**
+     * Opts column in for compression of sealed partitions. Partition is sealed once writer moves on to
+     * next partition and commits. Supported are LONG, DATE, DOUBLE and SYMBOL columns.
+     *
+     * @param name column name
+     * @return this builder
+     */
+    public JournalStructure compress(String name) {
+        int index = nameToIndexMap.get(name);
+        if (index == -1) {
+            throw new JournalConfigurationException("No such column: %s", name);
+        }
+        metadata.getQuick(index).compressed = true;
+        return this;
+    }
+
     public String getLocation() {
         return location;
     }
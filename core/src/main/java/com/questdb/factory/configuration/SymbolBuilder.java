@@ -37,6 +37,17 @@ public class SymbolBuilder<T> extends AbstractMetadataBuilder<T> {
         meta.size = 4;
     }
 
+    /**
+     * Maintains compressed bitmap index of column, which lets queries combine equality
+     * filters on several symbol columns. Unlike {@link #index()} it cannot serve "latest by".
+     *
+     * @return this builder
+     */
+    public SymbolBuilder<T> bitmapIndex() {
+        this.meta.bitmapIndexed = true;
+        return this;
+    }
+
     public SymbolBuilder<T> index() {
         this.meta.indexed = true;
         return this;
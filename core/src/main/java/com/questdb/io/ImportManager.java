@@ -27,6 +27,7 @@ import com.questdb.ex.JournalRuntimeException;
 import com.questdb.factory.JournalWriterFactory;
 import com.questdb.factory.configuration.JournalConfiguration;
 import com.questdb.io.parser.DelimitedTextParser;
+import com.questdb.io.parser.PipelinedTextParser;
 import com.questdb.io.parser.TextParser;
 import com.questdb.io.parser.listener.InputAnalysisListener;
 import com.questdb.io.parser.listener.JournalImportListener;
@@ -42,6 +43,7 @@ import java.nio.channels.FileChannel;
 
 public final class ImportManager {
     private static final int SAMPLE_SIZE = 100;
+    private static final int CHUNK_SIZE = 1024 * 1024;
 
     private ImportManager() {
     }
@@ -92,8 +94,24 @@ public final class ImportManager {
     }
 
     public static void importFile(JournalWriterFactory factory, String fileName, char delimiter, CharSequence schema, int sampleSize) throws IOException {
+        importFile(factory, fileName, delimiter, schema, sampleSize, 0);
+    }
+
+    /**
+     * Imports journal from delimited values text file, optionally tokenizing and converting values
+     * on worker threads. Rows are appended in order of input by calling thread either way.
+     *
+     * @param factory    journal factory
+     * @param fileName   name of input file
+     * @param delimiter  input delimiter
+     * @param schema     optional instance of ImportSchema
+     * @param sampleSize number of lines to probe for types of fields
+     * @param workers    number of parser threads, 0 to parse on calling thread
+     * @throws IOException in case imported file cannot be read
+     */
+    public static void importFile(JournalWriterFactory factory, String fileName, char delimiter, CharSequence schema, int sampleSize, int workers) throws IOException {
 
-        try (TextParser parser = new DelimitedTextParser().of(delimiter)) {
+        try (TextParser parser = (workers > 0 ? new PipelinedTextParser(workers, CHUNK_SIZE) : new DelimitedTextParser()).of(delimiter)) {
             File file = new File(fileName);
             String location = file.getName();
 
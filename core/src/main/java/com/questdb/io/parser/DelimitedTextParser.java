@@ -76,6 +76,10 @@ public class DelimitedTextParser implements TextParser {
         return lineCount;
     }
 
+    public boolean isHeader() {
+        return header;
+    }
+
     @Override
     public TextParser of(char separator) {
         clear();
@@ -109,6 +113,21 @@ public class DelimitedTextParser implements TextParser {
         }
     }
 
+    /**
+     * Fixes number of fields in line instead of taking it from first line parsed. Lines with more
+     * fields are reported as errors. This is for parsing text chunks, which first line is not
+     * necessarily representative.
+     *
+     * @param count number of fields
+     */
+    public void setFieldCount(int count) {
+        fields.clear();
+        for (int i = 0; i < count; i++) {
+            fields.add(csPool.next());
+        }
+        calcFields = false;
+    }
+
     @Override
     public void setHeader(boolean header) {
         this.header = header;
@@ -0,0 +1,281 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.io.parser;
+
+import com.questdb.io.ImportedColumnType;
+import com.questdb.io.parser.listener.Listener;
+import com.questdb.log.Log;
+import com.questdb.log.LogFactory;
+import com.questdb.misc.Chars;
+import com.questdb.misc.Dates;
+import com.questdb.misc.Numbers;
+import com.questdb.misc.Unsafe;
+import com.questdb.std.DirectByteCharSequence;
+import com.questdb.std.ObjList;
+import com.questdb.std.ObjectFactory;
+
+import java.io.Closeable;
+import java.util.Arrays;
+
+/**
+ * Line aligned chunk of delimited text together with its values converted to imported column types.
+ * Values are staged column by column, numbers as longs and floating point numbers as raw double bits.
+ * String and symbol values are not copied, they are kept as addresses of text in chunk itself.
+ * Rows that fail conversion are not staged, they only add to error count of offending column.
+ */
+public class ImportBatch implements Listener, Closeable {
+    public static final ObjectFactory<ImportBatch> FACTORY = new ObjectFactory<ImportBatch>() {
+        @Override
+        public ImportBatch newInstance() {
+            return new ImportBatch();
+        }
+    };
+
+    private static final Log LOG = LogFactory.getLog(ImportBatch.class);
+    private static final int INITIAL_ROW_CAPACITY = 1024;
+    private final DirectByteCharSequence flyweight = new DirectByteCharSequence();
+    private int types[] = new int[0];
+    private long values[][] = new long[0][];
+    private long ends[][] = new long[0][];
+    private boolean nulls[][] = new boolean[0][];
+    private long errors[] = new long[0];
+    private int columnCount;
+    private int rowCapacity;
+    private int rowCount;
+    private int lineCount;
+    private long address;
+    private long capacity;
+    private long size;
+    private boolean header;
+    private Throwable error;
+
+    @Override
+    public void close() {
+        if (address != 0) {
+            Unsafe.free(address, capacity);
+            address = 0;
+            capacity = 0;
+        }
+    }
+
+    public double getDouble(int row, int column) {
+        return Double.longBitsToDouble(values[column][row]);
+    }
+
+    public long getErrorCount(int column) {
+        return errors[column];
+    }
+
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    public long getLong(int row, int column) {
+        return values[column][row];
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Text of string or symbol value. Returned sequence is flyweight, valid until next call.
+     *
+     * @param row    row index
+     * @param column column index
+     * @return text of value
+     */
+    public CharSequence getStr(int row, int column) {
+        return flyweight.of(values[column][row], ends[column][row]);
+    }
+
+    public boolean isNull(int row, int column) {
+        return nulls[column][row];
+    }
+
+    @Override
+    public void onError(int line) {
+    }
+
+    @Override
+    public void onFieldCount(int count) {
+    }
+
+    @Override
+    public void onFields(int line, ObjList<DirectByteCharSequence> fields, int hi) {
+        if (rowCount == rowCapacity) {
+            growRows();
+        }
+
+        final int row = rowCount;
+        for (int i = 0; i < columnCount; i++) {
+            DirectByteCharSequence value;
+            if (i >= hi || (value = fields.getQuick(i)).length() == 0) {
+                nulls[i][row] = true;
+                continue;
+            }
+
+            nulls[i][row] = false;
+            try {
+                switch (types[i]) {
+                    case ImportedColumnType.STRING:
+                    case ImportedColumnType.SYMBOL:
+                        values[i][row] = value.getLo();
+                        ends[i][row] = value.getHi();
+                        break;
+                    case ImportedColumnType.DOUBLE:
+                        values[i][row] = Double.doubleToRawLongBits(Numbers.parseDouble(value));
+                        break;
+                    case ImportedColumnType.INT:
+                        values[i][row] = Numbers.parseInt(value);
+                        break;
+                    case ImportedColumnType.FLOAT:
+                        values[i][row] = Double.doubleToRawLongBits(Numbers.parseFloat(value));
+                        break;
+                    case ImportedColumnType.DATE_ISO:
+                        values[i][row] = Dates.parseDateTime(value);
+                        break;
+                    case ImportedColumnType.DATE_1:
+                        values[i][row] = Dates.parseDateTimeFmt1(value);
+                        break;
+                    case ImportedColumnType.DATE_2:
+                        values[i][row] = Dates.parseDateTimeFmt2(value);
+                        break;
+                    case ImportedColumnType.DATE_3:
+                        values[i][row] = Dates.parseDateTimeFmt3(value);
+                        break;
+                    case ImportedColumnType.LONG:
+                        values[i][row] = Numbers.parseLong(value);
+                        break;
+                    case ImportedColumnType.BOOLEAN:
+                        values[i][row] = Chars.equalsIgnoreCase(value, "true") ? 1 : 0;
+                        break;
+                    default:
+                        nulls[i][row] = true;
+                        break;
+                }
+            } catch (Exception e) {
+                errors[i]++;
+                LOG.debug().$("Error at (").$(line).$(',').$(i).$(") as ").$(types[i]).$(": ").$(e.getMessage()).$();
+                return;
+            }
+        }
+        rowCount++;
+    }
+
+    @Override
+    public void onHeader(ObjList<DirectByteCharSequence> fields, int hi) {
+    }
+
+    @Override
+    public void onLineCount(int count) {
+    }
+
+    long getAddress() {
+        return address;
+    }
+
+    long getCapacity() {
+        return capacity;
+    }
+
+    Throwable getError() {
+        return error;
+    }
+
+    long getSize() {
+        return size;
+    }
+
+    boolean isHeader() {
+        return header;
+    }
+
+    /**
+     * Sets up batch for columns of given imported types. Staging memory is kept when types are unchanged.
+     *
+     * @param types imported column types
+     */
+    void of(int types[]) {
+        if (!Arrays.equals(this.types, types)) {
+            this.columnCount = types.length;
+            this.types = types.clone();
+            this.values = new long[columnCount][];
+            this.ends = new long[columnCount][];
+            this.nulls = new boolean[columnCount][];
+            this.errors = new long[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                values[i] = new long[rowCapacity];
+                nulls[i] = new boolean[rowCapacity];
+                if (types[i] == ImportedColumnType.STRING || types[i] == ImportedColumnType.SYMBOL) {
+                    ends[i] = new long[rowCapacity];
+                }
+            }
+        }
+        reset();
+    }
+
+    void reset() {
+        rowCount = 0;
+        lineCount = 0;
+        error = null;
+        Arrays.fill(errors, 0);
+    }
+
+    /**
+     * Hands text chunk over to this batch. Buffer batch held before must have been taken over by caller.
+     *
+     * @param address  address of chunk buffer
+     * @param capacity capacity of chunk buffer
+     * @param size     number of bytes of text in chunk
+     * @param header   true if first line of chunk is header
+     */
+    void set(long address, long capacity, long size, boolean header) {
+        this.address = address;
+        this.capacity = capacity;
+        this.size = size;
+        this.header = header;
+    }
+
+    void setError(Throwable error) {
+        this.error = error;
+    }
+
+    void setLineCount(int lineCount) {
+        this.lineCount = lineCount;
+    }
+
+    private void growRows() {
+        int n = rowCapacity == 0 ? INITIAL_ROW_CAPACITY : rowCapacity << 1;
+        for (int i = 0; i < columnCount; i++) {
+            values[i] = Arrays.copyOf(values[i], n);
+            nulls[i] = Arrays.copyOf(nulls[i], n);
+            if (ends[i] != null) {
+                ends[i] = Arrays.copyOf(ends[i], n);
+            }
+        }
+        rowCapacity = n;
+    }
+}
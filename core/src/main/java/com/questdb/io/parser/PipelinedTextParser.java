@@ -0,0 +1,416 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.io.parser;
+
+import com.questdb.ex.JournalRuntimeException;
+import com.questdb.io.ImportedColumnMetadata;
+import com.questdb.io.parser.listener.InputAnalysisListener;
+import com.questdb.io.parser.listener.JournalImportListener;
+import com.questdb.io.parser.listener.Listener;
+import com.questdb.log.Log;
+import com.questdb.log.LogFactory;
+import com.questdb.misc.Numbers;
+import com.questdb.misc.Unsafe;
+import com.questdb.mp.*;
+import com.questdb.std.ObjHashSet;
+import com.questdb.std.ObjList;
+
+import java.io.Closeable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Parser of delimited text, which spreads tokenizing and type conversion over worker threads.
+ * Input is copied into chunks that end on line boundary. Workers parse chunks into {@link ImportBatch}es
+ * and thread feeding the parser appends batches to journal in input order. Feeding thread is therefore
+ * the only writer, it appends batches whenever it runs out of free chunks and when input ends.
+ * <p>
+ * Listener passed to parse() must be {@link JournalImportListener} that has been given metadata by
+ * analyseStructure(). Line limit is ignored, input is always parsed in full. Worker threads run
+ * from first call to parse() until parseLast().
+ */
+public class PipelinedTextParser implements TextParser {
+    private static final Log LOG = LogFactory.getLog(PipelinedTextParser.class);
+    private final DelimitedTextParser analyser = new DelimitedTextParser();
+    private final RingQueue<ImportBatch> queue;
+    private final ObjList<ParseJob> jobs;
+    private final ObjList<Worker> workers;
+    private final int workerCount;
+    private final long chunkSize;
+    private Sequence pubSeq;
+    private Sequence subSeq;
+    private Sequence writeSeq;
+    private CountDownLatch haltLatch;
+    private JournalImportListener importer;
+    private char separator;
+    private boolean header;
+    private int lineCount;
+    private boolean running = false;
+    private long buf = 0;
+    private long bufCapacity = 0;
+    private long bufSize = 0;
+    private long scanPos = 0;
+    private long lastEol = 0;
+    private boolean inQuote = false;
+    private boolean delayedOutQuote = false;
+    private boolean fieldStart = true;
+
+    public PipelinedTextParser(int workerCount, int chunkSize) {
+        this.workerCount = workerCount;
+        this.chunkSize = chunkSize;
+        this.queue = new RingQueue<>(ImportBatch.FACTORY, Numbers.ceilPow2(workerCount * 2));
+        this.jobs = new ObjList<>(workerCount);
+        this.workers = new ObjList<>(workerCount);
+        for (int i = 0; i < workerCount; i++) {
+            jobs.add(new ParseJob());
+        }
+    }
+
+    @Override
+    public void analyseStructure(long addr, int len, int sampleSize, InputAnalysisListener lsnr) {
+        analyser.analyseStructure(addr, len, sampleSize, lsnr);
+        header = analyser.isHeader();
+    }
+
+    @Override
+    public void clear() {
+        halt();
+        analyser.clear();
+        importer = null;
+        header = false;
+        lineCount = 0;
+        bufSize = 0;
+        scanPos = 0;
+        lastEol = 0;
+        inQuote = false;
+        delayedOutQuote = false;
+        fieldStart = true;
+    }
+
+    @Override
+    public void close() {
+        clear();
+        if (buf != 0) {
+            Unsafe.free(buf, bufCapacity);
+            buf = 0;
+            bufCapacity = 0;
+        }
+        for (int i = 0, n = queue.getCapacity(); i < n; i++) {
+            queue.get(i).close();
+        }
+        for (int i = 0, n = jobs.size(); i < n; i++) {
+            jobs.getQuick(i).close();
+        }
+        analyser.close();
+    }
+
+    @Override
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    @Override
+    public TextParser of(char separator) {
+        clear();
+        analyser.of(separator);
+        this.separator = separator;
+        return this;
+    }
+
+    @Override
+    public void parse(long lo, long len, int lim, Listener listener) {
+        if (!running) {
+            start((JournalImportListener) listener);
+        }
+
+        long p = lo;
+        long hi = lo + len;
+        while (p < hi) {
+            if (bufSize == bufCapacity) {
+                if (lastEol > 0) {
+                    publish(lastEol);
+                } else {
+                    // line does not fit chunk
+                    growBuf();
+                }
+            }
+
+            long n = Math.min(hi - p, bufCapacity - bufSize);
+            Unsafe.getUnsafe().copyMemory(p, buf + bufSize, n);
+            bufSize += n;
+            p += n;
+            scan();
+        }
+    }
+
+    @Override
+    public void parseLast() {
+        if (!running) {
+            return;
+        }
+
+        if (bufSize > 0) {
+            byte c = Unsafe.getUnsafe().getByte(buf + bufSize - 1);
+            if (c != '\n' && c != '\r') {
+                // terminate last line so that workers never have to carry it over
+                if (bufSize == bufCapacity) {
+                    growBuf();
+                }
+                Unsafe.getUnsafe().putByte(buf + bufSize++, (byte) '\n');
+            }
+            publish(bufSize);
+        }
+
+        while (writeSeq.current() < pubSeq.current()) {
+            if (!drain()) {
+                LockSupport.parkNanos(1);
+            }
+        }
+        halt();
+    }
+
+    @Override
+    public void putSchema(CharSequence schema) {
+        analyser.putSchema(schema);
+    }
+
+    @Override
+    public void setHeader(boolean header) {
+        this.header = header;
+    }
+
+    private long claim() {
+        while (true) {
+            long cursor = pubSeq.next();
+            if (cursor > -1) {
+                return cursor;
+            }
+
+            if (!drain()) {
+                LockSupport.parkNanos(1);
+            }
+        }
+    }
+
+    /**
+     * Appends batches workers are done with, in order of input.
+     *
+     * @return true if at least one batch was appended
+     */
+    private boolean drain() {
+        boolean useful = false;
+        long cursor;
+        while ((cursor = writeSeq.next()) > -1) {
+            ImportBatch batch = queue.get(cursor);
+            try {
+                if (batch.getError() != null) {
+                    throw new JournalRuntimeException("Import worker failed", batch.getError());
+                }
+                importer.onBatch(batch);
+                lineCount += batch.getLineCount();
+            } finally {
+                writeSeq.done(cursor);
+            }
+            useful = true;
+        }
+        return useful;
+    }
+
+    private void growBuf() {
+        long capacity = bufCapacity == 0 ? chunkSize : bufCapacity << 1;
+        long p = Unsafe.malloc(capacity);
+        if (buf != 0) {
+            Unsafe.getUnsafe().copyMemory(buf, p, bufSize);
+            Unsafe.free(buf, bufCapacity);
+        }
+        buf = p;
+        bufCapacity = capacity;
+    }
+
+    private void halt() {
+        if (running) {
+            running = false;
+            for (int i = 0, n = workers.size(); i < n; i++) {
+                workers.getQuick(i).halt();
+            }
+            try {
+                haltLatch.await();
+            } catch (InterruptedException e) {
+                throw new JournalRuntimeException(e);
+            }
+            workers.clear();
+        }
+    }
+
+    /**
+     * Hands text up to given offset over to workers. Remainder of text is carried over to buffer
+     * taken from batch chunk is published in.
+     *
+     * @param hi offset of end of last complete line
+     */
+    private void publish(long hi) {
+        long cursor = claim();
+        ImportBatch batch = queue.get(cursor);
+        long p = batch.getAddress();
+        long capacity = batch.getCapacity();
+        long carry = bufSize - hi;
+
+        batch.set(buf, bufCapacity, hi, header);
+        header = false;
+
+        if (capacity < chunkSize || capacity < carry) {
+            if (p != 0) {
+                Unsafe.free(p, capacity);
+            }
+            capacity = Math.max(chunkSize, carry);
+            p = Unsafe.malloc(capacity);
+        }
+
+        if (carry > 0) {
+            Unsafe.getUnsafe().copyMemory(buf + hi, p, carry);
+        }
+        buf = p;
+        bufCapacity = capacity;
+        bufSize = carry;
+        scanPos -= hi;
+        lastEol = 0;
+        pubSeq.done(cursor);
+    }
+
+    /**
+     * Follows quotes the same way {@link DelimitedTextParser} does to find end of last line
+     * of text in buffer. Newlines inside quoted values do not end line.
+     */
+    private void scan() {
+        for (; scanPos < bufSize; scanPos++) {
+            byte c = Unsafe.getUnsafe().getByte(buf + scanPos);
+
+            if (delayedOutQuote && c != '"') {
+                inQuote = delayedOutQuote = false;
+            }
+
+            if (c == separator) {
+                fieldStart = !inQuote;
+                continue;
+            }
+
+            switch (c) {
+                case '"':
+                    if (inQuote) {
+                        delayedOutQuote = !delayedOutQuote;
+                    } else if (fieldStart) {
+                        inQuote = true;
+                    }
+                    fieldStart = false;
+                    break;
+                case '\r':
+                case '\n':
+                    if (inQuote) {
+                        fieldStart = false;
+                    } else {
+                        fieldStart = true;
+                        lastEol = scanPos + 1;
+                    }
+                    break;
+                default:
+                    fieldStart = false;
+                    break;
+            }
+        }
+    }
+
+    private void start(JournalImportListener importer) {
+        ObjList<ImportedColumnMetadata> metadata = importer.getImportedMetadata();
+        int types[] = new int[metadata.size()];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = metadata.getQuick(i).importedColumnType;
+        }
+
+        for (int i = 0, n = queue.getCapacity(); i < n; i++) {
+            queue.get(i).of(types);
+        }
+
+        this.importer = importer;
+        this.pubSeq = new SPSequence(queue.getCapacity());
+        this.subSeq = new MCSequence(queue.getCapacity(), null);
+        this.writeSeq = new SCSequence();
+        pubSeq.then(subSeq).then(writeSeq).then(pubSeq);
+        this.haltLatch = new CountDownLatch(workerCount);
+
+        for (int i = 0; i < workerCount; i++) {
+            ParseJob job = jobs.getQuick(i);
+            job.of(types.length);
+            ObjHashSet<ParseJob> set = new ObjHashSet<>();
+            set.add(job);
+            Worker w = new Worker(set, haltLatch);
+            w.setDaemon(true);
+            workers.add(w);
+            w.start();
+        }
+        running = true;
+        LOG.debug().$("Import workers started [workers=").$(workerCount).$(']').$();
+    }
+
+    private class ParseJob implements Job, Closeable {
+        private final DelimitedTextParser parser = new DelimitedTextParser();
+
+        @Override
+        public void close() {
+            parser.close();
+        }
+
+        @Override
+        public boolean run() {
+            long cursor = subSeq.next();
+            if (cursor < 0) {
+                return false;
+            }
+
+            ImportBatch batch = queue.get(cursor);
+            try {
+                batch.reset();
+                parser.restart();
+                parser.setHeader(batch.isHeader());
+                parser.parse(batch.getAddress(), batch.getSize(), Integer.MAX_VALUE, batch);
+                parser.parseLast();
+                batch.setLineCount(parser.getLineCount());
+            } catch (Throwable e) {
+                batch.setError(e);
+            } finally {
+                subSeq.done(cursor);
+            }
+            return true;
+        }
+
+        @Override
+        public void setupThread() {
+        }
+
+        private void of(int fieldCount) {
+            parser.of(separator);
+            parser.setFieldCount(fieldCount);
+        }
+    }
+}
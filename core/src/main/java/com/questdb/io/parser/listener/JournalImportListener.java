@@ -33,6 +33,7 @@ import com.questdb.factory.configuration.JournalMetadata;
 import com.questdb.factory.configuration.JournalStructure;
 import com.questdb.io.ImportedColumnMetadata;
 import com.questdb.io.ImportedColumnType;
+import com.questdb.io.parser.ImportBatch;
 import com.questdb.log.Log;
 import com.questdb.log.LogFactory;
 import com.questdb.misc.Chars;
@@ -90,6 +91,10 @@ public class JournalImportListener implements InputAnalysisListener, Closeable,
         return errors;
     }
 
+    public ObjList<ImportedColumnMetadata> getImportedMetadata() {
+        return metadata;
+    }
+
     public long getImportedRowCount() {
         try {
             return writer.size() - _size;
@@ -108,6 +113,64 @@ public class JournalImportListener implements InputAnalysisListener, Closeable,
         return this;
     }
 
+    /**
+     * Appends rows of batch parsed off writer thread and accounts for its conversion errors.
+     *
+     * @param batch rows converted to imported column types
+     */
+    public void onBatch(ImportBatch batch) {
+        try {
+            final int columnCount = metadata.size();
+            for (int r = 0, n = batch.getRowCount(); r < n; r++) {
+                JournalEntryWriter w = writer.entryWriter();
+                for (int i = 0; i < columnCount; i++) {
+                    if (batch.isNull(r, i)) {
+                        continue;
+                    }
+
+                    switch (metadata.getQuick(i).importedColumnType) {
+                        case ImportedColumnType.STRING:
+                            w.putStr(i, batch.getStr(r, i));
+                            break;
+                        case ImportedColumnType.DOUBLE:
+                            w.putDouble(i, batch.getDouble(r, i));
+                            break;
+                        case ImportedColumnType.INT:
+                            w.putInt(i, (int) batch.getLong(r, i));
+                            break;
+                        case ImportedColumnType.FLOAT:
+                            w.putFloat(i, (float) batch.getDouble(r, i));
+                            break;
+                        case ImportedColumnType.DATE_ISO:
+                        case ImportedColumnType.DATE_1:
+                        case ImportedColumnType.DATE_2:
+                        case ImportedColumnType.DATE_3:
+                            w.putDate(i, batch.getLong(r, i));
+                            break;
+                        case ImportedColumnType.SYMBOL:
+                            w.putSym(i, batch.getStr(r, i));
+                            break;
+                        case ImportedColumnType.LONG:
+                            w.putLong(i, batch.getLong(r, i));
+                            break;
+                        case ImportedColumnType.BOOLEAN:
+                            w.putBool(i, batch.getLong(r, i) == 1);
+                            break;
+                        default:
+                            break;
+                    }
+                }
+                w.append();
+            }
+
+            for (int i = 0, n = errors.size(); i < n; i++) {
+                errors.setQuick(i, errors.getQuick(i) + batch.getErrorCount(i));
+            }
+        } catch (JournalException e) {
+            throw new JournalRuntimeException(e);
+        }
+    }
+
     @Override
     public void onError(int line) {
 
@@ -27,7 +27,9 @@ import com.questdb.ex.*;
 import sun.nio.ch.DirectBuffer;
 
 import java.io.IOException;
+import java.lang.reflect.Constructor;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
 
@@ -35,6 +37,7 @@ public final class ByteBuffers {
 
     //    private static final int[] multipliers = new int[]{1, 3, 5, 7, 9, 11, 13};
     private static final int[] multipliers = new int[]{1, 3};
+    private static final Constructor<?> directBufferConstructor;
 
     private ByteBuffers() {
     }
@@ -311,6 +314,22 @@ public final class ByteBuffers {
         return buffer;
     }
 
+    /**
+     * Creates little-endian ByteBuffer view of native memory. View does not own memory, it must not be released
+     * and must not be used after memory is freed or unmapped.
+     *
+     * @param address start of memory region
+     * @param len     length of memory region
+     * @return direct byte buffer backed by memory region
+     */
+    public static ByteBuffer wrap(long address, int len) {
+        try {
+            return ((ByteBuffer) directBufferConstructor.newInstance(address, len)).order(ByteOrder.LITTLE_ENDIAN);
+        } catch (ReflectiveOperationException e) {
+            throw new JournalRuntimeException("Cannot wrap memory", e);
+        }
+    }
+
     private static int copy0(ReadableByteChannel from, ByteBuffer to, long count) throws JournalNetworkException {
         int result = 0;
         int limit = to.limit();
@@ -329,4 +348,13 @@ public final class ByteBuffers {
         }
         return result;
     }
+
+    static {
+        try {
+            directBufferConstructor = Class.forName("java.nio.DirectByteBuffer").getDeclaredConstructor(long.class, int.class);
+            directBufferConstructor.setAccessible(true);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
 }
@@ -45,6 +45,10 @@ public final class Files {
     public static final int DT_LNK = 10;
     public static final int DT_SOCK = 12;
     public static final int DT_WHT = 14;
+    public static final int MAP_RO = 1;
+    public static final int MAP_RW = 2;
+    public static final int MADV_SEQUENTIAL = 1;
+    public static final int MADV_DONTNEED = 2;
 
     private Files() {
     } // Prevent construction.
@@ -100,6 +104,15 @@ public final class Files {
         return getLastModified(lpsz.address());
     }
 
+    /**
+     * Size of open file. Unlike {@link #length(LPSZ)} this works for files that have been
+     * deleted or renamed since they were opened.
+     *
+     * @param fd file descriptor
+     * @return file size in bytes or -1 on error
+     */
+    public native static long getFileSize(long fd);
+
     public native static long getStdOutFd();
 
     public static boolean isDots(CharSequence name) {
@@ -110,6 +123,17 @@ public final class Files {
         return length(lpsz.address());
     }
 
+    /**
+     * Advises kernel on expected access pattern of mapped memory. Advice is a hint
+     * and may be ignored, for example on Windows.
+     *
+     * @param address address of mapped region, page aligned
+     * @param len     length of region in bytes
+     * @param advice  one of MADV_* constants
+     * @return 0 on success, -1 on failure
+     */
+    public native static int madvise(long address, long len, int advice);
+
     public static File makeTempDir() {
         File result;
         try {
@@ -137,6 +161,32 @@ public final class Files {
         }
     }
 
+    /**
+     * Maps region of file to memory.
+     *
+     * @param fd     file descriptor, opened by either openRO or openRW
+     * @param len    length of region to map
+     * @param offset offset in file, must be multiple of system page size
+     * @param flags  MAP_RO or MAP_RW
+     * @return address of mapped region or -1 on failure
+     */
+    public native static long mmap(long fd, long len, long offset, int flags);
+
+    /**
+     * Attempts to grow mapped region in place. Region is never moved, so all
+     * previously published addresses remain valid.
+     *
+     * @param address     address of mapped region
+     * @param previousLen current length of region
+     * @param newLen      desired length of region
+     * @return address of region or -1 if region cannot be grown in place
+     */
+    public native static long mremap(long address, long previousLen, long newLen);
+
+    public native static int msync(long address, long len, boolean async);
+
+    public native static int munmap(long address, long len);
+
     public static long openAppend(LPSZ lpsz) {
         return openAppend(lpsz.address());
     }
@@ -182,6 +232,8 @@ public final class Files {
         return result;
     }
 
+    public native static boolean truncate(long fd, long size);
+
     public native static long write(long fd, long address, int len, long offset);
 
     public static void writeStringToFile(File file, String s) throws JournalException {
@@ -55,6 +55,10 @@ public final class Misc {
         return null;
     }
 
+    public static long getMemUsed(Object object) {
+        return object instanceof MemoryConsumer ? ((MemoryConsumer) object).getMemUsed() : 0;
+    }
+
     public static StringBuilder getThreadLocalBuilder() {
         StringBuilder b = tlBuilder.get();
         b.setLength(0);
@@ -67,6 +67,18 @@ public final class Net {
 
     public static native int send(long fd, long ptr, int len);
 
+    /**
+     * Sends file region to socket without copying it to user space where OS supports it.
+     * Result codes are the same as those of {@link #send(long, long, int)}.
+     *
+     * @param fd     socket file descriptor
+     * @param fileFd file descriptor open for reading
+     * @param offset file offset to send from
+     * @param len    maximum number of bytes to send
+     * @return number of bytes sent or error code
+     */
+    public static native int sendFile(long fd, long fileFd, long offset, int len);
+
     public native static int setRcvBuf(long fd, int size);
 
     public native static int setSndBuf(long fd, int size);
@@ -26,6 +26,10 @@ package com.questdb.misc;
 public final class Zip {
     public static final long gzipHeader;
     public static final int gzipHeaderLen = 10;
+    public static final int LZ4_FRAME_HEADER_LEN = 7;
+    public static final int LZ4_FRAME_END_MARK_LEN = 4;
+    // high bit of block size tells that block is stored uncompressed
+    public static final int LZ4_UNCOMPRESSED_BLOCK = 0x80000000;
     private final static int GZIP_MAGIC = 0x8b1f;
 
 
@@ -58,6 +62,32 @@ public final class Zip {
 
     public static native int inflateReset(long z_streamp);
 
+    // LZ4
+
+    /**
+     * Compresses block of memory into LZ4 block format. Blocks are independent of each other.
+     *
+     * @return compressed length or 0 when compressed data does not fit destination.
+     */
+    public static native int lz4Compress(long src, int len, long dst, int capacity);
+
+    /**
+     * @return decompressed length or -1 when input is malformed or does not fit destination.
+     */
+    public static native int lz4Decompress(long src, int len, long dst, int capacity);
+
+    /**
+     * Writes LZ4 frame header for independent blocks no larger than given size.
+     * Frame is a sequence of blocks, each prefixed with int size, and end mark of zero size.
+     *
+     * @return header length, {@link #LZ4_FRAME_HEADER_LEN}
+     */
+    public static native int lz4FrameHeader(long address, int maxBlockSize);
+
+    public static int lz4MaxCompressedLength(int len) {
+        return len + len / 255 + 16;
+    }
+
     public static native void setInput(long z_streamp, long address, int available);
 
     public static native int totalOut(long z_streamp);
@@ -0,0 +1,153 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.net;
+
+import com.questdb.misc.ByteBuffers;
+import com.questdb.misc.Zip;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Reads back blocks written by {@link Lz4WritableChannel}. Channel never reads ahead of block
+ * it has been asked data from, so that it can be used to read part of stream.
+ */
+public class Lz4ReadableChannel<T extends ReadableByteChannel> implements ReadableByteChannel {
+    private final int blockSize;
+    private final ByteBuffer blockHeader = ByteBuffer.allocateDirect(4).order(ByteOrder.LITTLE_ENDIAN);
+    private final ByteBuffer in;
+    private final ByteBuffer out;
+    private final long inAddr;
+    private final long outAddr;
+    private T channel;
+    // bytes of uncompressed block, which are yet to be read from channel
+    private int stored;
+
+    public Lz4ReadableChannel(int blockSize) {
+        this.blockSize = blockSize;
+        this.in = ByteBuffer.allocateDirect(Zip.lz4MaxCompressedLength(blockSize));
+        this.out = ByteBuffer.allocateDirect(blockSize);
+        this.inAddr = ByteBuffers.getAddress(in);
+        this.outAddr = ByteBuffers.getAddress(out);
+        this.out.limit(0);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return channel != null && channel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        ByteBuffers.release(blockHeader);
+        ByteBuffers.release(in);
+        ByteBuffers.release(out);
+    }
+
+    public Lz4ReadableChannel<T> of(T channel) {
+        this.channel = channel;
+        this.out.limit(0);
+        this.stored = 0;
+        return this;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        if (!out.hasRemaining() && stored == 0 && !nextBlock()) {
+            return -1;
+        }
+
+        if (stored > 0) {
+            int limit = dst.limit();
+            try {
+                if (dst.remaining() > stored) {
+                    dst.limit(dst.position() + stored);
+                }
+                int n = channel.read(dst);
+                if (n < 0) {
+                    throw new EOFException("Truncated LZ4 block");
+                }
+                stored -= n;
+                return n;
+            } finally {
+                dst.limit(limit);
+            }
+        }
+
+        int n = Math.min(out.remaining(), dst.remaining());
+        int limit = out.limit();
+        out.limit(out.position() + n);
+        ByteBuffers.copy(out, dst);
+        out.limit(limit);
+        return n;
+    }
+
+    private boolean nextBlock() throws IOException {
+        blockHeader.clear();
+        if (!readFully(blockHeader)) {
+            return false;
+        }
+
+        int size = blockHeader.getInt(0);
+        if ((size & Zip.LZ4_UNCOMPRESSED_BLOCK) != 0) {
+            stored = size & ~Zip.LZ4_UNCOMPRESSED_BLOCK;
+            if (stored > blockSize) {
+                throw new IOException("LZ4 block is too large: " + stored);
+            }
+            return true;
+        }
+
+        if (size < 1 || size > in.capacity()) {
+            throw new IOException("Corrupt LZ4 block size: " + size);
+        }
+
+        in.clear().limit(size);
+        if (!readFully(in)) {
+            throw new EOFException("Truncated LZ4 block");
+        }
+
+        int n = Zip.lz4Decompress(inAddr, size, outAddr, blockSize);
+        if (n < 0) {
+            throw new IOException("Corrupt LZ4 block");
+        }
+        out.limit(n).position(0);
+        return true;
+    }
+
+    private boolean readFully(ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            if (channel.read(buf) < 0) {
+                if (buf.position() == 0) {
+                    return false;
+                }
+                throw new EOFException("Truncated LZ4 block");
+            }
+        }
+        return true;
+    }
+}
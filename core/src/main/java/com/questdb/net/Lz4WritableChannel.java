@@ -0,0 +1,126 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.net;
+
+import com.questdb.misc.ByteBuffers;
+import com.questdb.misc.Zip;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Compresses everything written to it into sequence of LZ4 blocks, each prefixed with int size
+ * same way blocks of LZ4 frame are. Every write is sent out straight away as one or more blocks,
+ * so that stream can be read back without any knowledge of where writes begin and end.
+ * Blocks, which do not compress, are sent as is.
+ */
+public class Lz4WritableChannel<T extends WritableByteChannel> implements WritableByteChannel {
+    // writes this small are not worth compressing
+    private static final int MIN_COMPRESS_SIZE = 64;
+    private final int blockSize;
+    private final ByteBuffer out;
+    private final long outAddr;
+    private final ByteBuffer blockHeader = ByteBuffer.allocateDirect(4).order(ByteOrder.LITTLE_ENDIAN);
+    private T channel;
+    private long rawCount;
+    private long compressedCount;
+
+    public Lz4WritableChannel(int blockSize) {
+        this.blockSize = blockSize;
+        this.out = ByteBuffer.allocateDirect(4 + Zip.lz4MaxCompressedLength(blockSize)).order(ByteOrder.LITTLE_ENDIAN);
+        this.outAddr = ByteBuffers.getAddress(out);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return channel != null && channel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        ByteBuffers.release(out);
+        ByteBuffers.release(blockHeader);
+    }
+
+    public long getCompressedCount() {
+        return compressedCount;
+    }
+
+    public long getRawCount() {
+        return rawCount;
+    }
+
+    public Lz4WritableChannel<T> of(T channel) {
+        this.channel = channel;
+        return this;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        if (!ByteBuffers.isDirect(src)) {
+            throw new IllegalArgumentException("Heap buffers are not supported");
+        }
+
+        int result = src.remaining();
+        while (src.hasRemaining()) {
+            int len = Math.min(src.remaining(), blockSize);
+            int n = len < MIN_COMPRESS_SIZE ? 0 : Zip.lz4Compress(ByteBuffers.getAddress(src) + src.position(), len, outAddr + 4, len - 1);
+
+            if (n > 0) {
+                out.putInt(0, n);
+                out.limit(n + 4).position(0);
+                writeFully(out);
+                src.position(src.position() + len);
+                compressedCount += n + 4;
+            } else {
+                blockHeader.clear();
+                blockHeader.putInt(len | Zip.LZ4_UNCOMPRESSED_BLOCK);
+                blockHeader.flip();
+                writeFully(blockHeader);
+
+                int limit = src.limit();
+                try {
+                    src.limit(src.position() + len);
+                    writeFully(src);
+                } finally {
+                    src.limit(limit);
+                }
+                compressedCount += len + 4;
+            }
+        }
+        rawCount += result;
+        return result;
+    }
+
+    private void writeFully(ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            if (channel.write(buf) < 0) {
+                throw new IOException("Write to closed channel");
+            }
+        }
+    }
+}
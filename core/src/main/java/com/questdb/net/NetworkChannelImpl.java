@@ -68,6 +68,22 @@ public class NetworkChannelImpl implements NetworkChannel {
         return read;
     }
 
+    /**
+     * Sends file region directly from page cache.
+     *
+     * @param fileFd file descriptor open for reading
+     * @param offset file offset to send from
+     * @param len    maximum number of bytes to send
+     * @return number of bytes sent or one of Net error codes
+     */
+    public int sendFile(long fileFd, long offset, int len) {
+        int written = Net.sendFile(fd, fileFd, offset, len);
+        if (written > 0) {
+            totalWritten += written;
+        }
+        return written;
+    }
+
     @Override
     public int write(ByteBuffer src) throws IOException {
         int written = Net.send(fd, ByteBuffers.getAddress(src) + src.position(), src.remaining());
@@ -36,7 +36,9 @@ import com.questdb.log.Log;
 import com.questdb.log.LogFactory;
 import com.questdb.misc.Chars;
 import com.questdb.misc.Files;
+import com.questdb.misc.Misc;
 import com.questdb.misc.NamedDaemonThreadFactory;
+import com.questdb.net.Lz4ReadableChannel;
 import com.questdb.net.SecureSocketChannel;
 import com.questdb.net.SslConfig;
 import com.questdb.net.StatsCollectingReadableByteChannel;
@@ -62,6 +64,7 @@ import com.questdb.store.TxListener;
 import java.io.File;
 import java.io.IOException;
 import java.nio.channels.ByteChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.SocketChannel;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -101,6 +104,8 @@ public class JournalClient {
     private ByteChannel channel;
     private StatsCollectingReadableByteChannel statsChannel;
     private Future handlerFuture;
+    private Lz4ReadableChannel<ReadableByteChannel> decompressor;
+    private boolean compressed = false;
 
     public JournalClient(JournalWriterFactory factory) {
         this(factory, null);
@@ -252,6 +257,7 @@ public class JournalClient {
         commandConsumer.free();
         charSequenceResponseConsumer.free();
         intResponseConsumer.free();
+        decompressor = Misc.free(decompressor);
     }
 
     private byte[] getToken() throws JournalNetworkException {
@@ -266,6 +272,7 @@ public class JournalClient {
     private void handshake() throws JournalNetworkException {
         openChannel(null);
         sendProtocolVersion();
+        sendCompression();
         sendKeys();
         checkAuthAndSendCredential();
         sendState();
@@ -298,6 +305,21 @@ public class JournalClient {
         return charSequenceResponseConsumer.getValue();
     }
 
+    private void sendCompression() throws JournalNetworkException {
+        compressed = false;
+        if (config.isCompressionEnabled()) {
+            commandProducer.write(channel, Command.COMPRESSION);
+            intResponseProducer.write(channel, Version.COMPRESSION_LZ4);
+            if (intResponseConsumer.getValue(channel) == Version.COMPRESSION_LZ4) {
+                if (decompressor == null) {
+                    decompressor = new Lz4ReadableChannel<>(Version.COMPRESSION_BLOCK_SIZE);
+                }
+                compressed = true;
+            }
+            LOG.info().$("Journal updates are ").$(compressed ? "" : "not ").$("compressed").$();
+        }
+    }
+
     private void sendDisconnect() throws JournalNetworkException {
         commandProducer.write(channel, Command.CLIENT_DISCONNECT);
     }
@@ -451,7 +473,7 @@ public class JournalClient {
                         case Command.JOURNAL_DELTA_CMD:
                             statsChannel.setDelegate(channel);
                             int index = intResponseConsumer.getValue(statsChannel);
-                            deltaConsumers.getQuick(index).read(statsChannel);
+                            deltaConsumers.getQuick(index).read(compressed ? decompressor.of(statsChannel) : statsChannel);
                             statusSentList.set(index, 0);
                             statsChannel.logStats();
                             break;
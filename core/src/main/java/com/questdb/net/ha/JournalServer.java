@@ -31,6 +31,7 @@ import com.questdb.factory.JournalReaderFactory;
 import com.questdb.log.Log;
 import com.questdb.log.LogFactory;
 import com.questdb.misc.NamedDaemonThreadFactory;
+import com.questdb.mp.*;
 import com.questdb.net.SecureSocketChannel;
 import com.questdb.net.ha.auth.AuthorizationHandler;
 import com.questdb.net.ha.bridge.JournalEventBridge;
@@ -42,14 +43,17 @@ import com.questdb.net.ha.model.IndexedJournalKey;
 import com.questdb.net.ha.protocol.CommandProducer;
 import com.questdb.net.ha.protocol.commands.IntResponseConsumer;
 import com.questdb.net.ha.protocol.commands.IntResponseProducer;
+import com.questdb.std.ObjHashSet;
 import com.questdb.std.ObjIntHashMap;
+import com.questdb.std.ObjList;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.StandardSocketOptions;
-import java.nio.channels.ByteChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.List;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -67,6 +71,7 @@ public class JournalServer {
     private static final int ER_FORWARD_ELECTION_OURS = 6;
     private static final int ER_CHANGING_ELECTION_TO_OURS = 7;
     private static final int ER_ANNOUNCE_LEADER = 8;
+    private static final int DISPATCHER_QUEUE_DEPTH = 1024;
     private final AtomicInteger writerIdGenerator = new AtomicInteger(0);
     private final ObjIntHashMap<JournalWriter> writers = new ObjIntHashMap<>();
     private final JournalReaderFactory factory;
@@ -80,7 +85,10 @@ public class JournalServer {
     private final int uid;
     private final IntResponseConsumer intResponseConsumer = new IntResponseConsumer();
     private final IntResponseProducer intResponseProducer = new IntResponseProducer();
+    private final ObjList<Worker> workers = new ObjList<>();
     private ServerSocketChannel serverSocketChannel;
+    private ReplicationDispatcher dispatcher;
+    private CountDownLatch workerHaltLatch;
     private boolean leader = false;
     private boolean participant = false;
     private boolean passiveNotified = false;
@@ -129,7 +137,7 @@ public class JournalServer {
     }
 
     public int getConnectedClients() {
-        return channels.size();
+        return dispatcher != null ? dispatcher.getConnectionCount() : channels.size();
     }
 
     public JournalReaderFactory getFactory() {
@@ -143,6 +151,10 @@ public class JournalServer {
         LOG.info().$("Stopping agent services ").$(uid).$();
         service.shutdown();
 
+        if (dispatcher != null) {
+            haltDispatcher(unit.toMillis(timeout));
+        }
+
         LOG.info().$("Stopping acceptor").$();
         try {
             serverSocketChannel.close();
@@ -215,7 +227,11 @@ public class JournalServer {
             addressSender.start();
         }
         running.set(true);
-        service.execute(new Acceptor());
+        if (config.getWorkerCount() > 0 && !config.getSslConfig().isSecure()) {
+            startDispatcher(config.getWorkerCount());
+        } else {
+            service.execute(new Acceptor());
+        }
     }
 
     private void addChannel(SocketChannelHolder holder) {
@@ -263,9 +279,9 @@ public class JournalServer {
         return null;
     }
 
-    synchronized void handleElectedMessage(ByteChannel channel) throws JournalNetworkException {
-        int theirUuid = intResponseConsumer.getValue(channel);
-        int hops = intResponseConsumer.getValue(channel);
+    synchronized void handleElectedMessage(ReadableByteChannel in, WritableByteChannel channel) throws JournalNetworkException {
+        int theirUuid = intResponseConsumer.getValue(in);
+        int hops = intResponseConsumer.getValue(in);
         int ourUuid = uid;
 
         if (isRunning()) {
@@ -296,9 +312,9 @@ public class JournalServer {
         }
     }
 
-    synchronized void handleElectionMessage(ByteChannel channel) throws JournalNetworkException {
-        int theirUid = intResponseConsumer.getValue(channel);
-        int hops = intResponseConsumer.getValue(channel);
+    synchronized void handleElectionMessage(ReadableByteChannel in, WritableByteChannel channel) throws JournalNetworkException {
+        int theirUid = intResponseConsumer.getValue(in);
+        int hops = intResponseConsumer.getValue(in);
         int ourUid = uid;
 
         if (isRunning()) {
@@ -362,12 +378,59 @@ public class JournalServer {
         }
     }
 
+    private void haltDispatcher(long timeout) {
+        // clients complete data exchange and disconnect once they are told that server is shutting down
+        long deadline = System.currentTimeMillis() + timeout;
+        while (dispatcher.getConnectionCount() > 0 && System.currentTimeMillis() < deadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+
+        LOG.info().$("Stopping dispatcher workers on ").$(uid).$();
+        for (int i = 0, n = workers.size(); i < n; i++) {
+            workers.getQuick(i).halt();
+        }
+
+        try {
+            workerHaltLatch.await();
+        } catch (InterruptedException e) {
+            LOG.debug().$("Interrupted wait").$(e).$();
+        }
+        workers.clear();
+        dispatcher.close();
+        dispatcher = null;
+    }
+
+    boolean isCompressionEnabled() {
+        return config.isCompressionEnabled();
+    }
+
     private void removeChannel(SocketChannelHolder holder) {
         if (channels.remove(holder)) {
             closeChannel(holder, false);
         }
     }
 
+    private void startDispatcher(int workerCount) throws JournalNetworkException {
+        RingQueue<ReplicationEvent> ioQueue = new RingQueue<>(ReplicationEvent.FACTORY, DISPATCHER_QUEUE_DEPTH);
+        SPSequence ioPubSequence = new SPSequence(ioQueue.getCapacity());
+        MCSequence ioSubSequence = new MCSequence(ioQueue.getCapacity(), null);
+        ioPubSequence.then(ioSubSequence).then(ioPubSequence);
+
+        dispatcher = new ReplicationDispatcher(this, serverSocketChannel, authorizationHandler, ioQueue, ioPubSequence, config.getHeartbeatFrequency());
+
+        ObjHashSet<Job> jobs = new ObjHashSet<>();
+        jobs.add(dispatcher);
+        jobs.add(new ReplicationJob(ioQueue, ioSubSequence, dispatcher));
+
+        workerHaltLatch = new CountDownLatch(workerCount);
+        for (int i = 0; i < workerCount; i++) {
+            Worker w = new Worker(jobs, workerHaltLatch);
+            workers.add(w);
+            w.start();
+        }
+        LOG.info().$("Server node ").$(uid).$(" is serving clients with ").$(workerCount).$(" workers").$();
+    }
+
     private class ElectionForwarder implements Runnable {
         private final CommandProducer commandProducer = new CommandProducer();
         private final IntResponseProducer intResponseProducer = new IntResponseProducer();
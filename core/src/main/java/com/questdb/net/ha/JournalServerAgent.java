@@ -31,6 +31,9 @@ import com.questdb.ex.JournalNetworkException;
 import com.questdb.factory.configuration.JournalConfiguration;
 import com.questdb.log.Log;
 import com.questdb.log.LogFactory;
+import com.questdb.misc.Misc;
+import com.questdb.mp.WaitStrategy;
+import com.questdb.net.Lz4WritableChannel;
 import com.questdb.net.ha.auth.AuthorizationHandler;
 import com.questdb.net.ha.bridge.JournalEventHandler;
 import com.questdb.net.ha.bridge.JournalEventProcessor;
@@ -52,6 +55,7 @@ import com.questdb.std.ObjList;
 import java.io.File;
 import java.net.SocketAddress;
 import java.nio.channels.ByteChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
 
 public class JournalServerAgent {
@@ -79,12 +83,22 @@ public class JournalServerAgent {
     private final ByteArrayResponseConsumer byteArrayResponseConsumer = new ByteArrayResponseConsumer();
     private final SocketAddress socketAddress;
     private boolean authorized;
+    private Lz4WritableChannel<WritableByteChannel> compressor;
 
     public JournalServerAgent(JournalServer server, SocketAddress socketAddress, AuthorizationHandler authorizationHandler) {
+        this(server, socketAddress, authorizationHandler, null);
+    }
+
+    /**
+     * Creates agent, which is notified of journal events via given wait strategy rather than
+     * by waiting for them. Such agent must only be driven by {@link #process(ReadableByteChannel, WritableByteChannel)}
+     * and {@link #resume(boolean)}.
+     */
+    JournalServerAgent(JournalServer server, SocketAddress socketAddress, AuthorizationHandler authorizationHandler, WaitStrategy waitStrategy) {
         this.server = server;
         this.socketAddress = socketAddress;
         this.statsChannel = new StatsCollectingWritableByteChannel(socketAddress);
-        this.eventProcessor = new JournalEventProcessor(server.getBridge());
+        this.eventProcessor = waitStrategy == null ? new JournalEventProcessor(server.getBridge()) : new JournalEventProcessor(server.getBridge(), waitStrategy);
         this.authorizationHandler = authorizationHandler;
         this.authorized = authorizationHandler == null;
         readerToWriterMap.zero(JOURNAL_INDEX_NOT_FOUND);
@@ -103,51 +117,96 @@ public class JournalServerAgent {
         for (int i = 0, k = producers.size(); i < k; i++) {
             producers.getQuick(i).free();
         }
+        compressor = Misc.free(compressor);
+    }
+
+    public boolean isEventAvailable() {
+        return eventProcessor.isEventAvailable();
     }
 
     public void process(ByteChannel channel) throws JournalNetworkException {
-        commandConsumer.read(channel);
+        if (process(channel, channel)) {
+            dispatch(statsChannel);
+            statsChannel.logStats();
+        }
+    }
+
+    /**
+     * Reads and executes single command. Command is read in full before anything is written out,
+     * so that command can be re-read when input channel runs out of data half way through.
+     * Journal updates are not sent by this method.
+     *
+     * @param in  channel to read command from
+     * @param out channel to write response to
+     * @return true when client is ready to receive journal updates
+     * @throws JournalNetworkException when channel fails or client disconnects
+     */
+    public boolean process(ReadableByteChannel in, WritableByteChannel out) throws JournalNetworkException {
+        commandConsumer.read(in);
         switch (commandConsumer.getCommand()) {
             case Command.SET_KEY_CMD:
-                setClientKey(channel);
+                setClientKey(in, out);
                 break;
             case Command.DELTA_REQUEST_CMD:
-                checkAuthorized(channel);
+                checkAuthorized(out);
                 LOG.debug().$(socketAddress).$(" DeltaRequest command received").$();
-                journalClientStateConsumer.read(channel);
-                storeDeltaRequest(channel, journalClientStateConsumer.getValue());
+                journalClientStateConsumer.read(in);
+                storeDeltaRequest(out, journalClientStateConsumer.getValue());
                 break;
             case Command.CLIENT_READY_CMD:
-                checkAuthorized(channel);
-                statsChannel.setDelegate(channel);
-                dispatch(statsChannel);
-                statsChannel.logStats();
-                break;
+                checkAuthorized(out);
+                statsChannel.setDelegate(out);
+                return true;
             case Command.CLIENT_DISCONNECT:
                 throw new JournalDisconnectedChannelException();
             case Command.PROTOCOL_VERSION:
-                checkProtocolVersion(channel, intResponseConsumer.getValue(channel));
+                checkProtocolVersion(out, intResponseConsumer.getValue(in));
                 break;
             case Command.HANDSHAKE_COMPLETE:
                 if (authorized) {
-                    ok(channel);
+                    ok(out);
                 } else {
-                    stringResponseProducer.write(channel, "AUTH");
+                    stringResponseProducer.write(out, "AUTH");
                 }
                 break;
             case Command.AUTHORIZATION:
-                byteArrayResponseConsumer.read(channel);
-                authorize(channel, byteArrayResponseConsumer.getValue());
+                byteArrayResponseConsumer.read(in);
+                authorize(out, byteArrayResponseConsumer.getValue());
                 break;
             case Command.ELECTION:
-                server.handleElectionMessage(channel);
+                server.handleElectionMessage(in, out);
                 break;
             case Command.ELECTED:
-                server.handleElectedMessage(channel);
+                server.handleElectedMessage(in, out);
+                break;
+            case Command.COMPRESSION:
+                setCompression(out, intResponseConsumer.getValue(in));
                 break;
             default:
                 throw new JournalNetworkException("Corrupt channel");
         }
+        return false;
+    }
+
+    /**
+     * Sends journal updates to client, which is ready to receive them, without waiting for journal events.
+     * When wait for events is over client is sent heartbeat regardless.
+     *
+     * @param timedOut true when client has waited for events long enough
+     * @return false when there was nothing to send and client remains waiting
+     * @throws JournalNetworkException when channel fails
+     */
+    public boolean resume(boolean timedOut) throws JournalNetworkException {
+        if (timedOut) {
+            sendHeartbeat(statsChannel);
+            return true;
+        }
+
+        if (processJournalEvents(statsChannel, false)) {
+            statsChannel.logStats();
+            return true;
+        }
+        return false;
     }
 
     private void authorize(WritableByteChannel channel, byte[] value) throws JournalNetworkException {
@@ -179,7 +238,7 @@ public class JournalServerAgent {
         }
     }
 
-    private void checkProtocolVersion(ByteChannel channel, int version) throws JournalNetworkException {
+    private void checkProtocolVersion(WritableByteChannel channel, int version) throws JournalNetworkException {
         if (version == Version.PROTOCOL_VERSION) {
             ok(channel);
         } else {
@@ -251,7 +310,7 @@ public class JournalServerAgent {
             LOG.debug().$(socketAddress).$(" Sending data").$();
             commandProducer.write(channel, Command.JOURNAL_DELTA_CMD);
             intResponseProducer.write(channel, index);
-            journalDeltaProducer.write(channel);
+            journalDeltaProducer.write(compressor == null ? channel : compressor.of(channel));
             return true;
         }
         return false;
@@ -300,15 +359,19 @@ public class JournalServerAgent {
                 commandProducer.write(channel, Command.SERVER_HEARTBEAT);
             }
         } else {
-            if (server.isRunning()) {
-                commandProducer.write(channel, Command.SERVER_HEARTBEAT);
-            } else {
-                commandProducer.write(channel, Command.SERVER_SHUTDOWN);
-            }
+            sendHeartbeat(channel);
         }
         return dataSent;
     }
 
+    private void sendHeartbeat(WritableByteChannel channel) throws JournalNetworkException {
+        if (server.isRunning()) {
+            commandProducer.write(channel, Command.SERVER_HEARTBEAT);
+        } else {
+            commandProducer.write(channel, Command.SERVER_SHUTDOWN);
+        }
+    }
+
     private void sendMetadata(WritableByteChannel channel, int index) throws JournalException, JournalNetworkException {
         try (HugeBufferProducer h = new HugeBufferProducer(new File(readers.get(index).getLocation(), JournalConfiguration.FILE_NAME))) {
             h.write(channel);
@@ -316,9 +379,9 @@ public class JournalServerAgent {
     }
 
     @SuppressWarnings("unchecked")
-    private void setClientKey(ByteChannel channel) throws JournalNetworkException {
+    private void setClientKey(ReadableByteChannel in, WritableByteChannel channel) throws JournalNetworkException {
         LOG.debug().$(socketAddress).$(" SetKey command received").$();
-        setKeyRequestConsumer.read(channel);
+        setKeyRequestConsumer.read(in);
         IndexedJournalKey indexedKey = setKeyRequestConsumer.getValue();
 
         JournalKey<?> readerKey = indexedKey.getKey();
@@ -340,6 +403,17 @@ public class JournalServerAgent {
         }
     }
 
+    private void setCompression(WritableByteChannel channel, int codec) throws JournalNetworkException {
+        if (codec == Version.COMPRESSION_LZ4 && server.isCompressionEnabled()) {
+            if (compressor == null) {
+                compressor = new Lz4WritableChannel<>(Version.COMPRESSION_BLOCK_SIZE);
+            }
+            intResponseProducer.write(channel, Version.COMPRESSION_LZ4);
+        } else {
+            intResponseProducer.write(channel, Version.COMPRESSION_NONE);
+        }
+    }
+
     private void storeDeltaRequest(WritableByteChannel channel, JournalClientState request) throws JournalNetworkException {
         int index = request.getJournalIndex();
 
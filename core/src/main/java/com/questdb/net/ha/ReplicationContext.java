@@ -0,0 +1,211 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.net.ha;
+
+import com.questdb.ex.JournalDisconnectedChannelException;
+import com.questdb.ex.JournalNetworkException;
+import com.questdb.ex.SlowReadableChannelException;
+import com.questdb.log.Log;
+import com.questdb.log.LogFactory;
+import com.questdb.misc.ByteBuffers;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Non-blocking connection to replication client. Agent reads commands from buffered input,
+ * which is replayed from start of command when command is incomplete, and writes responses
+ * to spool, which is then sent to client as fast as client can take it. Waiting for journal
+ * events is left to dispatcher.
+ */
+class ReplicationContext implements Closeable {
+    // channel is readable
+    static final int READ = 1;
+    // channel is writable
+    static final int WRITE = 2;
+    // client waits for journal events
+    static final int WAIT = 3;
+    // client waited for journal events long enough
+    static final int TIMEOUT = 4;
+    static final int DISCONNECTED = 5;
+    private static final Log LOG = LogFactory.getLog(ReplicationContext.class);
+    private static final int INITIAL_INBOUND_CAPACITY = 4096;
+    final SocketChannel channel;
+    final SocketAddress socketAddress;
+    private final JournalServer server;
+    private final JournalServerAgent agent;
+    private final ReplicationSpool spool = new ReplicationSpool();
+    private final InboundChannel inboundChannel = new InboundChannel();
+    private final long heartbeat;
+    SelectionKey key;
+    private ByteBuffer inbound;
+    private long deadline;
+    private boolean closed = false;
+
+    ReplicationContext(JournalServer server, SocketChannel channel, SocketAddress socketAddress, JournalServerAgent agent, long heartbeat) {
+        this.server = server;
+        this.channel = channel;
+        this.socketAddress = socketAddress;
+        this.agent = agent;
+        this.heartbeat = heartbeat;
+        this.inbound = ByteBuffer.allocateDirect(INITIAL_INBOUND_CAPACITY).order(ByteOrder.LITTLE_ENDIAN);
+        this.inbound.flip();
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        agent.close();
+        spool.free();
+        inbound = ByteBuffers.release(inbound);
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOG.error().$("Cannot close channel [").$(socketAddress).$("]: ").$(e.getMessage()).$();
+        }
+    }
+
+    long getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * Does as much work as possible without blocking.
+     *
+     * @param status what happened to context since it was last handled
+     * @return what context has to wait for next
+     */
+    int handle(int status) {
+        try {
+            if ((status == WAIT || status == TIMEOUT) && !agent.resume(status == TIMEOUT)) {
+                return WAIT;
+            }
+
+            // idle client is told server is shutting down by heartbeat, there is nothing to send after that
+            boolean shutdown = status == TIMEOUT && !server.isRunning();
+
+            while (true) {
+                if (!spool.flush(channel)) {
+                    return WRITE;
+                }
+
+                if (shutdown) {
+                    return DISCONNECTED;
+                }
+
+                if (inbound.hasRemaining()) {
+                    int mark = inbound.position();
+                    try {
+                        if (agent.process(inboundChannel, spool) && !agent.resume(false)) {
+                            deadline = System.currentTimeMillis() + heartbeat;
+                            return WAIT;
+                        }
+                        continue;
+                    } catch (JournalNetworkException e) {
+                        if (e.getCause() != SlowReadableChannelException.INSTANCE) {
+                            throw e;
+                        }
+                        // command is incomplete, it will be read again when the rest of it arrives
+                        inbound.position(mark);
+                    }
+                }
+
+                inbound.compact();
+                if (!inbound.hasRemaining()) {
+                    resizeInbound();
+                }
+                int n = channel.read(inbound);
+                inbound.flip();
+
+                if (n < 0) {
+                    return DISCONNECTED;
+                }
+
+                if (n == 0) {
+                    return READ;
+                }
+            }
+        } catch (JournalDisconnectedChannelException e) {
+            // client may have been told why it is disconnected
+            try {
+                spool.flush(channel);
+            } catch (IOException ignore) {
+            }
+            return DISCONNECTED;
+        } catch (JournalNetworkException | IOException e) {
+            LOG.info().$("Client died ").$(socketAddress).$(": ").$(e.getMessage()).$();
+            return DISCONNECTED;
+        } catch (Throwable e) {
+            LOG.error().$("Unhandled exception in server process").$(e).$();
+            return DISCONNECTED;
+        }
+    }
+
+    boolean isEventAvailable() {
+        return agent.isEventAvailable();
+    }
+
+    private void resizeInbound() {
+        ByteBuffer buf = ByteBuffer.allocateDirect(inbound.capacity() * 2).order(ByteOrder.LITTLE_ENDIAN);
+        inbound.flip();
+        ByteBuffers.copy(inbound, buf);
+        ByteBuffers.release(inbound);
+        inbound = buf;
+    }
+
+    private class InboundChannel implements ReadableByteChannel {
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            if (!inbound.hasRemaining()) {
+                throw SlowReadableChannelException.INSTANCE;
+            }
+
+            int limit = inbound.limit();
+            int n = Math.min(inbound.remaining(), dst.remaining());
+            inbound.limit(inbound.position() + n);
+            ByteBuffers.copy(inbound, dst);
+            inbound.limit(limit);
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,308 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.net.ha;
+
+import com.questdb.ex.JournalNetworkException;
+import com.questdb.log.Log;
+import com.questdb.log.LogFactory;
+import com.questdb.mp.*;
+import com.questdb.net.ha.auth.AuthorizationHandler;
+import com.questdb.std.ObjList;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.channels.*;
+import java.util.Iterator;
+
+/**
+ * Serves replication clients of {@link JournalServer} from single selector. Contexts, which channels are ready,
+ * are handed over to {@link ReplicationJob} via queue and come back via interest queue once they cannot progress
+ * without blocking. Clients waiting for journal events are parked here until either event is published or
+ * heartbeat is due.
+ */
+class ReplicationDispatcher extends SynchronizedJob implements Closeable {
+    private static final Log LOG = LogFactory.getLog(ReplicationDispatcher.class);
+    private final JournalServer server;
+    private final ServerSocketChannel serverSocketChannel;
+    private final AuthorizationHandler authorizationHandler;
+    private final RingQueue<ReplicationEvent> ioQueue;
+    private final Sequence ioSequence;
+    private final RingQueue<ReplicationEvent> interestQueue;
+    private final MPSequence interestPubSequence;
+    private final SCSequence interestSubSequence = new SCSequence();
+    private final Selector selector;
+    private final ObjList<ReplicationContext> waiting = new ObjList<>();
+    private final long heartbeat;
+    private volatile boolean signalled = false;
+    private volatile int connectionCount = 0;
+    private long nextDeadline = Long.MAX_VALUE;
+
+    ReplicationDispatcher(
+            JournalServer server,
+            ServerSocketChannel serverSocketChannel,
+            AuthorizationHandler authorizationHandler,
+            RingQueue<ReplicationEvent> ioQueue,
+            Sequence ioSequence,
+            long heartbeat
+    ) throws JournalNetworkException {
+        this.server = server;
+        this.serverSocketChannel = serverSocketChannel;
+        this.authorizationHandler = authorizationHandler;
+        this.ioQueue = ioQueue;
+        this.ioSequence = ioSequence;
+        this.interestQueue = new RingQueue<>(ReplicationEvent.FACTORY, ioQueue.getCapacity());
+        this.interestPubSequence = new MPSequence(interestQueue.getCapacity());
+        this.interestPubSequence.then(this.interestSubSequence).then(this.interestPubSequence);
+        this.heartbeat = heartbeat;
+        try {
+            this.selector = Selector.open();
+            serverSocketChannel.configureBlocking(false);
+            serverSocketChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            throw new JournalNetworkException("Cannot start dispatcher", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        for (SelectionKey key : selector.keys()) {
+            Object context = key.attachment();
+            if (context instanceof ReplicationContext) {
+                ((ReplicationContext) context).close();
+            }
+        }
+        waiting.clear();
+        connectionCount = 0;
+        try {
+            selector.close();
+        } catch (IOException e) {
+            LOG.error().$("Cannot close selector: ").$(e.getMessage()).$();
+        }
+    }
+
+    int getConnectionCount() {
+        return connectionCount;
+    }
+
+    void registerChannel(ReplicationContext context, int status) {
+        long cursor = interestPubSequence.nextBully();
+        ReplicationEvent evt = interestQueue.get(cursor);
+        evt.context = context;
+        evt.status = status;
+        interestPubSequence.done(cursor);
+    }
+
+    private void accept() {
+        while (true) {
+            SocketChannel channel = null;
+            try {
+                channel = serverSocketChannel.accept();
+                if (channel == null) {
+                    break;
+                }
+
+                SocketAddress address = channel.getRemoteAddress();
+                if (!server.isRunning()) {
+                    LOG.info().$("Ignoring connection from ").$(address).$(". Server is shutting down.").$();
+                    channel.close();
+                    continue;
+                }
+
+                channel.configureBlocking(false);
+                ReplicationContext context = new ReplicationContext(
+                        server,
+                        channel,
+                        address,
+                        new JournalServerAgent(server, address, authorizationHandler, new EventWaitStrategy()),
+                        heartbeat
+                );
+                context.key = channel.register(selector, SelectionKey.OP_READ, context);
+                connectionCount++;
+                LOG.info().$("Connected ").$(address).$();
+            } catch (IOException e) {
+                LOG.error().$("Cannot accept connection: ").$(e.getMessage()).$();
+                if (channel != null) {
+                    try {
+                        channel.close();
+                    } catch (IOException ignore) {
+                    }
+                }
+                break;
+            }
+        }
+    }
+
+    private void disconnect(ReplicationContext context) {
+        LOG.info().$("Client disconnected: ").$(context.socketAddress).$();
+        context.key.cancel();
+        context.close();
+        connectionCount--;
+    }
+
+    private void processSelectedKeys() {
+        Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+        while (iterator.hasNext()) {
+            SelectionKey key = iterator.next();
+            iterator.remove();
+
+            if (!key.isValid()) {
+                continue;
+            }
+
+            if (key.isAcceptable()) {
+                accept();
+            } else {
+                int status = key.isReadable() ? ReplicationContext.READ : ReplicationContext.WRITE;
+                // context is in hands of worker until it is registered again
+                key.interestOps(0);
+                publish((ReplicationContext) key.attachment(), status);
+            }
+        }
+    }
+
+    private boolean processRegistrations() {
+        long cursor;
+        boolean useful = false;
+        while ((cursor = interestSubSequence.next()) > -1) {
+            useful = true;
+            ReplicationEvent evt = interestQueue.get(cursor);
+            ReplicationContext context = evt.context;
+            int status = evt.status;
+            interestSubSequence.done(cursor);
+            register(context, status);
+        }
+        return useful;
+    }
+
+    private boolean processWaiting(long timestamp) {
+        boolean running = server.isRunning();
+        if (!signalled && timestamp < nextDeadline && running) {
+            return false;
+        }
+
+        // reset flag before events are checked, so that events published meanwhile are not missed
+        signalled = false;
+        nextDeadline = Long.MAX_VALUE;
+        boolean useful = false;
+        for (int i = waiting.size() - 1; i > -1; i--) {
+            ReplicationContext context = waiting.getQuick(i);
+            long deadline = context.getDeadline();
+            int status;
+            if (!running || timestamp >= deadline) {
+                status = ReplicationContext.TIMEOUT;
+            } else if (context.isEventAvailable()) {
+                status = ReplicationContext.WAIT;
+            } else {
+                if (deadline < nextDeadline) {
+                    nextDeadline = deadline;
+                }
+                continue;
+            }
+
+            int last = waiting.size() - 1;
+            waiting.setQuick(i, waiting.getQuick(last));
+            waiting.remove(last);
+            publish(context, status);
+            useful = true;
+        }
+        return useful;
+    }
+
+    private void publish(ReplicationContext context, int status) {
+        long cursor = ioSequence.next();
+        if (cursor < 0) {
+            // workers are busy, do not wait for them
+            register(context, context.handle(status));
+            return;
+        }
+        ReplicationEvent evt = ioQueue.get(cursor);
+        evt.context = context;
+        evt.status = status;
+        ioSequence.done(cursor);
+    }
+
+    private void register(ReplicationContext context, int status) {
+        switch (status) {
+            case ReplicationContext.READ:
+                context.key.interestOps(SelectionKey.OP_READ);
+                break;
+            case ReplicationContext.WRITE:
+                context.key.interestOps(SelectionKey.OP_WRITE);
+                break;
+            case ReplicationContext.WAIT:
+                waiting.add(context);
+                if (context.getDeadline() < nextDeadline) {
+                    nextDeadline = context.getDeadline();
+                }
+                // event could have been published before context got here
+                signalled = true;
+                break;
+            default:
+                disconnect(context);
+                break;
+        }
+    }
+
+    @Override
+    protected boolean runSerially() {
+        boolean useful = false;
+        try {
+            if (selector.selectNow() > 0) {
+                processSelectedKeys();
+                useful = true;
+            }
+        } catch (IOException e) {
+            LOG.error().$("Select failed: ").$(e.getMessage()).$();
+        }
+
+        useful = processRegistrations() || useful;
+        return processWaiting(System.currentTimeMillis()) || useful;
+    }
+
+    /**
+     * Agents do not wait for journal events, events published to them only have to make dispatcher check on waiting clients.
+     * Each agent has to have its own instance for event bridge to be able to tell agents apart.
+     */
+    private class EventWaitStrategy implements WaitStrategy {
+        @Override
+        public boolean acceptSignal() {
+            return true;
+        }
+
+        @Override
+        public void alert() {
+        }
+
+        @Override
+        public void await() {
+        }
+
+        @Override
+        public void signal() {
+            signalled = true;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.net.ha;
+
+import com.questdb.mp.Job;
+import com.questdb.mp.RingQueue;
+import com.questdb.mp.Sequence;
+
+class ReplicationJob implements Job {
+    private final RingQueue<ReplicationEvent> ioQueue;
+    private final Sequence ioSequence;
+    private final ReplicationDispatcher dispatcher;
+
+    ReplicationJob(RingQueue<ReplicationEvent> ioQueue, Sequence ioSequence, ReplicationDispatcher dispatcher) {
+        this.ioQueue = ioQueue;
+        this.ioSequence = ioSequence;
+        this.dispatcher = dispatcher;
+    }
+
+    @Override
+    public boolean run() {
+        long cursor = ioSequence.next();
+        if (cursor < 0) {
+            return false;
+        }
+
+        ReplicationEvent evt = ioQueue.get(cursor);
+        final ReplicationContext context = evt.context;
+        final int status = evt.status;
+        ioSequence.done(cursor);
+        dispatcher.registerChannel(context, context.handle(status));
+        return true;
+    }
+
+    @Override
+    public void setupThread() {
+    }
+}
@@ -0,0 +1,168 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.net.ha;
+
+import com.questdb.misc.ByteBuffers;
+import com.questdb.std.LongList;
+import com.questdb.std.ObjList;
+import com.questdb.store.AbstractColumn;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Accumulates response, which agent writes out in one go, so that it can be sent to
+ * non-blocking channel as and when channel is able to take it. Column data is not copied,
+ * spool keeps file region instead and sends it straight from column file.
+ */
+class ReplicationSpool implements ZeroCopyChannel {
+    private static final int INITIAL_CAPACITY = 64 * 1024;
+    private static final int RETAINED_CAPACITY = 4 * 1024 * 1024;
+    // column of each segment, null for segments kept in buffer
+    private final ObjList<AbstractColumn> columns = new ObjList<>();
+    private final LongList offsets = new LongList();
+    private final LongList counts = new LongList();
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(INITIAL_CAPACITY).order(ByteOrder.LITTLE_ENDIAN);
+    private int size;
+    private int segment;
+    private long sent;
+
+    public void clear() {
+        columns.clear();
+        offsets.clear();
+        counts.clear();
+        size = 0;
+        segment = 0;
+        sent = 0;
+        // do not hold on to memory taken by large response
+        if (buffer.capacity() > RETAINED_CAPACITY) {
+            ByteBuffers.release(buffer);
+            buffer = ByteBuffer.allocateDirect(INITIAL_CAPACITY).order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Sends as much of spooled response as channel would take.
+     *
+     * @param channel non-blocking channel
+     * @return true when entire response has been sent
+     * @throws IOException when channel cannot be written to
+     */
+    public boolean flush(WritableByteChannel channel) throws IOException {
+        while (segment < columns.size()) {
+            long count = counts.getQuick(segment);
+            while (sent < count) {
+                long n;
+                AbstractColumn column = columns.getQuick(segment);
+                if (column == null) {
+                    int offset = (int) offsets.getQuick(segment);
+                    buffer.limit(offset + (int) count);
+                    buffer.position(offset + (int) sent);
+                    n = channel.write(buffer);
+                } else {
+                    n = column.transferTo(offsets.getQuick(segment) + sent, count - sent, channel);
+                }
+
+                if (n < 1) {
+                    return false;
+                }
+                sent += n;
+            }
+            segment++;
+            sent = 0;
+        }
+        clear();
+        return true;
+    }
+
+    public void free() {
+        buffer = ByteBuffers.release(buffer);
+    }
+
+    public boolean isEmpty() {
+        return columns.size() == 0;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return true;
+    }
+
+    @Override
+    public boolean isZeroCopy() {
+        return true;
+    }
+
+    @Override
+    public long transfer(AbstractColumn column, long offset, long count) {
+        columns.add(column);
+        offsets.add(offset);
+        counts.add(count);
+        return count;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+        int len = src.remaining();
+        if (size + len > buffer.capacity()) {
+            resize(size + len);
+        }
+
+        buffer.limit(buffer.capacity());
+        buffer.position(size);
+        ByteBuffers.copy(src, buffer);
+
+        // extend last segment when it is also in buffer
+        int last = columns.size() - 1;
+        if (last > -1 && columns.getQuick(last) == null) {
+            counts.setQuick(last, counts.getQuick(last) + len);
+        } else {
+            columns.add(null);
+            offsets.add(size);
+            counts.add(len);
+        }
+        size += len;
+        return len;
+    }
+
+    private void resize(int required) {
+        int capacity = buffer.capacity();
+        while (capacity < required) {
+            capacity *= 2;
+        }
+        ByteBuffer buf = ByteBuffer.allocateDirect(capacity).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.limit(size);
+        buffer.position(0);
+        ByteBuffers.copy(buffer, buf);
+        ByteBuffers.release(buffer);
+        buffer = buf;
+    }
+}
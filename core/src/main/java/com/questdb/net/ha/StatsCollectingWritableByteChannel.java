@@ -25,13 +25,15 @@ package com.questdb.net.ha;
 
 import com.questdb.log.Log;
 import com.questdb.log.LogFactory;
+import com.questdb.store.AbstractColumn;
 
 import java.io.IOException;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
 import java.nio.channels.WritableByteChannel;
 
-class StatsCollectingWritableByteChannel implements WritableByteChannel {
+class StatsCollectingWritableByteChannel implements ZeroCopyChannel {
 
     private final static Log LOG = LogFactory.getLog(StatsCollectingWritableByteChannel.class);
 
@@ -55,6 +57,15 @@ class StatsCollectingWritableByteChannel implements WritableByteChannel {
         delegate.close();
     }
 
+    @Override
+    public boolean isZeroCopy() {
+        if (delegate instanceof ZeroCopyChannel) {
+            return ((ZeroCopyChannel) delegate).isZeroCopy();
+        }
+        // secure channels are not socket channels, they have to encrypt what they send
+        return delegate instanceof SocketChannel && ((SocketChannel) delegate).isBlocking();
+    }
+
     public void logStats() {
         if (byteCount > 10) {
             long endTime = System.currentTimeMillis();
@@ -69,6 +80,14 @@ class StatsCollectingWritableByteChannel implements WritableByteChannel {
         this.callCount = 0;
     }
 
+    @Override
+    public long transfer(AbstractColumn column, long offset, long count) throws IOException {
+        callCount++;
+        long n = delegate instanceof ZeroCopyChannel ? ((ZeroCopyChannel) delegate).transfer(column, offset, count) : column.transferTo(offset, count, delegate);
+        this.byteCount += n;
+        return n;
+    }
+
     @Override
     public int write(ByteBuffer src) throws IOException {
         callCount++;
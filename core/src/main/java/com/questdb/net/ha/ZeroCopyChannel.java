@@ -0,0 +1,52 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.net.ha;
+
+import com.questdb.store.AbstractColumn;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Channel, which can have column data sent to it straight from column file.
+ */
+public interface ZeroCopyChannel extends WritableByteChannel {
+
+    /**
+     * @return false when data has to go through {@link #write(java.nio.ByteBuffer)}, for example when channel encrypts it.
+     */
+    boolean isZeroCopy();
+
+    /**
+     * Sends bytes of column file to channel.
+     *
+     * @param column column to send bytes of
+     * @param offset offset in column file
+     * @param count  maximum number of bytes to send
+     * @return number of bytes sent
+     * @throws IOException when column cannot be read or channel cannot be written to
+     */
+    long transfer(AbstractColumn column, long offset, long count) throws IOException;
+}
@@ -46,7 +46,11 @@ public class JournalEventBridge {
     }
 
     public Sequence createAgentSequence() {
-        return fanOut.addAndGet(new SCSequence(publisher.current(), new TimeoutBlockingWaitStrategy(time, unit)));
+        return createAgentSequence(new TimeoutBlockingWaitStrategy(time, unit));
+    }
+
+    public Sequence createAgentSequence(WaitStrategy waitStrategy) {
+        return fanOut.addAndGet(new SCSequence(publisher.current(), waitStrategy));
     }
 
     public RingQueue<JournalEvent> getQueue() {
@@ -26,6 +26,7 @@ package com.questdb.net.ha.bridge;
 import com.questdb.ex.TimeoutException;
 import com.questdb.mp.RingQueue;
 import com.questdb.mp.Sequence;
+import com.questdb.mp.WaitStrategy;
 
 public class JournalEventProcessor {
     private final RingQueue<JournalEvent> queue;
@@ -36,10 +37,19 @@ public class JournalEventProcessor {
         this.sequence = bridge.createAgentSequence();
     }
 
+    public JournalEventProcessor(JournalEventBridge bridge, WaitStrategy waitStrategy) {
+        this.queue = bridge.getQueue();
+        this.sequence = bridge.createAgentSequence(waitStrategy);
+    }
+
     public Sequence getSequence() {
         return sequence;
     }
 
+    public boolean isEventAvailable() {
+        return sequence.next() > -1;
+    }
+
     public boolean process(JournalEventHandler handler, boolean blocking) {
         try {
             long cursor = blocking ? sequence.waitForNext() : sequence.next();
@@ -68,6 +68,7 @@ public class HugeBufferConsumer implements ChannelConsumer, Closeable {
             while (pos < target) {
                 pos += ByteBuffers.copy(channel, hb.getBuffer(pos, 1), target - pos);
             }
+            hb.setAppendOffset(target);
         } catch (IOException e) {
             throw new JournalNetworkException(e);
         }
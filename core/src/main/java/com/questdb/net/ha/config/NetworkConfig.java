@@ -49,6 +49,7 @@ public class NetworkConfig {
     private int multiCastPort = DEFAULT_MULTICAST_PORT;
     private int soRcvBuf = DEFAULT_SO_RCVBUF;
     private boolean enableMultiCast = true;
+    private boolean enableCompression = false;
     private String ifName = null;
     private NetworkInterface defaultInterface = null;
 
@@ -86,6 +87,20 @@ public class NetworkConfig {
         return sslConfig;
     }
 
+    public boolean isCompressionEnabled() {
+        return enableCompression;
+    }
+
+    /**
+     * Journal updates are sent LZ4 compressed when both client and server have compression enabled.
+     * Client, which has compression enabled, cannot connect to server that does not know of compression.
+     *
+     * @param enableCompression true to compress journal updates
+     */
+    public void setEnableCompression(boolean enableCompression) {
+        this.enableCompression = enableCompression;
+    }
+
     public boolean isMultiCastEnabled() {
         return enableMultiCast;
     }
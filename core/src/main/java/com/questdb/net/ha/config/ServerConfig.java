@@ -39,6 +39,7 @@ public class ServerConfig extends NetworkConfig {
     private static final Log LOG = LogFactory.getLog(ServerConfig.class);
 
     private long heartbeatFrequency = DEFAULT_HEARTBEAT_FREQUENCY;
+    private int workerCount = 0;
 
     public long getHeartbeatFrequency() {
         return heartbeatFrequency;
@@ -94,6 +95,20 @@ public class ServerConfig extends NetworkConfig {
         throw new JournalNetworkException("There are no usable IP addresses on " + getIfName());
     }
 
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    /**
+     * Number of threads serving all clients from single non-blocking dispatcher. Default value
+     * of 0 serves each client with its own thread. Secure channels are always served by dedicated threads.
+     *
+     * @param workerCount number of threads
+     */
+    public void setWorkerCount(int workerCount) {
+        this.workerCount = workerCount;
+    }
+
     public DatagramChannelWrapper openDatagramChannel(int instance) throws JournalNetworkException {
         return openDatagramChannel(getMultiCastInterface(instance));
     }
@@ -38,6 +38,7 @@ public final class Command {
     public static final byte SERVER_SHUTDOWN = 0x0c;
     public static final byte ELECTION = 0x0d;
     public static final byte ELECTED = 0x0e;
+    public static final byte COMPRESSION = 0x0f;
     public static final byte UNAUTHENTIC = (byte) 0xFC;
     public static final byte UNKNOWN_CMD = (byte) 0xFE;
     public static final int BUFFER_SIZE = 3;
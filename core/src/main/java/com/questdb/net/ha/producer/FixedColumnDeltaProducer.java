@@ -25,8 +25,10 @@ package com.questdb.net.ha.producer;
 
 import com.questdb.ex.JournalNetworkException;
 import com.questdb.misc.ByteBuffers;
+import com.questdb.net.ha.ZeroCopyChannel;
 import com.questdb.store.AbstractColumn;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.WritableByteChannel;
@@ -70,8 +72,12 @@ public class FixedColumnDeltaProducer implements ColumnDeltaProducer {
     public void write(WritableByteChannel channel) throws JournalNetworkException {
         if (hasContent()) {
             ByteBuffers.copy(header, channel);
-            while (offset < targetOffset) {
-                offset += ByteBuffers.copy(column.getBuffer(offset, 1), channel, targetOffset - offset);
+            if (channel instanceof ZeroCopyChannel && ((ZeroCopyChannel) channel).isZeroCopy()) {
+                transfer((ZeroCopyChannel) channel);
+            } else {
+                while (offset < targetOffset) {
+                    offset += ByteBuffers.copy(column.getBuffer(offset, 1), channel, targetOffset - offset);
+                }
             }
             hasContent = false;
         }
@@ -86,4 +92,18 @@ public class FixedColumnDeltaProducer implements ColumnDeltaProducer {
                 ", column=" + column +
                 '}';
     }
+
+    private void transfer(ZeroCopyChannel channel) throws JournalNetworkException {
+        try {
+            while (offset < targetOffset) {
+                long n = channel.transfer(column, offset, targetOffset - offset);
+                if (n < 1) {
+                    throw new JournalNetworkException("Write to closed channel");
+                }
+                offset += n;
+            }
+        } catch (IOException e) {
+            throw new JournalNetworkException(e);
+        }
+    }
 }
\ No newline at end of file
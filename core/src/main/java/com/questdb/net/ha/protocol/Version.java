@@ -26,6 +26,10 @@ package com.questdb.net.ha.protocol;
 public final class Version {
 
     public static final int PROTOCOL_VERSION = 2;
+    // compression codecs of journal updates
+    public static final int COMPRESSION_NONE = 0;
+    public static final int COMPRESSION_LZ4 = 1;
+    public static final int COMPRESSION_BLOCK_SIZE = 256 * 1024;
 
     private Version() {
     }
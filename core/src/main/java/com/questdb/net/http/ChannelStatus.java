@@ -29,6 +29,7 @@ public final class ChannelStatus {
     public static final int DISCONNECTED = 3;
     public static final int WRITE = 4;
     public static final int EOF = 5;
+    public static final int WAIT = 6;
     
     private ChannelStatus() {
     }
@@ -26,6 +26,15 @@ package com.questdb.net.http;
 public interface ChunkedResponse extends ResponseSink, FragmentedResponse {
     void bookmark();
 
+    /**
+     * Reserves contiguous region of content buffer for binary data, which application writes directly to memory.
+     *
+     * @param len number of bytes to reserve
+     * @return address of reserved region
+     * @throws com.questdb.ex.ResponseContentBufferTooSmallException when remaining content buffer is smaller than len
+     */
+    long reserve(int len);
+
     /**
      * Resets content buffer pointer to bookmarked position.
      *
@@ -35,4 +44,12 @@ public interface ChunkedResponse extends ResponseSink, FragmentedResponse {
     boolean resetToBookmark();
 
     void setCompressed(boolean compressed);
+
+    /**
+     * Sends response as LZ4 frame, which is much cheaper to produce than gzip. Frame is made of
+     * independent blocks with no checksums and can be decoded by any LZ4 frame decoder.
+     *
+     * @param compressed true to compress response content
+     */
+    void setLz4Compressed(boolean compressed);
 }
@@ -54,6 +54,7 @@ public class EpollDispatcher extends SynchronizedJob implements IODispatcher {
     private final Epoll epoll;
     private final int timeout;
     private final LongMatrix<IOContext> pending = new LongMatrix<>(4);
+    private final ParkedContexts parked;
     private final int maxConnections;
     private int connectionCount = 0;
     private long fdid = 1;
@@ -69,6 +70,7 @@ public class EpollDispatcher extends SynchronizedJob implements IODispatcher {
     ) {
         this.ioQueue = ioQueue;
         this.ioSequence = ioSequence;
+        this.parked = new ParkedContexts(ioQueue, ioSequence);
         this.interestQueue = new RingQueue<>(IOEvent.FACTORY, ioQueue.getCapacity());
         this.interestPubSequence = new MPSequence(interestQueue.getCapacity());
         this.interestPubSequence.then(this.interestSubSequence).then(this.interestPubSequence);
@@ -97,6 +99,7 @@ public class EpollDispatcher extends SynchronizedJob implements IODispatcher {
         for (int i = 0; i < n; i++) {
             Misc.free(pending.get(i));
         }
+        parked.close();
     }
 
     @Override
@@ -194,6 +197,11 @@ public class EpollDispatcher extends SynchronizedJob implements IODispatcher {
             int channelStatus = evt.channelStatus;
             interestSubSequence.done(cursor);
 
+            if (channelStatus == ChannelStatus.WAIT) {
+                parked.add(context);
+                continue;
+            }
+
             int fd = (int) context.channel.getFd();
             LOG.debug().$("Registering ").$(fd).$(" status ").$(channelStatus).$();
             epoll.setOffset(offset);
@@ -278,6 +286,7 @@ public class EpollDispatcher extends SynchronizedJob implements IODispatcher {
             useful = true;
         }
 
+        useful = parked.wakeUp(timestamp) || useful;
         return processRegistrations(timestamp) || useful;
     }
 
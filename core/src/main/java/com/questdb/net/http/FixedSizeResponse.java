@@ -23,7 +23,30 @@
 
 package com.questdb.net.http;
 
+import com.questdb.ex.DisconnectedChannelException;
+import com.questdb.ex.SlowWritableChannelException;
+
 public interface FixedSizeResponse extends FragmentedResponse {
 
+    /**
+     * @return true when file backed body can be sent via {@link #sendFile(long, long, long)}. This is not the case for TLS connections.
+     */
+    boolean isSendFileSupported();
+
+    /**
+     * Sends region of file straight to socket bypassing response buffer. Header must have been sent already.
+     * When socket cannot accept any data this method throws SlowWritableChannelException, which parks
+     * connection in the usual way. Nothing is buffered in between, so once connection is writable
+     * again caller must resume from offset it has reached.
+     *
+     * @param fd     file descriptor open for reading
+     * @param offset file offset to send from
+     * @param len    number of bytes left to send
+     * @return number of bytes sent, always positive
+     * @throws DisconnectedChannelException  when peer disconnected
+     * @throws SlowWritableChannelException when socket would block
+     */
+    long sendFile(long fd, long offset, long len) throws DisconnectedChannelException, SlowWritableChannelException;
+
     void status(int status, CharSequence contentType, long len);
 }
@@ -23,6 +23,7 @@
 package com.questdb.net.http;
 
 import com.questdb.ex.DisconnectedChannelException;
+import com.questdb.ex.ParkedContextException;
 import com.questdb.ex.SlowWritableChannelException;
 import com.questdb.iter.clock.Clock;
 import com.questdb.log.Log;
@@ -45,6 +46,9 @@ public class IOContext implements Closeable, Mutable, Locality {
     private final LocalValueMap map = new LocalValueMap();
     private final Response response;
     private final AtomicBoolean open = new AtomicBoolean(true);
+    private final Clock clock;
+    private volatile boolean signalled = false;
+    private long deadline = Long.MAX_VALUE;
 
     public IOContext(NetworkChannel channel, ServerConfiguration configuration, Clock clock) {
         this.channel = configuration.getSslConfig().isSecure() ?
@@ -53,6 +57,7 @@ public class IOContext implements Closeable, Mutable, Locality {
         this.serverConfiguration = configuration;
         this.request = new Request(this.channel, configuration);
         this.response = new Response(this.channel, configuration, clock);
+        this.clock = clock;
     }
 
     public ChunkedResponse chunkedResponse() {
@@ -64,6 +69,8 @@ public class IOContext implements Closeable, Mutable, Locality {
         request.clear();
         response.clear();
         map.clear();
+        signalled = false;
+        deadline = Long.MAX_VALUE;
     }
 
     @Override
@@ -97,6 +104,18 @@ public class IOContext implements Closeable, Mutable, Locality {
         return serverConfiguration;
     }
 
+    /**
+     * Prepares context to be parked by dispatcher when handler throws {@link ParkedContextException}.
+     * Handler is resumed with {@link ChannelStatus#WAIT} once context is signalled or timeout elapses.
+     * Park has to be called before handler checks its condition, so that signals sent meanwhile are not lost.
+     *
+     * @param timeout max time in milliseconds context stays parked
+     */
+    public void park(long timeout) {
+        signalled = false;
+        deadline = clock.getTicks() + timeout;
+    }
+
     public ResponseSink responseSink() {
         return response.asSink();
     }
@@ -105,6 +124,10 @@ public class IOContext implements Closeable, Mutable, Locality {
         response.resume();
     }
 
+    public void signal() {
+        signalled = true;
+    }
+
     public SimpleResponse simpleResponse() {
         return response.asSimple();
     }
@@ -112,4 +135,8 @@ public class IOContext implements Closeable, Mutable, Locality {
     int getResponseCode() {
         return response.getCode();
     }
+
+    boolean isWakeUpDue(long timestamp) {
+        return signalled || timestamp >= deadline;
+    }
 }
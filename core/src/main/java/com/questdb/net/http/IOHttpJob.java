@@ -95,7 +95,8 @@ public class IOHttpJob implements Job {
 
         try {
 
-            boolean log = r.isIncomplete();
+            // parked request is logged once it is complete
+            boolean log = r.isIncomplete() || channelStatus == ChannelStatus.WAIT;
             if (channelStatus == ChannelStatus.READ) {
                 r.read();
             }
@@ -111,6 +112,9 @@ public class IOHttpJob implements Job {
                             context.resume();
                             handler.resume(context);
                             break;
+                        case ChannelStatus.WAIT:
+                            handler.resume(context);
+                            break;
                         case ChannelStatus.READ:
                             if (r.isMultipart()) {
                                 if (handler instanceof MultipartListener) {
@@ -156,6 +160,9 @@ public class IOHttpJob implements Job {
         } catch (SlowWritableChannelException e) {
             LOG.debug().$("Slow write").$();
             newChannelStatus = ChannelStatus.WRITE;
+        } catch (ParkedContextException e) {
+            LOG.debug().$("Parked").$();
+            newChannelStatus = ChannelStatus.WAIT;
         } catch (Throwable e) {
             context.clear();
             silent(context, 500, e.getMessage());
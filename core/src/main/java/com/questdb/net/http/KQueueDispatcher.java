@@ -51,6 +51,7 @@ public class KQueueDispatcher extends SynchronizedJob implements IODispatcher {
     private final Kqueue kqueue;
     private final int timeout;
     private final LongMatrix<IOContext> pending = new LongMatrix<>(2);
+    private final ParkedContexts parked;
     private final int maxConnections;
     private final int capacity;
     private int connectionCount = 0;
@@ -66,6 +67,7 @@ public class KQueueDispatcher extends SynchronizedJob implements IODispatcher {
     ) {
         this.ioQueue = ioQueue;
         this.ioSequence = ioSequence;
+        this.parked = new ParkedContexts(ioQueue, ioSequence);
         this.interestQueue = new RingQueue<>(IOEvent.FACTORY, ioQueue.getCapacity());
         this.interestPubSequence = new MPSequence(interestQueue.getCapacity());
         this.interestPubSequence.then(this.interestSubSequence).then(this.interestPubSequence);
@@ -96,6 +98,7 @@ public class KQueueDispatcher extends SynchronizedJob implements IODispatcher {
             Misc.free(pending.get(i));
         }
         pending.zapTop(n);
+        parked.close();
     }
 
     @Override
@@ -208,6 +211,11 @@ public class KQueueDispatcher extends SynchronizedJob implements IODispatcher {
             int channelStatus = evt.channelStatus;
             interestSubSequence.done(cursor);
 
+            if (channelStatus == ChannelStatus.WAIT) {
+                parked.add(context);
+                continue;
+            }
+
             int fd = (int) context.channel.getFd();
             LOG.debug().$("Registering ").$(fd).$(" status ").$(channelStatus).$();
             kqueue.setOffset(offset);
@@ -308,6 +316,7 @@ public class KQueueDispatcher extends SynchronizedJob implements IODispatcher {
             useful = true;
         }
 
+        useful = parked.wakeUp(timestamp) || useful;
         return processRegistrations(timestamp) || useful;
     }
 
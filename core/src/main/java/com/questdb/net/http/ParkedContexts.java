@@ -0,0 +1,81 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.net.http;
+
+import com.questdb.misc.Misc;
+import com.questdb.mp.RingQueue;
+import com.questdb.mp.Sequence;
+import com.questdb.std.ObjList;
+
+import java.io.Closeable;
+
+/**
+ * Contexts, which handlers parked with {@link ChannelStatus#WAIT}. Parked context is neither registered
+ * with selector nor subject to idle timeout. Dispatcher hands it back to IO jobs once it is signalled
+ * or its deadline is due.
+ */
+class ParkedContexts implements Closeable {
+    private final ObjList<IOContext> contexts = new ObjList<>();
+    private final RingQueue<IOEvent> ioQueue;
+    private final Sequence ioSequence;
+
+    ParkedContexts(RingQueue<IOEvent> ioQueue, Sequence ioSequence) {
+        this.ioQueue = ioQueue;
+        this.ioSequence = ioSequence;
+    }
+
+    @Override
+    public void close() {
+        for (int i = 0, n = contexts.size(); i < n; i++) {
+            Misc.free(contexts.getQuick(i));
+        }
+        contexts.clear();
+    }
+
+    void add(IOContext context) {
+        contexts.add(context);
+    }
+
+    boolean wakeUp(long timestamp) {
+        boolean useful = false;
+        for (int i = contexts.size() - 1; i > -1; i--) {
+            IOContext context = contexts.getQuick(i);
+            if (!context.isWakeUpDue(timestamp)) {
+                continue;
+            }
+
+            int last = contexts.size() - 1;
+            contexts.setQuick(i, contexts.getQuick(last));
+            contexts.remove(last);
+
+            long cursor = ioSequence.nextBully();
+            IOEvent evt = ioQueue.get(cursor);
+            evt.context = context;
+            evt.channelStatus = ChannelStatus.WAIT;
+            ioSequence.done(cursor);
+            useful = true;
+        }
+        return useful;
+    }
+}
@@ -34,6 +34,7 @@ import com.questdb.log.Log;
 import com.questdb.log.LogFactory;
 import com.questdb.log.LogRecord;
 import com.questdb.misc.*;
+import com.questdb.net.NetworkChannelImpl;
 import com.questdb.net.NonBlockingSecureSocketChannel;
 import com.questdb.std.CharSink;
 import com.questdb.std.Mutable;
@@ -41,6 +42,7 @@ import com.questdb.std.Mutable;
 import java.io.Closeable;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.channels.WritableByteChannel;
 
 public class Response implements Closeable, Mutable {
@@ -56,6 +58,9 @@ public class Response implements Closeable, Mutable {
     private static final int FLUSH = 9;
     private static final int SEND_DEFLATED_CONT = 10;
     private static final int SEND_DEFLATED_END = 11;
+    private static final int SEND_LZ4_CONT = 12;
+    private static final int SEND_LZ4_END = 13;
+    private static final int LZ4_MAX_BLOCK_SIZE = 4 * 1024 * 1024;
     private final ByteBuffer out;
     private final long outPtr;
     private final long limit;
@@ -78,6 +83,11 @@ public class Response implements Closeable, Mutable {
     private int crc = 0;
     private long total = 0;
     private boolean header = true;
+    private ByteBuffer lzout;
+    private long plzout;
+    private int lzBlockSize;
+    private boolean lz4 = false;
+    private boolean lz4Header = true;
 
     public Response(WritableByteChannel channel, ServerConfiguration configuration, Clock clock) {
         if (configuration.getHttpBufRespHeader() <= 0) {
@@ -109,6 +119,8 @@ public class Response implements Closeable, Mutable {
             zout.clear();
         }
         resetZip();
+        this.lz4 = false;
+        this.lz4Header = true;
     }
 
     @Override
@@ -117,6 +129,7 @@ public class Response implements Closeable, Mutable {
         ByteBuffers.release(chunkHeader);
         hb.close();
         ByteBuffers.release(zout);
+        ByteBuffers.release(lzout);
         if (z_streamp != 0) {
             Zip.deflateEnd(z_streamp);
             z_streamp = 0;
@@ -235,6 +248,8 @@ public class Response implements Closeable, Mutable {
                     if (compressed) {
                         prepareCompressedBody();
                         state = DEFLATE;
+                    } else if (lz4) {
+                        state = lz4(false);
                     } else {
                         _flushBuf = prepareBody();
                         state = DONE;
@@ -251,6 +266,14 @@ public class Response implements Closeable, Mutable {
                     _flushBuf = zout;
                     state = DONE;
                     break;
+                case SEND_LZ4_END:
+                    _flushBuf = lzout;
+                    state = END_CHUNK;
+                    break;
+                case SEND_LZ4_CONT:
+                    _flushBuf = lzout;
+                    state = DONE;
+                    break;
                 case MULTI_BUF_CHUNK:
                     _flushBuf = out;
                     state = DONE;
@@ -273,7 +296,7 @@ public class Response implements Closeable, Mutable {
                     state = DONE;
                     break;
                 case FLUSH:
-                    state = deflate(true);
+                    state = lz4 ? lz4(true) : deflate(true);
                     break;
                 case DONE:
                     return;
@@ -284,6 +307,54 @@ public class Response implements Closeable, Mutable {
 
     }
 
+    private int lz4(boolean flush) {
+        if (lzout == null) {
+            lzBlockSize = Math.min(sz, LZ4_MAX_BLOCK_SIZE);
+            lzout = ByteBuffer.allocateDirect(Zip.LZ4_FRAME_HEADER_LEN
+                    + (sz / lzBlockSize) * (4 + Zip.lz4MaxCompressedLength(lzBlockSize))
+                    + Zip.LZ4_FRAME_END_MARK_LEN).order(ByteOrder.LITTLE_ENDIAN);
+            plzout = ByteBuffers.getAddress(lzout);
+        }
+
+        long p = plzout;
+        if (lz4Header) {
+            p += Zip.lz4FrameHeader(p, lzBlockSize);
+            lz4Header = false;
+        }
+
+        long lo = outPtr;
+        while (lo < _wPtr) {
+            int len = (int) Math.min(_wPtr - lo, lzBlockSize);
+            int n = Zip.lz4Compress(lo, len, p + 4, len - 1);
+            if (n > 0) {
+                Unsafe.getUnsafe().putInt(p, n);
+            } else {
+                // block does not compress, it is sent as is
+                Unsafe.getUnsafe().putInt(p, len | Zip.LZ4_UNCOMPRESSED_BLOCK);
+                Unsafe.getUnsafe().copyMemory(lo, p + 4, len);
+                n = len;
+            }
+            p += 4 + n;
+            lo += len;
+        }
+        _wPtr = outPtr;
+
+        if (flush) {
+            // end mark
+            Unsafe.getUnsafe().putInt(p, 0);
+            p += Zip.LZ4_FRAME_END_MARK_LEN;
+        }
+
+        int len = (int) (p - plzout);
+        if (len == 0) {
+            return DONE;
+        }
+
+        lzout.limit(len).position(0);
+        _flushBuf = prepareChunk(len);
+        return flush ? SEND_LZ4_END : SEND_LZ4_CONT;
+    }
+
     private ByteBuffer prepareBody() {
         out.limit((int) (_wPtr - outPtr));
         _wPtr = outPtr;
@@ -399,6 +470,10 @@ public class Response implements Closeable, Mutable {
             return hb;
         }
 
+        @Override
+        public boolean isSendFileSupported() {
+            return channel instanceof NetworkChannelImpl;
+        }
 
         @Override
         public ByteBuffer out() {
@@ -410,6 +485,28 @@ public class Response implements Closeable, Mutable {
             flushSingle(out);
         }
 
+        @Override
+        public long sendFile(long fd, long offset, long len) throws DisconnectedChannelException, SlowWritableChannelException {
+            state = DONE;
+            int retriesRemaining = IOHttpJob.SO_WRITE_RETRY_COUNT;
+            while (true) {
+                int n = ((NetworkChannelImpl) channel).sendFile(fd, offset, len > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) len);
+                if (n > 0) {
+                    return n;
+                }
+
+                switch (n) {
+                    case Net.ERETRY:
+                        if (--retriesRemaining < 0) {
+                            throw SlowWritableChannelException.INSTANCE;
+                        }
+                        break;
+                    default:
+                        throw DisconnectedChannelException.INSTANCE;
+                }
+            }
+        }
+
         @Override
         public void sendHeader() throws DisconnectedChannelException, SlowWritableChannelException {
             flushSingle(hb.prepareBuffer());
@@ -425,6 +522,16 @@ public class Response implements Closeable, Mutable {
             bookmark = _wPtr;
         }
 
+        @Override
+        public long reserve(int len) {
+            long p = _wPtr;
+            if (p + len <= limit) {
+                _wPtr = p + len;
+                return p;
+            }
+            throw ResponseContentBufferTooSmallException.INSTANCE;
+        }
+
         @Override
         public boolean resetToBookmark() {
             _wPtr = bookmark;
@@ -436,6 +543,11 @@ public class Response implements Closeable, Mutable {
             Response.this.compressed = compressed;
         }
 
+        @Override
+        public void setLz4Compressed(boolean compressed) {
+            Response.this.lz4 = compressed;
+        }
+
         @Override
         public void flush() throws IOException {
             sendChunk();
@@ -446,6 +558,8 @@ public class Response implements Closeable, Mutable {
             super.status(status, contentType);
             if (compressed) {
                 hb.put("Content-Encoding: gzip").put(Misc.EOL);
+            } else if (lz4) {
+                hb.put("Content-Encoding: lz4").put(Misc.EOL);
             }
         }
 
@@ -456,7 +570,7 @@ public class Response implements Closeable, Mutable {
 
         @Override
         public void done() throws DisconnectedChannelException, SlowWritableChannelException {
-            if (compressed) {
+            if (compressed || lz4) {
                 machine(null, FLUSH);
             } else {
                 machine(null, END_CHUNK);
@@ -471,7 +585,7 @@ public class Response implements Closeable, Mutable {
         @Override
         public void sendChunk() throws DisconnectedChannelException, SlowWritableChannelException {
             if (outPtr != _wPtr) {
-                if (compressed) {
+                if (compressed || lz4) {
                     machine(null, MULTI_CHUNK);
                 } else {
                     machine(prepareChunk((int) (_wPtr - outPtr)), MULTI_CHUNK);
@@ -57,16 +57,25 @@ public class ServerConfiguration {
     private int dbAsOfRowPage = 1024 * 1024;
     private int dbSortKeyPage = 1024 * 1024;
     private int dbSortDataPage = 4 * 1024 * 1024;
+    private int dbSortMemory = 0;
     private int dbAggregatePage = 4 * 1024 * 1024;
     private int dbHashKeyPage = 4 * 1024 * 1024;
     private int dbHashDataPage = 8 * 1024 * 1024;
     private int dbHashRowPage = 1024 * 1024;
+    private int dbHashMemory = 0;
     private int dbSysViewPage = 64 * 1024;
     private int dbSysMetaSize = 64 * 1024;
     private int dbSysMaxMetaSize = 8 * 1024 * 1024;
     private int dbCyclesBeforeCancel = 1024 * 1024;
     private int dbAnalyticFuncPage = 2 * 1024 * 1024;
     private int dbAnalyticWindowPage = 4 * 1024 * 1024;
+    private int dbParallelWorkers = 0;
+    private int dbParallelQueueDepth = 1024;
+    private int dbParallelScanThreshold = 1024 * 1024;
+    private int dbParallelScanChunk = 256 * 1024;
+    private int dbPlanCacheSize = 256 * 1024 * 1024;
+    private int dbImportWorkers = 0;
+    private int dbImportChunk = 1024 * 1024;
     private File dbPath = new File("db");
     private File mimeTypes = new File("conf/mime.types");
     private File httpPublic = new File("public");
@@ -180,6 +189,10 @@ public class ServerConfiguration {
             this.dbSortDataPage = n;
         }
 
+        if ((n = parseSize(props, "db.sort.memory")) > -1) {
+            this.dbSortMemory = n;
+        }
+
         if ((n = parseSize(props, "db.aggregate.page")) > -1) {
             this.dbAggregatePage = n;
         }
@@ -196,6 +209,10 @@ public class ServerConfiguration {
             this.dbHashRowPage = n;
         }
 
+        if ((n = parseSize(props, "db.hash.memory")) > -1) {
+            this.dbHashMemory = n;
+        }
+
         if ((n = parseSize(props, "db.sys.viewpage")) > -1) {
             this.dbSysViewPage = n;
         }
@@ -220,6 +237,34 @@ public class ServerConfiguration {
             this.dbAnalyticWindowPage = n;
         }
 
+        if ((n = parseInt(props, "db.parallel.workers")) > -1) {
+            this.dbParallelWorkers = n;
+        }
+
+        if ((n = parseInt(props, "db.parallel.queue.depth")) > -1) {
+            this.dbParallelQueueDepth = Numbers.ceilPow2(n);
+        }
+
+        if ((n = parseSize(props, "db.parallel.scan.threshold")) > -1) {
+            this.dbParallelScanThreshold = n;
+        }
+
+        if ((n = parseSize(props, "db.parallel.scan.chunk")) > -1) {
+            this.dbParallelScanChunk = n;
+        }
+
+        if ((n = parseSize(props, "db.plan.cache.size")) > -1) {
+            this.dbPlanCacheSize = n;
+        }
+
+        if ((n = parseInt(props, "db.import.workers")) > -1) {
+            this.dbImportWorkers = n;
+        }
+
+        if ((n = parseSize(props, "db.import.chunk")) > -1) {
+            this.dbImportChunk = n;
+        }
+
         if ((s = props.getProperty("mime.types")) != null) {
             this.mimeTypes = normalize(root, new File(s));
         } else {
@@ -315,14 +360,74 @@ public class ServerConfiguration {
         return dbHashKeyPage;
     }
 
+    public int getDbHashMemory() {
+        return dbHashMemory;
+    }
+
+    public void setDbHashMemory(int dbHashMemory) {
+        this.dbHashMemory = dbHashMemory;
+    }
+
     public int getDbHashRowPage() {
         return dbHashRowPage;
     }
 
+    public int getDbImportChunk() {
+        return dbImportChunk;
+    }
+
+    public void setDbImportChunk(int dbImportChunk) {
+        this.dbImportChunk = dbImportChunk;
+    }
+
+    public int getDbImportWorkers() {
+        return dbImportWorkers;
+    }
+
+    public void setDbImportWorkers(int dbImportWorkers) {
+        this.dbImportWorkers = dbImportWorkers;
+    }
+
+    public int getDbParallelQueueDepth() {
+        return dbParallelQueueDepth;
+    }
+
+    public int getDbParallelScanChunk() {
+        return dbParallelScanChunk;
+    }
+
+    public void setDbParallelScanChunk(int dbParallelScanChunk) {
+        this.dbParallelScanChunk = dbParallelScanChunk;
+    }
+
+    public int getDbParallelScanThreshold() {
+        return dbParallelScanThreshold;
+    }
+
+    public void setDbParallelScanThreshold(int dbParallelScanThreshold) {
+        this.dbParallelScanThreshold = dbParallelScanThreshold;
+    }
+
+    public int getDbParallelWorkers() {
+        return dbParallelWorkers;
+    }
+
+    public void setDbParallelWorkers(int dbParallelWorkers) {
+        this.dbParallelWorkers = dbParallelWorkers;
+    }
+
     public File getDbPath() {
         return dbPath;
     }
 
+    public int getDbPlanCacheSize() {
+        return dbPlanCacheSize;
+    }
+
+    public void setDbPlanCacheSize(int dbPlanCacheSize) {
+        this.dbPlanCacheSize = dbPlanCacheSize;
+    }
+
     public int getDbSortDataPage() {
         return dbSortDataPage;
     }
@@ -331,6 +436,14 @@ public class ServerConfiguration {
         return dbSortKeyPage;
     }
 
+    public int getDbSortMemory() {
+        return dbSortMemory;
+    }
+
+    public void setDbSortMemory(int dbSortMemory) {
+        this.dbSortMemory = dbSortMemory;
+    }
+
     public int getDbSysMaxMetaSize() {
         return dbSysMaxMetaSize;
     }
@@ -459,7 +572,15 @@ public class ServerConfiguration {
                 ", dbAsOfRowPage=" + dbAsOfRowPage +
                 ", dbSortKeyPage=" + dbSortKeyPage +
                 ", dbSortDataPage=" + dbSortDataPage +
+                ", dbSortMemory=" + dbSortMemory +
                 ", dbAggregatePage=" + dbAggregatePage +
+                ", dbHashMemory=" + dbHashMemory +
+                ", dbParallelWorkers=" + dbParallelWorkers +
+                ", dbParallelQueueDepth=" + dbParallelQueueDepth +
+                ", dbParallelScanThreshold=" + dbParallelScanThreshold +
+                ", dbParallelScanChunk=" + dbParallelScanChunk +
+                ", dbImportWorkers=" + dbImportWorkers +
+                ", dbImportChunk=" + dbImportChunk +
                 ", dbPath=" + dbPath +
                 ", mimeTypes=" + mimeTypes +
                 ", httpPublic=" + httpPublic +
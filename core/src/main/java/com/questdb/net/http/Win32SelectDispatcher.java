@@ -57,6 +57,7 @@ public class Win32SelectDispatcher extends SynchronizedJob implements IODispatch
     private final ServerConfiguration configuration;
     private final int timeout;
     private final LongMatrix<IOContext> pending = new LongMatrix<>(4);
+    private final ParkedContexts parked;
     private final int maxConnections;
     private final LongIntHashMap fds = new LongIntHashMap();
     private int connectionCount = 0;
@@ -74,6 +75,7 @@ public class Win32SelectDispatcher extends SynchronizedJob implements IODispatch
         this.writeFdSet = new FDSet(capacity);
         this.ioQueue = ioQueue;
         this.ioSequence = ioSequence;
+        this.parked = new ParkedContexts(ioQueue, ioSequence);
         this.interestQueue = new RingQueue<>(IOEvent.FACTORY, ioQueue.getCapacity());
         this.interestPubSequence = new MPSequence(interestQueue.getCapacity());
         this.interestPubSequence.then(this.interestSubSequence).then(this.interestPubSequence);
@@ -109,6 +111,7 @@ public class Win32SelectDispatcher extends SynchronizedJob implements IODispatch
         }
 
         pending.zapTop(pending.size());
+        parked.close();
     }
 
     @Override
@@ -201,6 +204,11 @@ public class Win32SelectDispatcher extends SynchronizedJob implements IODispatch
             int channelStatus = evt.channelStatus;
             interestSubSequence.done(cursor);
 
+            if (channelStatus == ChannelStatus.WAIT) {
+                parked.add(context);
+                continue;
+            }
+
             int r = pending.addRow();
             pending.set(r, M_TIMESTAMP, timestamp);
             pending.set(r, M_FD, context.channel.getFd());
@@ -254,6 +262,7 @@ public class Win32SelectDispatcher extends SynchronizedJob implements IODispatch
 
         // process returned fds
         useful = processRegistrations(timestamp) | useful;
+        useful = parked.wakeUp(clock.getTicks()) | useful;
 
         // re-arm select() fds
         int readFdCount = 0;
@@ -41,10 +41,11 @@ import com.questdb.ql.Record;
 import com.questdb.ql.RecordCursor;
 import com.questdb.ql.RecordSource;
 import com.questdb.ql.impl.ChannelCheckCancellationHandler;
+import com.questdb.ql.impl.parallel.QueryWorkerPool;
 import com.questdb.ql.model.ParsedModel;
+import com.questdb.ql.parser.PlanCache;
 import com.questdb.ql.parser.QueryCompiler;
 import com.questdb.ql.parser.QueryError;
-import com.questdb.std.AssociativeCache;
 import com.questdb.std.Mutable;
 
 import java.io.Closeable;
@@ -61,11 +62,11 @@ public abstract class AbstractQueryContext implements Mutable, Closeable {
     public static final int QUERY_RECORD_SUFFIX = 6;
     public static final int QUERY_DATA_SUFFIX = 7;
     static final ThreadLocal<QueryCompiler> COMPILER = new ThreadLocal<>();
-    static final ThreadLocal<AssociativeCache<RecordSource>> CACHE = new ThreadLocal<>();
     static final Log LOG = LogFactory.getLog(AbstractQueryContext.class);
+    private static volatile PlanCache PLAN_CACHE;
     final ChannelCheckCancellationHandler cancellationHandler;
     final long fd;
-    RecordSource recordSource;
+    PlanCache.Plan plan;
     CharSequence query;
     RecordMetadata metadata;
     RecordCursor cursor;
@@ -92,9 +93,9 @@ public abstract class AbstractQueryContext implements Mutable, Closeable {
             debug().$("Closing journal factory ").$();
         }
         factory = Misc.free(factory);
-        if (recordSource != null) {
-            CACHE.get().put(query.toString(), recordSource);
-            recordSource = null;
+        if (plan != null) {
+            PLAN_CACHE.put(plan);
+            plan = null;
         }
         query = null;
         queryState = QUERY_PREFIX;
@@ -115,16 +116,17 @@ public abstract class AbstractQueryContext implements Mutable, Closeable {
             AtomicLong hits) throws IOException {
         try {
             this.factory = pool.get();
-            recordSource = CACHE.get().poll(query);
-            if (recordSource == null) {
-                recordSource = executeQuery(r, writerFactory);
+            plan = PLAN_CACHE.poll(factory, query);
+            if (plan == null) {
+                plan = executeQuery(r, writerFactory);
                 misses.incrementAndGet();
             } else {
                 hits.incrementAndGet();
             }
 
             header(r, 200);
-            if (recordSource != null) {
+            if (plan != null) {
+                RecordSource recordSource = plan.getRecordSource();
                 cursor = recordSource.prepareCursor(factory, cancellationHandler);
                 metadata = recordSource.getMetadata();
             } else {
@@ -141,6 +143,10 @@ public abstract class AbstractQueryContext implements Mutable, Closeable {
     }
 
     public boolean parseUrl(ChunkedResponse r, Request request) throws DisconnectedChannelException, SlowWritableChannelException {
+        // LZ4 is sent only to clients, which ask for it, as browsers do not know of it.
+        CharSequence encoding = request.getHeader("Accept-Encoding");
+        r.setLz4Compressed(encoding != null && Chars.contains(encoding, "lz4"));
+
         // Query text.
         CharSequence query = request.getUrlParam("query");
         if (query == null || query.length() == 0) {
@@ -189,12 +195,16 @@ public abstract class AbstractQueryContext implements Mutable, Closeable {
         return true;
     }
 
-    static void setupThread(ServerConfiguration configuration) {
+    static void setupThread(ServerConfiguration configuration, QueryWorkerPool workerPool) {
         if (COMPILER.get() == null) {
-            COMPILER.set(new QueryCompiler(configuration));
+            COMPILER.set(new QueryCompiler(configuration, workerPool));
         }
-        if (CACHE.get() == null) {
-            CACHE.set(new AssociativeCache<RecordSource>(8, 128));
+        if (PLAN_CACHE == null) {
+            synchronized (AbstractQueryContext.class) {
+                if (PLAN_CACHE == null) {
+                    PLAN_CACHE = new PlanCache(configuration.getDbPlanCacheSize());
+                }
+            }
         }
     }
 
@@ -206,11 +216,11 @@ public abstract class AbstractQueryContext implements Mutable, Closeable {
         return LOG.error().$('[').$(fd).$("] ");
     }
 
-    private RecordSource executeQuery(ChunkedResponse r, JournalFactory writerFactory) throws ParserException, DisconnectedChannelException, SlowWritableChannelException {
+    private PlanCache.Plan executeQuery(ChunkedResponse r, JournalFactory writerFactory) throws ParserException, DisconnectedChannelException, SlowWritableChannelException {
         QueryCompiler compiler = COMPILER.get();
         ParsedModel model = compiler.parse(query);
         if (model.isQuery()) {
-            return compiler.compile(factory, model);
+            return PLAN_CACHE.compile(compiler, factory, query);
         }
 
         if (writerFactory != null) {
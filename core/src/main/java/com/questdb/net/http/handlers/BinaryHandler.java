@@ -0,0 +1,542 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.net.http.handlers;
+
+import com.questdb.ex.DisconnectedChannelException;
+import com.questdb.ex.ResponseContentBufferTooSmallException;
+import com.questdb.ex.SlowWritableChannelException;
+import com.questdb.factory.JournalFactoryPool;
+import com.questdb.factory.configuration.RecordColumnMetadata;
+import com.questdb.factory.configuration.RecordMetadata;
+import com.questdb.misc.Misc;
+import com.questdb.misc.Unsafe;
+import com.questdb.net.http.ChunkedResponse;
+import com.questdb.net.http.ContextHandler;
+import com.questdb.net.http.IOContext;
+import com.questdb.net.http.ServerConfiguration;
+import com.questdb.ql.Record;
+import com.questdb.ql.impl.parallel.QueryWorkerPool;
+import com.questdb.std.*;
+import com.questdb.store.ColumnType;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.questdb.net.http.handlers.AbstractQueryContext.*;
+
+/**
+ * Streams query result as column-major binary pages. All numbers are little-endian.
+ * <pre>
+ * header:  int magic "QDB1", int columnCount, columnCount x (int type, int nameLen, nameLen x UTF-16 char)
+ * page:    int pageLen, int rowCount, columnCount x column block
+ * end:     int 0
+ * </pre>
+ * Column blocks by type:
+ * <pre>
+ * BOOLEAN, BYTE         rowCount x byte
+ * SHORT                 rowCount x short
+ * INT, FLOAT            rowCount x int/float
+ * LONG, DATE, DOUBLE    rowCount x long/double
+ * SYMBOL                int dictSize, dictSize x (int len, len x char), rowCount x int dictionary index
+ * STRING                int blockLen, rowCount x (int len, len x char)
+ * BINARY                int blockLen, rowCount x (int len, len x byte)
+ * </pre>
+ * Nulls of fixed width types are sent as stored. Null symbols have index -1, null strings and binaries have length -1.
+ * Page never exceeds response content buffer, so buffer size also sets upper bound of page size.
+ */
+public class BinaryHandler implements ContextHandler {
+    static final int MAGIC = 0x31424451;
+    private final JournalFactoryPool factoryPool;
+    private final LocalValue<BinaryHandlerContext> localContext = new LocalValue<>();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+    private final ServerConfiguration configuration;
+    private final QueryWorkerPool workerPool;
+
+    public BinaryHandler(JournalFactoryPool factoryPool, ServerConfiguration configuration) {
+        this(factoryPool, configuration, null);
+    }
+
+    public BinaryHandler(JournalFactoryPool factoryPool, ServerConfiguration configuration, QueryWorkerPool workerPool) {
+        this.factoryPool = factoryPool;
+        this.configuration = configuration;
+        this.workerPool = workerPool;
+    }
+
+    @Override
+    public void handle(IOContext context) throws IOException {
+        BinaryHandlerContext ctx = localContext.get(context);
+        if (ctx == null) {
+            localContext.set(context, ctx = new BinaryHandlerContext(context.channel.getFd(), context.getServerConfiguration().getDbCyclesBeforeCancel()));
+        }
+        ChunkedResponse r = context.chunkedResponse();
+        if (ctx.parseUrl(r, context.request)) {
+            ctx.compileQuery(r, factoryPool, null, cacheMisses, cacheHits);
+            resume(context);
+        }
+    }
+
+    @SuppressWarnings("ConstantConditions")
+    @Override
+    public void resume(IOContext context) throws IOException {
+        BinaryHandlerContext ctx = localContext.get(context);
+        if (ctx == null || ctx.cursor == null) {
+            return;
+        }
+
+        final ChunkedResponse r = context.chunkedResponse();
+
+        OUT:
+        while (true) {
+            try {
+                switch (ctx.queryState) {
+                    case QUERY_METADATA:
+                        r.bookmark();
+                        putHeader(r, ctx.metadata);
+                        ctx.of(ctx.metadata);
+                        ctx.queryState = QUERY_RECORD_START;
+                        // fall through
+                    case QUERY_RECORD_START:
+                        if (!ctx.stage(r.out().capacity())) {
+                            ctx.queryState = QUERY_DATA_SUFFIX;
+                            break;
+                        }
+                        ctx.queryState = QUERY_RECORD_COLUMNS;
+                        // fall through
+                    case QUERY_RECORD_COLUMNS:
+                        r.bookmark();
+                        ctx.putPage(r);
+                        ctx.queryState = QUERY_RECORD_START;
+                        break;
+                    case QUERY_DATA_SUFFIX:
+                        sendDone(r, ctx);
+                        break OUT;
+                    default:
+                        break OUT;
+                }
+            } catch (ResponseContentBufferTooSmallException ignored) {
+                if (r.resetToBookmark()) {
+                    r.sendChunk();
+                } else {
+                    // page is built to fit empty buffer, so we end up here
+                    // only when single row with page header is larger than content buffer
+                    ctx.info().$("Response buffer is too small, state=").$(ctx.queryState).$();
+                    throw DisconnectedChannelException.INSTANCE;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void setupThread() {
+        AbstractQueryContext.setupThread(configuration, workerPool);
+    }
+
+    private static void putHeader(ChunkedResponse r, RecordMetadata metadata) {
+        final int columnCount = metadata.getColumnCount();
+        int len = 8;
+        for (int i = 0; i < columnCount; i++) {
+            len += 8 + metadata.getColumnQuick(i).getName().length() * 2;
+        }
+
+        long p = r.reserve(len);
+        Unsafe.getUnsafe().putInt(p, MAGIC);
+        Unsafe.getUnsafe().putInt(p + 4, columnCount);
+        p += 8;
+        for (int i = 0; i < columnCount; i++) {
+            RecordColumnMetadata m = metadata.getColumnQuick(i);
+            Unsafe.getUnsafe().putInt(p, m.getType());
+            p = putStr(p + 4, m.getName());
+        }
+    }
+
+    private static long putStr(long p, CharSequence value) {
+        int len = value.length();
+        Unsafe.getUnsafe().putInt(p, len);
+        p += 4;
+        for (int i = 0; i < len; i++) {
+            Unsafe.getUnsafe().putChar(p, value.charAt(i));
+            p += 2;
+        }
+        return p;
+    }
+
+    private void sendDone(ChunkedResponse r, BinaryHandlerContext ctx) throws DisconnectedChannelException, SlowWritableChannelException {
+        if (ctx.count > -1) {
+            r.bookmark();
+            Unsafe.getUnsafe().putInt(r.reserve(4), 0);
+            ctx.count = -1;
+            r.sendChunk();
+        }
+        r.done();
+    }
+
+    private static class PageBuffer extends DirectMemoryStructure implements Mutable {
+        private long pos;
+
+        private PageBuffer() {
+            this.address = Unsafe.malloc(this.capacity = 1024);
+            this.pos = address;
+        }
+
+        @Override
+        public void clear() {
+            pos = address;
+        }
+
+        private long copyTo(long p) {
+            long len = size();
+            Unsafe.getUnsafe().copyMemory(address, p, len);
+            return p + len;
+        }
+
+        private long ensure(long len) {
+            if (pos + len > address + capacity) {
+                long size = size();
+                long cap = Math.max(capacity * 2, size + len);
+                long a = Unsafe.malloc(cap);
+                Unsafe.getUnsafe().copyMemory(address, a, size);
+                Unsafe.free(address, capacity);
+                this.address = a;
+                this.capacity = cap;
+                this.pos = a + size;
+            }
+            long p = pos;
+            pos += len;
+            return p;
+        }
+
+        private void put(byte value) {
+            Unsafe.getUnsafe().putByte(ensure(1), value);
+        }
+
+        private void putDouble(double value) {
+            Unsafe.getUnsafe().putDouble(ensure(8), value);
+        }
+
+        private void putFloat(float value) {
+            Unsafe.getUnsafe().putFloat(ensure(4), value);
+        }
+
+        private void putInt(int value) {
+            Unsafe.getUnsafe().putInt(ensure(4), value);
+        }
+
+        private void putLong(long value) {
+            Unsafe.getUnsafe().putLong(ensure(8), value);
+        }
+
+        private void putShort(short value) {
+            Unsafe.getUnsafe().putShort(ensure(2), value);
+        }
+
+        private void putStr(CharSequence value) {
+            if (value == null) {
+                putInt(-1);
+            } else {
+                BinaryHandler.putStr(ensure(4 + value.length() * 2), value);
+            }
+        }
+
+        private long size() {
+            return pos - address;
+        }
+    }
+
+    private static class BinaryHandlerContext extends AbstractQueryContext {
+        private final ObjList<PageBuffer> values = new ObjList<>();
+        private final ObjList<PageBuffer> dictionaries = new ObjList<>();
+        private final ObjList<CharSequenceIntHashMap> symbolKeys = new ObjList<>();
+        private final IntList types = new IntList();
+        private int rows;
+        private long pageSize;
+        private int fixedRowSize;
+        private boolean exhausted;
+        // row that did not fit previous page
+        private Record pending;
+
+        public BinaryHandlerContext(long fd, int cyclesBeforeCancel) {
+            super(fd, cyclesBeforeCancel);
+            queryState = QUERY_METADATA;
+        }
+
+        @Override
+        public void clear() {
+            super.clear();
+            queryState = QUERY_METADATA;
+            rows = 0;
+            exhausted = false;
+            pending = null;
+            types.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            super.close();
+            for (int i = 0, n = values.size(); i < n; i++) {
+                Misc.free(values.getQuick(i));
+                Misc.free(dictionaries.getQuick(i));
+            }
+            values.clear();
+            dictionaries.clear();
+            symbolKeys.clear();
+        }
+
+        @Override
+        protected void header(ChunkedResponse r, int code) throws DisconnectedChannelException, SlowWritableChannelException {
+            queryState = QUERY_METADATA;
+            r.status(code, "application/octet-stream");
+            r.sendHeader();
+        }
+
+        @Override
+        protected void sendException(ChunkedResponse r, int position, CharSequence message, int status) throws DisconnectedChannelException, SlowWritableChannelException {
+            r.status(status, "text/plain; charset=utf-8");
+            r.sendHeader();
+            r.put("Error at(").put(position).put("): ").put(message).put(Misc.EOL);
+            r.sendChunk();
+            r.done();
+        }
+
+        private void append(Record rec) {
+            for (int i = 0, n = types.size(); i < n; i++) {
+                PageBuffer b = values.getQuick(i);
+                switch (types.getQuick(i)) {
+                    case ColumnType.BOOLEAN:
+                        b.put((byte) (rec.getBool(i) ? 1 : 0));
+                        break;
+                    case ColumnType.BYTE:
+                        b.put(rec.get(i));
+                        break;
+                    case ColumnType.DOUBLE:
+                        b.putDouble(rec.getDouble(i));
+                        break;
+                    case ColumnType.FLOAT:
+                        b.putFloat(rec.getFloat(i));
+                        break;
+                    case ColumnType.INT:
+                        b.putInt(rec.getInt(i));
+                        break;
+                    case ColumnType.LONG:
+                        b.putLong(rec.getLong(i));
+                        break;
+                    case ColumnType.DATE:
+                        b.putLong(rec.getDate(i));
+                        break;
+                    case ColumnType.SHORT:
+                        b.putShort(rec.getShort(i));
+                        break;
+                    case ColumnType.STRING:
+                        b.putStr(rec.getFlyweightStr(i));
+                        break;
+                    case ColumnType.SYMBOL:
+                        b.putInt(symbolKey(i, rec.getSym(i)));
+                        break;
+                    case ColumnType.BINARY:
+                        DirectInputStream in = rec.getBin(i);
+                        if (in == null) {
+                            b.putInt(-1);
+                        } else {
+                            int len = (int) in.size();
+                            b.putInt(len);
+                            in.copyTo(b.ensure(len), 0, len);
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+            rows++;
+        }
+
+        private void of(RecordMetadata metadata) {
+            types.clear();
+            fixedRowSize = 0;
+            for (int i = 0, n = metadata.getColumnCount(); i < n; i++) {
+                int type = metadata.getColumnQuick(i).getType();
+                types.add(type);
+                switch (type) {
+                    case ColumnType.BOOLEAN:
+                    case ColumnType.BYTE:
+                        fixedRowSize += 1;
+                        break;
+                    case ColumnType.SHORT:
+                        fixedRowSize += 2;
+                        break;
+                    case ColumnType.INT:
+                    case ColumnType.FLOAT:
+                    case ColumnType.SYMBOL:
+                    case ColumnType.STRING:
+                    case ColumnType.BINARY:
+                        fixedRowSize += 4;
+                        break;
+                    case ColumnType.LONG:
+                    case ColumnType.DATE:
+                    case ColumnType.DOUBLE:
+                        fixedRowSize += 8;
+                        break;
+                    default:
+                        break;
+                }
+                if (i == values.size()) {
+                    values.add(new PageBuffer());
+                    dictionaries.add(new PageBuffer());
+                    symbolKeys.add(new CharSequenceIntHashMap());
+                }
+            }
+        }
+
+        private long pageHeaderSize() {
+            long size = 8;
+            for (int i = 0, n = types.size(); i < n; i++) {
+                switch (types.getQuick(i)) {
+                    case ColumnType.SYMBOL:
+                    case ColumnType.STRING:
+                    case ColumnType.BINARY:
+                        size += 4;
+                        break;
+                    default:
+                        break;
+                }
+            }
+            return size;
+        }
+
+        private void putPage(ChunkedResponse r) {
+            int size = (int) pageSize;
+            long p = r.reserve(size);
+            Unsafe.getUnsafe().putInt(p, size - 4);
+            Unsafe.getUnsafe().putInt(p + 4, rows);
+            p += 8;
+            for (int i = 0, n = types.size(); i < n; i++) {
+                PageBuffer b = values.getQuick(i);
+                switch (types.getQuick(i)) {
+                    case ColumnType.SYMBOL:
+                        Unsafe.getUnsafe().putInt(p, symbolKeys.getQuick(i).size());
+                        p = dictionaries.getQuick(i).copyTo(p + 4);
+                        break;
+                    case ColumnType.STRING:
+                    case ColumnType.BINARY:
+                        Unsafe.getUnsafe().putInt(p, (int) b.size());
+                        p += 4;
+                        break;
+                    default:
+                        break;
+                }
+                p = b.copyTo(p);
+            }
+        }
+
+        /**
+         * Number of bytes record would add to current page, including new dictionary entries of symbols.
+         */
+        private long rowSize(Record rec) {
+            long size = fixedRowSize;
+            for (int i = 0, n = types.size(); i < n; i++) {
+                switch (types.getQuick(i)) {
+                    case ColumnType.STRING:
+                        CharSequence str = rec.getFlyweightStr(i);
+                        if (str != null) {
+                            size += str.length() * 2;
+                        }
+                        break;
+                    case ColumnType.SYMBOL:
+                        CharSequence sym = rec.getSym(i);
+                        if (sym != null && symbolKeys.getQuick(i).get(sym) == -1) {
+                            size += 4 + sym.length() * 2;
+                        }
+                        break;
+                    case ColumnType.BINARY:
+                        DirectInputStream in = rec.getBin(i);
+                        if (in != null) {
+                            size += in.size();
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+            return size;
+        }
+
+        /**
+         * Collects rows of next page. Row that would take page over budget is kept for the next page,
+         * unless it is the first row of page, in which case it cannot be sent at all.
+         *
+         * @param budget max size of page in bytes
+         * @return false when there are no more rows to send
+         */
+        private boolean stage(int budget) {
+            rows = 0;
+            pageSize = pageHeaderSize();
+            for (int i = 0, n = types.size(); i < n; i++) {
+                values.getQuick(i).clear();
+                dictionaries.getQuick(i).clear();
+                symbolKeys.getQuick(i).clear();
+            }
+
+            while (true) {
+                Record rec = pending;
+                if (rec == null) {
+                    if (exhausted || !cursor.hasNext()) {
+                        exhausted = true;
+                        break;
+                    }
+                    rec = cursor.next();
+                    if (++count <= skip) {
+                        continue;
+                    }
+                    if (count > stop) {
+                        exhausted = true;
+                        break;
+                    }
+                }
+
+                long size = rowSize(rec);
+                if (rows > 0 && pageSize + size > budget) {
+                    pending = rec;
+                    break;
+                }
+                pending = null;
+                append(rec);
+                pageSize += size;
+            }
+            return rows > 0;
+        }
+
+        private int symbolKey(int col, CharSequence value) {
+            if (value == null) {
+                return -1;
+            }
+            CharSequenceIntHashMap keys = symbolKeys.getQuick(col);
+            int key = keys.get(value);
+            if (key == -1) {
+                keys.put(value, key = keys.size());
+                dictionaries.getQuick(col).putStr(value);
+            }
+            return key;
+        }
+    }
+}
@@ -35,6 +35,7 @@ import com.questdb.net.http.ContextHandler;
 import com.questdb.net.http.IOContext;
 import com.questdb.net.http.ServerConfiguration;
 import com.questdb.ql.Record;
+import com.questdb.ql.impl.parallel.QueryWorkerPool;
 import com.questdb.std.CharSink;
 import com.questdb.std.LocalValue;
 import com.questdb.std.Mutable;
@@ -52,11 +53,16 @@ public class CsvHandler implements ContextHandler {
     private final AtomicLong cacheHits = new AtomicLong();
     private final AtomicLong cacheMisses = new AtomicLong();
     private final ServerConfiguration configuration;
-
+    private final QueryWorkerPool workerPool;
 
     public CsvHandler(JournalFactoryPool factoryPool, ServerConfiguration configuration) {
+        this(factoryPool, configuration, null);
+    }
+
+    public CsvHandler(JournalFactoryPool factoryPool, ServerConfiguration configuration, QueryWorkerPool workerPool) {
         this.factoryPool = factoryPool;
         this.configuration = configuration;
+        this.workerPool = workerPool;
     }
 
     @Override
@@ -166,7 +172,7 @@ public class CsvHandler implements ContextHandler {
 
     @Override
     public void setupThread() {
-        AbstractQueryContext.setupThread(configuration);
+        AbstractQueryContext.setupThread(configuration, workerPool);
     }
 
 
@@ -35,6 +35,7 @@ import com.questdb.factory.configuration.JournalMetadata;
 import com.questdb.factory.configuration.RecordColumnMetadata;
 import com.questdb.io.parser.DelimitedTextParser;
 import com.questdb.io.parser.FormatParser;
+import com.questdb.io.parser.PipelinedTextParser;
 import com.questdb.io.parser.TextParser;
 import com.questdb.io.parser.listener.JournalImportListener;
 import com.questdb.misc.Chars;
@@ -43,6 +44,7 @@ import com.questdb.net.http.ChunkedResponse;
 import com.questdb.net.http.IOContext;
 import com.questdb.net.http.RequestHeaderBuffer;
 import com.questdb.net.http.ResponseSink;
+import com.questdb.net.http.ServerConfiguration;
 import com.questdb.std.*;
 import com.questdb.store.ColumnType;
 
@@ -65,9 +67,17 @@ public class ImportHandler extends AbstractMultipartHandler {
     private static final ThreadLocal<FormatParser> PARSER = new ThreadLocal<>();
     private final JournalFactory factory;
     private final LocalValue<ImportHandlerContext> lvContext = new LocalValue<>();
+    private final int importWorkers;
+    private final int importChunk;
 
     public ImportHandler(JournalFactory factory) {
+        this(factory, new ServerConfiguration());
+    }
+
+    public ImportHandler(JournalFactory factory, ServerConfiguration configuration) {
         this.factory = factory;
+        this.importWorkers = configuration.getDbImportWorkers();
+        this.importChunk = configuration.getDbImportChunk();
     }
 
     @Override
@@ -183,7 +193,7 @@ public class ImportHandler extends AbstractMultipartHandler {
     public void setup(IOContext context) {
         ImportHandlerContext h = lvContext.get(context);
         if (h == null) {
-            lvContext.set(context, new ImportHandlerContext(factory));
+            lvContext.set(context, new ImportHandlerContext(factory, importWorkers, importChunk));
         }
     }
 
@@ -388,13 +398,14 @@ public class ImportHandler extends AbstractMultipartHandler {
         public int columnIndex = 0;
         private boolean analysed = false;
         private boolean dataFormatValid = false;
-        private TextParser textParser = new DelimitedTextParser();
+        private TextParser textParser;
         private JournalImportListener importer;
         private int messagePart = MESSAGE_UNKNOWN;
         private int responseState = RESPONSE_PREFIX;
         private boolean json = false;
 
-        private ImportHandlerContext(JournalWriterFactory factory) {
+        private ImportHandlerContext(JournalWriterFactory factory, int importWorkers, int importChunk) {
+            this.textParser = importWorkers > 0 ? new PipelinedTextParser(importWorkers, importChunk) : new DelimitedTextParser();
             this.importer = new JournalImportListener(factory);
         }
 
@@ -35,6 +35,7 @@ import com.questdb.net.http.ContextHandler;
 import com.questdb.net.http.IOContext;
 import com.questdb.net.http.ServerConfiguration;
 import com.questdb.ql.Record;
+import com.questdb.ql.impl.parallel.QueryWorkerPool;
 import com.questdb.std.CharSink;
 import com.questdb.std.LocalValue;
 import com.questdb.store.ColumnType;
@@ -52,11 +53,81 @@ public class QueryHandler implements ContextHandler {
     private final AtomicLong cacheMisses = new AtomicLong();
     private final ServerConfiguration configuration;
     private final JournalFactory writerFactory;
+    private final QueryWorkerPool workerPool;
 
     public QueryHandler(JournalFactoryPool factoryPool, ServerConfiguration configuration, JournalFactory writerFactory) {
+        this(factoryPool, configuration, writerFactory, null);
+    }
+
+    public QueryHandler(JournalFactoryPool factoryPool, ServerConfiguration configuration, JournalFactory writerFactory, QueryWorkerPool workerPool) {
         this.factoryPool = factoryPool;
         this.configuration = configuration;
         this.writerFactory = writerFactory;
+        this.workerPool = workerPool;
+    }
+
+    /**
+     * Writes JSON representation of record column value to sink, same way query response does.
+     *
+     * @param sink target sink
+     * @param type column type
+     * @param rec  record
+     * @param col  column index
+     */
+    public static void putValue(CharSink sink, int type, Record rec, int col) {
+        switch (type) {
+            case ColumnType.BOOLEAN:
+                sink.put(rec.getBool(col));
+                break;
+            case ColumnType.BYTE:
+                sink.put(rec.get(col));
+                break;
+            case ColumnType.DOUBLE:
+                sink.putJson(rec.getDouble(col), 10);
+                break;
+            case ColumnType.FLOAT:
+                sink.putJson(rec.getFloat(col), 10);
+                break;
+            case ColumnType.INT:
+                final int i = rec.getInt(col);
+                if (i == Integer.MIN_VALUE) {
+                    sink.put("null");
+                } else {
+                    Numbers.append(sink, i);
+                }
+                break;
+            case ColumnType.LONG:
+                final long l = rec.getLong(col);
+                if (l == Long.MIN_VALUE) {
+                    sink.put("null");
+                } else {
+                    sink.put(l);
+                }
+                break;
+            case ColumnType.DATE:
+                final long d = rec.getDate(col);
+                if (d == Long.MIN_VALUE) {
+                    sink.put("null");
+                    break;
+                }
+                sink.put('"').putISODate(d).put('"');
+                break;
+            case ColumnType.SHORT:
+                sink.put(rec.getShort(col));
+                break;
+            case ColumnType.STRING:
+                putStringOrNull(sink, rec.getFlyweightStr(col));
+                break;
+            case ColumnType.SYMBOL:
+                putStringOrNull(sink, rec.getSym(col));
+                break;
+            case ColumnType.BINARY:
+                sink.put('[');
+                sink.put(']');
+                break;
+            default:
+                break;
+        }
     }
 
     @Override
@@ -204,63 +275,7 @@ public class QueryHandler implements ContextHandler {
 
     @Override
     public void setupThread() {
-        AbstractQueryContext.setupThread(configuration);
-    }
-
-    private static void putValue(CharSink sink, int type, Record rec, int col) {
-        switch (type) {
-            case ColumnType.BOOLEAN:
-                sink.put(rec.getBool(col));
-                break;
-            case ColumnType.BYTE:
-                sink.put(rec.get(col));
-                break;
-            case ColumnType.DOUBLE:
-                sink.putJson(rec.getDouble(col), 10);
-                break;
-            case ColumnType.FLOAT:
-                sink.putJson(rec.getFloat(col), 10);
-                break;
-            case ColumnType.INT:
-                final int i = rec.getInt(col);
-                if (i == Integer.MIN_VALUE) {
-                    sink.put("null");
-                } else {
-                    Numbers.append(sink, i);
-                }
-                break;
-            case ColumnType.LONG:
-                final long l = rec.getLong(col);
-                if (l == Long.MIN_VALUE) {
-                    sink.put("null");
-                } else {
-                    sink.put(l);
-                }
-                break;
-            case ColumnType.DATE:
-                final long d = rec.getDate(col);
-                if (d == Long.MIN_VALUE) {
-                    sink.put("null");
-                    break;
-                }
-                sink.put('"').putISODate(d).put('"');
-                break;
-            case ColumnType.SHORT:
-                sink.put(rec.getShort(col));
-                break;
-            case ColumnType.STRING:
-                putStringOrNull(sink, rec.getFlyweightStr(col));
-                break;
-            case ColumnType.SYMBOL:
-                putStringOrNull(sink, rec.getSym(col));
-                break;
-            case ColumnType.BINARY:
-                sink.put('[');
-                sink.put(']');
-                break;
-            default:
-                break;
-        }
+        AbstractQueryContext.setupThread(configuration, workerPool);
     }
 
     private static void putStringOrNull(CharSink r, CharSequence str) {
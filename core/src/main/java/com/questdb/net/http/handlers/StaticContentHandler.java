@@ -85,19 +85,26 @@ public class StaticContentHandler implements ContextHandler {
             return;
         }
 
-        FragmentedResponse r = context.fixedSizeResponse();
-        ByteBuffer out = r.out();
-        long wptr = ByteBuffers.getAddress(out);
-        int sz = out.remaining();
-
-        long l;
-        while (h.bytesSent < h.sendMax && (l = Files.read(h.fd, wptr, sz, h.bytesSent)) > 0) {
-            if (l + h.bytesSent > h.sendMax) {
-                l = h.sendMax - h.bytesSent;
+        FixedSizeResponse r = context.fixedSizeResponse();
+        if (r.isSendFileSupported()) {
+            // when socket would block exception leaves bytesSent where next attempt has to start from
+            while (h.bytesSent < h.sendMax) {
+                h.bytesSent += r.sendFile(h.fd, h.bytesSent, h.sendMax - h.bytesSent);
+            }
+        } else {
+            ByteBuffer out = r.out();
+            long wptr = ByteBuffers.getAddress(out);
+            int sz = out.remaining();
+
+            long l;
+            while (h.bytesSent < h.sendMax && (l = Files.read(h.fd, wptr, sz, h.bytesSent)) > 0) {
+                if (l + h.bytesSent > h.sendMax) {
+                    l = h.sendMax - h.bytesSent;
+                }
+                out.limit((int) l);
+                h.bytesSent += l;
+                r.sendChunk();
             }
-            out.limit((int) l);
-            h.bytesSent += l;
-            r.sendChunk();
         }
         r.done();
         // reached the end naturally?
@@ -208,7 +215,7 @@ public class StaticContentHandler implements ContextHandler {
             h.fd = fd;
             h.bytesSent = 0;
             final long length = Files.length(path);
-            h.sendMax = Long.MAX_VALUE;
+            h.sendMax = length;
 
             final FixedSizeResponse r = context.fixedSizeResponse();
             r.status(200, contentType, length);
@@ -0,0 +1,277 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.net.http.handlers;
+
+import com.questdb.Journal;
+import com.questdb.ex.JournalException;
+import com.questdb.ex.NumericException;
+import com.questdb.ex.ParkedContextException;
+import com.questdb.factory.JournalCachingFactory;
+import com.questdb.factory.JournalFactoryPool;
+import com.questdb.factory.configuration.JournalConfiguration;
+import com.questdb.log.Log;
+import com.questdb.log.LogFactory;
+import com.questdb.misc.Numbers;
+import com.questdb.mp.Sequence;
+import com.questdb.mp.WaitStrategy;
+import com.questdb.net.http.ContextHandler;
+import com.questdb.net.http.IOContext;
+import com.questdb.net.http.ResponseSink;
+import com.questdb.std.LocalValue;
+import com.questdb.std.Mutable;
+import com.questdb.store.TxEventBus;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Long poll for journal commits. Request names journal ("j") and last transaction known to client ("txn").
+ * Response is sent as soon as journal has newer transaction or when "timeout" milliseconds elapse, whichever
+ * comes first. Without "txn" current transaction is returned straight away.
+ * <p>
+ * Waiting request does not occupy IO thread. Context is parked with dispatcher and resumed when commit to
+ * requested journal is published to {@link TxEventBus} or when journal is due to be checked for commits,
+ * which are not published to the bus.
+ */
+public class TxPollHandler implements ContextHandler {
+    private static final Log LOG = LogFactory.getLog(TxPollHandler.class);
+    private static final long DEFAULT_TIMEOUT = 10000;
+    private static final long MAX_TIMEOUT = 60000;
+    private final JournalFactoryPool pool;
+    private final TxEventBus bus;
+    private final LocalValue<PollContext> lvContext = new LocalValue<>();
+
+    public TxPollHandler(JournalFactoryPool pool, TxEventBus bus) {
+        this.pool = pool;
+        this.bus = bus;
+    }
+
+    @Override
+    public void handle(IOContext context) throws IOException {
+        CharSequence journalName = context.request.getUrlParam("j");
+        if (journalName == null) {
+            context.simpleResponse().send(400, "Journal name expected");
+            return;
+        }
+
+        long txn;
+        long timeout;
+        try {
+            txn = parseLong(context.request.getUrlParam("txn"), Long.MAX_VALUE);
+            timeout = Math.min(parseLong(context.request.getUrlParam("timeout"), DEFAULT_TIMEOUT), MAX_TIMEOUT);
+        } catch (NumericException e) {
+            context.simpleResponse().send(400, "Invalid number");
+            return;
+        }
+
+        String name = journalName.toString();
+        PollContext pc = null;
+        if (txn != Long.MAX_VALUE) {
+            pc = lvContext.get(context);
+            if (pc == null) {
+                lvContext.set(context, pc = new PollContext(context));
+            }
+            // subscribe before journal is checked, so that commits made meanwhile are not missed
+            context.park(Math.min(timeout, bus.getCheckInterval()));
+            pc.subscribe(name, txn, timeout);
+        }
+
+        JournalCachingFactory factory;
+        try {
+            factory = pool.get();
+        } catch (InterruptedException e) {
+            sendError(context, pc, 500, "Server is shutting down");
+            return;
+        }
+
+        try {
+            if (factory.getConfiguration().exists(name) != JournalConfiguration.EXISTS) {
+                sendError(context, pc, 404, "Journal does not exist");
+                return;
+            }
+
+            Journal journal = factory.reader(name);
+            if (pc == null) {
+                send(context, journalName, journal.getTxn(), false);
+            } else {
+                pc.location = journal.getMetadata().getLocation();
+                if (journal.getTxn() > txn) {
+                    pc.clear();
+                    send(context, journalName, journal.getTxn(), true);
+                } else {
+                    throw ParkedContextException.INSTANCE;
+                }
+            }
+        } catch (JournalException e) {
+            LOG.error().$("Cannot open journal ").$(journalName).$(e).$();
+            sendError(context, pc, 500, e.getMessage());
+        } finally {
+            factory.close();
+        }
+    }
+
+    @Override
+    public void resume(IOContext context) throws IOException {
+        PollContext pc = lvContext.get(context);
+        if (pc == null || pc.sequence == null) {
+            // response is being written
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        context.park(Math.min(pc.deadline - now, bus.getCheckInterval()));
+
+        boolean check = now >= pc.nextCheck || now >= pc.deadline;
+        long cursor;
+        while ((cursor = pc.sequence.next()) > -1) {
+            check |= bus.isEventFor(cursor, pc.location);
+            pc.sequence.done(cursor);
+        }
+
+        // dropped event could have been ours
+        long dropped = bus.getDroppedCount();
+        if (dropped != pc.dropped) {
+            pc.dropped = dropped;
+            check = true;
+        }
+
+        if (!check) {
+            throw ParkedContextException.INSTANCE;
+        }
+        pc.nextCheck = now + bus.getCheckInterval();
+
+        JournalCachingFactory factory;
+        try {
+            factory = pool.get();
+        } catch (InterruptedException e) {
+            sendError(context, pc, 500, "Server is shutting down");
+            return;
+        }
+
+        try {
+            Journal journal = factory.reader(pc.name);
+            journal.refresh();
+            boolean changed = journal.getTxn() > pc.txn;
+            if (changed || now >= pc.deadline) {
+                pc.clear();
+                send(context, pc.name, journal.getTxn(), changed);
+            } else {
+                throw ParkedContextException.INSTANCE;
+            }
+        } catch (JournalException e) {
+            LOG.error().$("Cannot open journal ").$(pc.name).$(e).$();
+            sendError(context, pc, 500, e.getMessage());
+        } finally {
+            factory.close();
+        }
+    }
+
+    @Override
+    public void setupThread() {
+    }
+
+    private static long parseLong(CharSequence value, long defaultValue) throws NumericException {
+        return value == null ? defaultValue : Numbers.parseLong(value);
+    }
+
+    private static void send(IOContext context, CharSequence journalName, long txn, boolean changed) throws IOException {
+        ResponseSink r = context.responseSink();
+        r.status(200, "application/json");
+        r.put('{');
+        r.putQuoted("journal").put(':').putQuoted(journalName).put(',');
+        r.putQuoted("txn").put(':').put(txn).put(',');
+        r.putQuoted("changed").put(':').put(changed);
+        r.put('}');
+        r.flush();
+    }
+
+    private static void sendError(IOContext context, PollContext pc, int code, CharSequence message) throws IOException {
+        if (pc != null) {
+            pc.clear();
+        }
+        context.simpleResponse().send(code, message);
+    }
+
+    /**
+     * Subscription of parked request. Bus signals context on every commit, context is then resumed
+     * to check whether commit is to the requested journal.
+     */
+    private class PollContext implements WaitStrategy, Mutable, Closeable {
+        private final IOContext context;
+        private Sequence sequence;
+        private String name;
+        private String location;
+        private long txn;
+        private long deadline;
+        private long nextCheck;
+        private long dropped;
+
+        private PollContext(IOContext context) {
+            this.context = context;
+        }
+
+        @Override
+        public boolean acceptSignal() {
+            return true;
+        }
+
+        @Override
+        public void alert() {
+        }
+
+        @Override
+        public void await() {
+        }
+
+        @Override
+        public void signal() {
+            context.signal();
+        }
+
+        @Override
+        public void clear() {
+            if (sequence != null) {
+                bus.unsubscribe(sequence);
+                sequence = null;
+            }
+        }
+
+        @Override
+        public void close() {
+            clear();
+        }
+
+        private void subscribe(String name, long txn, long timeout) {
+            clear();
+            this.name = name;
+            this.txn = txn;
+            long now = System.currentTimeMillis();
+            this.deadline = now + timeout;
+            this.nextCheck = now + bus.getCheckInterval();
+            this.dropped = bus.getDroppedCount();
+            this.sequence = bus.subscribe(this);
+        }
+    }
+}
@@ -33,5 +33,17 @@ public interface AggregatorFunction {
 
     void clear();
 
+    /**
+     * Folds partial result, which another instance of this function has accumulated in its own map, into values.
+     * Partials are merged in row order, that is partial result always covers rows that follow rows already
+     * accumulated in values. When values.isNew() is true group has not been seen before and values
+     * must be initialised from partial result.
+     *
+     * @param partial       instance of this function, which computed partial result
+     * @param partialValues partial result
+     * @param values        values to merge partial result into
+     */
+    void merge(AggregatorFunction partial, DirectMapValues partialValues, DirectMapValues values);
+
     void prepare(ObjList<RecordColumnMetadata> columns, int offset);
 }
@@ -0,0 +1,43 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.ql;
+
+import com.questdb.ql.impl.map.DirectMapValues;
+import com.questdb.std.IntList;
+
+/**
+ * Aggregator function, which can consume rows a batch at a time by reading column vectors directly.
+ */
+public interface BatchAggregatorFunction extends AggregatorFunction {
+
+    /**
+     * Adds indexes of columns, vectors of which this function reads, to list.
+     *
+     * @param columns list of column indexes
+     * @return false when function cannot consume batches, e.g. when its argument is an expression rather than column.
+     */
+    boolean addBatchColumns(IntList columns);
+
+    void calculate(RecordBatch batch, DirectMapValues values);
+}
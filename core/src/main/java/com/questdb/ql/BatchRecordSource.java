@@ -0,0 +1,46 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.ql;
+
+import com.questdb.factory.JournalReaderFactory;
+import com.questdb.std.IntList;
+
+/**
+ * Record source, which can also return its rows in batches. Consumers that do not understand batches keep
+ * using {@link #prepareCursor(JournalReaderFactory, CancellationHandler)}.
+ */
+public interface BatchRecordSource extends RecordSource {
+
+    /**
+     * Prepares cursor, which returns same rows as record cursor of this source and in the same order, grouped
+     * into {@link RecordBatch} instances.
+     *
+     * @param factory             reader factory
+     * @param columns             indexes of fixed-width columns, which batches must expose as vectors
+     * @param cancellationHandler cancellation handler
+     * @return batch cursor or null when source cannot produce batches, in which case caller has to fall back
+     * to record cursor.
+     */
+    RecordBatchCursor prepareBatchCursor(JournalReaderFactory factory, IntList columns, CancellationHandler cancellationHandler);
+}
@@ -0,0 +1,145 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.ql;
+
+import com.questdb.Partition;
+import com.questdb.ql.impl.JournalRecord;
+import com.questdb.ql.ops.VirtualColumn;
+import com.questdb.std.LongList;
+
+/**
+ * Run of consecutive rows of single partition. Values of fixed-width columns, which consumer asked for, are
+ * exposed as vectors: {@link #getAddress(int)} is address of value of first row in batch and values of the
+ * following rows are laid out contiguously after it. Batch may carry selection, in which case only selected
+ * rows belong to batch. Rows are addressed by their offset from first row, which {@link #getRow(int)} returns.
+ */
+public class RecordBatch {
+    public static final int CAPACITY = 4096;
+
+    private final LongList addresses = new LongList();
+    private final int rows[] = new int[CAPACITY];
+    private final JournalRecord record = new JournalRecord();
+    private long lo;
+    private int count;
+    private int size;
+    private boolean dense;
+
+    /**
+     * Removes rows, for which filter is false, from batch.
+     *
+     * @param filter boolean expression
+     */
+    public void filter(VirtualColumn filter) {
+        int n = 0;
+        if (dense) {
+            for (int i = 0; i < count; i++) {
+                record.rowid = lo + i;
+                if (filter.getBool(record)) {
+                    rows[n++] = i;
+                }
+            }
+            dense = false;
+        } else {
+            for (int i = 0; i < size; i++) {
+                int r = rows[i];
+                record.rowid = lo + r;
+                if (filter.getBool(record)) {
+                    rows[n++] = r;
+                }
+            }
+        }
+        size = n;
+    }
+
+    /**
+     * @param columnIndex index of column
+     * @return address of value of first row in batch
+     */
+    public long getAddress(int columnIndex) {
+        return addresses.getQuick(columnIndex);
+    }
+
+    /**
+     * Positions record at i-th row of batch. Record is a flyweight shared by all rows.
+     *
+     * @param i row index, 0 to size()-1
+     * @return record
+     */
+    public Record getRecord(int i) {
+        record.rowid = lo + getRow(i);
+        return record;
+    }
+
+    /**
+     * @param i row index, 0 to size()-1
+     * @return offset of i-th row from first row of batch
+     */
+    public int getRow(int i) {
+        return dense ? i : rows[i];
+    }
+
+    /**
+     * @return true when all rows of batch are selected, in which case i-th row is at offset i.
+     */
+    public boolean isDense() {
+        return dense;
+    }
+
+    public void of(Partition partition, long lo, int count) {
+        this.record.partition = partition;
+        this.record.partitionIndex = partition.getPartitionIndex();
+        this.lo = lo;
+        this.count = count;
+        this.size = count;
+        this.dense = true;
+    }
+
+    public void setAddress(int columnIndex, long address) {
+        addresses.extendAndSet(columnIndex, address);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Keeps rows from lo (inclusive) to hi (exclusive) and removes the rest from batch.
+     *
+     * @param lo index of first row to keep
+     * @param hi index of row after last row to keep
+     */
+    public void trim(int lo, int hi) {
+        if (dense) {
+            if (lo > 0) {
+                for (int i = lo; i < hi; i++) {
+                    rows[i - lo] = i;
+                }
+                dense = false;
+            }
+        } else if (lo > 0) {
+            System.arraycopy(rows, lo, rows, 0, hi - lo);
+        }
+        size = hi - lo;
+    }
+}
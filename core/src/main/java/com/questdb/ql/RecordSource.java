@@ -27,11 +27,12 @@ import com.questdb.factory.JournalReaderFactory;
 import com.questdb.factory.configuration.RecordMetadata;
 import com.questdb.ql.ops.Parameter;
 import com.questdb.std.CharSequenceObjHashMap;
+import com.questdb.std.MemoryConsumer;
 import com.questdb.std.Sinkable;
 
 import java.io.Closeable;
 
-public interface RecordSource extends Sinkable, Closeable, RecordFactory {
+public interface RecordSource extends Sinkable, Closeable, RecordFactory, MemoryConsumer {
 
     @Override
     void close();
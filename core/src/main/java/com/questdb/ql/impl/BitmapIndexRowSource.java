@@ -0,0 +1,286 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.ql.impl;
+
+import com.questdb.Partition;
+import com.questdb.ex.JournalException;
+import com.questdb.ex.JournalRuntimeException;
+import com.questdb.factory.JournalReaderFactory;
+import com.questdb.factory.configuration.JournalMetadata;
+import com.questdb.ql.*;
+import com.questdb.std.CharSequenceHashSet;
+import com.questdb.std.CharSink;
+import com.questdb.std.IntList;
+import com.questdb.std.ObjList;
+import com.questdb.store.BitmapIndex;
+import com.questdb.store.SymbolTable;
+
+import java.util.Arrays;
+
+/**
+ * Rows of bitmap indexed symbol columns, which have one of included values and none of excluded
+ * values of every column. Bitmaps of keys are combined one chunk of rows at a time: included keys
+ * of column are OR-ed, columns are AND-ed and excluded keys are cleared. Chunks, where any of
+ * columns has no included keys, are skipped without being read.
+ */
+public class BitmapIndexRowSource implements RowSource, RowCursor {
+    private static final int CHUNK_SIZE = 1 << BitmapIndex.CHUNK_BITS;
+    private final ObjList<String> columns = new ObjList<>();
+    private final ObjList<CharSequenceHashSet> included = new ObjList<>();
+    private final ObjList<CharSequenceHashSet> excluded = new ObjList<>();
+    private final ObjList<IntList> includedKeys = new ObjList<>();
+    private final ObjList<IntList> excludedKeys = new ObjList<>();
+    private final ObjList<ObjList<BitmapIndex.Cursor>> includedCursors = new ObjList<>();
+    private final ObjList<ObjList<BitmapIndex.Cursor>> excludedCursors = new ObjList<>();
+    private final long words[] = new long[BitmapIndex.CHUNK_WORDS];
+    private final long columnWords[] = new long[BitmapIndex.CHUNK_WORDS];
+    private final int columnIndices[];
+    private boolean empty;
+    private long lo;
+    private long hi;
+    private int chunk;
+    private int lastChunk;
+    private long base;
+    private int wordIndex;
+    private long word;
+    private long rowid;
+    private boolean hasNext = false;
+
+    public BitmapIndexRowSource(ObjList<String> columns, ObjList<CharSequenceHashSet> included, ObjList<CharSequenceHashSet> excluded) {
+        for (int i = 0, n = columns.size(); i < n; i++) {
+            this.columns.add(columns.getQuick(i));
+            this.included.add(included.getQuick(i) == null ? null : new CharSequenceHashSet(included.getQuick(i)));
+            this.excluded.add(excluded.getQuick(i) == null ? null : new CharSequenceHashSet(excluded.getQuick(i)));
+            this.includedKeys.add(new IntList());
+            this.excludedKeys.add(new IntList());
+            this.includedCursors.add(new ObjList<BitmapIndex.Cursor>());
+            this.excludedCursors.add(new ObjList<BitmapIndex.Cursor>());
+        }
+        this.columnIndices = new int[columns.size()];
+    }
+
+    @Override
+    public void configure(JournalMetadata metadata) {
+        for (int i = 0, n = columns.size(); i < n; i++) {
+            columnIndices[i] = metadata.getColumnIndex(columns.getQuick(i));
+        }
+    }
+
+    @Override
+    public void prepare(JournalReaderFactory factory, StorageFacade facade, CancellationHandler cancellationHandler) {
+        empty = false;
+        for (int i = 0, n = columns.size(); i < n; i++) {
+            SymbolTable tab = facade.getSymbolTable(columnIndices[i]);
+            CharSequenceHashSet values = included.getQuick(i);
+            if (values != null && lookup(tab, values, includedKeys.getQuick(i), includedCursors.getQuick(i)) == 0) {
+                // column cannot have any of included values
+                empty = true;
+            }
+
+            values = excluded.getQuick(i);
+            if (values != null) {
+                lookup(tab, values, excludedKeys.getQuick(i), excludedCursors.getQuick(i));
+            }
+        }
+    }
+
+    @Override
+    public RowCursor prepareCursor(PartitionSlice slice) {
+        try {
+            Partition partition = slice.partition;
+            this.lo = slice.lo;
+            this.hi = slice.calcHi ? partition.open().size() : slice.hi + 1;
+            this.chunk = (int) (lo >>> BitmapIndex.CHUNK_BITS);
+            this.lastChunk = empty || hi <= lo ? -1 : (int) ((hi - 1) >>> BitmapIndex.CHUNK_BITS);
+            this.wordIndex = BitmapIndex.CHUNK_WORDS;
+            this.word = 0;
+            this.hasNext = false;
+
+            if (lastChunk > -1) {
+                for (int i = 0, n = columns.size(); i < n; i++) {
+                    BitmapIndex index = partition.getBitmapIndex(columnIndices[i]);
+                    of(index, includedKeys.getQuick(i), includedCursors.getQuick(i));
+                    of(index, excludedKeys.getQuick(i), excludedCursors.getQuick(i));
+                }
+            }
+        } catch (JournalException e) {
+            throw new JournalRuntimeException(e);
+        }
+        return this;
+    }
+
+    @Override
+    public void toTop() {
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (hasNext) {
+            return true;
+        }
+
+        while (true) {
+            if (word != 0) {
+                rowid = base + (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+                return hasNext = true;
+            }
+
+            if (++wordIndex < BitmapIndex.CHUNK_WORDS) {
+                word = words[wordIndex];
+            } else if (!nextChunk()) {
+                return false;
+            }
+        }
+    }
+
+    @Override
+    public long next() {
+        hasNext = false;
+        return rowid;
+    }
+
+    @Override
+    public void toSink(CharSink sink) {
+        sink.put('{');
+        sink.putQuoted("op").put(':').putQuoted("BitmapIndexRowSource").put(',');
+        sink.putQuoted("columns").put(':').put('[');
+        for (int i = 0, n = columns.size(); i < n; i++) {
+            if (i > 0) {
+                sink.put(',');
+            }
+            sink.putQuoted(columns.getQuick(i));
+        }
+        sink.put(']');
+        sink.put('}');
+    }
+
+    private static void of(BitmapIndex index, IntList keys, ObjList<BitmapIndex.Cursor> cursors) {
+        for (int i = 0, n = keys.size(); i < n; i++) {
+            cursors.getQuick(i).of(index, keys.getQuick(i));
+        }
+    }
+
+    private static int lookup(SymbolTable tab, CharSequenceHashSet values, IntList keys, ObjList<BitmapIndex.Cursor> cursors) {
+        keys.clear();
+        for (int i = 0, n = values.size(); i < n; i++) {
+            int key = tab.getQuick(values.get(i));
+            if (key > -1) {
+                keys.add(key);
+            }
+        }
+
+        while (cursors.size() < keys.size()) {
+            cursors.add(new BitmapIndex.Cursor());
+        }
+        return keys.size();
+    }
+
+    private boolean load(int c) {
+        boolean first = true;
+        for (int i = 0, n = columns.size(); i < n; i++) {
+            if (included.getQuick(i) == null) {
+                continue;
+            }
+
+            long target[] = first ? words : columnWords;
+            Arrays.fill(target, 0);
+            boolean found = false;
+            ObjList<BitmapIndex.Cursor> cursors = includedCursors.getQuick(i);
+            for (int k = 0, m = includedKeys.getQuick(i).size(); k < m; k++) {
+                found |= cursors.getQuick(k).or(c, target);
+            }
+
+            if (!found) {
+                return false;
+            }
+
+            if (!first) {
+                for (int k = 0; k < BitmapIndex.CHUNK_WORDS; k++) {
+                    words[k] &= columnWords[k];
+                }
+            }
+            first = false;
+        }
+
+        if (first) {
+            // only exclusions, start with all rows
+            Arrays.fill(words, -1L);
+        }
+
+        for (int i = 0, n = columns.size(); i < n; i++) {
+            ObjList<BitmapIndex.Cursor> cursors = excludedCursors.getQuick(i);
+            for (int k = 0, m = excludedKeys.getQuick(i).size(); k < m; k++) {
+                cursors.getQuick(k).andNot(c, words);
+            }
+        }
+
+        long chunkLo = (long) c << BitmapIndex.CHUNK_BITS;
+        if (lo > chunkLo) {
+            int n = (int) (lo - chunkLo);
+            Arrays.fill(words, 0, n >>> 6, 0);
+            words[n >>> 6] &= -1L << n;
+        }
+
+        if (hi < chunkLo + CHUNK_SIZE) {
+            int n = (int) (hi - chunkLo);
+            words[n >>> 6] &= (1L << n) - 1;
+            Arrays.fill(words, (n >>> 6) + 1, BitmapIndex.CHUNK_WORDS, 0);
+        }
+        return true;
+    }
+
+    private boolean nextChunk() {
+        while (chunk <= lastChunk) {
+            int c = chunk;
+            // chunk has to be present in included keys of every column
+            for (int i = 0, n = columns.size(); i < n; i++) {
+                if (included.getQuick(i) == null) {
+                    continue;
+                }
+
+                int next = Integer.MAX_VALUE;
+                ObjList<BitmapIndex.Cursor> cursors = includedCursors.getQuick(i);
+                for (int k = 0, m = includedKeys.getQuick(i).size(); k < m; k++) {
+                    next = Math.min(next, cursors.getQuick(k).seek(c));
+                }
+                c = Math.max(c, next);
+            }
+
+            if (c > lastChunk) {
+                break;
+            }
+
+            chunk = c + 1;
+            if (load(c)) {
+                base = (long) c << BitmapIndex.CHUNK_BITS;
+                wordIndex = -1;
+                word = 0;
+                return true;
+            }
+        }
+        chunk = lastChunk + 1;
+        return false;
+    }
+}
@@ -31,14 +31,16 @@ import com.questdb.ql.model.ExprNode;
 import com.questdb.ql.ops.AbstractCombinedRecordSource;
 import com.questdb.ql.ops.VirtualColumn;
 import com.questdb.std.CharSink;
+import com.questdb.std.IntList;
 
-public class FilteredRecordSource extends AbstractCombinedRecordSource {
+public class FilteredRecordSource extends AbstractCombinedRecordSource implements BatchRecordSource {
 
     private final RecordSource delegate;
     private final VirtualColumn filter;
     private final ExprNode filterNode;
     private RecordCursor cursor;
     private Record record;
+    private FilteredBatchCursor batchCursor;
 
     public FilteredRecordSource(RecordSource delegate, VirtualColumn filter, ExprNode filterNode) {
         this.delegate = delegate;
@@ -56,11 +58,35 @@ public class FilteredRecordSource extends AbstractCombinedRecordSource {
         Misc.free(delegate);
     }
 
+    @Override
+    public long getMemUsed() {
+        return delegate.getMemUsed();
+    }
+
     @Override
     public RecordMetadata getMetadata() {
         return delegate.getMetadata();
     }
 
+    @Override
+    public RecordBatchCursor prepareBatchCursor(JournalReaderFactory factory, IntList columns, CancellationHandler cancellationHandler) {
+        if (!(delegate instanceof BatchRecordSource)) {
+            return null;
+        }
+
+        RecordBatchCursor cursor = ((BatchRecordSource) delegate).prepareBatchCursor(factory, columns, cancellationHandler);
+        if (cursor == null) {
+            return null;
+        }
+
+        filter.prepare(cursor.getStorageFacade());
+        if (batchCursor == null) {
+            batchCursor = new FilteredBatchCursor();
+        }
+        batchCursor.cursor = cursor;
+        return batchCursor;
+    }
+
     @Override
     public RecordCursor prepareCursor(JournalReaderFactory factory, CancellationHandler cancellationHandler) {
         this.cursor = delegate.prepareCursor(factory, cancellationHandler);
@@ -127,4 +153,31 @@ public class FilteredRecordSource extends AbstractCombinedRecordSource {
     public StorageFacade getStorageFacade() {
         return cursor.getStorageFacade();
     }
+
+    private class FilteredBatchCursor implements RecordBatchCursor {
+        private RecordBatchCursor cursor;
+        private RecordBatch batch;
+
+        @Override
+        public StorageFacade getStorageFacade() {
+            return cursor.getStorageFacade();
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (cursor.hasNext()) {
+                batch = cursor.next();
+                batch.filter(filter);
+                if (batch.size() > 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public RecordBatch next() {
+            return batch;
+        }
+    }
 }
@@ -23,21 +23,30 @@
 
 package com.questdb.ql.impl;
 
+import com.questdb.Partition;
+import com.questdb.ex.JournalException;
+import com.questdb.ex.JournalRuntimeException;
 import com.questdb.factory.JournalReaderFactory;
 import com.questdb.factory.configuration.JournalMetadata;
 import com.questdb.factory.configuration.RecordMetadata;
 import com.questdb.misc.Rows;
 import com.questdb.ql.*;
 import com.questdb.ql.ops.AbstractCombinedRecordSource;
+import com.questdb.ql.ops.VirtualColumn;
 import com.questdb.std.CharSink;
+import com.questdb.std.IntList;
+import com.questdb.store.FixedColumn;
 
-public class JournalRecordSource extends AbstractCombinedRecordSource {
+public class JournalRecordSource extends AbstractCombinedRecordSource implements BatchRecordSource {
     private final PartitionSource partitionSource;
     private final RowSource rowSource;
     private final JournalRecord record;
     private final JournalMetadata metadata;
+    private final boolean batchable;
+    private final VirtualColumn batchFilter;
     private PartitionCursor partitionCursor;
     private RowCursor cursor;
+    private BatchCursor batchCursor;
 
     public JournalRecordSource(PartitionSource partitionSource, RowSource rowSource) {
         this.metadata = partitionSource.getMetadata();
@@ -45,17 +54,51 @@ public class JournalRecordSource extends AbstractCombinedRecordSource {
         this.partitionSource = partitionSource;
         rowSource.configure(partitionSource.getMetadata());
         this.rowSource = rowSource;
+
+        // batches are runs of consecutive rows, which only full scan, optionally filtered, can produce
+        if (rowSource instanceof AllRowSource) {
+            this.batchable = true;
+            this.batchFilter = null;
+        } else if (rowSource instanceof FilteredRowSource && ((FilteredRowSource) rowSource).getDelegate() instanceof AllRowSource) {
+            this.batchable = true;
+            this.batchFilter = ((FilteredRowSource) rowSource).getFilter();
+        } else {
+            this.batchable = false;
+            this.batchFilter = null;
+        }
     }
 
     @Override
     public void close() {
     }
 
+    @Override
+    public long getMemUsed() {
+        return 0;
+    }
+
     @Override
     public RecordMetadata getMetadata() {
         return metadata;
     }
 
+    @Override
+    public RecordBatchCursor prepareBatchCursor(JournalReaderFactory factory, IntList columns, CancellationHandler cancellationHandler) {
+        if (!batchable) {
+            return null;
+        }
+
+        if (batchCursor == null) {
+            batchCursor = new BatchCursor();
+        }
+
+        rowSource.toTop();
+        PartitionCursor partitionCursor = partitionSource.prepareCursor(factory);
+        this.rowSource.prepare(factory, partitionCursor.getStorageFacade(), cancellationHandler);
+        batchCursor.of(partitionCursor, columns, cancellationHandler);
+        return batchCursor;
+    }
+
     @Override
     public RecordCursor prepareCursor(JournalReaderFactory factory, CancellationHandler cancellationHandler) {
         rowSource.toTop();
@@ -151,4 +194,74 @@ public class JournalRecordSource extends AbstractCombinedRecordSource {
             record.partition = partitionCursor.getPartition(partIndex);
         }
     }
+
+    private class BatchCursor implements RecordBatchCursor {
+        private final RecordBatch batch = new RecordBatch();
+        private PartitionCursor partitionCursor;
+        private IntList columns;
+        private CancellationHandler cancellationHandler;
+        private Partition partition;
+        private long lo;
+        private long hi;
+
+        @Override
+        public StorageFacade getStorageFacade() {
+            return partitionCursor.getStorageFacade();
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (lo <= hi || nextSlice()) {
+                cancellationHandler.check();
+                long n = Math.min(hi - lo + 1, RecordBatch.CAPACITY);
+                for (int i = 0, k = columns.size(); i < k; i++) {
+                    int columnIndex = columns.getQuick(i);
+                    FixedColumn column = partition.fixCol(columnIndex);
+                    batch.setAddress(columnIndex, column.getVectorAddress(lo));
+                    n = Math.min(n, column.getVectorSize(lo));
+                }
+                batch.of(partition, lo, (int) n);
+                lo += n;
+
+                if (batchFilter != null) {
+                    batch.filter(batchFilter);
+                }
+
+                if (batch.size() > 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public RecordBatch next() {
+            return batch;
+        }
+
+        private boolean nextSlice() {
+            while (partitionCursor.hasNext()) {
+                PartitionSlice slice = partitionCursor.next();
+                try {
+                    partition = slice.partition.open();
+                } catch (JournalException e) {
+                    throw new JournalRuntimeException(e);
+                }
+                lo = slice.lo;
+                hi = slice.calcHi ? partition.size() - 1 : slice.hi;
+                if (lo <= hi) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void of(PartitionCursor partitionCursor, IntList columns, CancellationHandler cancellationHandler) {
+            this.partitionCursor = partitionCursor;
+            this.columns = columns;
+            this.cancellationHandler = cancellationHandler;
+            this.lo = 0;
+            this.hi = -1;
+        }
+    }
 }
@@ -44,6 +44,11 @@ public class NoOpJournalRecordSource extends AbstractCombinedRecordSource {
         Misc.free(delegate);
     }
 
+    @Override
+    public long getMemUsed() {
+        return delegate.getMemUsed();
+    }
+
     @Override
     public RecordMetadata getMetadata() {
         return delegate.getMetadata();
@@ -43,6 +43,11 @@ public class NoRowIdRecordSource extends AbstractRecordSource {
         Misc.free(delegate);
     }
 
+    @Override
+    public long getMemUsed() {
+        return delegate.getMemUsed();
+    }
+
     @Override
     public RecordMetadata getMetadata() {
         return delegate.getMetadata();
@@ -33,13 +33,14 @@ import com.questdb.ql.RecordCursor;
 import com.questdb.ql.StorageFacade;
 import com.questdb.std.AbstractImmutableIterator;
 import com.questdb.std.DirectInputStream;
+import com.questdb.std.MemoryConsumer;
 import com.questdb.std.MemoryPages;
 import com.questdb.std.Mutable;
 import com.questdb.store.ColumnType;
 
 import java.io.Closeable;
 
-public class RecordList extends AbstractImmutableIterator<Record> implements Closeable, RecordCursor, Mutable {
+public class RecordList extends AbstractImmutableIterator<Record> implements Closeable, RecordCursor, Mutable, MemoryConsumer {
     private final MemoryPages mem;
     private final RecordListRecord record;
     private final RecordMetadata metadata;
@@ -116,6 +117,11 @@ public class RecordList extends AbstractImmutableIterator<Record> implements Clo
         Misc.free(mem);
     }
 
+    @Override
+    public long getMemUsed() {
+        return mem.getMemUsed();
+    }
+
     public Record getRecord() {
         return record;
     }
@@ -0,0 +1,239 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.ql.impl;
+
+import com.questdb.Partition;
+import com.questdb.ex.JournalException;
+import com.questdb.ex.JournalRuntimeException;
+import com.questdb.factory.JournalReaderFactory;
+import com.questdb.factory.configuration.JournalMetadata;
+import com.questdb.ql.PartitionCursor;
+import com.questdb.ql.PartitionSlice;
+import com.questdb.ql.PartitionSource;
+import com.questdb.ql.StorageFacade;
+import com.questdb.ql.ops.VirtualColumn;
+import com.questdb.std.AbstractImmutableIterator;
+import com.questdb.std.CharSink;
+import com.questdb.std.ObjList;
+import com.questdb.store.ColumnType;
+import com.questdb.store.PartitionStats;
+
+/**
+ * Skips partitions, which min/max column statistics say cannot have rows satisfying all of
+ * given comparisons. Comparisons are not evaluated against rows, that is still done by filter.
+ * Partitions without statistics or with statistics not covering all visible rows are never skipped.
+ */
+public class StatsPartitionSource extends AbstractImmutableIterator<PartitionSlice> implements PartitionSource, PartitionCursor {
+    public static final int OP_EQ = 1;
+    public static final int OP_LT = 2;
+    public static final int OP_LTE = 3;
+    public static final int OP_GT = 4;
+    public static final int OP_GTE = 5;
+
+    private final PartitionSource partitionSource;
+    private final ObjList<Range> ranges = new ObjList<>();
+    private final PartitionStats stats;
+    private PartitionCursor partitionCursor;
+    private PartitionSlice slice;
+    private int skipCount;
+
+    public StatsPartitionSource(PartitionSource partitionSource) {
+        this.partitionSource = partitionSource;
+        this.stats = new PartitionStats(partitionSource.getMetadata());
+    }
+
+    public void add(int columnIndex, int op, VirtualColumn value) {
+        Range r = new Range();
+        r.columnIndex = columnIndex;
+        r.op = op;
+        r.value = value;
+        r.floatingPoint = stats.isFloatingPoint(columnIndex) || isFloatingPoint(value.getType());
+        ranges.add(r);
+    }
+
+    @Override
+    public JournalMetadata getMetadata() {
+        return partitionSource.getMetadata();
+    }
+
+    @Override
+    public PartitionCursor prepareCursor(JournalReaderFactory readerFactory) {
+        for (int i = 0, n = ranges.size(); i < n; i++) {
+            Range r = ranges.getQuick(i);
+            if (r.floatingPoint) {
+                r.doubleValue = getDouble(r.value);
+            } else {
+                r.longValue = getLong(r.value);
+            }
+        }
+        skipCount = 0;
+        partitionCursor = partitionSource.prepareCursor(readerFactory);
+        return this;
+    }
+
+    @Override
+    public Partition getPartition(int index) {
+        return partitionCursor.getPartition(index);
+    }
+
+    /**
+     * @return number of partitions skipped by last cursor.
+     */
+    public int getSkipCount() {
+        return skipCount;
+    }
+
+    @Override
+    public StorageFacade getStorageFacade() {
+        return partitionCursor.getStorageFacade();
+    }
+
+    public boolean isEmpty() {
+        return ranges.size() == 0;
+    }
+
+    @Override
+    public void toTop() {
+        skipCount = 0;
+        partitionCursor.toTop();
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (partitionCursor.hasNext()) {
+            slice = partitionCursor.next();
+            if (mayMatch(slice)) {
+                return true;
+            }
+            skipCount++;
+        }
+        return false;
+    }
+
+    @Override
+    public PartitionSlice next() {
+        return slice;
+    }
+
+    @Override
+    public void toSink(CharSink sink) {
+        sink.put('{');
+        sink.putQuoted("op").put(':').putQuoted("StatsPartitionSource").put(',');
+        sink.putQuoted("psrc").put(':').put(partitionSource);
+        sink.put('}');
+    }
+
+    private static double getDouble(VirtualColumn value) {
+        switch (value.getType()) {
+            case ColumnType.DOUBLE:
+                return value.getDouble(null);
+            case ColumnType.FLOAT:
+                return value.getFloat(null);
+            default:
+                return getLong(value);
+        }
+    }
+
+    private static long getLong(VirtualColumn value) {
+        switch (value.getType()) {
+            case ColumnType.BYTE:
+                return value.get(null);
+            case ColumnType.SHORT:
+                return value.getShort(null);
+            case ColumnType.INT:
+                return value.getInt(null);
+            default:
+                return value.getLong(null);
+        }
+    }
+
+    private static boolean isFloatingPoint(int type) {
+        return type == ColumnType.DOUBLE || type == ColumnType.FLOAT;
+    }
+
+    private static boolean mayMatch(int op, double v, double min, double max) {
+        switch (op) {
+            case OP_EQ:
+                return v >= min && v <= max;
+            case OP_LT:
+                return min < v;
+            case OP_LTE:
+                return min <= v;
+            case OP_GT:
+                return max > v;
+            default:
+                return max >= v;
+        }
+    }
+
+    private static boolean mayMatch(int op, long v, long min, long max) {
+        switch (op) {
+            case OP_EQ:
+                return v >= min && v <= max;
+            case OP_LT:
+                return min < v;
+            case OP_LTE:
+                return min <= v;
+            case OP_GT:
+                return max > v;
+            default:
+                return max >= v;
+        }
+    }
+
+    private boolean mayMatch(PartitionSlice slice) {
+        try {
+            Partition partition = slice.partition;
+            long size = slice.calcHi ? partition.open().size() : slice.hi + 1;
+            if (size == 0 || !stats.read(partition.getPartitionDir()) || stats.getRowCount() < size) {
+                return true;
+            }
+        } catch (JournalException e) {
+            throw new JournalRuntimeException(e);
+        }
+
+        for (int i = 0, n = ranges.size(); i < n; i++) {
+            Range r = ranges.getQuick(i);
+            if (r.floatingPoint) {
+                double v = r.doubleValue;
+                // NaN bound is not comparable with anything, leave it to filter
+                if (v == v && !mayMatch(r.op, v, stats.getDoubleMin(r.columnIndex), stats.getDoubleMax(r.columnIndex))) {
+                    return false;
+                }
+            } else if (!mayMatch(r.op, r.longValue, stats.getMin(r.columnIndex), stats.getMax(r.columnIndex))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static class Range {
+        int columnIndex;
+        int op;
+        boolean floatingPoint;
+        VirtualColumn value;
+        long longValue;
+        double doubleValue;
+    }
+}
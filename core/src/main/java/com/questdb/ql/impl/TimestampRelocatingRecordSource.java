@@ -49,6 +49,11 @@ public class TimestampRelocatingRecordSource extends AbstractRecordSource implem
         delegate.close();
     }
 
+    @Override
+    public long getMemUsed() {
+        return delegate.getMemUsed();
+    }
+
     @Override
     public RecordMetadata getMetadata() {
         return this;
@@ -30,8 +30,9 @@ import com.questdb.ql.*;
 import com.questdb.ql.ops.AbstractCombinedRecordSource;
 import com.questdb.ql.ops.VirtualColumn;
 import com.questdb.std.CharSink;
+import com.questdb.std.IntList;
 
-public class TopRecordSource extends AbstractCombinedRecordSource {
+public class TopRecordSource extends AbstractCombinedRecordSource implements BatchRecordSource {
 
     private final RecordSource delegate;
     private final VirtualColumn lo;
@@ -39,6 +40,7 @@ public class TopRecordSource extends AbstractCombinedRecordSource {
     private long _top;
     private long _count;
     private RecordCursor cursor;
+    private TopBatchCursor batchCursor;
 
     public TopRecordSource(RecordSource delegate, VirtualColumn lo, VirtualColumn hi) {
         this.delegate = delegate;
@@ -51,11 +53,36 @@ public class TopRecordSource extends AbstractCombinedRecordSource {
         Misc.free(delegate);
     }
 
+    @Override
+    public long getMemUsed() {
+        return delegate.getMemUsed();
+    }
+
     @Override
     public RecordMetadata getMetadata() {
         return delegate.getMetadata();
     }
 
+    @Override
+    public RecordBatchCursor prepareBatchCursor(JournalReaderFactory factory, IntList columns, CancellationHandler cancellationHandler) {
+        if (!(delegate instanceof BatchRecordSource)) {
+            return null;
+        }
+
+        RecordBatchCursor cursor = ((BatchRecordSource) delegate).prepareBatchCursor(factory, columns, cancellationHandler);
+        if (cursor == null) {
+            return null;
+        }
+
+        if (batchCursor == null) {
+            batchCursor = new TopBatchCursor();
+        }
+        batchCursor.cursor = cursor;
+        batchCursor.top = lo.getLong(null);
+        batchCursor.count = hi.getLong(null) - batchCursor.top;
+        return batchCursor;
+    }
+
     @Override
     public RecordCursor prepareCursor(JournalReaderFactory factory, CancellationHandler cancellationHandler) {
         this._top = lo.getLong(null);
@@ -136,4 +163,43 @@ public class TopRecordSource extends AbstractCombinedRecordSource {
         }
         return false;
     }
+
+    private static class TopBatchCursor implements RecordBatchCursor {
+        private RecordBatchCursor cursor;
+        private RecordBatch batch;
+        private long top;
+        private long count;
+
+        @Override
+        public StorageFacade getStorageFacade() {
+            return cursor.getStorageFacade();
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (count > 0 && cursor.hasNext()) {
+                batch = cursor.next();
+                int n = batch.size();
+                if (top >= n) {
+                    top -= n;
+                    continue;
+                }
+
+                int lo = (int) top;
+                int hi = (int) Math.min(n, top + count);
+                if (lo > 0 || hi < n) {
+                    batch.trim(lo, hi);
+                }
+                top = 0;
+                count -= hi - lo;
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public RecordBatch next() {
+            return batch;
+        }
+    }
 }
@@ -30,12 +30,20 @@ import com.questdb.factory.configuration.RecordMetadata;
 import com.questdb.misc.Misc;
 import com.questdb.ql.*;
 import com.questdb.ql.impl.map.*;
+import com.questdb.ql.impl.parallel.ParallelFilteredRecordSource;
+import com.questdb.ql.impl.parallel.ScanSink;
 import com.questdb.ql.ops.AbstractCombinedRecordSource;
 import com.questdb.std.*;
 
 import java.io.Closeable;
 import java.util.Iterator;
 
+/**
+ * Group-by over record source. When underlying source is {@link ParallelFilteredRecordSource} and there are
+ * copies of aggregator functions for its worker lanes, each lane aggregates its range of rows into its own
+ * map and partial maps are then merged, in lane order, into map of this source. Without group keys, when source
+ * can produce batches and all aggregator functions can consume them, rows are aggregated a batch at a time.
+ */
 public class AggregatedRecordSource extends AbstractCombinedRecordSource implements Closeable {
 
     private final DirectMap map;
@@ -46,6 +54,10 @@ public class AggregatedRecordSource extends AbstractCombinedRecordSource impleme
     private final DirectMapRecord record;
     private final ObjList<MapRecordValueInterceptor> interceptors;
     private final RecordKeyCopier copier;
+    private final ParallelFilteredRecordSource parallelSource;
+    private final ObjList<Partial> partials;
+    private final IntList batchColumns;
+    private final ObjList<BatchAggregatorFunction> batchAggregators;
     private ObjList<MapRecordValueInterceptor> interceptorWorkingSet;
     private RecordCursor cursor;
     private Iterator<DirectMapEntry> mapCursor;
@@ -56,6 +68,37 @@ public class AggregatedRecordSource extends AbstractCombinedRecordSource impleme
             ObjList<AggregatorFunction> aggregators,
             int pageSize,
             RecordKeyCopierCompiler compiler
+    ) {
+        this(recordSource, null, keyColumns, aggregators, null, pageSize, compiler);
+    }
+
+    /**
+     * @param recordSource    parallel scan to aggregate
+     * @param keyColumns      group keys
+     * @param aggregators     aggregator functions used by query thread
+     * @param laneAggregators independent copies of aggregator functions for each of worker lanes of record source
+     * @param pageSize        page size of aggregation maps
+     * @param compiler        key copier compiler
+     */
+    public AggregatedRecordSource(
+            ParallelFilteredRecordSource recordSource,
+            @Transient ObjHashSet<String> keyColumns,
+            ObjList<AggregatorFunction> aggregators,
+            ObjList<ObjList<AggregatorFunction>> laneAggregators,
+            int pageSize,
+            RecordKeyCopierCompiler compiler
+    ) {
+        this(recordSource, recordSource, keyColumns, aggregators, laneAggregators, pageSize, compiler);
+    }
+
+    private AggregatedRecordSource(
+            RecordSource recordSource,
+            ParallelFilteredRecordSource parallelSource,
+            @Transient ObjHashSet<String> keyColumns,
+            ObjList<AggregatorFunction> aggregators,
+            ObjList<ObjList<AggregatorFunction>> laneAggregators,
+            int pageSize,
+            RecordKeyCopierCompiler compiler
     ) {
         int keyColumnsSize = keyColumns.size();
         IntList keyIndices = new IntList(keyColumnsSize);
@@ -73,13 +116,9 @@ public class AggregatedRecordSource extends AbstractCombinedRecordSource impleme
         columns.clear();
 
         // take value columns from aggregator function
-        int index = 0;
+        prepareAggregators(aggregators, columns);
         for (int i = 0, sz = aggregators.size(); i < sz; i++) {
             AggregatorFunction func = aggregators.getQuick(i);
-            int n = columns.size();
-            func.prepare(columns, index);
-            index += columns.size() - n;
-
             if (func instanceof MapRecordValueInterceptor) {
                 if (interceptors == null) {
                     interceptors = new ObjList<>();
@@ -93,10 +132,48 @@ public class AggregatedRecordSource extends AbstractCombinedRecordSource impleme
         this.map = new DirectMap(pageSize, keyColumnsSize, AggregationUtils.toThreadLocalTypes(columns));
         this.recordSource = recordSource;
         this.record = new DirectMapRecord(storageFacade);
+        this.parallelSource = parallelSource;
+
+        if (parallelSource != null) {
+            this.partials = new ObjList<>(laneAggregators.size() + 1);
+            // query thread aggregates straight into final map
+            this.partials.add(new Partial(map, aggregators));
+            for (int i = 0, n = laneAggregators.size(); i < n; i++) {
+                ObjList<AggregatorFunction> funcs = laneAggregators.getQuick(i);
+                columns.clear();
+                prepareAggregators(funcs, columns);
+                this.partials.add(new Partial(new DirectMap(pageSize, keyColumnsSize, AggregationUtils.toThreadLocalTypes(columns)), funcs));
+            }
+        } else {
+            this.partials = null;
+        }
+
+        if (parallelSource == null && keyColumnsSize == 0 && recordSource instanceof BatchRecordSource) {
+            this.batchColumns = new IntList();
+            this.batchAggregators = new ObjList<>(aggregators.size());
+            for (int i = 0, n = aggregators.size(); i < n; i++) {
+                AggregatorFunction func = aggregators.getQuick(i);
+                if (func instanceof BatchAggregatorFunction && ((BatchAggregatorFunction) func).addBatchColumns(batchColumns)) {
+                    batchAggregators.add((BatchAggregatorFunction) func);
+                } else {
+                    batchAggregators.clear();
+                    break;
+                }
+            }
+        } else {
+            this.batchColumns = null;
+            this.batchAggregators = null;
+        }
     }
 
     @Override
     public void close() {
+        if (partials != null) {
+            for (int i = 1, n = partials.size(); i < n; i++) {
+                partials.getQuick(i).close();
+            }
+            partials.clear();
+        }
         Misc.free(this.map);
         Misc.free(recordSource);
         for (int i = 0, n = aggregators.size(); i < n; i++) {
@@ -105,6 +182,25 @@ public class AggregatedRecordSource extends AbstractCombinedRecordSource impleme
         aggregators.clear();
     }
 
+    @Override
+    public long getMemUsed() {
+        long size = map.getMemUsed() + recordSource.getMemUsed();
+        for (int i = 0, n = aggregators.size(); i < n; i++) {
+            size += Misc.getMemUsed(aggregators.getQuick(i));
+        }
+        if (partials != null) {
+            // first partial is this source's map and aggregators
+            for (int i = 1, n = partials.size(); i < n; i++) {
+                Partial p = partials.getQuick(i);
+                size += p.map.getMemUsed();
+                for (int k = 0, m = p.aggregators.size(); k < m; k++) {
+                    size += Misc.getMemUsed(p.aggregators.getQuick(k));
+                }
+            }
+        }
+        return size;
+    }
+
     @Override
     public RecordMetadata getMetadata() {
         return metadata;
@@ -114,8 +210,22 @@ public class AggregatedRecordSource extends AbstractCombinedRecordSource impleme
     public RecordCursor prepareCursor(JournalReaderFactory factory, CancellationHandler cancellationHandler) {
         this.interceptorWorkingSet = interceptors;
         map.clear();
+        if (parallelSource != null) {
+            buildMapParallel(factory, cancellationHandler);
+            return this;
+        }
+
+        if (batchAggregators != null && batchAggregators.size() > 0) {
+            RecordBatchCursor batchCursor = ((BatchRecordSource) recordSource).prepareBatchCursor(factory, batchColumns, cancellationHandler);
+            if (batchCursor != null) {
+                this.storageFacade.prepare(batchCursor.getStorageFacade());
+                buildMapBatched(batchCursor, cancellationHandler);
+                return this;
+            }
+        }
+
         this.cursor = recordSource.prepareCursor(factory, cancellationHandler);
-        this.storageFacade.prepare(this.cursor);
+        this.storageFacade.prepare(this.cursor.getStorageFacade());
         buildMap(cancellationHandler);
         return this;
     }
@@ -199,9 +309,93 @@ public class AggregatedRecordSource extends AbstractCombinedRecordSource impleme
         mapCursor = map.iterator();
     }
 
+    private void buildMapBatched(RecordBatchCursor cursor, CancellationHandler cancellationHandler) {
+        int sz = batchAggregators.size();
+        while (cursor.hasNext()) {
+            cancellationHandler.check();
+            RecordBatch batch = cursor.next();
+            DirectMapValues values = map.getOrCreateValues(map.keyWriter());
+            for (int i = 0; i < sz; i++) {
+                batchAggregators.getQuick(i).calculate(batch, values);
+            }
+        }
+        mapCursor = map.iterator();
+    }
+
+    private void buildMapParallel(JournalReaderFactory factory, CancellationHandler cancellationHandler) {
+        for (int i = 1, n = partials.size(); i < n; i++) {
+            partials.getQuick(i).clear();
+        }
+
+        parallelSource.scan(factory, partials, cancellationHandler);
+        this.cursor = parallelSource;
+        this.storageFacade.prepare(parallelSource.getStorageFacade());
+
+        int sz = aggregators.size();
+        for (int i = 1, n = partials.size(); i < n; i++) {
+            Partial partial = partials.getQuick(i);
+            for (DirectMapEntry e : partial.map) {
+                cancellationHandler.check();
+                DirectMap.KeyWriter kw = map.keyWriter();
+                kw.putKey(e);
+                DirectMapValues values = map.getOrCreateValues(kw);
+                DirectMapValues partialValues = e.values();
+                for (int k = 0; k < sz; k++) {
+                    aggregators.getQuick(k).merge(partial.aggregators.getQuick(k), partialValues, values);
+                }
+            }
+        }
+        mapCursor = map.iterator();
+    }
+
     private void notifyInterceptors(DirectMapEntry entry) {
         for (int i = 0, n = interceptorWorkingSet.size(); i < n; i++) {
             interceptors.getQuick(i).beforeRecord(entry.values());
         }
     }
+
+    private static void prepareAggregators(ObjList<AggregatorFunction> aggregators, ObjList<RecordColumnMetadata> columns) {
+        int index = 0;
+        for (int i = 0, sz = aggregators.size(); i < sz; i++) {
+            AggregatorFunction func = aggregators.getQuick(i);
+            int n = columns.size();
+            func.prepare(columns, index);
+            index += columns.size() - n;
+        }
+    }
+
+    private class Partial implements ScanSink, Closeable {
+        private final DirectMap map;
+        private final ObjList<AggregatorFunction> aggregators;
+
+        private Partial(DirectMap map, ObjList<AggregatorFunction> aggregators) {
+            this.map = map;
+            this.aggregators = aggregators;
+        }
+
+        @Override
+        public void accept(Record record) {
+            DirectMap.KeyWriter kw = map.keyWriter();
+            copier.copy(record, kw);
+            DirectMapValues values = map.getOrCreateValues(kw);
+            for (int i = 0, n = aggregators.size(); i < n; i++) {
+                aggregators.getQuick(i).calculate(record, values);
+            }
+        }
+
+        @Override
+        public void close() {
+            Misc.free(map);
+            for (int i = 0, n = aggregators.size(); i < n; i++) {
+                Misc.free(aggregators.getQuick(i));
+            }
+        }
+
+        private void clear() {
+            map.clear();
+            for (int i = 0, n = aggregators.size(); i < n; i++) {
+                aggregators.getQuick(i).clear();
+            }
+        }
+    }
 }
@@ -52,6 +52,11 @@ public class CountRecordSource extends AbstractCombinedRecordSource {
     public void close() {
     }
 
+    @Override
+    public long getMemUsed() {
+        return 0;
+    }
+
     @Override
     public RecordMetadata getMetadata() {
         return metadata;
@@ -116,6 +116,15 @@ public class ResampledRecordSource extends AbstractCombinedRecordSource {
         aggregators.clear();
     }
 
+    @Override
+    public long getMemUsed() {
+        long size = map.getMemUsed() + recordSource.getMemUsed();
+        for (int i = 0, n = aggregators.size(); i < n; i++) {
+            size += Misc.getMemUsed(aggregators.getQuick(i));
+        }
+        return size;
+    }
+
     @Override
     public RecordMetadata getMetadata() {
         return metadata;
@@ -127,7 +136,7 @@ public class ResampledRecordSource extends AbstractCombinedRecordSource {
         nextRecord = null;
         mapCursor = null;
         this.recordCursor = recordSource.prepareCursor(factory, cancellationHandler);
-        this.storageFacade.prepare(this.recordCursor);
+        this.storageFacade.prepare(this.recordCursor.getStorageFacade());
         return this;
     }
 
@@ -33,12 +33,13 @@ import com.questdb.ql.impl.map.DirectMapValues;
 import com.questdb.ql.impl.map.MapUtils;
 import com.questdb.ql.ops.VirtualColumn;
 import com.questdb.std.CharSink;
+import com.questdb.std.MemoryConsumer;
 import com.questdb.store.SymbolTable;
 
 import java.io.Closeable;
 import java.io.IOException;
 
-public abstract class AbstractOrderedAnalyticFunction implements AnalyticFunction, Closeable {
+public abstract class AbstractOrderedAnalyticFunction implements AnalyticFunction, Closeable, MemoryConsumer {
 
     protected final DirectMap map;
     private final VirtualColumn valueColumn;
@@ -106,6 +107,11 @@ public abstract class AbstractOrderedAnalyticFunction implements AnalyticFunctio
         return valueColumn.getLong(out);
     }
 
+    @Override
+    public long getMemUsed() {
+        return map.getMemUsed();
+    }
+
     @Override
     public RecordColumnMetadata getMetadata() {
         return valueColumn;
@@ -69,6 +69,15 @@ public class AnalyticRecordSource extends AbstractCombinedRecordSource {
         }
     }
 
+    @Override
+    public long getMemUsed() {
+        long size = delegate.getMemUsed();
+        for (int i = 0, n = functions.size(); i < n; i++) {
+            size += Misc.getMemUsed(functions.getQuick(i));
+        }
+        return size;
+    }
+
     @Override
     public RecordMetadata getMetadata() {
         return metadata;
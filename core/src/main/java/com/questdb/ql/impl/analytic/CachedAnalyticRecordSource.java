@@ -109,6 +109,18 @@ public class CachedAnalyticRecordSource extends AbstractCombinedRecordSource {
         closed = true;
     }
 
+    @Override
+    public long getMemUsed() {
+        long size = recordSource.getMemUsed() + recordList.getMemUsed();
+        for (int i = 0; i < orderGroupCount; i++) {
+            size += Misc.getMemUsed(orderedSources.getQuick(i));
+        }
+        for (int i = 0, n = functions.size(); i < n; i++) {
+            size += Misc.getMemUsed(functions.getQuick(i));
+        }
+        return size;
+    }
+
     @Override
     public RecordMetadata getMetadata() {
         return metadata;
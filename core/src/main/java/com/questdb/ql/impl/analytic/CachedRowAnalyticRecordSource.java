@@ -108,6 +108,18 @@ public class CachedRowAnalyticRecordSource extends AbstractCombinedRecordSource
 
     }
 
+    @Override
+    public long getMemUsed() {
+        long size = delegate.getMemUsed() + recordList.getMemUsed();
+        for (int i = 0, n = orderedSources.size(); i < n; i++) {
+            size += Misc.getMemUsed(orderedSources.getQuick(i));
+        }
+        for (int i = 0, n = functions.size(); i < n; i++) {
+            size += Misc.getMemUsed(functions.getQuick(i));
+        }
+        return size;
+    }
+
     @Override
     public RecordMetadata getMetadata() {
         return metadata;
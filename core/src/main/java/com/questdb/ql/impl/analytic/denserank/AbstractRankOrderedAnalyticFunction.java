@@ -28,11 +28,12 @@ import com.questdb.ql.Record;
 import com.questdb.ql.impl.analytic.AnalyticFunction;
 import com.questdb.ql.impl.map.DirectMap;
 import com.questdb.ql.impl.map.MapUtils;
+import com.questdb.std.MemoryConsumer;
 
 import java.io.Closeable;
 import java.io.IOException;
 
-public abstract class AbstractRankOrderedAnalyticFunction extends AbstractRankAnalyticFunction implements Closeable {
+public abstract class AbstractRankOrderedAnalyticFunction extends AbstractRankAnalyticFunction implements Closeable, MemoryConsumer {
 
     protected final DirectMap map;
     protected boolean closed = false;
@@ -51,6 +52,11 @@ public abstract class AbstractRankOrderedAnalyticFunction extends AbstractRankAn
         closed = true;
     }
 
+    @Override
+    public long getMemUsed() {
+        return map.getMemUsed();
+    }
+
     @Override
     public int getType() {
         return AnalyticFunction.TWO_PASS;
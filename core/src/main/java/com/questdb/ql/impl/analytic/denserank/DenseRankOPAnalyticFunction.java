@@ -65,6 +65,11 @@ public class DenseRankOPAnalyticFunction extends AbstractRankOrderedAnalyticFunc
         Misc.free(partitionMap);
     }
 
+    @Override
+    public long getMemUsed() {
+        return super.getMemUsed() + partitionMap.getMemUsed();
+    }
+
     @Override
     public void reset() {
         super.reset();
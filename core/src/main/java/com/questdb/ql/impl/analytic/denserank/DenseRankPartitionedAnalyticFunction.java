@@ -28,13 +28,14 @@ import com.questdb.ql.impl.map.DirectMap;
 import com.questdb.ql.impl.map.DirectMapValues;
 import com.questdb.ql.impl.map.MapUtils;
 import com.questdb.ql.ops.VirtualColumn;
+import com.questdb.std.MemoryConsumer;
 import com.questdb.std.ObjList;
 import com.questdb.store.ColumnType;
 
 import java.io.Closeable;
 import java.io.IOException;
 
-public class DenseRankPartitionedAnalyticFunction extends AbstractRankAnalyticFunction implements Closeable {
+public class DenseRankPartitionedAnalyticFunction extends AbstractRankAnalyticFunction implements Closeable, MemoryConsumer {
 
     private final DirectMap map;
     private final ObjList<VirtualColumn> partitionBy;
@@ -50,6 +51,11 @@ public class DenseRankPartitionedAnalyticFunction extends AbstractRankAnalyticFu
         map.close();
     }
 
+    @Override
+    public long getMemUsed() {
+        return map.getMemUsed();
+    }
+
     @Override
     public void prepareFor(Record rec) {
         DirectMapValues values = MapUtils.getMapValues(map, rec, partitionBy);
@@ -32,13 +32,14 @@ import com.questdb.ql.impl.NullRecord;
 import com.questdb.ql.impl.analytic.AnalyticFunction;
 import com.questdb.ql.ops.VirtualColumn;
 import com.questdb.std.CharSink;
+import com.questdb.std.MemoryConsumer;
 import com.questdb.std.MemoryPages;
 import com.questdb.store.ColumnType;
 import com.questdb.store.SymbolTable;
 
 import java.io.Closeable;
 
-public abstract class AbstractNextAnalyticFunction implements AnalyticFunction, Closeable {
+public abstract class AbstractNextAnalyticFunction implements AnalyticFunction, Closeable, MemoryConsumer {
 
     protected final MemoryPages pages;
     private final VirtualColumn valueColumn;
@@ -102,6 +103,11 @@ public abstract class AbstractNextAnalyticFunction implements AnalyticFunction,
         return valueColumn.getLong(next);
     }
 
+    @Override
+    public long getMemUsed() {
+        return pages.getMemUsed();
+    }
+
     @Override
     public RecordColumnMetadata getMetadata() {
         return valueColumn;
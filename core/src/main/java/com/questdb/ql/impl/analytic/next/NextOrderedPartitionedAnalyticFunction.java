@@ -71,6 +71,11 @@ public class NextOrderedPartitionedAnalyticFunction extends AbstractOrderedAnaly
         super.close();
     }
 
+    @Override
+    public long getMemUsed() {
+        return super.getMemUsed() + prevMap.getMemUsed();
+    }
+
     @Override
     public void reset() {
         prevMap.clear();
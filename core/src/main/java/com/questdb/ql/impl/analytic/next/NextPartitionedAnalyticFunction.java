@@ -61,6 +61,11 @@ public class NextPartitionedAnalyticFunction extends AbstractNextAnalyticFunctio
         Misc.free(map);
     }
 
+    @Override
+    public long getMemUsed() {
+        return super.getMemUsed() + map.getMemUsed();
+    }
+
     @Override
     public void reset() {
         super.reset();
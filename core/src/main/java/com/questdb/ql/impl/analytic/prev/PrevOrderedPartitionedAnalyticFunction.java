@@ -75,6 +75,11 @@ public class PrevOrderedPartitionedAnalyticFunction extends AbstractOrderedAnaly
         super.close();
     }
 
+    @Override
+    public long getMemUsed() {
+        return super.getMemUsed() + prevMap.getMemUsed();
+    }
+
     @Override
     public void reset() {
         prevMap.clear();
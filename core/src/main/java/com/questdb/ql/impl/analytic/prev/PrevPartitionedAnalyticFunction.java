@@ -31,13 +31,14 @@ import com.questdb.ql.impl.map.DirectMap;
 import com.questdb.ql.impl.map.DirectMapValues;
 import com.questdb.ql.impl.map.MapUtils;
 import com.questdb.ql.ops.VirtualColumn;
+import com.questdb.std.MemoryConsumer;
 import com.questdb.std.ObjList;
 import com.questdb.store.ColumnType;
 
 import java.io.Closeable;
 import java.io.IOException;
 
-public class PrevPartitionedAnalyticFunction extends AbstractPrevAnalyticFunction implements Closeable {
+public class PrevPartitionedAnalyticFunction extends AbstractPrevAnalyticFunction implements Closeable, MemoryConsumer {
     private final DirectMap map;
     private final ObjList<VirtualColumn> partitionBy;
 
@@ -47,6 +48,11 @@ public class PrevPartitionedAnalyticFunction extends AbstractPrevAnalyticFunctio
         this.map = new DirectMap(pageSize, partitionBy.size(), MapUtils.toTypeList(valueColumn.getType()));
     }
 
+    @Override
+    public long getMemUsed() {
+        return map.getMemUsed();
+    }
+
     @Override
     public void prepareFor(Record record) {
         DirectMapValues values = MapUtils.getMapValues(map, record, partitionBy);
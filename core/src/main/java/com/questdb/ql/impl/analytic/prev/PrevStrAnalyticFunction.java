@@ -32,13 +32,14 @@ import com.questdb.ql.impl.analytic.AnalyticFunction;
 import com.questdb.ql.ops.VirtualColumn;
 import com.questdb.std.CharSink;
 import com.questdb.std.DirectCharSequence;
+import com.questdb.std.MemoryConsumer;
 import com.questdb.store.MMappedSymbolTable;
 import com.questdb.store.VariableColumn;
 
 import java.io.Closeable;
 import java.io.IOException;
 
-public class PrevStrAnalyticFunction implements AnalyticFunction, Closeable {
+public class PrevStrAnalyticFunction implements AnalyticFunction, Closeable, MemoryConsumer {
     private final DirectCharSequence cs = new DirectCharSequence();
     private final DirectCharSequence csB = new DirectCharSequence();
     private final VirtualColumn valueColumn;
@@ -111,6 +112,11 @@ public class PrevStrAnalyticFunction implements AnalyticFunction, Closeable {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public long getMemUsed() {
+        return (bufASz + bufBSz) * 2L;
+    }
+
     @Override
     public RecordColumnMetadata getMetadata() {
         return valueColumn;
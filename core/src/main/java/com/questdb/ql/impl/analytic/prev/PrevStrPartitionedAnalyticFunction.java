@@ -38,6 +38,7 @@ import com.questdb.ql.impl.map.MapUtils;
 import com.questdb.ql.ops.VirtualColumn;
 import com.questdb.std.CharSink;
 import com.questdb.std.DirectCharSequence;
+import com.questdb.std.MemoryConsumer;
 import com.questdb.std.ObjList;
 import com.questdb.store.ColumnType;
 import com.questdb.store.MMappedSymbolTable;
@@ -46,7 +47,7 @@ import com.questdb.store.VariableColumn;
 import java.io.Closeable;
 import java.io.IOException;
 
-public class PrevStrPartitionedAnalyticFunction implements AnalyticFunction, Closeable {
+public class PrevStrPartitionedAnalyticFunction implements AnalyticFunction, Closeable, MemoryConsumer {
     private final DirectMap map;
     private final DirectCharSequence cs = new DirectCharSequence();
     private final DirectCharSequence csB = new DirectCharSequence();
@@ -54,6 +55,8 @@ public class PrevStrPartitionedAnalyticFunction implements AnalyticFunction, Clo
     private final VirtualColumn valueColumn;
     private long bufPtr = 0;
     private int bufPtrLen = 0;
+    // memory of strings stored in map
+    private long strMemUsed = 0;
     private boolean nextNull = true;
     private boolean closed = false;
 
@@ -112,6 +115,11 @@ public class PrevStrPartitionedAnalyticFunction implements AnalyticFunction, Clo
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public long getMemUsed() {
+        return map.getMemUsed() + bufPtrLen + strMemUsed;
+    }
+
     @Override
     public RecordColumnMetadata getMetadata() {
         return valueColumn;
@@ -174,6 +182,7 @@ public class PrevStrPartitionedAnalyticFunction implements AnalyticFunction, Clo
             copyToBuffer(ptr);
             if (toByteLen(str.length()) > len) {
                 Unsafe.free(ptr, len);
+                strMemUsed -= len;
                 store(str, values);
             } else {
                 Chars.put(ptr, str);
@@ -230,11 +239,13 @@ public class PrevStrPartitionedAnalyticFunction implements AnalyticFunction, Clo
         for (DirectMapEntry e : map) {
             Unsafe.free(e.getLong(0), e.getInt(1));
         }
+        strMemUsed = 0;
     }
 
     private void store(CharSequence str, DirectMapValues values) {
         int l = Numbers.ceilPow2(toByteLen(str.length()));
         long ptr = Unsafe.malloc(l);
+        strMemUsed += l;
         values.putLong(0, ptr);
         values.putInt(1, l);
         Chars.put(ptr, str);
@@ -33,13 +33,14 @@ import com.questdb.ql.impl.map.DirectMapValues;
 import com.questdb.ql.impl.map.MapUtils;
 import com.questdb.ql.ops.VirtualColumn;
 import com.questdb.std.CharSink;
+import com.questdb.std.MemoryConsumer;
 import com.questdb.std.ObjList;
 import com.questdb.store.ColumnType;
 
 import java.io.Closeable;
 import java.io.IOException;
 
-public class PrevStrRowPartitionedAnalyticFunction extends AbstractPrevAnalyticFunction implements Closeable {
+public class PrevStrRowPartitionedAnalyticFunction extends AbstractPrevAnalyticFunction implements Closeable, MemoryConsumer {
     private final DirectMap map;
     private final ObjList<VirtualColumn> partitionBy;
     private RecordCursor parent;
@@ -123,6 +124,11 @@ public class PrevStrRowPartitionedAnalyticFunction extends AbstractPrevAnalyticF
         return nextNull ? null : valueColumn.getSym(getParentRecord());
     }
 
+    @Override
+    public long getMemUsed() {
+        return map.getMemUsed();
+    }
+
     @Override
     public void prepare(RecordCursor cursor) {
         parent = cursor;
@@ -54,6 +54,11 @@ public class IntervalRecordSource extends AbstractCombinedRecordSource {
         Misc.free(delegate);
     }
 
+    @Override
+    public long getMemUsed() {
+        return delegate.getMemUsed();
+    }
+
     @Override
     public RecordMetadata getMetadata() {
         return delegate.getMetadata();
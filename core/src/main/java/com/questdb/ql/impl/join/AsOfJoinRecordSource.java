@@ -113,6 +113,11 @@ public class AsOfJoinRecordSource extends AbstractCombinedRecordSource implement
         Misc.free(slave);
     }
 
+    @Override
+    public long getMemUsed() {
+        return recordHolder.getMemUsed() + delayedHolder.getMemUsed() + master.getMemUsed() + slave.getMemUsed();
+    }
+
     @Override
     public RecordMetadata getMetadata() {
         return metadata;
@@ -116,6 +116,11 @@ public class AsOfPartitionedJoinRecordSource extends AbstractCombinedRecordSourc
         closed = true;
     }
 
+    @Override
+    public long getMemUsed() {
+        return map.getMemUsed() + holder.getMemUsed() + master.getMemUsed() + slave.getMemUsed();
+    }
+
     @Override
     public RecordMetadata getMetadata() {
         return metadata;
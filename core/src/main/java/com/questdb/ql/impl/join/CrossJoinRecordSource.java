@@ -61,6 +61,11 @@ public class CrossJoinRecordSource extends AbstractCombinedRecordSource {
         Misc.free(slaveSource);
     }
 
+    @Override
+    public long getMemUsed() {
+        return masterSource.getMemUsed() + slaveSource.getMemUsed();
+    }
+
     @Override
     public RecordMetadata getMetadata() {
         return metadata;
@@ -0,0 +1,653 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl.join;
+
+import com.questdb.JournalMode;
+import com.questdb.ex.JournalException;
+import com.questdb.ex.JournalRuntimeException;
+import com.questdb.factory.JournalReaderFactory;
+import com.questdb.factory.configuration.RecordMetadata;
+import com.questdb.log.Log;
+import com.questdb.log.LogFactory;
+import com.questdb.misc.Chars;
+import com.questdb.misc.Hash;
+import com.questdb.misc.Misc;
+import com.questdb.misc.Numbers;
+import com.questdb.misc.Unsafe;
+import com.questdb.ql.*;
+import com.questdb.ql.impl.NullableRecord;
+import com.questdb.ql.impl.SplitRecordMetadata;
+import com.questdb.ql.impl.parallel.QueryTask;
+import com.questdb.ql.impl.parallel.QueryWorkerPool;
+import com.questdb.ql.impl.sort.SpillRecord;
+import com.questdb.ql.ops.AbstractCombinedRecordSource;
+import com.questdb.std.CharSink;
+import com.questdb.std.IntList;
+import com.questdb.std.LongList;
+import com.questdb.std.ObjList;
+import com.questdb.store.ColumnType;
+import com.questdb.store.MemoryFile;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hash join, which does not need to hold slave in memory. Rows of both master and slave are copied into
+ * partitions by hash of join key. When partitions take more than memory limit, the largest one is written out
+ * to temporary file. Partitions are then joined independently: hash table is built from slave partition and
+ * probed with rows of master partition. Joins of partitions run on {@link QueryWorkerPool} threads, query thread
+ * consumes partitions in order and joins partition itself when it gets to one before workers do.
+ * <p>
+ * Join keys are copied by value, so that symbols of different journals can be compared without symbol tables.
+ * Rows are grouped by partition, hence they are not in order of master. Within partition master rows keep their
+ * order and so do rows of slave matching the same master row. Temporary files are created in journal base
+ * directory and removed when cursor is prepared again or source is closed.
+ */
+public class GraceHashJoinRecordSource extends AbstractCombinedRecordSource {
+    private static final Log LOG = LogFactory.getLog(GraceHashJoinRecordSource.class);
+    private static final AtomicLong ID = new AtomicLong();
+    private static final int MIN_BUFFER_SIZE = 4096;
+    private static final int SPILL_BIT_HINT = 22;
+    // partition entry: int hash, int key size, key, row
+    private static final int ENTRY_HEADER = 8;
+    private final RecordSource master;
+    private final RecordSource slave;
+    private final IntList masterColIndex;
+    private final IntList slaveColIndex;
+    private final boolean outer;
+    private final long memoryLimit;
+    private final QueryWorkerPool pool;
+    private final int partitionCount;
+    private final int partitionBits;
+    private final SplitRecordMetadata metadata;
+    private final SpillRecord masterRecord;
+    private final SpillRecord slaveRecord;
+    private final NullableRecord nullableRecord;
+    private final SplitRecord record;
+    private final SplitRecordStorageFacade storageFacade;
+    private final ObjList<Partition> masterPartitions;
+    private final ObjList<Partition> slavePartitions;
+    private final ObjList<JoinTask> tasks;
+    private final int window;
+    private long keyBuffer = 0;
+    private int keyBufferSize = 0;
+    private long memoryUsed = 0;
+    private RecordCursor masterCursor;
+    private RecordCursor slaveCursor;
+    private JoinTask current;
+    private int currentPartition;
+    private int currentPos;
+
+    /**
+     * @param master          master source
+     * @param masterColIndices join key columns of master
+     * @param slave           slave source
+     * @param slaveColIndices join key columns of slave, types must match those of master
+     * @param outer           true for outer join
+     * @param memoryLimit     approximate limit of memory taken by partitions, in bytes
+     * @param partitionCount  number of partitions, power of 2
+     * @param pool            worker pool, can be null, in which case partitions are joined by query thread
+     */
+    public GraceHashJoinRecordSource(
+            RecordSource master,
+            IntList masterColIndices,
+            RecordSource slave,
+            IntList slaveColIndices,
+            boolean outer,
+            long memoryLimit,
+            int partitionCount,
+            QueryWorkerPool pool
+    ) {
+        this.master = master;
+        this.slave = slave;
+        this.masterColIndex = masterColIndices;
+        this.slaveColIndex = slaveColIndices;
+        this.outer = outer;
+        this.memoryLimit = memoryLimit;
+        this.pool = pool;
+        this.partitionCount = Numbers.ceilPow2(partitionCount);
+        this.partitionBits = Numbers.msb(this.partitionCount);
+        this.metadata = new SplitRecordMetadata(master.getMetadata(), slave.getMetadata());
+        this.masterRecord = new SpillRecord(master.getMetadata());
+        this.slaveRecord = new SpillRecord(slave.getMetadata());
+        this.nullableRecord = new NullableRecord(slaveRecord);
+        this.record = new SplitRecord(master.getMetadata().getColumnCount(), slave.getMetadata().getColumnCount(), masterRecord, nullableRecord);
+        this.storageFacade = new SplitRecordStorageFacade(master.getMetadata().getColumnCount());
+        this.masterPartitions = new ObjList<>(this.partitionCount);
+        this.slavePartitions = new ObjList<>(this.partitionCount);
+        for (int i = 0; i < this.partitionCount; i++) {
+            masterPartitions.add(new Partition());
+            slavePartitions.add(new Partition());
+        }
+        this.window = pool == null ? 1 : (pool.getWorkerCount() + 1) * 2;
+        this.tasks = new ObjList<>(window);
+        for (int i = 0; i < window; i++) {
+            tasks.add(new JoinTask());
+        }
+    }
+
+    @Override
+    public void close() {
+        cancelTasks();
+        clear();
+        if (keyBuffer != 0) {
+            Unsafe.free(keyBuffer, keyBufferSize);
+            keyBuffer = 0;
+            keyBufferSize = 0;
+        }
+        Misc.free(master);
+        Misc.free(slave);
+    }
+
+    @Override
+    public long getMemUsed() {
+        return memoryUsed + keyBufferSize + master.getMemUsed() + slave.getMemUsed();
+    }
+
+    @Override
+    public RecordMetadata getMetadata() {
+        return metadata;
+    }
+
+    @Override
+    public RecordCursor prepareCursor(JournalReaderFactory factory, CancellationHandler cancellationHandler) {
+        cancelTasks();
+        clear();
+        this.slaveCursor = slave.prepareCursor(factory, cancellationHandler);
+        this.masterCursor = master.prepareCursor(factory, cancellationHandler);
+        masterRecord.setStorageFacade(masterCursor.getStorageFacade());
+        slaveRecord.setStorageFacade(slaveCursor.getStorageFacade());
+        storageFacade.prepare(masterCursor.getStorageFacade(), slaveCursor.getStorageFacade());
+
+        File dir = factory.getConfiguration().getJournalBase();
+        String prefix = "join-" + ID.incrementAndGet() + '-';
+        partition(slaveCursor, slave.getMetadata(), slaveColIndex, slaveRecord, slavePartitions, dir, prefix + "s", cancellationHandler);
+        partition(masterCursor, master.getMetadata(), masterColIndex, masterRecord, masterPartitions, dir, prefix + "m", cancellationHandler);
+
+        for (int i = 0; i < partitionCount; i++) {
+            masterPartitions.getQuick(i).seal();
+            slavePartitions.getQuick(i).seal();
+        }
+        startJoin();
+        return this;
+    }
+
+    @Override
+    public Record getRecord() {
+        return record;
+    }
+
+    @Override
+    public Record newRecord() {
+        SpillRecord m = new SpillRecord(master.getMetadata());
+        SpillRecord s = new SpillRecord(slave.getMetadata());
+        if (masterCursor != null) {
+            m.setStorageFacade(masterCursor.getStorageFacade());
+            s.setStorageFacade(slaveCursor.getStorageFacade());
+        }
+        return new SplitRecord(master.getMetadata().getColumnCount(), slave.getMetadata().getColumnCount(), m, s);
+    }
+
+    @Override
+    public StorageFacade getStorageFacade() {
+        return storageFacade;
+    }
+
+    @Override
+    public void toTop() {
+        cancelTasks();
+        startJoin();
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (true) {
+            if (current != null) {
+                LongList pairs = current.pairs;
+                if (currentPos < pairs.size()) {
+                    masterRecord.of(pairs.getQuick(currentPos++));
+                    long s = pairs.getQuick(currentPos++);
+                    if (s == -1) {
+                        nullableRecord.set_null(true);
+                    } else {
+                        nullableRecord.set_null(false);
+                        slaveRecord.of(s);
+                    }
+                    return true;
+                }
+                schedule(current, currentPartition + window);
+                current = null;
+            }
+
+            if (++currentPartition >= partitionCount) {
+                return false;
+            }
+
+            JoinTask task = tasks.getQuick(currentPartition % window);
+            task.await();
+            Throwable e = task.getError();
+            if (e != null) {
+                throw new JournalRuntimeException("Partition join failed", e);
+            }
+            current = task;
+            currentPos = 0;
+        }
+    }
+
+    @Override
+    public Record next() {
+        return record;
+    }
+
+    @Override
+    public void toSink(CharSink sink) {
+        sink.put('{');
+        sink.putQuoted("op").put(':').putQuoted("GraceHashJoinRecordSource").put(',');
+        sink.putQuoted("master").put(':').put(master).put(',');
+        sink.putQuoted("slave").put(':').put(slave).put(',');
+        sink.putQuoted("partitions").put(':').put(partitionCount).put(',');
+        sink.putQuoted("joinOn").put(':').put('[');
+        sink.put('[');
+        RecordMetadata mm = master.getMetadata();
+        for (int i = 0, n = masterColIndex.size(); i < n; i++) {
+            if (i > 0) {
+                sink.put(',');
+            }
+            sink.putQuoted(mm.getColumnQuick(masterColIndex.getQuick(i)).getName());
+        }
+        sink.put(']').put(',');
+        sink.put('[');
+        RecordMetadata sm = slave.getMetadata();
+        for (int i = 0, n = slaveColIndex.size(); i < n; i++) {
+            if (i > 0) {
+                sink.put(',');
+            }
+            sink.putQuoted(sm.getColumnQuick(slaveColIndex.getQuick(i)).getName());
+        }
+        sink.put("]]}");
+    }
+
+    private static boolean keyEquals(long a, long b) {
+        if (Unsafe.getUnsafe().getLong(a) != Unsafe.getUnsafe().getLong(b)) {
+            // hash or key size differ
+            return false;
+        }
+
+        int len = Unsafe.getUnsafe().getInt(a + 4);
+        long p = a + ENTRY_HEADER;
+        long q = b + ENTRY_HEADER;
+        long hi = p + len;
+        while (hi - p >= 8) {
+            if (Unsafe.getUnsafe().getLong(p) != Unsafe.getUnsafe().getLong(q)) {
+                return false;
+            }
+            p += 8;
+            q += 8;
+        }
+
+        while (p < hi) {
+            if (Unsafe.getUnsafe().getByte(p++) != Unsafe.getUnsafe().getByte(q++)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int keySize(Record r, RecordMetadata m, IntList columns) {
+        int size = 0;
+        for (int i = 0, n = columns.size(); i < n; i++) {
+            int col = columns.getQuick(i);
+            switch (m.getColumnQuick(col).getType()) {
+                case ColumnType.STRING:
+                    size += strSize(r.getFlyweightStr(col));
+                    break;
+                case ColumnType.SYMBOL:
+                    size += strSize(r.getSym(col));
+                    break;
+                default:
+                    size += ColumnType.sizeOf(m.getColumnQuick(col).getType());
+                    break;
+            }
+        }
+        return size;
+    }
+
+    private static int putStr(long address, CharSequence cs) {
+        if (cs == null) {
+            Unsafe.getUnsafe().putInt(address, -1);
+            return 4;
+        }
+        return Chars.put(address, cs);
+    }
+
+    private static int strSize(CharSequence cs) {
+        return cs == null ? 4 : 4 + cs.length() * 2;
+    }
+
+    private static long rowAddress(long entry) {
+        return entry + ENTRY_HEADER + Unsafe.getUnsafe().getInt(entry + 4);
+    }
+
+    private void cancelTasks() {
+        for (int i = 0; i < window; i++) {
+            tasks.getQuick(i).cancel();
+        }
+        current = null;
+    }
+
+    private void clear() {
+        for (int i = 0; i < partitionCount; i++) {
+            masterPartitions.getQuick(i).clear();
+            slavePartitions.getQuick(i).clear();
+        }
+        memoryUsed = 0;
+    }
+
+    private void partition(
+            RecordCursor cursor,
+            RecordMetadata m,
+            IntList columns,
+            SpillRecord spill,
+            ObjList<Partition> partitions,
+            File dir,
+            String prefix,
+            CancellationHandler cancellationHandler
+    ) {
+        while (cursor.hasNext()) {
+            cancellationHandler.check();
+            Record r = cursor.next();
+            int keySize = keySize(r, m, columns);
+            if (keySize > keyBufferSize) {
+                if (keyBuffer != 0) {
+                    Unsafe.free(keyBuffer, keyBufferSize);
+                }
+                keyBufferSize = Math.max(keySize, 256);
+                keyBuffer = Unsafe.malloc(keyBufferSize);
+            }
+
+            long p = keyBuffer;
+            for (int i = 0, n = columns.size(); i < n; i++) {
+                int col = columns.getQuick(i);
+                switch (m.getColumnQuick(col).getType()) {
+                    case ColumnType.BOOLEAN:
+                        Unsafe.getUnsafe().putByte(p, (byte) (r.getBool(col) ? 1 : 0));
+                        p += 1;
+                        break;
+                    case ColumnType.BYTE:
+                        Unsafe.getUnsafe().putByte(p, r.get(col));
+                        p += 1;
+                        break;
+                    case ColumnType.SHORT:
+                        Unsafe.getUnsafe().putShort(p, r.getShort(col));
+                        p += 2;
+                        break;
+                    case ColumnType.INT:
+                        Unsafe.getUnsafe().putInt(p, r.getInt(col));
+                        p += 4;
+                        break;
+                    case ColumnType.FLOAT:
+                        Unsafe.getUnsafe().putFloat(p, r.getFloat(col));
+                        p += 4;
+                        break;
+                    case ColumnType.LONG:
+                        Unsafe.getUnsafe().putLong(p, r.getLong(col));
+                        p += 8;
+                        break;
+                    case ColumnType.DATE:
+                        Unsafe.getUnsafe().putLong(p, r.getDate(col));
+                        p += 8;
+                        break;
+                    case ColumnType.DOUBLE:
+                        Unsafe.getUnsafe().putDouble(p, r.getDouble(col));
+                        p += 8;
+                        break;
+                    case ColumnType.STRING:
+                        p += putStr(p, r.getFlyweightStr(col));
+                        break;
+                    case ColumnType.SYMBOL:
+                        p += putStr(p, r.getSym(col));
+                        break;
+                    default:
+                        throw new JournalRuntimeException("Unsupported join key type: " + m.getColumnQuick(col).getType());
+                }
+            }
+
+            int hash = Hash.hashMem(keyBuffer, keySize) * 0x9E3779B9;
+            int index = partitionBits == 0 ? 0 : hash >>> (32 - partitionBits);
+            Partition partition = partitions.getQuick(index);
+            int size = ENTRY_HEADER + keySize + spill.sizeOf(r);
+            long entry = partition.claim(size);
+            Unsafe.getUnsafe().putInt(entry, hash);
+            Unsafe.getUnsafe().putInt(entry + 4, keySize);
+            Unsafe.getUnsafe().copyMemory(keyBuffer, entry + ENTRY_HEADER, keySize);
+            spill.copy(r, entry + ENTRY_HEADER + keySize);
+
+            if (memoryUsed > memoryLimit) {
+                spillLargest(dir, prefix);
+            }
+        }
+    }
+
+    private void schedule(JoinTask task, int partition) {
+        if (partition < partitionCount) {
+            task.of(masterPartitions.getQuick(partition), slavePartitions.getQuick(partition));
+            task.arm();
+            if (pool != null) {
+                pool.submit(task);
+            }
+        }
+    }
+
+    private void spillLargest(File dir, String prefix) {
+        Partition largest = null;
+        int index = -1;
+        ObjList<Partition> partitions = null;
+        for (int i = 0; i < partitionCount; i++) {
+            Partition p = masterPartitions.getQuick(i);
+            if (largest == null || p.size > largest.size) {
+                largest = p;
+                index = i;
+                partitions = masterPartitions;
+            }
+            p = slavePartitions.getQuick(i);
+            if (p.size > largest.size) {
+                largest = p;
+                index = i;
+                partitions = slavePartitions;
+            }
+        }
+
+        if (largest.file == null) {
+            File file = new File(dir, prefix + (partitions == masterPartitions ? "m" : "s") + index + ".tmp");
+            try {
+                largest.file = new MemoryFile(file, SPILL_BIT_HINT, JournalMode.APPEND);
+            } catch (JournalException e) {
+                throw new JournalRuntimeException(e);
+            }
+            LOG.debug().$("Spilling join partition to ").$(file).$();
+        }
+        largest.spill();
+    }
+
+    private void startJoin() {
+        currentPartition = -1;
+        current = null;
+        for (int i = 0; i < window; i++) {
+            schedule(tasks.getQuick(i), i);
+        }
+    }
+
+    /**
+     * Rows of one side of join, which hash into the same partition. Rows are appended to memory buffer, which
+     * is written out to file when partition is spilled. Once partitioning is complete spilled partition
+     * moves its remaining rows to file, so that all rows can be read from contiguous memory region.
+     */
+    private class Partition {
+        private MemoryFile file;
+        private long buffer = 0;
+        private long capacity = 0;
+        private long size = 0;
+        private int count = 0;
+        private long lo;
+        private long hi;
+
+        private long claim(int len) {
+            if (size + len > capacity) {
+                long c = Math.max(Math.max(capacity * 2, MIN_BUFFER_SIZE), size + len);
+                long b = Unsafe.malloc(c);
+                if (buffer != 0) {
+                    Unsafe.getUnsafe().copyMemory(buffer, b, size);
+                    Unsafe.free(buffer, capacity);
+                }
+                memoryUsed += c - capacity;
+                buffer = b;
+                capacity = c;
+            }
+            long a = buffer + size;
+            size += len;
+            count++;
+            return a;
+        }
+
+        private void clear() {
+            if (buffer != 0) {
+                Unsafe.free(buffer, capacity);
+                buffer = 0;
+            }
+            if (file != null) {
+                file.delete();
+                file = null;
+            }
+            capacity = 0;
+            size = 0;
+            count = 0;
+            lo = hi = 0;
+        }
+
+        private void seal() {
+            if (file == null) {
+                lo = buffer;
+                hi = buffer + size;
+            } else {
+                if (size > 0) {
+                    spill();
+                }
+                long len = file.getAppendOffset();
+                lo = file.addressOf(0, 1);
+                hi = lo + len;
+            }
+        }
+
+        private void spill() {
+            long pos = file.getAppendOffset();
+            // file is mapped as one region, rows are copied in chunks to limit size of single call
+            for (long p = 0; p < size; ) {
+                int len = (int) Math.min(size - p, 1 << SPILL_BIT_HINT);
+                Unsafe.getUnsafe().copyMemory(buffer + p, file.addressOf(pos, len), len);
+                pos += len;
+                p += len;
+            }
+            file.setAppendOffset(pos);
+            Unsafe.free(buffer, capacity);
+            memoryUsed -= capacity;
+            buffer = 0;
+            capacity = 0;
+            size = 0;
+        }
+    }
+
+    /**
+     * Joins pair of partitions. Output is list of master and slave row addresses, slave address is -1
+     * for master rows without match in outer join.
+     */
+    private class JoinTask extends QueryTask {
+        private final LongList pairs = new LongList();
+        private Partition masterPartition;
+        private Partition slavePartition;
+        private long rows[] = new long[16];
+        private int next[] = new int[16];
+        private int heads[] = new int[16];
+
+        @Override
+        protected void execute() {
+            pairs.clear();
+            int n = slavePartition.count;
+            if (n == 0 && !outer || masterPartition.count == 0) {
+                return;
+            }
+
+            if (rows.length < n) {
+                rows = new long[n];
+                next = new int[n];
+            }
+
+            int cap = Numbers.ceilPow2(Math.max(n * 2, 16));
+            if (heads.length < cap) {
+                heads = new int[cap];
+            }
+            int mask = cap - 1;
+            Arrays.fill(heads, 0, cap, -1);
+
+            long p = slavePartition.lo;
+            for (int i = 0; i < n; i++) {
+                rows[i] = p;
+                p = rowAddress(p);
+                p += Unsafe.getUnsafe().getInt(p);
+            }
+
+            // insert in reverse, so that chains list rows in order of slave
+            for (int i = n - 1; i > -1; i--) {
+                int h = Unsafe.getUnsafe().getInt(rows[i]) & mask;
+                next[i] = heads[h];
+                heads[h] = i;
+            }
+
+            p = masterPartition.lo;
+            for (long hi = masterPartition.hi; p < hi; ) {
+                long row = rowAddress(p);
+                boolean found = false;
+                for (int i = heads[Unsafe.getUnsafe().getInt(p) & mask]; i > -1; i = next[i]) {
+                    if (keyEquals(p, rows[i])) {
+                        pairs.add(row);
+                        pairs.add(rowAddress(rows[i]));
+                        found = true;
+                    }
+                }
+
+                if (!found && outer) {
+                    pairs.add(row);
+                    pairs.add(-1);
+                }
+                p = row + Unsafe.getUnsafe().getInt(row);
+            }
+        }
+
+        private void of(Partition masterPartition, Partition slavePartition) {
+            this.masterPartition = masterPartition;
+            this.slavePartition = slavePartition;
+        }
+    }
+}
@@ -94,6 +94,11 @@ public class HashJoinRecordSource extends AbstractCombinedRecordSource implement
         Misc.free(slave);
     }
 
+    @Override
+    public long getMemUsed() {
+        return recordMap.getMemUsed() + master.getMemUsed() + slave.getMemUsed();
+    }
+
     @Override
     public RecordMetadata getMetadata() {
         return metadata;
@@ -81,6 +81,11 @@ public class FixRecordHolder extends AbstractMemRecord implements RecordHolder {
         held = false;
     }
 
+    @Override
+    public long getMemUsed() {
+        return size;
+    }
+
     @Override
     public Record peek() {
         return held ? this : null;
@@ -126,6 +126,11 @@ public class LastFixRecordMap implements LastRecordMap {
         return record.of(pages.getQuick(pageIndex(offset)) + pageOffset(offset));
     }
 
+    @Override
+    public long getMemUsed() {
+        return map.getMemUsed() + (long) pages.size() * pageSize;
+    }
+
     public RecordMetadata getMetadata() {
         return metadata;
     }
@@ -27,10 +27,11 @@ import com.questdb.factory.configuration.RecordMetadata;
 import com.questdb.ql.Record;
 import com.questdb.ql.RecordCursor;
 import com.questdb.ql.StorageFacade;
+import com.questdb.std.MemoryConsumer;
 
 import java.io.Closeable;
 
-public interface LastRecordMap extends Closeable {
+public interface LastRecordMap extends Closeable, MemoryConsumer {
 
     @SuppressWarnings("NumericOverflow")
     long SET_BIT = 1L << 63;
@@ -87,6 +87,11 @@ public class LastRowIdRecordMap implements LastRecordMap {
         return slaveCursor.recordAt(values.getLong(0));
     }
 
+    @Override
+    public long getMemUsed() {
+        return map.getMemUsed();
+    }
+
     public RecordMetadata getMetadata() {
         return metadata;
     }
@@ -147,6 +147,11 @@ public class LastVarRecordMap implements LastRecordMap {
         return record.of(pages.getQuick(pageIndex(offset)) + pageOffset(offset));
     }
 
+    @Override
+    public long getMemUsed() {
+        return map.getMemUsed() + (long) pages.size() * pageSize;
+    }
+
     @Override
     public RecordMetadata getMetadata() {
         return metadata;
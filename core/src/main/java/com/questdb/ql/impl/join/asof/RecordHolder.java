@@ -25,10 +25,11 @@ package com.questdb.ql.impl.join.asof;
 
 import com.questdb.ql.Record;
 import com.questdb.ql.RecordCursor;
+import com.questdb.std.MemoryConsumer;
 
 import java.io.Closeable;
 
-public interface RecordHolder extends Closeable {
+public interface RecordHolder extends Closeable, MemoryConsumer {
     void clear();
 
     Record peek();
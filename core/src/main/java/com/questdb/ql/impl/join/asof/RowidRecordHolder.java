@@ -35,6 +35,11 @@ public class RowidRecordHolder implements RecordHolder {
         this.rowid = -1;
     }
 
+    @Override
+    public long getMemUsed() {
+        return 0;
+    }
+
     @Override
     public Record peek() {
         return rowid == -1 ? null : cursor.recordAt(this.rowid);
@@ -88,6 +88,11 @@ public class VarRecordHolder extends AbstractVarMemRecord implements RecordHolde
         held = false;
     }
 
+    @Override
+    public long getMemUsed() {
+        return size;
+    }
+
     @Override
     public Record peek() {
         return held ? this : null;
@@ -31,13 +31,14 @@ import com.questdb.ql.impl.RecordList;
 import com.questdb.ql.impl.map.DirectMap;
 import com.questdb.ql.impl.map.DirectMapValues;
 import com.questdb.std.IntList;
+import com.questdb.std.MemoryConsumer;
 import com.questdb.std.Mutable;
 import com.questdb.store.ColumnType;
 
 import java.io.Closeable;
 import java.io.IOException;
 
-public class MultiRecordMap implements Closeable, Mutable {
+public class MultiRecordMap implements Closeable, Mutable, MemoryConsumer {
     private static final IntList valueCols = new IntList(2);
     private final DirectMap map;
     private final RecordList records;
@@ -79,6 +80,11 @@ public class MultiRecordMap implements Closeable, Mutable {
         return records;
     }
 
+    @Override
+    public long getMemUsed() {
+        return map.getMemUsed() + records.getMemUsed();
+    }
+
     public Record getRecord() {
         return records.getRecord();
     }
@@ -128,6 +128,11 @@ public class DirectMap extends DirectMemoryStructure implements Mutable, Iterabl
         return entry.init(rowid);
     }
 
+    @Override
+    public long getMemUsed() {
+        return super.getMemUsed() + offsets.getMemUsed();
+    }
+
     public DirectMapValues getOrCreateValues(KeyWriter keyWriter) {
         keyWriter.commit();
         // calculate hash remembering "key" structure
@@ -350,6 +355,20 @@ public class DirectMap extends DirectMemoryStructure implements Mutable, Iterabl
             writeOffset();
         }
 
+        /**
+         * Copies key of entry, which must belong to map with the same key and value structure.
+         *
+         * @param entry entry to copy key from
+         */
+        public void putKey(DirectMapEntry entry) {
+            long src = entry.getRowId();
+            int len = Unsafe.getUnsafe().getInt(src) - keyBlockOffset;
+            checkSize(len);
+            Unsafe.getUnsafe().copyMemory(src + keyBlockOffset, startAddr + keyBlockOffset, len);
+            appendAddr = startAddr + keyBlockOffset + len;
+            nextColOffset = startAddr + keyDataOffset;
+        }
+
         public void putLong(long value) {
             checkSize(8);
             Unsafe.getUnsafe().putLong(appendAddr, value);
@@ -23,7 +23,6 @@
 
 package com.questdb.ql.impl.map;
 
-import com.questdb.ql.RecordCursor;
 import com.questdb.ql.StorageFacade;
 import com.questdb.std.IntList;
 import com.questdb.store.SymbolTable;
@@ -43,7 +42,7 @@ public class DirectMapStorageFacade implements StorageFacade {
         return delegate.getSymbolTable(keyIndices.getQuick(index - split));
     }
 
-    public void prepare(RecordCursor cursor) {
-        this.delegate = cursor.getStorageFacade();
+    public void prepare(StorageFacade delegate) {
+        this.delegate = delegate;
     }
 }
@@ -0,0 +1,114 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl.parallel;
+
+import com.questdb.Journal;
+import com.questdb.ex.JournalException;
+import com.questdb.factory.JournalReaderFactory;
+import com.questdb.factory.configuration.JournalMetadata;
+
+import java.io.Closeable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Journal readers of worker lanes, shared by all parallel sources that run on the same {@link QueryWorkerPool}.
+ * Reader is borrowed for duration of single task and returned when task completes, so number of open readers is
+ * bounded by number of tasks running at the same time rather than by number of compiled queries.
+ */
+class LaneReaderPool implements Closeable {
+    private final ConcurrentHashMap<String, ConcurrentLinkedDeque<Journal>> idle = new ConcurrentHashMap<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final int maxIdle;
+    private volatile boolean closed = false;
+
+    LaneReaderPool(int maxIdle) {
+        this.maxIdle = maxIdle;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (ConcurrentLinkedDeque<Journal> readers : idle.values()) {
+            drain(readers);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    Journal borrow(JournalReaderFactory factory, JournalMetadata metadata) throws JournalException {
+        ConcurrentLinkedDeque<Journal> readers = idle.get(metadata.getLocation());
+        if (readers != null) {
+            Journal journal;
+            while ((journal = readers.poll()) != null) {
+                idleCount.decrementAndGet();
+                // structure of journal might have changed since reader was returned
+                if (journal.getMetadata().isCompatible(metadata, false)) {
+                    journal.refresh();
+                    return journal;
+                }
+                journal.close();
+            }
+        }
+        // reader must not share metadata with other readers because
+        // metadata carries reference to reader's symbol tables
+        return new Journal(factory.getConfiguration().createMetadata(metadata.getKey()), metadata.getKey());
+    }
+
+    int getIdleCount() {
+        return idleCount.get();
+    }
+
+    void release(Journal journal) {
+        String location = journal.getMetadata().getLocation();
+        ConcurrentLinkedDeque<Journal> readers = idle.get(location);
+        if (readers == null) {
+            ConcurrentLinkedDeque<Journal> q = idle.putIfAbsent(location, readers = new ConcurrentLinkedDeque<>());
+            if (q != null) {
+                readers = q;
+            }
+        }
+
+        if (closed || idleCount.incrementAndGet() > maxIdle) {
+            idleCount.decrementAndGet();
+            journal.close();
+            return;
+        }
+
+        readers.push(journal);
+        if (closed) {
+            // pool was closed while reader was being returned
+            drain(readers);
+        }
+    }
+
+    private void drain(ConcurrentLinkedDeque<Journal> readers) {
+        Journal journal;
+        while ((journal = readers.poll()) != null) {
+            idleCount.decrementAndGet();
+            journal.close();
+        }
+    }
+}
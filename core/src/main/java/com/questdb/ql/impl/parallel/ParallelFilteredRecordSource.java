@@ -0,0 +1,514 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.ql.impl.parallel;
+
+import com.questdb.Journal;
+import com.questdb.Partition;
+import com.questdb.ex.JournalException;
+import com.questdb.ex.JournalRuntimeException;
+import com.questdb.factory.JournalReaderFactory;
+import com.questdb.factory.configuration.JournalMetadata;
+import com.questdb.factory.configuration.RecordMetadata;
+import com.questdb.misc.Rows;
+import com.questdb.ql.*;
+import com.questdb.ql.impl.JournalRecord;
+import com.questdb.ql.impl.MasterStorageFacade;
+import com.questdb.ql.impl.NoOpCancellationHandler;
+import com.questdb.ql.ops.AbstractCombinedRecordSource;
+import com.questdb.ql.ops.VirtualColumn;
+import com.questdb.std.CharSink;
+import com.questdb.std.IntList;
+import com.questdb.std.LongList;
+import com.questdb.std.ObjList;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Filtered full scan of journal, which evaluates filter on {@link QueryWorkerPool} threads.
+ * <p>
+ * Partition slices are cut into chunks of at most "chunkSize" rows. Each chunk is scanned by a worker, which
+ * collects local row ids of matching rows. Query thread consumes chunks strictly in order, so rows come out
+ * in the same order as they would from {@link com.questdb.ql.impl.JournalRecordSource}. Number of chunks in flight
+ * is bounded by size of task window, so memory is proportional to number of matching rows in window rather
+ * than to size of journal.
+ * <p>
+ * Neither journal readers nor filters are thread-safe, therefore each worker "lane" has its own copy of filter and
+ * reads chunk with reader borrowed from pool of worker readers for the duration of task. Readers are not held by
+ * idle sources. Query thread has dedicated lane, which reads from journal of partition source. It is used when
+ * query thread gets to a chunk before any of the workers do. Scans of less than "threshold" rows run entirely on
+ * query thread and do not use worker readers.
+ * <p>
+ * Filter can be null, in which case all rows of partition slices are scanned. This is only useful together with
+ * {@link #scan(JournalReaderFactory, ObjList, CancellationHandler)}, which lets each lane push rows into its own
+ * {@link ScanSink} instead of collecting row ids.
+ */
+public class ParallelFilteredRecordSource extends AbstractCombinedRecordSource {
+    private final PartitionSource partitionSource;
+    private final ObjList<VirtualColumn> filters;
+    private final QueryWorkerPool pool;
+    private final int chunkSize;
+    private final long threshold;
+    private final JournalMetadata metadata;
+    private final JournalRecord record = new JournalRecord();
+    private final ObjList<ScanLane> lanes;
+    private final ArrayBlockingQueue<ScanLane> freeLanes;
+    private final ObjList<ScanTask> tasks;
+    private final ObjList<SinkTask> sinkTasks;
+    private final int window;
+    private final IntList chunkPartitions = new IntList();
+    private final LongList chunkBounds = new LongList();
+    private JournalReaderFactory factory;
+    private PartitionCursor partitionCursor;
+    private volatile Thread queryThread;
+    private volatile boolean aborted = false;
+    private int chunkCount;
+    private int consumed;
+    private boolean parallel;
+    private ScanTask current;
+    private int currentChunk;
+    private int currentPos;
+
+    /**
+     * @param partitionSource partitions to scan
+     * @param filters         independent instances of the same filter, one for query thread followed by one per worker,
+     *                        instances are null when scan is not filtered
+     * @param pool            worker pool
+     * @param chunkSize       max number of rows scanned by single task
+     * @param threshold       min number of rows in scan to engage worker pool
+     */
+    public ParallelFilteredRecordSource(PartitionSource partitionSource, ObjList<VirtualColumn> filters, QueryWorkerPool pool, int chunkSize, long threshold) {
+        this.partitionSource = partitionSource;
+        this.metadata = partitionSource.getMetadata();
+        this.filters = filters;
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+        this.threshold = threshold;
+        int laneCount = filters.size();
+        this.lanes = new ObjList<>(laneCount);
+        this.freeLanes = new ArrayBlockingQueue<>(Math.max(1, laneCount - 1));
+        for (int i = 0; i < laneCount; i++) {
+            ScanLane lane = new ScanLane(filters.getQuick(i));
+            lanes.add(lane);
+            if (i > 0) {
+                freeLanes.add(lane);
+            }
+        }
+        this.window = laneCount * 2;
+        this.tasks = new ObjList<>(window);
+        for (int i = 0; i < window; i++) {
+            tasks.add(new ScanTask());
+        }
+        this.sinkTasks = new ObjList<>(laneCount);
+        for (int i = 0; i < laneCount; i++) {
+            sinkTasks.add(new SinkTask());
+        }
+    }
+
+    @Override
+    public void close() {
+        cancelTasks();
+    }
+
+    public int getLaneCount() {
+        return lanes.size();
+    }
+
+    @Override
+    public long getMemUsed() {
+        return 0;
+    }
+
+    @Override
+    public RecordMetadata getMetadata() {
+        return metadata;
+    }
+
+    @Override
+    public RecordCursor prepareCursor(JournalReaderFactory factory, CancellationHandler cancellationHandler) {
+        prepare(factory);
+        startScan();
+        return this;
+    }
+
+    @Override
+    public Record getRecord() {
+        return record;
+    }
+
+    @Override
+    public Record newRecord() {
+        return new JournalRecord();
+    }
+
+    @Override
+    public StorageFacade getStorageFacade() {
+        return partitionCursor.getStorageFacade();
+    }
+
+    @Override
+    public void toTop() {
+        cancelTasks();
+        startScan();
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (current != null) {
+            if (currentPos < current.rows.size()) {
+                record.rowid = current.rows.getQuick(currentPos++);
+                return true;
+            }
+            schedule(current, currentChunk + window);
+            current = null;
+        }
+        return nextChunk();
+    }
+
+    @Override
+    public Record next() {
+        return record;
+    }
+
+    @Override
+    public Record recordAt(long rowId) {
+        record.rowid = Rows.toLocalRowID(rowId);
+        setPartition(record, rowId);
+        return record;
+    }
+
+    @Override
+    public void recordAt(Record record, long atRowId) {
+        ((JournalRecord) record).rowid = Rows.toLocalRowID(atRowId);
+        setPartition((JournalRecord) record, atRowId);
+    }
+
+    @Override
+    public boolean supportsRowIdAccess() {
+        return true;
+    }
+
+    /**
+     * Pushes matching rows into sinks, one sink per lane. Chunks are split between lanes in contiguous ranges, first
+     * range goes to lane of calling thread, so concatenating output of sinks in lane order yields rows in journal
+     * order. When scan is under threshold all rows go to first sink. Once method returns this source can be used
+     * as cursor to access storage facade and rows by row id.
+     *
+     * @param factory             reader factory
+     * @param sinks               receivers of rows, there must be one sink per lane
+     * @param cancellationHandler checked by calling thread between chunks
+     */
+    public void scan(JournalReaderFactory factory, ObjList<? extends ScanSink> sinks, CancellationHandler cancellationHandler) {
+        prepare(factory);
+
+        if (!parallel) {
+            feed(0, sinks.getQuick(0), 0, chunkCount, cancellationHandler);
+            return;
+        }
+
+        int n = lanes.size();
+        for (int i = 1; i < n; i++) {
+            SinkTask task = sinkTasks.getQuick(i);
+            task.of(i, sinks.getQuick(i), (int) ((long) chunkCount * i / n), (int) ((long) chunkCount * (i + 1) / n));
+            pool.submit(task);
+        }
+
+        boolean success = false;
+        try {
+            feed(0, sinks.getQuick(0), 0, chunkCount / n, cancellationHandler);
+            for (int i = 1; i < n; i++) {
+                SinkTask task = sinkTasks.getQuick(i);
+                task.await();
+                Throwable e = task.getError();
+                if (e != null) {
+                    throw new JournalRuntimeException("Parallel scan failed", e);
+                }
+            }
+            success = true;
+        } finally {
+            if (!success) {
+                aborted = true;
+                cancelTasks();
+                aborted = false;
+            }
+        }
+    }
+
+    @Override
+    public void toSink(CharSink sink) {
+        sink.put('{');
+        sink.putQuoted("op").put(':').putQuoted("ParallelFilteredRecordSource").put(',');
+        sink.putQuoted("psrc").put(':').put(partitionSource).put(',');
+        sink.putQuoted("lanes").put(':').put(lanes.size());
+        sink.put('}');
+    }
+
+    private ScanLane acquireWorkerLane() {
+        // there is a lane for every worker, so workers wait only
+        // when some of them run tasks of this source for another query thread
+        try {
+            return freeLanes.take();
+        } catch (InterruptedException e) {
+            throw new JournalRuntimeException(e);
+        }
+    }
+
+    private void cancelTasks() {
+        for (int i = 0; i < window; i++) {
+            tasks.getQuick(i).cancel();
+        }
+        for (int i = 0, n = sinkTasks.size(); i < n; i++) {
+            sinkTasks.getQuick(i).cancel();
+        }
+        current = null;
+    }
+
+    private long collectChunks() {
+        chunkPartitions.clear();
+        chunkBounds.clear();
+        long rows = 0;
+        try {
+            while (partitionCursor.hasNext()) {
+                PartitionSlice slice = partitionCursor.next();
+                long lo = slice.lo;
+                long hi = slice.calcHi ? slice.partition.open().size() - 1 : slice.hi;
+                int partitionIndex = slice.partition.getPartitionIndex();
+                rows += hi - lo + 1;
+                while (lo <= hi) {
+                    long h = Math.min(hi, lo + chunkSize - 1);
+                    chunkPartitions.add(partitionIndex);
+                    chunkBounds.add(lo);
+                    chunkBounds.add(h);
+                    lo = h + 1;
+                }
+            }
+        } catch (JournalException e) {
+            throw new JournalRuntimeException(e);
+        }
+        chunkCount = chunkPartitions.size();
+        return rows;
+    }
+
+    private void feed(int laneIndex, ScanSink sink, int lo, int hi, CancellationHandler cancellationHandler) {
+        if (lo >= hi) {
+            return;
+        }
+
+        ScanLane lane = lanes.getQuick(laneIndex);
+        // lane of query thread reads from journal of partition source
+        Journal journal = laneIndex == 0 ? null : borrowReader(lane);
+        try {
+            for (int chunk = lo; chunk < hi && !aborted; chunk++) {
+                cancellationHandler.check();
+                int partitionIndex = chunkPartitions.getQuick(chunk);
+                lane.scan(
+                        journal == null ? partitionCursor.getPartition(partitionIndex) : journal.getPartition(partitionIndex, true),
+                        partitionIndex,
+                        chunkBounds.getQuick(chunk * 2),
+                        chunkBounds.getQuick(chunk * 2 + 1),
+                        sink
+                );
+            }
+        } catch (JournalException e) {
+            throw new JournalRuntimeException(e);
+        } finally {
+            if (journal != null) {
+                pool.getReaders().release(journal);
+            }
+        }
+    }
+
+    private Journal borrowReader(ScanLane lane) {
+        try {
+            Journal journal = pool.getReaders().borrow(factory, metadata);
+            lane.of(journal);
+            return journal;
+        } catch (JournalException e) {
+            throw new JournalRuntimeException(e);
+        }
+    }
+
+    private boolean nextChunk() {
+        while (consumed < chunkCount) {
+            int chunk = consumed++;
+            ScanTask task = tasks.getQuick(chunk % window);
+            queryThread = Thread.currentThread();
+            task.await();
+
+            Throwable e = task.getError();
+            if (e != null) {
+                throw new JournalRuntimeException("Parallel scan failed", e);
+            }
+
+            if (task.rows.size() > 0) {
+                current = task;
+                currentChunk = chunk;
+                currentPos = 1;
+                record.partitionIndex = task.partitionIndex;
+                record.partition = partitionCursor.getPartition(task.partitionIndex);
+                record.rowid = task.rows.getQuick(0);
+                return true;
+            }
+            schedule(task, chunk + window);
+        }
+        return false;
+    }
+
+    private void prepare(JournalReaderFactory factory) {
+        cancelTasks();
+        this.factory = factory;
+        this.partitionCursor = partitionSource.prepareCursor(factory);
+        long rows = collectChunks();
+        this.parallel = rows >= threshold;
+        VirtualColumn filter = lanes.getQuick(0).filter;
+        if (filter != null) {
+            filter.prepare(partitionCursor.getStorageFacade());
+        }
+    }
+
+    private void schedule(ScanTask task, int chunk) {
+        if (chunk < chunkCount) {
+            task.of(chunkPartitions.getQuick(chunk), chunkBounds.getQuick(chunk * 2), chunkBounds.getQuick(chunk * 2 + 1));
+            if (parallel) {
+                pool.submit(task);
+            }
+        }
+    }
+
+    private void setPartition(JournalRecord record, long rowId) {
+        int partIndex = Rows.toPartitionIndex(rowId);
+        if (partIndex != record.partitionIndex) {
+            record.partitionIndex = partIndex;
+            record.partition = partitionCursor.getPartition(partIndex);
+        }
+    }
+
+    private void startScan() {
+        consumed = 0;
+        current = null;
+        record.partitionIndex = -1;
+        for (int i = 0; i < window; i++) {
+            schedule(tasks.getQuick(i), i);
+        }
+    }
+
+    private static class ScanLane {
+        private final VirtualColumn filter;
+        private final JournalRecord rec = new JournalRecord();
+        private final MasterStorageFacade storageFacade = new MasterStorageFacade();
+
+        private ScanLane(VirtualColumn filter) {
+            this.filter = filter;
+        }
+
+        private void of(Journal journal) {
+            if (filter != null) {
+                filter.prepare(storageFacade.of(journal.getMetadata()));
+            }
+        }
+
+        private void scan(Partition partition, long lo, long hi, LongList rows) {
+            if (filter == null) {
+                for (long r = lo; r <= hi; r++) {
+                    rows.add(r);
+                }
+                return;
+            }
+
+            rec.partition = partition;
+            for (long r = lo; r <= hi; r++) {
+                rec.rowid = r;
+                if (filter.getBool(rec)) {
+                    rows.add(r);
+                }
+            }
+        }
+
+        private void scan(Partition partition, int partitionIndex, long lo, long hi, ScanSink sink) {
+            rec.partition = partition;
+            rec.partitionIndex = partitionIndex;
+            for (long r = lo; r <= hi; r++) {
+                rec.rowid = r;
+                if (filter == null || filter.getBool(rec)) {
+                    sink.accept(rec);
+                }
+            }
+        }
+    }
+
+    private class ScanTask extends QueryTask {
+        private final LongList rows = new LongList();
+        private int partitionIndex;
+        private long lo;
+        private long hi;
+
+        @Override
+        protected void execute() {
+            rows.clear();
+            if (Thread.currentThread() == queryThread) {
+                lanes.getQuick(0).scan(partitionCursor.getPartition(partitionIndex), lo, hi, rows);
+            } else {
+                ScanLane lane = acquireWorkerLane();
+                try {
+                    Journal journal = borrowReader(lane);
+                    try {
+                        lane.scan(journal.getPartition(partitionIndex, true), lo, hi, rows);
+                    } finally {
+                        pool.getReaders().release(journal);
+                    }
+                } catch (JournalException e) {
+                    throw new JournalRuntimeException(e);
+                } finally {
+                    freeLanes.add(lane);
+                }
+            }
+        }
+
+        private void of(int partitionIndex, long lo, long hi) {
+            this.partitionIndex = partitionIndex;
+            this.lo = lo;
+            this.hi = hi;
+            arm();
+        }
+    }
+
+    private class SinkTask extends QueryTask {
+        private int laneIndex;
+        private ScanSink sink;
+        private int lo;
+        private int hi;
+
+        @Override
+        protected void execute() {
+            feed(laneIndex, sink, lo, hi, NoOpCancellationHandler.INSTANCE);
+        }
+
+        private void of(int laneIndex, ScanSink sink, int lo, int hi) {
+            this.laneIndex = laneIndex;
+            this.sink = sink;
+            this.lo = lo;
+            this.hi = hi;
+            arm();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.ql.impl.parallel;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Unit of work that can be executed either by {@link QueryWorkerPool} thread or by thread that
+ * submitted it. Whichever thread claims task first runs it, the other one becomes a no-op. This lets
+ * query thread "steal" work back from the pool instead of waiting when workers are busy with other queries.
+ */
+public abstract class QueryTask {
+    private static final int STATE_NEW = 0;
+    private static final int STATE_RUNNING = 1;
+    private static final int STATE_DONE = 2;
+    private static final int SPIN_COUNT = 1024;
+    private static final long PARK_NANOS = 10000L;
+    private final AtomicInteger state = new AtomicInteger(STATE_DONE);
+    private Throwable error;
+
+    /**
+     * Makes task available for execution. Subclasses must set up task state before calling this method.
+     */
+    public void arm() {
+        error = null;
+        state.set(STATE_NEW);
+    }
+
+    /**
+     * Waits for task to complete. Task that has not been claimed by any thread yet will be
+     * executed by calling thread.
+     */
+    public void await() {
+        if (!run()) {
+            int spins = 0;
+            while (state.get() != STATE_DONE) {
+                if (spins++ < SPIN_COUNT) {
+                    Thread.yield();
+                } else {
+                    LockSupport.parkNanos(PARK_NANOS);
+                }
+            }
+        }
+    }
+
+    /**
+     * Prevents task from being executed if no thread has claimed it yet and waits for task to complete otherwise.
+     * Upon return task is guaranteed to be idle.
+     */
+    public void cancel() {
+        if (!state.compareAndSet(STATE_NEW, STATE_DONE)) {
+            await();
+        }
+    }
+
+    public Throwable getError() {
+        return error;
+    }
+
+    public boolean run() {
+        if (state.compareAndSet(STATE_NEW, STATE_RUNNING)) {
+            try {
+                execute();
+            } catch (Throwable e) {
+                error = e;
+            } finally {
+                state.set(STATE_DONE);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    protected abstract void execute();
+}
@@ -0,0 +1,162 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.ql.impl.parallel;
+
+import com.questdb.ex.JournalRuntimeException;
+import com.questdb.log.Log;
+import com.questdb.log.LogFactory;
+import com.questdb.mp.*;
+import com.questdb.std.ObjHashSet;
+import com.questdb.std.ObjList;
+import com.questdb.std.ObjectFactory;
+
+import java.io.Closeable;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Fixed set of worker threads that execute {@link QueryTask}s on behalf of query threads.
+ * Tasks are published by any number of query threads and consumed by any number of workers,
+ * hence MP/MC sequence pair. Pool never blocks publisher. When queue is full task stays with
+ * publisher, who will execute it when result is needed.
+ */
+public class QueryWorkerPool implements Closeable {
+    private static final Log LOG = LogFactory.getLog(QueryWorkerPool.class);
+    private final RingQueue<TaskHolder> queue;
+    private final Sequence pubSeq;
+    private final Sequence subSeq;
+    private final ObjList<Worker> workers;
+    private final CountDownLatch haltLatch;
+    private final LaneReaderPool readers;
+    private final int workerCount;
+    private boolean running = false;
+
+    public QueryWorkerPool(int workerCount, int queueDepth) {
+        this.workerCount = workerCount;
+        this.queue = new RingQueue<>(TaskHolder.FACTORY, queueDepth);
+        this.pubSeq = new MPSequence(queue.getCapacity());
+        this.subSeq = new MCSequence(queue.getCapacity(), null);
+        this.pubSeq.then(subSeq).then(pubSeq);
+        this.workers = new ObjList<>(workerCount);
+        this.haltLatch = new CountDownLatch(workerCount);
+        // tasks run on workers only, so this many readers can be in use at the same time
+        this.readers = new LaneReaderPool(workerCount);
+    }
+
+    @Override
+    public void close() {
+        if (running) {
+            running = false;
+            for (int i = 0, n = workers.size(); i < n; i++) {
+                workers.getQuick(i).halt();
+            }
+            try {
+                haltLatch.await();
+            } catch (InterruptedException e) {
+                throw new JournalRuntimeException(e);
+            }
+            LOG.info().$("Query worker pool stopped").$();
+        }
+        readers.close();
+    }
+
+    public int getIdleReaderCount() {
+        return readers.getIdleCount();
+    }
+
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    public void start() {
+        if (!running) {
+            ObjHashSet<Job> jobs = new ObjHashSet<>();
+            jobs.add(new QueryTaskJob());
+            for (int i = 0; i < workerCount; i++) {
+                Worker w = new Worker(jobs, haltLatch);
+                w.setDaemon(true);
+                workers.add(w);
+                w.start();
+            }
+            running = true;
+            LOG.info().$("Query worker pool started [workers=").$(workerCount).$(']').$();
+        }
+    }
+
+    /**
+     * Publishes task to worker threads. Task must be armed.
+     *
+     * @param task task to publish
+     * @return true if task was published, false if queue is full, in which case caller retains responsibility of executing task.
+     */
+    public boolean submit(QueryTask task) {
+        while (true) {
+            long cursor = pubSeq.next();
+            if (cursor > -1) {
+                queue.get(cursor).task = task;
+                pubSeq.done(cursor);
+                return true;
+            }
+
+            if (cursor == -1) {
+                return false;
+            }
+        }
+    }
+
+    LaneReaderPool getReaders() {
+        return readers;
+    }
+
+    private static class TaskHolder {
+        private static final ObjectFactory<TaskHolder> FACTORY = new ObjectFactory<TaskHolder>() {
+            @Override
+            public TaskHolder newInstance() {
+                return new TaskHolder();
+            }
+        };
+
+        private QueryTask task;
+    }
+
+    private class QueryTaskJob implements Job {
+        @Override
+        public boolean run() {
+            long cursor = subSeq.next();
+            if (cursor < 0) {
+                return false;
+            }
+
+            TaskHolder holder = queue.get(cursor);
+            QueryTask task = holder.task;
+            holder.task = null;
+            subSeq.done(cursor);
+            task.run();
+            return true;
+        }
+
+        @Override
+        public void setupThread() {
+        }
+    }
+}
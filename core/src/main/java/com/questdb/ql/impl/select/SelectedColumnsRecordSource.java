@@ -61,6 +61,11 @@ public class SelectedColumnsRecordSource extends AbstractCombinedRecordSource {
         Misc.free(delegate);
     }
 
+    @Override
+    public long getMemUsed() {
+        return delegate.getMemUsed();
+    }
+
     @Override
     public RecordMetadata getMetadata() {
         return metadata;
@@ -0,0 +1,396 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl.sort;
+
+import com.questdb.JournalMode;
+import com.questdb.ex.JournalException;
+import com.questdb.ex.JournalRuntimeException;
+import com.questdb.factory.JournalReaderFactory;
+import com.questdb.factory.configuration.RecordMetadata;
+import com.questdb.log.Log;
+import com.questdb.log.LogFactory;
+import com.questdb.misc.Misc;
+import com.questdb.misc.Unsafe;
+import com.questdb.ql.*;
+import com.questdb.ql.ops.AbstractCombinedRecordSource;
+import com.questdb.std.CharSink;
+import com.questdb.std.ObjList;
+import com.questdb.store.MemoryFile;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sort, which does not need to hold all rows in memory. Rows are copied into buffer of limited size,
+ * when buffer is full its rows are sorted and written out to temporary file as a run. Sorted runs are
+ * merged by cursor as rows are read, so first rows are available as soon as the last run is sorted.
+ * <p>
+ * The last run is never written out, when source fits into buffer there is no IO at all. Run files
+ * are created in journal base directory and removed when cursor is prepared again or source is closed.
+ * Order of equal rows is that of the source.
+ */
+public class ExternalSortedRecordSource extends AbstractCombinedRecordSource {
+    private static final Log LOG = LogFactory.getLog(ExternalSortedRecordSource.class);
+    private static final AtomicLong ID = new AtomicLong();
+    private static final int MIN_BUFFER_SIZE = 64 * 1024;
+    private static final int RUN_BIT_HINT = 22;
+    private final RecordSource delegate;
+    private final RecordComparator comparator;
+    private final long memoryLimit;
+    private final SpillRecord left;
+    private final SpillRecord right;
+    private final SpillRecord record;
+    private final ObjList<MemoryFile> runs = new ObjList<>();
+    private final ObjList<Run> cursors = new ObjList<>();
+    private long buffer = 0;
+    private long bufferSize = 0;
+    private long bufferPos = 0;
+    private long offsets[] = new long[1024];
+    private long temp[] = new long[1024];
+    private int count = 0;
+    private int heap[] = new int[16];
+    private int heapSize = 0;
+    private int current = -1;
+    private RecordCursor sourceCursor;
+
+    /**
+     * @param delegate    source of rows
+     * @param comparator  comparator compiled for metadata of delegate
+     * @param memoryLimit approximate limit of memory used to sort run, in bytes
+     */
+    public ExternalSortedRecordSource(RecordSource delegate, RecordComparator comparator, long memoryLimit) {
+        this.delegate = delegate;
+        this.comparator = comparator;
+        this.memoryLimit = memoryLimit;
+        RecordMetadata m = delegate.getMetadata();
+        this.left = new SpillRecord(m);
+        this.right = new SpillRecord(m);
+        this.record = new SpillRecord(m);
+    }
+
+    @Override
+    public void close() {
+        clear();
+        if (buffer != 0) {
+            Unsafe.free(buffer, bufferSize);
+            buffer = 0;
+            bufferSize = 0;
+        }
+        Misc.free(delegate);
+    }
+
+    @Override
+    public long getMemUsed() {
+        return bufferSize + delegate.getMemUsed();
+    }
+
+    @Override
+    public RecordMetadata getMetadata() {
+        return delegate.getMetadata();
+    }
+
+    @Override
+    public RecordCursor prepareCursor(JournalReaderFactory factory, CancellationHandler cancellationHandler) {
+        clear();
+        sourceCursor = delegate.prepareCursor(factory, cancellationHandler);
+        StorageFacade facade = sourceCursor.getStorageFacade();
+        left.setStorageFacade(facade);
+        right.setStorageFacade(facade);
+        record.setStorageFacade(facade);
+
+        File dir = factory.getConfiguration().getJournalBase();
+        String prefix = "sort-" + ID.incrementAndGet() + '-';
+        while (sourceCursor.hasNext()) {
+            cancellationHandler.check();
+            append(sourceCursor.next());
+            if (bufferPos >= memoryLimit) {
+                sort();
+                spill(new File(dir, prefix + runs.size() + ".tmp"));
+            }
+        }
+        sort();
+        toTop();
+        return this;
+    }
+
+    @Override
+    public Record getRecord() {
+        return record;
+    }
+
+    @Override
+    public Record newRecord() {
+        SpillRecord r = new SpillRecord(delegate.getMetadata());
+        r.setStorageFacade(sourceCursor == null ? null : sourceCursor.getStorageFacade());
+        return r;
+    }
+
+    @Override
+    public StorageFacade getStorageFacade() {
+        return sourceCursor.getStorageFacade();
+    }
+
+    @Override
+    public void toTop() {
+        heapSize = 0;
+        current = -1;
+        for (int i = 0, n = runs.size(); i < n; i++) {
+            Run r = cursor(i);
+            r.file = runs.getQuick(i);
+            r.pos = 0;
+            r.hi = r.file.getAppendOffset();
+            if (r.advance()) {
+                push(i);
+            }
+        }
+
+        // rows remaining in buffer are merged as the last run
+        int n = runs.size();
+        Run r = cursor(n);
+        r.file = null;
+        r.pos = 0;
+        r.hi = count;
+        if (r.advance()) {
+            push(n);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (current > -1) {
+            // row returned last has been consumed, move its run forward
+            if (cursors.getQuick(current).advance()) {
+                push(current);
+            }
+            current = -1;
+        }
+        return heapSize > 0;
+    }
+
+    @Override
+    public Record next() {
+        current = pop();
+        return record.of(cursors.getQuick(current).address);
+    }
+
+    @Override
+    public void toSink(CharSink sink) {
+        sink.put('{');
+        sink.putQuoted("op").put(':').putQuoted("ExternalSortedRecordSource").put(',');
+        sink.putQuoted("memoryLimit").put(':').put(memoryLimit).put(',');
+        sink.putQuoted("src").put(':').put(delegate);
+        sink.put('}');
+    }
+
+    private void append(Record r) {
+        long size = left.sizeOf(r);
+        if (bufferPos + size > bufferSize) {
+            grow(bufferPos + size);
+        }
+
+        if (count == offsets.length) {
+            long o[] = new long[count * 2];
+            System.arraycopy(offsets, 0, o, 0, count);
+            offsets = o;
+            temp = new long[count * 2];
+        }
+        offsets[count++] = bufferPos;
+        bufferPos += left.copy(r, buffer + bufferPos);
+    }
+
+    private void clear() {
+        for (int i = 0, n = runs.size(); i < n; i++) {
+            runs.getQuick(i).delete();
+        }
+        runs.clear();
+        heapSize = 0;
+        current = -1;
+        count = 0;
+        bufferPos = 0;
+    }
+
+    private int compare(int a, int b) {
+        comparator.setLeft(cursors.getQuick(a).record);
+        int cmp = comparator.compare(cursors.getQuick(b).record);
+        // runs are in order of source, equal rows of earlier run come first
+        return cmp == 0 ? a - b : cmp;
+    }
+
+    private int compareOffsets(long a, long b) {
+        comparator.setLeft(left.of(buffer + a));
+        return comparator.compare(right.of(buffer + b));
+    }
+
+    private Run cursor(int index) {
+        while (cursors.size() <= index) {
+            cursors.add(new Run(delegate.getMetadata()));
+        }
+        Run r = cursors.getQuick(index);
+        r.record.setStorageFacade(sourceCursor.getStorageFacade());
+        return r;
+    }
+
+    private void grow(long required) {
+        long size = Math.max(bufferSize == 0 ? MIN_BUFFER_SIZE : bufferSize * 2, required);
+        if (bufferSize < memoryLimit) {
+            size = Math.max(Math.min(size, memoryLimit), required);
+        }
+        long b = Unsafe.malloc(size);
+        if (buffer != 0) {
+            Unsafe.getUnsafe().copyMemory(buffer, b, bufferPos);
+            Unsafe.free(buffer, bufferSize);
+        }
+        buffer = b;
+        bufferSize = size;
+    }
+
+    private void mergeSort(long src[], long dst[], int lo, int hi) {
+        if (hi - lo < 8) {
+            // insertion sort keeps equal rows in source order
+            for (int i = lo + 1; i < hi; i++) {
+                long v = dst[i];
+                int j = i - 1;
+                while (j >= lo && compareOffsets(dst[j], v) > 0) {
+                    dst[j + 1] = dst[j];
+                    j--;
+                }
+                dst[j + 1] = v;
+            }
+            return;
+        }
+
+        int mid = (lo + hi) >>> 1;
+        // sort halves of src using dst as scratch, then merge into dst
+        mergeSort(dst, src, lo, mid);
+        mergeSort(dst, src, mid, hi);
+
+        if (compareOffsets(src[mid - 1], src[mid]) <= 0) {
+            System.arraycopy(src, lo, dst, lo, hi - lo);
+            return;
+        }
+
+        for (int i = lo, p = lo, q = mid; i < hi; i++) {
+            if (q >= hi || p < mid && compareOffsets(src[p], src[q]) <= 0) {
+                dst[i] = src[p++];
+            } else {
+                dst[i] = src[q++];
+            }
+        }
+    }
+
+    private int pop() {
+        int top = heap[0];
+        int last = heap[--heapSize];
+        int i = 0;
+        while (true) {
+            int c = 2 * i + 1;
+            if (c >= heapSize) {
+                break;
+            }
+            if (c + 1 < heapSize && compare(heap[c + 1], heap[c]) < 0) {
+                c++;
+            }
+            if (compare(last, heap[c]) <= 0) {
+                break;
+            }
+            heap[i] = heap[c];
+            i = c;
+        }
+        heap[i] = last;
+        return top;
+    }
+
+    private void push(int run) {
+        if (heapSize == heap.length) {
+            int h[] = new int[heapSize * 2];
+            System.arraycopy(heap, 0, h, 0, heapSize);
+            heap = h;
+        }
+        int i = heapSize++;
+        while (i > 0) {
+            int p = (i - 1) >>> 1;
+            if (compare(heap[p], run) <= 0) {
+                break;
+            }
+            heap[i] = heap[p];
+            i = p;
+        }
+        heap[i] = run;
+    }
+
+    private void sort() {
+        System.arraycopy(offsets, 0, temp, 0, count);
+        mergeSort(temp, offsets, 0, count);
+    }
+
+    private void spill(File file) {
+        try {
+            MemoryFile f = new MemoryFile(file, RUN_BIT_HINT, JournalMode.APPEND);
+            runs.add(f);
+            long pos = 0;
+            for (int i = 0; i < count; i++) {
+                long a = buffer + offsets[i];
+                int size = Unsafe.getUnsafe().getInt(a);
+                Unsafe.getUnsafe().copyMemory(a, f.addressOf(pos, size), size);
+                pos += size;
+            }
+            f.setAppendOffset(pos);
+            LOG.debug().$("Spilled ").$(count).$(" rows to ").$(file).$();
+        } catch (JournalException e) {
+            throw new JournalRuntimeException(e);
+        }
+        count = 0;
+        bufferPos = 0;
+    }
+
+    private class Run {
+        private final SpillRecord record;
+        private MemoryFile file;
+        // file offset or index of row in buffer
+        private long pos;
+        private long hi;
+        private long address;
+
+        private Run(RecordMetadata metadata) {
+            this.record = new SpillRecord(metadata);
+        }
+
+        private boolean advance() {
+            if (pos >= hi) {
+                return false;
+            }
+
+            if (file == null) {
+                address = buffer + offsets[(int) pos++];
+            } else {
+                int size = Unsafe.getUnsafe().getInt(file.addressOf(pos, 4));
+                address = file.addressOf(pos, size);
+                pos += size;
+            }
+            record.of(address);
+            return true;
+        }
+    }
+}
@@ -84,6 +84,11 @@ public class RBTreeSortedRecordSource extends AbstractRecordSource implements Mu
         Misc.free(mem);
     }
 
+    @Override
+    public long getMemUsed() {
+        return recordList.getMemUsed() + mem.getMemUsed() + delegate.getMemUsed();
+    }
+
     @Override
     public RecordMetadata getMetadata() {
         return delegate.getMetadata();
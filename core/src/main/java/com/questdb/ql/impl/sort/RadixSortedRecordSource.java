@@ -0,0 +1,447 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl.sort;
+
+import com.questdb.factory.JournalReaderFactory;
+import com.questdb.factory.configuration.RecordMetadata;
+import com.questdb.misc.Chars;
+import com.questdb.misc.Misc;
+import com.questdb.misc.Unsafe;
+import com.questdb.ql.*;
+import com.questdb.ql.ops.AbstractCombinedRecordSource;
+import com.questdb.std.CharSink;
+import com.questdb.std.IntList;
+import com.questdb.std.ObjList;
+import com.questdb.store.ColumnType;
+import com.questdb.store.SymbolTable;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Sort for keys made of fixed size columns. Key columns of each row are normalized into single
+ * unsigned number, which compares the same way as comparator would compare rows, and are written
+ * together with row reference into flat buffer. Buffer is then sorted with LSD radix sort one byte
+ * at a time. Bytes that are the same in all keys, such as high bytes of timestamps, are skipped.
+ * <p>
+ * Symbols are replaced with rank of their value in symbol table. Row reference is row id when
+ * source supports row ids, otherwise record is copied. Radix sort is stable, so equal rows keep
+ * order of the source.
+ */
+public class RadixSortedRecordSource extends AbstractCombinedRecordSource {
+    private static final int MIN_CAPACITY = 1024;
+    private final RecordSource delegate;
+    private final boolean byRowId;
+    private final Record record;
+    private final SpillRecord copy;
+    private final int columns[];
+    private final int types[];
+    private final boolean descending[];
+    // offset of column value in key
+    private final int offsets[];
+    private final int keySize;
+    private final int entrySize;
+    private final ObjList<int[]> ranks = new ObjList<>();
+    private final long histogram[];
+    private long entries = 0;
+    private long capacity = 0;
+    private long count = 0;
+    private long copies = 0;
+    private long copiesSize = 0;
+    private long copiesPos = 0;
+    private long index;
+    private RecordCursor sourceCursor;
+
+    public RadixSortedRecordSource(RecordSource delegate, IntList keyColumns) {
+        this.delegate = delegate;
+        this.byRowId = delegate.supportsRowIdAccess();
+        RecordMetadata m = delegate.getMetadata();
+        if (byRowId) {
+            this.record = delegate.newRecord();
+            this.copy = null;
+        } else {
+            this.record = new SpillRecord(m);
+            this.copy = new SpillRecord(m);
+        }
+
+        int n = keyColumns.size();
+        this.columns = new int[n];
+        this.types = new int[n];
+        this.descending = new boolean[n];
+        this.offsets = new int[n];
+
+        // first column is most significant, it goes to the end of little-endian key
+        int size = 0;
+        for (int i = n - 1; i > -1; i--) {
+            int k = keyColumns.getQuick(i);
+            columns[i] = (k > 0 ? k : -k) - 1;
+            descending[i] = k < 0;
+            types[i] = m.getColumnQuick(columns[i]).getType();
+            offsets[i] = size;
+            size += ColumnType.sizeOf(types[i]);
+            ranks.add(null);
+        }
+        this.keySize = size;
+        // padding is always zero and is skipped by sort
+        this.entrySize = ((size + 7) & ~7) + 8;
+        this.histogram = new long[keySize * 256];
+    }
+
+    /**
+     * Checks if radix sort can be used for given key.
+     *
+     * @param m          metadata of source
+     * @param keyColumns 1-based column indexes, negative for descending order
+     * @return true if every column is of fixed size
+     */
+    public static boolean isSupported(RecordMetadata m, IntList keyColumns) {
+        for (int i = 0, n = keyColumns.size(); i < n; i++) {
+            int k = keyColumns.getQuick(i);
+            switch (m.getColumnQuick((k > 0 ? k : -k) - 1).getType()) {
+                case ColumnType.BOOLEAN:
+                case ColumnType.BYTE:
+                case ColumnType.SHORT:
+                case ColumnType.INT:
+                case ColumnType.LONG:
+                case ColumnType.DATE:
+                case ColumnType.FLOAT:
+                case ColumnType.DOUBLE:
+                case ColumnType.SYMBOL:
+                    break;
+                default:
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        clear();
+        if (entries != 0) {
+            Unsafe.free(entries, capacity * entrySize);
+            entries = 0;
+            capacity = 0;
+        }
+        if (copies != 0) {
+            Unsafe.free(copies, copiesSize);
+            copies = 0;
+            copiesSize = 0;
+        }
+        Misc.free(delegate);
+    }
+
+    @Override
+    public long getMemUsed() {
+        return capacity * entrySize + copiesSize + delegate.getMemUsed();
+    }
+
+    @Override
+    public RecordMetadata getMetadata() {
+        return delegate.getMetadata();
+    }
+
+    @Override
+    public RecordCursor prepareCursor(JournalReaderFactory factory, CancellationHandler cancellationHandler) {
+        clear();
+        sourceCursor = delegate.prepareCursor(factory, cancellationHandler);
+        if (!byRowId) {
+            ((SpillRecord) record).setStorageFacade(sourceCursor.getStorageFacade());
+        }
+        rank(sourceCursor.getStorageFacade());
+
+        while (sourceCursor.hasNext()) {
+            cancellationHandler.check();
+            add(sourceCursor.next());
+        }
+        sort();
+        toTop();
+        return this;
+    }
+
+    @Override
+    public Record getRecord() {
+        return record;
+    }
+
+    @Override
+    public Record newRecord() {
+        if (byRowId) {
+            return delegate.newRecord();
+        }
+        SpillRecord r = new SpillRecord(delegate.getMetadata());
+        r.setStorageFacade(sourceCursor == null ? null : sourceCursor.getStorageFacade());
+        return r;
+    }
+
+    @Override
+    public StorageFacade getStorageFacade() {
+        return sourceCursor.getStorageFacade();
+    }
+
+    @Override
+    public void toTop() {
+        index = 0;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return index < count;
+    }
+
+    @Override
+    public Record next() {
+        long ref = Unsafe.getUnsafe().getLong(entries + index++ * entrySize + entrySize - 8);
+        // copies do not move once sorted, row id of copy is its address
+        return recordAt(byRowId ? ref : copies + ref);
+    }
+
+    @Override
+    public Record recordAt(long rowId) {
+        recordAt(record, rowId);
+        return record;
+    }
+
+    @Override
+    public void recordAt(Record record, long atRowId) {
+        if (byRowId) {
+            sourceCursor.recordAt(record, atRowId);
+        } else {
+            ((SpillRecord) record).of(atRowId);
+        }
+    }
+
+    @Override
+    public boolean supportsRowIdAccess() {
+        return true;
+    }
+
+    @Override
+    public void toSink(CharSink sink) {
+        sink.put('{');
+        sink.putQuoted("op").put(':').putQuoted("RadixSortedRecordSource").put(',');
+        sink.putQuoted("byRowId").put(':').put(byRowId).put(',');
+        sink.putQuoted("src").put(':').put(delegate);
+        sink.put('}');
+    }
+
+    private static long normalize(double d) {
+        // NaN is less than any number, same as in Numbers.compare()
+        if (d != d) {
+            return 0;
+        }
+        long bits = Double.doubleToLongBits(d);
+        if (bits < 0) {
+            // -0.0 is greater than 0.0 in Numbers.compare(), it takes key between 0.0 and smallest positive number
+            return bits == Long.MIN_VALUE ? Long.MIN_VALUE + 1 : ~bits;
+        }
+        return bits == 0 ? Long.MIN_VALUE : (bits ^ Long.MIN_VALUE) + 1;
+    }
+
+    private static int normalize(float f) {
+        if (f != f) {
+            return 0;
+        }
+        int bits = Float.floatToIntBits(f);
+        if (bits < 0) {
+            return bits == Integer.MIN_VALUE ? Integer.MIN_VALUE + 1 : ~bits;
+        }
+        return bits == 0 ? Integer.MIN_VALUE : (bits ^ Integer.MIN_VALUE) + 1;
+    }
+
+    private void add(Record r) {
+        if (count == capacity) {
+            long c = capacity == 0 ? MIN_CAPACITY : capacity * 2;
+            long e = Unsafe.malloc(c * entrySize);
+            if (entries != 0) {
+                Unsafe.getUnsafe().copyMemory(entries, e, count * entrySize);
+                Unsafe.free(entries, capacity * entrySize);
+            }
+            entries = e;
+            capacity = c;
+        }
+
+        long p = entries + count++ * entrySize;
+        Unsafe.getUnsafe().setMemory(p, entrySize - 8, (byte) 0);
+        for (int i = 0, n = columns.length; i < n; i++) {
+            long a = p + offsets[i];
+            int col = columns[i];
+            boolean desc = descending[i];
+            switch (types[i]) {
+                case ColumnType.BOOLEAN:
+                    Unsafe.getUnsafe().putByte(a, (byte) ((r.getBool(col) ? 1 : 0) ^ (desc ? 0xff : 0)));
+                    break;
+                case ColumnType.BYTE:
+                    Unsafe.getUnsafe().putByte(a, (byte) (r.get(col) ^ (desc ? 0x7f : 0x80)));
+                    break;
+                case ColumnType.SHORT:
+                    Unsafe.getUnsafe().putShort(a, (short) (r.getShort(col) ^ (desc ? 0x7fff : 0x8000)));
+                    break;
+                case ColumnType.INT:
+                    Unsafe.getUnsafe().putInt(a, r.getInt(col) ^ (desc ? Integer.MAX_VALUE : Integer.MIN_VALUE));
+                    break;
+                case ColumnType.SYMBOL:
+                    int rank = ranks.getQuick(i)[r.getInt(col) + 1];
+                    Unsafe.getUnsafe().putInt(a, desc ? ~rank : rank);
+                    break;
+                case ColumnType.LONG:
+                    Unsafe.getUnsafe().putLong(a, r.getLong(col) ^ (desc ? Long.MAX_VALUE : Long.MIN_VALUE));
+                    break;
+                case ColumnType.DATE:
+                    Unsafe.getUnsafe().putLong(a, r.getDate(col) ^ (desc ? Long.MAX_VALUE : Long.MIN_VALUE));
+                    break;
+                case ColumnType.FLOAT:
+                    int f = normalize(r.getFloat(col));
+                    Unsafe.getUnsafe().putInt(a, desc ? ~f : f);
+                    break;
+                case ColumnType.DOUBLE:
+                    long d = normalize(r.getDouble(col));
+                    Unsafe.getUnsafe().putLong(a, desc ? ~d : d);
+                    break;
+                default:
+                    break;
+            }
+        }
+        Unsafe.getUnsafe().putLong(p + entrySize - 8, byRowId ? r.getRowId() : keep(r));
+    }
+
+    private void clear() {
+        count = 0;
+        copiesPos = 0;
+        index = 0;
+    }
+
+    private long keep(Record r) {
+        int size = copy.sizeOf(r);
+        if (copiesPos + size > copiesSize) {
+            long sz = Math.max(copiesSize == 0 ? MIN_CAPACITY * 64 : copiesSize * 2, copiesPos + size);
+            long c = Unsafe.malloc(sz);
+            if (copies != 0) {
+                Unsafe.getUnsafe().copyMemory(copies, c, copiesPos);
+                Unsafe.free(copies, copiesSize);
+            }
+            copies = c;
+            copiesSize = sz;
+        }
+        long offset = copiesPos;
+        copiesPos += copy.copy(r, copies + offset);
+        return offset;
+    }
+
+    private void rank(StorageFacade facade) {
+        for (int i = 0, n = columns.length; i < n; i++) {
+            if (types[i] != ColumnType.SYMBOL) {
+                continue;
+            }
+
+            final SymbolTable tab = facade.getSymbolTable(columns[i]);
+            int size = tab.size();
+            Integer keys[] = new Integer[size];
+            for (int k = 0; k < size; k++) {
+                keys[k] = k;
+            }
+            Arrays.sort(keys, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer o1, Integer o2) {
+                    return Chars.compare(tab.value(o1), tab.value(o2));
+                }
+            });
+
+            // null is first, rank is key shifted by 1
+            int rank[] = new int[size + 1];
+            for (int k = 0; k < size; k++) {
+                rank[keys[k] + 1] = k + 1;
+            }
+            ranks.setQuick(i, rank);
+        }
+    }
+
+    private void sort() {
+        if (count < 2) {
+            return;
+        }
+
+        // one pass for histograms of all key bytes
+        Arrays.fill(histogram, 0);
+        for (long p = entries, hi = entries + count * entrySize; p < hi; p += entrySize) {
+            for (int b = 0; b < keySize; b++) {
+                histogram[(b << 8) + (Unsafe.getUnsafe().getByte(p + b) & 0xff)]++;
+            }
+        }
+
+        long src = entries;
+        long dst = 0;
+        for (int b = 0; b < keySize; b++) {
+            int base = b << 8;
+            // all keys have same byte, nothing to do
+            boolean trivial = false;
+            for (int v = 0; v < 256; v++) {
+                long c = histogram[base + v];
+                if (c != 0) {
+                    trivial = c == count;
+                    break;
+                }
+            }
+
+            if (trivial) {
+                continue;
+            }
+
+            if (dst == 0) {
+                dst = Unsafe.malloc(capacity * entrySize);
+            }
+
+            long pos = 0;
+            for (int v = 0; v < 256; v++) {
+                long c = histogram[base + v];
+                histogram[base + v] = pos;
+                pos += c;
+            }
+
+            for (long p = src, hi = src + count * entrySize; p < hi; p += entrySize) {
+                int v = Unsafe.getUnsafe().getByte(p + b) & 0xff;
+                long to = dst + histogram[base + v]++ * entrySize;
+                for (int k = 0; k < entrySize; k += 8) {
+                    Unsafe.getUnsafe().putLong(to + k, Unsafe.getUnsafe().getLong(p + k));
+                }
+            }
+
+            long t = src;
+            src = dst;
+            dst = t;
+        }
+
+        if (src != entries) {
+            // sorted entries are in the second buffer, it becomes main one
+            long t = entries;
+            entries = src;
+            dst = t;
+        }
+
+        if (dst != 0) {
+            Unsafe.free(dst, capacity * entrySize);
+        }
+    }
+}
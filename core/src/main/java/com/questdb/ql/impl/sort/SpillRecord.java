@@ -0,0 +1,357 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl.sort;
+
+import com.questdb.ex.JournalRuntimeException;
+import com.questdb.factory.configuration.RecordMetadata;
+import com.questdb.misc.Chars;
+import com.questdb.misc.Unsafe;
+import com.questdb.ql.AbstractRecord;
+import com.questdb.ql.Record;
+import com.questdb.ql.StorageFacade;
+import com.questdb.std.CharSink;
+import com.questdb.std.DirectCharSequence;
+import com.questdb.std.DirectInputStream;
+import com.questdb.store.ColumnType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Record stored in contiguous block of memory, which does not contain absolute addresses. Block can
+ * be copied to a file and read back from mapped memory as is.
+ * <pre>
+ *     int size
+ *     int varOffsets[varColumnCount]   offsets of variable length values relative to start of block
+ *     fixed values
+ *     variable length values           string: int len, chars; binary: long len, bytes
+ * </pre>
+ * Null strings and binary values have length of -1.
+ */
+public class SpillRecord extends AbstractRecord {
+    private final DirectCharSequence csA = new DirectCharSequence();
+    private final DirectCharSequence csB = new DirectCharSequence();
+    private final SpillInputStream stream = new SpillInputStream();
+    private final RecordMetadata metadata;
+    private final int offsets[];
+    private final int fixedEnd;
+    private long address;
+    private StorageFacade storageFacade;
+
+    public SpillRecord(RecordMetadata metadata) {
+        this.metadata = metadata;
+        int n = metadata.getColumnCount();
+        this.offsets = new int[n];
+
+        int varCount = 0;
+        for (int i = 0; i < n; i++) {
+            if (ColumnType.sizeOf(metadata.getColumnQuick(i).getType()) == 0) {
+                varCount++;
+            }
+        }
+
+        int fixed = 4 + varCount * 4;
+        int var = 4;
+        for (int i = 0; i < n; i++) {
+            int size = ColumnType.sizeOf(metadata.getColumnQuick(i).getType());
+            if (size == 0) {
+                offsets[i] = var;
+                var += 4;
+            } else {
+                offsets[i] = fixed;
+                fixed += size;
+            }
+        }
+        this.fixedEnd = fixed;
+    }
+
+    /**
+     * Writes record to given address. Caller must make sure there are at least {@link #sizeOf(Record)}
+     * bytes available.
+     *
+     * @param record  record to copy
+     * @param address address to write to
+     * @return size of written block
+     */
+    public int copy(Record record, long address) {
+        int p = fixedEnd;
+        for (int i = 0, n = offsets.length; i < n; i++) {
+            long a = address + offsets[i];
+            switch (metadata.getColumnQuick(i).getType()) {
+                case ColumnType.BOOLEAN:
+                    Unsafe.getUnsafe().putByte(a, (byte) (record.getBool(i) ? 1 : 0));
+                    break;
+                case ColumnType.BYTE:
+                    Unsafe.getUnsafe().putByte(a, record.get(i));
+                    break;
+                case ColumnType.DOUBLE:
+                    Unsafe.getUnsafe().putDouble(a, record.getDouble(i));
+                    break;
+                case ColumnType.FLOAT:
+                    Unsafe.getUnsafe().putFloat(a, record.getFloat(i));
+                    break;
+                case ColumnType.INT:
+                case ColumnType.SYMBOL:
+                    Unsafe.getUnsafe().putInt(a, record.getInt(i));
+                    break;
+                case ColumnType.LONG:
+                    Unsafe.getUnsafe().putLong(a, record.getLong(i));
+                    break;
+                case ColumnType.DATE:
+                    Unsafe.getUnsafe().putLong(a, record.getDate(i));
+                    break;
+                case ColumnType.SHORT:
+                    Unsafe.getUnsafe().putShort(a, record.getShort(i));
+                    break;
+                case ColumnType.STRING:
+                    Unsafe.getUnsafe().putInt(a, p);
+                    CharSequence cs = record.getFlyweightStr(i);
+                    if (cs == null) {
+                        Unsafe.getUnsafe().putInt(address + p, -1);
+                        p += 4;
+                    } else {
+                        p += Chars.put(address + p, cs);
+                    }
+                    break;
+                case ColumnType.BINARY:
+                    Unsafe.getUnsafe().putInt(a, p);
+                    DirectInputStream s = record.getBin(i);
+                    long len = s == null ? -1L : s.size();
+                    Unsafe.getUnsafe().putLong(address + p, len);
+                    p += 8;
+                    if (len > 0) {
+                        s.copyTo(address + p, 0, len);
+                        p += len;
+                    }
+                    break;
+                default:
+                    throw new JournalRuntimeException("Unsupported type: " + metadata.getColumnQuick(i).getType());
+            }
+        }
+        Unsafe.getUnsafe().putInt(address, p);
+        return p;
+    }
+
+    @Override
+    public byte get(int col) {
+        return Unsafe.getUnsafe().getByte(address + Unsafe.arrayGet(offsets, col));
+    }
+
+    @Override
+    public void getBin(int col, OutputStream s) {
+        long a = varAddress(col);
+        long len = Unsafe.getUnsafe().getLong(a);
+        try {
+            for (long p = a + 8, hi = a + 8 + len; p < hi; p++) {
+                s.write(Unsafe.getUnsafe().getByte(p));
+            }
+        } catch (IOException e) {
+            throw new JournalRuntimeException("Reading binary column failed", e);
+        }
+    }
+
+    @Override
+    public DirectInputStream getBin(int col) {
+        long a = varAddress(col);
+        long len = Unsafe.getUnsafe().getLong(a);
+        if (len < 0) {
+            return null;
+        }
+        return stream.of(a + 8, len);
+    }
+
+    @Override
+    public long getBinLen(int col) {
+        return Unsafe.getUnsafe().getLong(varAddress(col));
+    }
+
+    @Override
+    public boolean getBool(int col) {
+        return Unsafe.getBool(address + Unsafe.arrayGet(offsets, col));
+    }
+
+    @Override
+    public long getDate(int col) {
+        return Unsafe.getUnsafe().getLong(address + Unsafe.arrayGet(offsets, col));
+    }
+
+    @Override
+    public double getDouble(int col) {
+        return Unsafe.getUnsafe().getDouble(address + Unsafe.arrayGet(offsets, col));
+    }
+
+    @Override
+    public float getFloat(int col) {
+        return Unsafe.getUnsafe().getFloat(address + Unsafe.arrayGet(offsets, col));
+    }
+
+    /**
+     * @return size of record without contents of string and binary columns
+     */
+    public int getFixedSize() {
+        return fixedEnd;
+    }
+
+    @Override
+    public CharSequence getFlyweightStr(int col) {
+        return str(col, csA);
+    }
+
+    @Override
+    public CharSequence getFlyweightStrB(int col) {
+        return str(col, csB);
+    }
+
+    @Override
+    public int getInt(int col) {
+        return Unsafe.getUnsafe().getInt(address + Unsafe.arrayGet(offsets, col));
+    }
+
+    @Override
+    public long getLong(int col) {
+        return Unsafe.getUnsafe().getLong(address + Unsafe.arrayGet(offsets, col));
+    }
+
+    @Override
+    public long getRowId() {
+        return address;
+    }
+
+    @Override
+    public short getShort(int col) {
+        return Unsafe.getUnsafe().getShort(address + Unsafe.arrayGet(offsets, col));
+    }
+
+    @Override
+    public CharSequence getStr(int col) {
+        CharSequence cs = str(col, csA);
+        return cs == null ? null : cs.toString();
+    }
+
+    @Override
+    public void getStr(int col, CharSink sink) {
+        long a = varAddress(col);
+        int len = Unsafe.getUnsafe().getInt(a);
+        for (int i = 0; i < len; i++) {
+            sink.put(Unsafe.getUnsafe().getChar(a + 4 + i * 2));
+        }
+    }
+
+    @Override
+    public int getStrLen(int col) {
+        return Unsafe.getUnsafe().getInt(varAddress(col));
+    }
+
+    @Override
+    public String getSym(int col) {
+        return storageFacade.getSymbolTable(col).value(getInt(col));
+    }
+
+    public SpillRecord of(long address) {
+        this.address = address;
+        return this;
+    }
+
+    public void setStorageFacade(StorageFacade storageFacade) {
+        this.storageFacade = storageFacade;
+    }
+
+    /**
+     * Computes size of block record would take. Variable length values are read, so for records,
+     * which produce them on the fly, it is cheaper to copy into oversized buffer and check returned size.
+     *
+     * @param record record to measure
+     * @return number of bytes
+     */
+    public int sizeOf(Record record) {
+        int size = fixedEnd;
+        for (int i = 0, n = offsets.length; i < n; i++) {
+            switch (metadata.getColumnQuick(i).getType()) {
+                case ColumnType.STRING:
+                    CharSequence cs = record.getFlyweightStr(i);
+                    size += cs == null ? 4 : cs.length() * 2 + 4;
+                    break;
+                case ColumnType.BINARY:
+                    DirectInputStream s = record.getBin(i);
+                    size += s == null ? 8 : s.size() + 8;
+                    break;
+                default:
+                    break;
+            }
+        }
+        return size;
+    }
+
+    private CharSequence str(int col, DirectCharSequence cs) {
+        long a = varAddress(col);
+        int len = Unsafe.getUnsafe().getInt(a);
+        if (len < 0) {
+            return null;
+        }
+        return cs.of(a + 4, a + 4 + len * 2);
+    }
+
+    private long varAddress(int col) {
+        return address + Unsafe.getUnsafe().getInt(address + Unsafe.arrayGet(offsets, col));
+    }
+
+    private static class SpillInputStream extends DirectInputStream {
+        private long address;
+        private long length;
+        private long position;
+
+        @Override
+        public long copyTo(long address, long start, long length) {
+            if (start < 0 || length < 0) {
+                throw new IndexOutOfBoundsException();
+            }
+            long n = Math.min(length, this.length - start);
+            if (n > 0) {
+                Unsafe.getUnsafe().copyMemory(this.address + start, address, n);
+            }
+            return n;
+        }
+
+        @Override
+        public long size() {
+            return length - position;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (position < length) {
+                return Unsafe.getUnsafe().getByte(address + position++) & 0xff;
+            }
+            return -1;
+        }
+
+        private SpillInputStream of(long address, long length) {
+            this.address = address;
+            this.length = length;
+            this.position = 0;
+            return this;
+        }
+    }
+}
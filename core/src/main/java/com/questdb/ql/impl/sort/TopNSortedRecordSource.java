@@ -0,0 +1,314 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl.sort;
+
+import com.questdb.factory.JournalReaderFactory;
+import com.questdb.factory.configuration.RecordMetadata;
+import com.questdb.misc.Misc;
+import com.questdb.misc.Unsafe;
+import com.questdb.ql.*;
+import com.questdb.ql.ops.AbstractCombinedRecordSource;
+import com.questdb.ql.ops.VirtualColumn;
+import com.questdb.std.CharSink;
+
+/**
+ * Sorts source for "order by ... limit lo, hi". Only first "hi" rows in sort order are kept on
+ * max-heap, every other row is compared to the largest kept row and is either thrown away or
+ * replaces it. Time is O(rows * log(hi)) and memory O(hi). When source supports row ids heap
+ * holds row ids, otherwise records are copied.
+ * <p>
+ * Equal rows keep order of the source, same as with full sort.
+ */
+public class TopNSortedRecordSource extends AbstractCombinedRecordSource {
+    private final RecordSource delegate;
+    private final RecordComparator comparator;
+    private final VirtualColumn lo;
+    private final VirtualColumn hi;
+    private final boolean byRowId;
+    private final Record left;
+    private final Record right;
+    private final SpillRecord copy;
+    private final Record record;
+    // row id or address of copied record
+    private long rows[] = new long[16];
+    // position in source, which makes order of equal rows stable
+    private long seqs[] = new long[16];
+    private int size = 0;
+    // memory of copied records
+    private long copiesSize = 0;
+    private int index;
+    private int top;
+    private RecordCursor sourceCursor;
+
+    public TopNSortedRecordSource(RecordSource delegate, RecordComparator comparator, VirtualColumn lo, VirtualColumn hi) {
+        this.delegate = delegate;
+        this.comparator = comparator;
+        this.lo = lo;
+        this.hi = hi;
+        this.byRowId = delegate.supportsRowIdAccess();
+        RecordMetadata m = delegate.getMetadata();
+        if (byRowId) {
+            this.left = delegate.newRecord();
+            this.right = delegate.newRecord();
+            this.record = delegate.newRecord();
+            this.copy = null;
+        } else {
+            this.left = new SpillRecord(m);
+            this.right = new SpillRecord(m);
+            this.record = new SpillRecord(m);
+            this.copy = new SpillRecord(m);
+        }
+    }
+
+    @Override
+    public void close() {
+        clear();
+        Misc.free(delegate);
+    }
+
+    @Override
+    public long getMemUsed() {
+        return copiesSize + delegate.getMemUsed();
+    }
+
+    @Override
+    public RecordMetadata getMetadata() {
+        return delegate.getMetadata();
+    }
+
+    @Override
+    public RecordCursor prepareCursor(JournalReaderFactory factory, CancellationHandler cancellationHandler) {
+        clear();
+        sourceCursor = delegate.prepareCursor(factory, cancellationHandler);
+        if (!byRowId) {
+            StorageFacade facade = sourceCursor.getStorageFacade();
+            ((SpillRecord) left).setStorageFacade(facade);
+            ((SpillRecord) right).setStorageFacade(facade);
+            ((SpillRecord) record).setStorageFacade(facade);
+        }
+
+        long limit = hi.getLong(null);
+        if (limit > 0) {
+            if (limit > Integer.MAX_VALUE) {
+                limit = Integer.MAX_VALUE;
+            }
+            collect((int) limit, cancellationHandler);
+            sortHeap();
+        }
+        toTop();
+        return this;
+    }
+
+    @Override
+    public Record getRecord() {
+        return record;
+    }
+
+    @Override
+    public Record newRecord() {
+        if (byRowId) {
+            return delegate.newRecord();
+        }
+        SpillRecord r = new SpillRecord(delegate.getMetadata());
+        r.setStorageFacade(sourceCursor == null ? null : sourceCursor.getStorageFacade());
+        return r;
+    }
+
+    @Override
+    public StorageFacade getStorageFacade() {
+        return sourceCursor.getStorageFacade();
+    }
+
+    @Override
+    public void toTop() {
+        long l = lo.getLong(null);
+        top = l < 0 ? 0 : l > size ? size : (int) l;
+        index = top;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return index < size;
+    }
+
+    @Override
+    public Record next() {
+        return recordAt(rows[index++]);
+    }
+
+    @Override
+    public Record recordAt(long rowId) {
+        recordAt(record, rowId);
+        return record;
+    }
+
+    @Override
+    public void recordAt(Record record, long atRowId) {
+        if (byRowId) {
+            sourceCursor.recordAt(record, atRowId);
+        } else {
+            ((SpillRecord) record).of(atRowId);
+        }
+    }
+
+    @Override
+    public boolean supportsRowIdAccess() {
+        return true;
+    }
+
+    @Override
+    public void toSink(CharSink sink) {
+        sink.put('{');
+        sink.putQuoted("op").put(':').putQuoted("TopNSortedRecordSource").put(',');
+        sink.putQuoted("byRowId").put(':').put(byRowId).put(',');
+        sink.putQuoted("low").put(':').put(lo.getLong(null)).put(',');
+        sink.putQuoted("high").put(':').put(hi.getLong(null)).put(',');
+        sink.putQuoted("src").put(':').put(delegate);
+        sink.put('}');
+    }
+
+    private void clear() {
+        if (!byRowId) {
+            for (int i = 0; i < size; i++) {
+                free(rows[i]);
+            }
+        }
+        size = 0;
+        index = 0;
+    }
+
+    private void collect(int limit, CancellationHandler cancellationHandler) {
+        long seq = 0;
+        while (sourceCursor.hasNext()) {
+            cancellationHandler.check();
+            Record r = sourceCursor.next();
+
+            if (size < limit) {
+                if (size == rows.length) {
+                    int len = Math.min(size * 2, limit);
+                    long r2[] = new long[len];
+                    long s2[] = new long[len];
+                    System.arraycopy(rows, 0, r2, 0, size);
+                    System.arraycopy(seqs, 0, s2, 0, size);
+                    rows = r2;
+                    seqs = s2;
+                }
+                rows[size] = keep(r);
+                seqs[size] = seq++;
+                siftUp(size++);
+                continue;
+            }
+
+            // row id is taken first, sources can share record between cursor and recordAt()
+            long rowId = byRowId ? r.getRowId() : -1;
+            // later row is greater than kept equal row, so only smaller rows replace the root
+            comparator.setLeft(r);
+            if (comparator.compare(load(right, rows[0])) < 0) {
+                if (byRowId) {
+                    rows[0] = rowId;
+                } else {
+                    free(rows[0]);
+                    rows[0] = keep(r);
+                }
+                seqs[0] = seq;
+                siftDown(0, size);
+            }
+            seq++;
+        }
+    }
+
+    private int compare(int a, int b) {
+        comparator.setLeft(load(left, rows[a]));
+        int cmp = comparator.compare(load(right, rows[b]));
+        return cmp == 0 ? Long.compare(seqs[a], seqs[b]) : cmp;
+    }
+
+    private void free(long address) {
+        int sz = Unsafe.getUnsafe().getInt(address);
+        Unsafe.free(address, sz);
+        copiesSize -= sz;
+    }
+
+    private long keep(Record r) {
+        if (byRowId) {
+            return r.getRowId();
+        }
+        int sz = copy.sizeOf(r);
+        long address = Unsafe.malloc(sz);
+        copiesSize += sz;
+        copy.copy(r, address);
+        return address;
+    }
+
+    private Record load(Record r, long row) {
+        recordAt(r, row);
+        return r;
+    }
+
+    private void siftDown(int i, int n) {
+        while (true) {
+            int c = 2 * i + 1;
+            if (c >= n) {
+                break;
+            }
+            if (c + 1 < n && compare(c + 1, c) > 0) {
+                c++;
+            }
+            if (compare(i, c) >= 0) {
+                break;
+            }
+            swap(i, c);
+            i = c;
+        }
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int p = (i - 1) >>> 1;
+            if (compare(p, i) >= 0) {
+                break;
+            }
+            swap(i, p);
+            i = p;
+        }
+    }
+
+    private void sortHeap() {
+        // largest row moves to the end until heap is empty
+        for (int n = size - 1; n > 0; n--) {
+            swap(0, n);
+            siftDown(0, n);
+        }
+    }
+
+    private void swap(int a, int b) {
+        long r = rows[a];
+        rows[a] = rows[b];
+        rows[b] = r;
+        long s = seqs[a];
+        seqs[a] = seqs[b];
+        seqs[b] = s;
+    }
+}
@@ -95,6 +95,11 @@ public class $ColsRecordSource extends AbstractRecordSource {
         Misc.free(records);
     }
 
+    @Override
+    public long getMemUsed() {
+        return records.getMemUsed();
+    }
+
     @Override
     public RecordMetadata getMetadata() {
         return metadata;
@@ -89,6 +89,11 @@ public class $TabsRecordSource extends AbstractRecordSource {
         Misc.free(records);
     }
 
+    @Override
+    public long getMemUsed() {
+        return records.getMemUsed();
+    }
+
     @Override
     public RecordMetadata getMetadata() {
         return metadata;
@@ -28,12 +28,25 @@ import com.questdb.ql.impl.interval.IntervalSource;
 import com.questdb.std.CharSequenceHashSet;
 import com.questdb.std.IntList;
 import com.questdb.std.Mutable;
+import com.questdb.std.ObjList;
 import com.questdb.std.ObjectFactory;
 
 public class IntrinsicModel implements Mutable {
     public static final IntrinsicModelFactory FACTORY = new IntrinsicModelFactory();
     public final CharSequenceHashSet keyValues = new CharSequenceHashSet();
     public final IntList keyValuePositions = new IntList();
+    /**
+     * Comparisons of numeric columns with constants or parameters. These remain part of filter
+     * and are only used to skip partitions, which statistics say cannot have matching rows.
+     */
+    public final ObjList<ExprNode> rangeNodes = new ObjList<>();
+    /**
+     * Bitmap indexed columns compared with constants. Rows must have one of included values,
+     * when there are any, and none of excluded values of every column.
+     */
+    public final ObjList<String> bitmapColumns = new ObjList<>();
+    public final ObjList<CharSequenceHashSet> bitmapIncluded = new ObjList<>();
+    public final ObjList<CharSequenceHashSet> bitmapExcluded = new ObjList<>();
     public String keyColumn;
     public long intervalLo = Long.MIN_VALUE;
     public long intervalHi = Long.MAX_VALUE;
@@ -51,6 +64,10 @@ public class IntrinsicModel implements Mutable {
         keyColumn = null;
         keyValues.clear();
         keyValuePositions.clear();
+        rangeNodes.clear();
+        bitmapColumns.clear();
+        bitmapIncluded.clear();
+        bitmapExcluded.clear();
         clearInterval();
         filter = null;
         millis = Long.MIN_VALUE;
@@ -36,7 +36,6 @@ import com.questdb.misc.Chars;
 import com.questdb.ql.RecordSource;
 import com.questdb.ql.impl.sys.SysFactories;
 import com.questdb.ql.impl.sys.SystemViewFactory;
-import com.questdb.ql.ops.Parameter;
 import com.questdb.ql.ops.VirtualColumn;
 import com.questdb.ql.parser.QueryError;
 import com.questdb.std.*;
@@ -72,7 +71,6 @@ public class QueryModel implements Mutable, ParsedModel {
     private final ArrayDeque<ExprNode> exprNodeStack = new ArrayDeque<>();
     private final CharSequenceIntHashMap orderHash = new CharSequenceIntHashMap(4, 0.5, -1);
     private final ObjList<ExprNode> joinColumns = new ObjList<>(4);
-    private CharSequenceObjHashMap<Parameter> parameterMap = new CharSequenceObjHashMap<>();
     private ExprNode whereClause;
     private ExprNode postJoinWhereClause;
     private QueryModel nestedModel;
@@ -169,7 +167,6 @@ public class QueryModel implements Mutable, ParsedModel {
         limitHiVc = null;
         limitLoVc = null;
         columnNameHistogram.clear();
-        parameterMap.clear();
         timestamp = null;
         exprNodeStack.clear();
         journalMetadata = null;
@@ -349,14 +346,6 @@ public class QueryModel implements Mutable, ParsedModel {
         this.orderedJoinModels = that;
     }
 
-    public CharSequenceObjHashMap<Parameter> getParameterMap() {
-        return parameterMap;
-    }
-
-    public void setParameterMap(CharSequenceObjHashMap<Parameter> parameterMap) {
-        this.parameterMap = parameterMap;
-    }
-
     public ObjList<ExprNode> getParsedWhere() {
         return parsedWhere;
     }
@@ -88,7 +88,9 @@ public final class FunctionFactories {
 
     public static VirtualColumnFactory<Function> find(Signature sig, ObjList<VirtualColumn> args) {
         final VirtualColumn vc;
-        if (sig.paramCount == 2 && (vc = args.getQuick(1)).isConstant()) {
+        // values of parameters are not known until execution, parameters declared
+        // as DOUBLE or STRING are only ever set to values of literals, which cannot be NaN or null
+        if (sig.paramCount == 2 && (vc = args.getQuick(1)).isConstant() && !(vc instanceof Parameter)) {
 
             switch (sig.paramTypes.getQuick(1)) {
                 case ColumnType.DOUBLE:
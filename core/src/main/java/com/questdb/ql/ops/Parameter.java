@@ -43,6 +43,26 @@ public class Parameter extends AbstractVirtualColumn {
         super(ColumnType.PARAMETER, position);
     }
 
+    private Parameter(int columnType, int position) {
+        super(columnType, position);
+    }
+
+    /**
+     * Creates parameter that reports given type to function lookup instead of generic PARAMETER type.
+     * Functions are then chosen exactly as they would be for a constant of that type, value has to be
+     * set before cursor is prepared.
+     *
+     * @param name       parameter name, including ':' prefix
+     * @param columnType type of values parameter will be set to
+     * @param position   position of parameter in query text
+     * @return typed parameter
+     */
+    public static Parameter declare(String name, int columnType, int position) {
+        Parameter p = new Parameter(columnType, position);
+        p.setName(name);
+        return p;
+    }
+
     public static VirtualColumn getOrCreate(ExprNode node, CharSequenceObjHashMap<Parameter> parameterMap) {
         Parameter p = parameterMap.get(node.token);
         if (p == null) {
@@ -71,6 +91,11 @@ public class Parameter extends AbstractVirtualColumn {
             case ColumnType.DOUBLE:
             case ColumnType.FLOAT:
                 return doubleValue;
+            case ColumnType.LONG:
+            case ColumnType.INT:
+            case ColumnType.SHORT:
+            case ColumnType.BYTE:
+                return longValue;
             default:
                 throw wrongType(ColumnType.DOUBLE);
         }
@@ -82,6 +107,11 @@ public class Parameter extends AbstractVirtualColumn {
             case ColumnType.DOUBLE:
             case ColumnType.FLOAT:
                 return (float) doubleValue;
+            case ColumnType.LONG:
+            case ColumnType.INT:
+            case ColumnType.SHORT:
+            case ColumnType.BYTE:
+                return longValue;
             default:
                 throw wrongType(ColumnType.DOUBLE);
         }
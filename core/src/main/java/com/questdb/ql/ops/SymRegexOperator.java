@@ -27,6 +27,7 @@ import com.questdb.ex.ParserException;
 import com.questdb.ql.Record;
 import com.questdb.ql.StorageFacade;
 import com.questdb.ql.parser.QueryError;
+import com.questdb.regex.Dfa;
 import com.questdb.regex.Matcher;
 import com.questdb.regex.Pattern;
 import com.questdb.regex.PatternSyntaxException;
@@ -44,6 +45,7 @@ public class SymRegexOperator extends AbstractBinaryOperator {
     };
     private final IntHashSet set = new IntHashSet();
     private Matcher matcher;
+    private Dfa dfa;
 
     private SymRegexOperator(int position) {
         super(ColumnType.BOOLEAN, position);
@@ -60,7 +62,8 @@ public class SymRegexOperator extends AbstractBinaryOperator {
         set.clear();
         SymbolTable tab = lhs.getSymbolTable();
         for (int i = 0, n = tab.size(); i < n; i++) {
-            if (matcher.reset(tab.value(i)).find()) {
+            CharSequence value = tab.value(i);
+            if (dfa != null ? dfa.find(value) : matcher.reset(value).find()) {
                 set.add(i);
             }
         }
@@ -76,6 +79,7 @@ public class SymRegexOperator extends AbstractBinaryOperator {
 
         try {
             matcher = Pattern.compile(pattern.toString()).matcher("");
+            dfa = Dfa.compile(pattern, matcher);
         } catch (PatternSyntaxException e) {
             throw QueryError.position(rhs.getPosition() + e.getIndex() + 2).$("Regex syntax error. ").$(e.getDescription()).$();
         }
@@ -74,6 +74,17 @@ public final class VwapAggregator extends AbstractBinaryOperator implements Aggr
     public void clear() {
     }
 
+    @Override
+    public void merge(AggregatorFunction partial, DirectMapValues partialValues, DirectMapValues values) {
+        if (values.isNew()) {
+            values.putDouble(sumAmtIdx, partialValues.getDouble(sumAmtIdx));
+            values.putDouble(sumQtyIdx, partialValues.getDouble(sumQtyIdx));
+        } else {
+            values.putDouble(sumAmtIdx, values.getDouble(sumAmtIdx) + partialValues.getDouble(sumAmtIdx));
+            values.putDouble(sumQtyIdx, values.getDouble(sumQtyIdx) + partialValues.getDouble(sumQtyIdx));
+        }
+    }
+
     @Override
     public void prepare(ObjList<RecordColumnMetadata> columns, int offset) {
         columns.add(INTERNAL_COL_AMOUNT);
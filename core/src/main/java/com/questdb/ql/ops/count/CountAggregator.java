@@ -25,17 +25,20 @@ package com.questdb.ql.ops.count;
 
 import com.questdb.factory.configuration.RecordColumnMetadata;
 import com.questdb.ql.AggregatorFunction;
+import com.questdb.ql.BatchAggregatorFunction;
 import com.questdb.ql.Record;
+import com.questdb.ql.RecordBatch;
 import com.questdb.ql.StorageFacade;
 import com.questdb.ql.impl.map.DirectMapValues;
 import com.questdb.ql.ops.AbstractVirtualColumn;
 import com.questdb.ql.ops.Function;
 import com.questdb.ql.ops.VirtualColumn;
 import com.questdb.ql.ops.VirtualColumnFactory;
+import com.questdb.std.IntList;
 import com.questdb.std.ObjList;
 import com.questdb.store.ColumnType;
 
-public final class CountAggregator extends AbstractVirtualColumn implements AggregatorFunction, Function {
+public final class CountAggregator extends AbstractVirtualColumn implements BatchAggregatorFunction, Function {
 
     public static final VirtualColumnFactory<Function> FACTORY = new VirtualColumnFactory<Function>() {
         @Override
@@ -49,6 +52,20 @@ public final class CountAggregator extends AbstractVirtualColumn implements Aggr
         super(ColumnType.LONG, position);
     }
 
+    @Override
+    public boolean addBatchColumns(IntList columns) {
+        return true;
+    }
+
+    @Override
+    public void calculate(RecordBatch batch, DirectMapValues values) {
+        if (values.isNew()) {
+            values.putLong(index, batch.size());
+        } else {
+            values.putLong(index, values.getLong(index) + batch.size());
+        }
+    }
+
     @Override
     public void calculate(Record rec, DirectMapValues values) {
         if (values.isNew()) {
@@ -58,6 +75,15 @@ public final class CountAggregator extends AbstractVirtualColumn implements Aggr
         }
     }
 
+    @Override
+    public void merge(AggregatorFunction partial, DirectMapValues partialValues, DirectMapValues values) {
+        if (values.isNew()) {
+            values.putLong(index, partialValues.getLong(index));
+        } else {
+            values.putLong(index, values.getLong(index) + partialValues.getLong(index));
+        }
+    }
+
     @Override
     public void clear() {
     }
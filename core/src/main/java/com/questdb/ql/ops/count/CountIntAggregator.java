@@ -24,6 +24,7 @@
 package com.questdb.ql.ops.count;
 
 import com.questdb.misc.Numbers;
+import com.questdb.ql.AggregatorFunction;
 import com.questdb.ql.Record;
 import com.questdb.ql.impl.map.DirectMapValues;
 import com.questdb.ql.ops.AbstractUnaryAggregator;
@@ -54,4 +55,13 @@ public final class CountIntAggregator extends AbstractUnaryAggregator {
         }
     }
 
+    @Override
+    public void merge(AggregatorFunction partial, DirectMapValues partialValues, DirectMapValues values) {
+        if (values.isNew()) {
+            values.putLong(valueIndex, partialValues.getLong(valueIndex));
+        } else {
+            values.putLong(valueIndex, values.getLong(valueIndex) + partialValues.getLong(valueIndex));
+        }
+    }
+
 }
@@ -23,6 +23,7 @@
 
 package com.questdb.ql.ops.first;
 
+import com.questdb.ql.AggregatorFunction;
 import com.questdb.ql.Record;
 import com.questdb.ql.impl.map.DirectMapValues;
 import com.questdb.ql.ops.AbstractUnaryAggregator;
@@ -50,4 +51,11 @@ public final class FirstDoubleAggregator extends AbstractUnaryAggregator {
         }
     }
 
+    @Override
+    public void merge(AggregatorFunction partial, DirectMapValues partialValues, DirectMapValues values) {
+        if (values.isNew()) {
+            values.putDouble(valueIndex, partialValues.getDouble(valueIndex));
+        }
+    }
+
 }
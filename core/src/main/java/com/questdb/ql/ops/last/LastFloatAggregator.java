@@ -23,6 +23,7 @@
 
 package com.questdb.ql.ops.last;
 
+import com.questdb.ql.AggregatorFunction;
 import com.questdb.ql.Record;
 import com.questdb.ql.impl.map.DirectMapValues;
 import com.questdb.ql.ops.AbstractUnaryAggregator;
@@ -48,4 +49,9 @@ public final class LastFloatAggregator extends AbstractUnaryAggregator {
         values.putFloat(valueIndex, value.getFloat(rec));
     }
 
+    @Override
+    public void merge(AggregatorFunction partial, DirectMapValues partialValues, DirectMapValues values) {
+        values.putFloat(valueIndex, partialValues.getFloat(valueIndex));
+    }
+
 }
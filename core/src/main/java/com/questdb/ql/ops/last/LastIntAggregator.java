@@ -23,6 +23,7 @@
 
 package com.questdb.ql.ops.last;
 
+import com.questdb.ql.AggregatorFunction;
 import com.questdb.ql.Record;
 import com.questdb.ql.impl.map.DirectMapValues;
 import com.questdb.ql.ops.AbstractUnaryAggregator;
@@ -48,4 +49,9 @@ public final class LastIntAggregator extends AbstractUnaryAggregator {
         values.putInt(valueIndex, value.getInt(rec));
     }
 
+    @Override
+    public void merge(AggregatorFunction partial, DirectMapValues partialValues, DirectMapValues values) {
+        values.putInt(valueIndex, partialValues.getInt(valueIndex));
+    }
+
 }
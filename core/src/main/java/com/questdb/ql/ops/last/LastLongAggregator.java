@@ -23,6 +23,7 @@
 
 package com.questdb.ql.ops.last;
 
+import com.questdb.ql.AggregatorFunction;
 import com.questdb.ql.Record;
 import com.questdb.ql.impl.map.DirectMapValues;
 import com.questdb.ql.ops.AbstractUnaryAggregator;
@@ -48,4 +49,9 @@ public final class LastLongAggregator extends AbstractUnaryAggregator {
         values.putLong(valueIndex, value.getLong(rec));
     }
 
+    @Override
+    public void merge(AggregatorFunction partial, DirectMapValues partialValues, DirectMapValues values) {
+        values.putLong(valueIndex, partialValues.getLong(valueIndex));
+    }
+
 }
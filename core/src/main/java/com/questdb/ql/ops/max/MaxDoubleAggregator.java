@@ -23,14 +23,20 @@
 
 package com.questdb.ql.ops.max;
 
+import com.questdb.misc.Unsafe;
+import com.questdb.ql.AggregatorFunction;
+import com.questdb.ql.BatchAggregatorFunction;
 import com.questdb.ql.Record;
+import com.questdb.ql.RecordBatch;
 import com.questdb.ql.impl.map.DirectMapValues;
 import com.questdb.ql.ops.AbstractUnaryAggregator;
 import com.questdb.ql.ops.Function;
 import com.questdb.ql.ops.VirtualColumnFactory;
+import com.questdb.ql.ops.col.DoubleRecordSourceColumn;
+import com.questdb.std.IntList;
 import com.questdb.store.ColumnType;
 
-public final class MaxDoubleAggregator extends AbstractUnaryAggregator {
+public final class MaxDoubleAggregator extends AbstractUnaryAggregator implements BatchAggregatorFunction {
 
     public static final VirtualColumnFactory<Function> FACTORY = new VirtualColumnFactory<Function>() {
         @Override
@@ -39,10 +45,44 @@ public final class MaxDoubleAggregator extends AbstractUnaryAggregator {
         }
     };
 
+    private int batchColumn;
+
     private MaxDoubleAggregator(int position) {
         super(ColumnType.DOUBLE, position);
     }
 
+    @Override
+    public boolean addBatchColumns(IntList columns) {
+        if (value instanceof DoubleRecordSourceColumn) {
+            batchColumn = ((DoubleRecordSourceColumn) value).getIndex();
+            columns.add(batchColumn);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void calculate(RecordBatch batch, DirectMapValues values) {
+        long address = batch.getAddress(batchColumn);
+        int n = batch.size();
+        int i = 0;
+        double max;
+        if (values.isNew()) {
+            max = Unsafe.getUnsafe().getDouble(address + ((long) batch.getRow(0) << 3));
+            i = 1;
+        } else {
+            max = values.getDouble(valueIndex);
+        }
+
+        for (; i < n; i++) {
+            double v = Unsafe.getUnsafe().getDouble(address + ((long) batch.getRow(i) << 3));
+            if (v > max) {
+                max = v;
+            }
+        }
+        values.putDouble(valueIndex, max);
+    }
+
     @Override
     public void calculate(Record rec, DirectMapValues values) {
         double v = value.getDouble(rec);
@@ -51,4 +91,12 @@ public final class MaxDoubleAggregator extends AbstractUnaryAggregator {
         }
     }
 
+    @Override
+    public void merge(AggregatorFunction partial, DirectMapValues partialValues, DirectMapValues values) {
+        double v = partialValues.getDouble(valueIndex);
+        if (values.isNew() || v > values.getDouble(valueIndex)) {
+            values.putDouble(valueIndex, v);
+        }
+    }
+
 }
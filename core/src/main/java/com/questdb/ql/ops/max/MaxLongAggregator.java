@@ -23,6 +23,7 @@
 
 package com.questdb.ql.ops.max;
 
+import com.questdb.ql.AggregatorFunction;
 import com.questdb.ql.Record;
 import com.questdb.ql.impl.map.DirectMapValues;
 import com.questdb.ql.ops.AbstractUnaryAggregator;
@@ -50,4 +51,12 @@ public final class MaxLongAggregator extends AbstractUnaryAggregator {
         }
     }
 
+    @Override
+    public void merge(AggregatorFunction partial, DirectMapValues partialValues, DirectMapValues values) {
+        long v = partialValues.getLong(valueIndex);
+        if (values.isNew() || v > values.getLong(valueIndex)) {
+            values.putLong(valueIndex, v);
+        }
+    }
+
 }
@@ -23,14 +23,20 @@
 
 package com.questdb.ql.ops.min;
 
+import com.questdb.misc.Unsafe;
+import com.questdb.ql.AggregatorFunction;
+import com.questdb.ql.BatchAggregatorFunction;
 import com.questdb.ql.Record;
+import com.questdb.ql.RecordBatch;
 import com.questdb.ql.impl.map.DirectMapValues;
 import com.questdb.ql.ops.AbstractUnaryAggregator;
 import com.questdb.ql.ops.Function;
 import com.questdb.ql.ops.VirtualColumnFactory;
+import com.questdb.ql.ops.col.DoubleRecordSourceColumn;
+import com.questdb.std.IntList;
 import com.questdb.store.ColumnType;
 
-public final class MinDoubleAggregator extends AbstractUnaryAggregator {
+public final class MinDoubleAggregator extends AbstractUnaryAggregator implements BatchAggregatorFunction {
 
     public static final VirtualColumnFactory<Function> FACTORY = new VirtualColumnFactory<Function>() {
         @Override
@@ -39,10 +45,44 @@ public final class MinDoubleAggregator extends AbstractUnaryAggregator {
         }
     };
 
+    private int batchColumn;
+
     private MinDoubleAggregator(int position) {
         super(ColumnType.DOUBLE, position);
     }
 
+    @Override
+    public boolean addBatchColumns(IntList columns) {
+        if (value instanceof DoubleRecordSourceColumn) {
+            batchColumn = ((DoubleRecordSourceColumn) value).getIndex();
+            columns.add(batchColumn);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void calculate(RecordBatch batch, DirectMapValues values) {
+        long address = batch.getAddress(batchColumn);
+        int n = batch.size();
+        int i = 0;
+        double min;
+        if (values.isNew()) {
+            min = Unsafe.getUnsafe().getDouble(address + ((long) batch.getRow(0) << 3));
+            i = 1;
+        } else {
+            min = values.getDouble(valueIndex);
+        }
+
+        for (; i < n; i++) {
+            double v = Unsafe.getUnsafe().getDouble(address + ((long) batch.getRow(i) << 3));
+            if (v < min) {
+                min = v;
+            }
+        }
+        values.putDouble(valueIndex, min);
+    }
+
     @Override
     public void calculate(Record rec, DirectMapValues values) {
         double v = value.getDouble(rec);
@@ -51,4 +91,12 @@ public final class MinDoubleAggregator extends AbstractUnaryAggregator {
         }
     }
 
+    @Override
+    public void merge(AggregatorFunction partial, DirectMapValues partialValues, DirectMapValues values) {
+        double v = partialValues.getDouble(valueIndex);
+        if (values.isNew() || v < values.getDouble(valueIndex)) {
+            values.putDouble(valueIndex, v);
+        }
+    }
+
 }
@@ -28,6 +28,7 @@ import com.questdb.ql.StorageFacade;
 import com.questdb.ql.ops.AbstractBinaryOperator;
 import com.questdb.ql.ops.Function;
 import com.questdb.ql.ops.VirtualColumnFactory;
+import com.questdb.regex.Dfa;
 import com.questdb.regex.Matcher;
 import com.questdb.regex.Pattern;
 import com.questdb.std.CharSink;
@@ -46,6 +47,7 @@ public class PluckStrFunction extends AbstractBinaryOperator {
     private final FlyweightCharSequence csA = new FlyweightCharSequence();
     private final FlyweightCharSequence csB = new FlyweightCharSequence();
     private Matcher matcher;
+    private Dfa dfa;
 
     private PluckStrFunction(int position) {
         super(ColumnType.STRING, position);
@@ -77,7 +79,8 @@ public class PluckStrFunction extends AbstractBinaryOperator {
     }
 
     public CharSequence getFlyweightStr0(CharSequence base, FlyweightCharSequence to) {
-        if (base != null && matcher.reset(base).find() && matcher.groupCount() > 0) {
+        // automaton rejects rows cheaply, group positions come from matcher
+        if (base != null && (dfa == null || dfa.find(base)) && matcher.reset(base).find() && matcher.groupCount() > 0) {
             int lo = matcher.firstStartQuick();
             int hi = matcher.firstEndQuick();
             return to.of(base, lo, hi - lo);
@@ -88,6 +91,8 @@ public class PluckStrFunction extends AbstractBinaryOperator {
     @Override
     public void prepare(StorageFacade facade) {
         super.prepare(facade);
-        matcher = Pattern.compile(lhs.getStr(null).toString()).matcher("");
+        String pattern = lhs.getStr(null).toString();
+        matcher = Pattern.compile(pattern).matcher("");
+        dfa = Dfa.compile(pattern, matcher);
     }
 }
@@ -0,0 +1,474 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.ql.ops.regex;
+
+import com.questdb.misc.Unsafe;
+import com.questdb.std.CharSequenceHashSet;
+import com.questdb.std.DirectCharSequence;
+
+/**
+ * Literals, which every match of regular expression must contain. Strings without these literals
+ * are rejected without running regex matcher. Pattern, which is nothing but literal and anchors,
+ * is decided by prefilter alone.
+ * <p>
+ * Pattern is analysed conservatively: groups, alternatives inside groups, character classes and
+ * optional atoms break literals; inline flags and top level alternatives disable prefilter.
+ * <p>
+ * Substring search is Horspool with shift table on low byte of char. Strings of column are
+ * searched directly in mapped memory.
+ */
+public final class RegexPrefilter {
+    private final String prefix;
+    private final String literal;
+    private final String suffix;
+    private final boolean complete;
+    private final boolean anchoredStart;
+    private final boolean anchoredEnd;
+    private final char chars[];
+    private final int shift[] = new int[256];
+
+    private RegexPrefilter(String prefix, String literal, String suffix, boolean complete, boolean anchoredStart, boolean anchoredEnd) {
+        this.prefix = prefix;
+        this.literal = literal;
+        this.suffix = suffix;
+        this.complete = complete;
+        this.anchoredStart = anchoredStart;
+        this.anchoredEnd = anchoredEnd;
+        this.chars = literal.toCharArray();
+
+        int m = chars.length;
+        for (int i = 0; i < 256; i++) {
+            shift[i] = m;
+        }
+        for (int i = 0; i < m - 1; i++) {
+            shift[chars[i] & 0xff] = m - 1 - i;
+        }
+    }
+
+    /**
+     * Extracts literals from regular expression.
+     *
+     * @param pattern regular expression, which does not have to be validated
+     * @return prefilter or null when pattern has no required literals
+     */
+    public static RegexPrefilter of(CharSequence pattern) {
+        final int n = pattern.length();
+        final StringBuilder run = new StringBuilder();
+        String prefix = null;
+        String suffix = null;
+        String literal = null;
+        boolean anchoredStart = false;
+        boolean anchoredEnd = false;
+        // literal run is at start of pattern
+        boolean atStart = true;
+        // previous atom is last char of run
+        boolean lastLiteral = false;
+        // pattern has atoms other than literal chars
+        boolean broken = false;
+        int breaks = 0;
+
+        for (int i = 0; i < n; i++) {
+            char c = pattern.charAt(i);
+            switch (c) {
+                case '^':
+                    if (i > 0) {
+                        return null;
+                    }
+                    anchoredStart = true;
+                    break;
+                case '$':
+                    if (i < n - 1) {
+                        return null;
+                    }
+                    anchoredEnd = true;
+                    break;
+                case '|':
+                case ')':
+                    return null;
+                case '.':
+                    breaks++;
+                    lastLiteral = false;
+                    break;
+                case '[':
+                    if ((i = skipClass(pattern, i)) == -1) {
+                        return null;
+                    }
+                    breaks++;
+                    lastLiteral = false;
+                    break;
+                case '(':
+                    if ((i = skipGroup(pattern, i)) == -1) {
+                        return null;
+                    }
+                    breaks++;
+                    lastLiteral = false;
+                    break;
+                case '*':
+                case '?':
+                case '+':
+                case '{':
+                    int min = 0;
+                    if (c == '+') {
+                        min = 1;
+                    } else if (c == '{') {
+                        int k = i + 1;
+                        while (k < n && pattern.charAt(k) >= '0' && pattern.charAt(k) <= '9') {
+                            min = min * 10 + pattern.charAt(k++) - '0';
+                        }
+                        if (k == i + 1) {
+                            return null;
+                        }
+                        while (k < n && pattern.charAt(k) != '}') {
+                            k++;
+                        }
+                        if (k == n) {
+                            return null;
+                        }
+                        i = k;
+                    }
+                    // lazy and possessive forms
+                    if (i + 1 < n && (pattern.charAt(i + 1) == '?' || pattern.charAt(i + 1) == '+')) {
+                        i++;
+                    }
+                    if (lastLiteral && min == 0) {
+                        // quantifier applies to whole code point, supplementary char is two chars of run
+                        int len = run.length() - 1;
+                        if (len > 0 && Character.isSurrogatePair(run.charAt(len - 1), run.charAt(len))) {
+                            len--;
+                        }
+                        run.setLength(len);
+                    }
+                    lastLiteral = false;
+                    breaks++;
+                    break;
+                case '\\':
+                    if (++i == n) {
+                        return null;
+                    }
+                    c = pattern.charAt(i);
+                    if (c >= '0' && c <= '9') {
+                        // back references and octal escapes
+                        return null;
+                    }
+
+                    if (c < 128 && Character.isLetter(c)) {
+                        switch (c) {
+                            case 't':
+                                c = '\t';
+                                break;
+                            case 'n':
+                                c = '\n';
+                                break;
+                            case 'r':
+                                c = '\r';
+                                break;
+                            case 'f':
+                                c = '\f';
+                                break;
+                            case 'a':
+                                c = '\u0007';
+                                break;
+                            case 'e':
+                                c = '\u001B';
+                                break;
+                            case 'p':
+                            case 'P':
+                                if (i + 1 < n && pattern.charAt(i + 1) == '{') {
+                                    while (i < n && pattern.charAt(i) != '}') {
+                                        i++;
+                                    }
+                                    if (i == n) {
+                                        return null;
+                                    }
+                                } else {
+                                    i++;
+                                }
+                                // fall through
+                            case 'd':
+                            case 'D':
+                            case 's':
+                            case 'S':
+                            case 'w':
+                            case 'W':
+                            case 'h':
+                            case 'H':
+                            case 'v':
+                            case 'V':
+                            case 'b':
+                            case 'B':
+                            case 'A':
+                            case 'G':
+                            case 'Z':
+                            case 'z':
+                                c = 0;
+                                break;
+                            default:
+                                return null;
+                        }
+
+                        if (c == 0) {
+                            breaks++;
+                            lastLiteral = false;
+                            break;
+                        }
+                    }
+                    // fall through
+                default:
+                    if (breaks > 0) {
+                        broken = true;
+                        if (run.length() > 0) {
+                            String s = run.toString();
+                            if (atStart) {
+                                prefix = s;
+                            }
+                            if (literal == null || s.length() > literal.length()) {
+                                literal = s;
+                            }
+                            run.setLength(0);
+                        }
+                        atStart = false;
+                        breaks = 0;
+                    }
+                    run.append(c);
+                    lastLiteral = true;
+                    break;
+            }
+        }
+
+        boolean complete = !broken && breaks == 0;
+        if (run.length() > 0) {
+            String s = run.toString();
+            if (breaks == 0) {
+                suffix = s;
+            }
+            if (atStart) {
+                prefix = s;
+            }
+            if (literal == null || s.length() > literal.length()) {
+                literal = s;
+            }
+        }
+
+        if (literal == null) {
+            return null;
+        }
+
+        return new RegexPrefilter(anchoredStart ? prefix : null, literal, anchoredEnd ? suffix : null, complete, anchoredStart, anchoredEnd);
+    }
+
+    /**
+     * Tests if string can match pattern. When prefilter {@link #isComplete()} result is exact,
+     * otherwise string has to be checked by regex matcher when this method returns true.
+     */
+    public boolean accept(CharSequence cs) {
+        if (complete) {
+            if (anchoredStart) {
+                return anchoredEnd ? endsAtLineEnd(cs, literal, true) : startsWith(cs, literal);
+            }
+            return anchoredEnd ? endsAtLineEnd(cs, literal, false) : indexOf(cs) > -1;
+        }
+
+        return (prefix == null || startsWith(cs, prefix))
+                && (suffix == null || endsAtLineEnd(cs, suffix, false))
+                && indexOf(cs) > -1;
+    }
+
+    /**
+     * Collects all values, which match pattern of literal anchored at both ends.
+     *
+     * @param values set to add values to
+     * @return false if pattern can match other values
+     */
+    public boolean collectExactValues(CharSequenceHashSet values) {
+        if (!complete || !anchoredStart || !anchoredEnd) {
+            return false;
+        }
+
+        // "$" also matches before line terminator at end of input
+        values.add(literal);
+        if (literal.charAt(literal.length() - 1) != '\r') {
+            values.add(literal + '\n');
+        }
+        values.add(literal + "\r\n");
+        values.add(literal + '\r');
+        values.add(literal + '\u0085');
+        values.add(literal + '\u2028');
+        values.add(literal + '\u2029');
+        return true;
+    }
+
+    public String getLiteral() {
+        return literal;
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    private static boolean endsAtLineEnd(CharSequence cs, String s, boolean whole) {
+        int n = cs.length();
+        int m = s.length();
+        if (n >= m && (!whole || n == m) && regionMatches(cs, n - m, s)) {
+            return true;
+        }
+
+        int e;
+        if (n > 1 && cs.charAt(n - 2) == '\r' && cs.charAt(n - 1) == '\n') {
+            e = n - 2;
+        } else if (n > 0 && isLineTerminator(cs.charAt(n - 1))) {
+            e = n - 1;
+        } else {
+            return false;
+        }
+        return e >= m && (!whole || e == m) && regionMatches(cs, e - m, s);
+    }
+
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || (c | 1) == '\u2029';
+    }
+
+    private static boolean regionMatches(CharSequence cs, int lo, String s) {
+        for (int i = 0, m = s.length(); i < m; i++) {
+            if (cs.charAt(lo + i) != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int skipClass(CharSequence pattern, int i) {
+        int n = pattern.length();
+        int k = i + 1;
+        if (k < n && pattern.charAt(k) == '^') {
+            k++;
+        }
+        if (k < n && pattern.charAt(k) == ']') {
+            k++;
+        }
+
+        int depth = 1;
+        for (; k < n; k++) {
+            switch (pattern.charAt(k)) {
+                case '\\':
+                    k++;
+                    break;
+                case '[':
+                    depth++;
+                    break;
+                case ']':
+                    if (--depth == 0) {
+                        return k;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return -1;
+    }
+
+    private static int skipGroup(CharSequence pattern, int i) {
+        int n = pattern.length();
+        if (i + 2 < n && pattern.charAt(i + 1) == '?') {
+            char c = pattern.charAt(i + 2);
+            if (c == '-' || Character.isLetter(c)) {
+                // inline flags change meaning of the rest of pattern
+                return -1;
+            }
+        }
+
+        int depth = 1;
+        for (int k = i + 1; k < n; k++) {
+            switch (pattern.charAt(k)) {
+                case '\\':
+                    k++;
+                    break;
+                case '[':
+                    if ((k = skipClass(pattern, k)) == -1) {
+                        return -1;
+                    }
+                    break;
+                case '(':
+                    depth++;
+                    break;
+                case ')':
+                    if (--depth == 0) {
+                        return k;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(CharSequence cs, String s) {
+        return cs.length() >= s.length() && regionMatches(cs, 0, s);
+    }
+
+    private int indexOf(CharSequence cs) {
+        if (cs instanceof DirectCharSequence) {
+            return indexOf(((DirectCharSequence) cs).getLo(), cs.length());
+        }
+
+        final int m = chars.length;
+        final char last = chars[m - 1];
+        for (int i = m - 1, n = cs.length(); i < n; ) {
+            char c = cs.charAt(i);
+            if (c == last) {
+                int lo = i - m + 1;
+                int k = 0;
+                while (k < m - 1 && cs.charAt(lo + k) == chars[k]) {
+                    k++;
+                }
+                if (k == m - 1) {
+                    return lo;
+                }
+            }
+            i += shift[c & 0xff];
+        }
+        return -1;
+    }
+
+    private int indexOf(long address, int n) {
+        final int m = chars.length;
+        final char last = chars[m - 1];
+        for (int i = m - 1; i < n; ) {
+            char c = Unsafe.getUnsafe().getChar(address + (i << 1));
+            if (c == last) {
+                long lo = address + ((i - m + 1) << 1);
+                int k = 0;
+                while (k < m - 1 && Unsafe.getUnsafe().getChar(lo + (k << 1)) == chars[k]) {
+                    k++;
+                }
+                if (k == m - 1) {
+                    return i - m + 1;
+                }
+            }
+            i += shift[c & 0xff];
+        }
+        return -1;
+    }
+}
@@ -31,6 +31,7 @@ import com.questdb.ql.ops.Function;
 import com.questdb.ql.ops.VirtualColumn;
 import com.questdb.ql.ops.VirtualColumnFactory;
 import com.questdb.ql.parser.QueryError;
+import com.questdb.regex.Dfa;
 import com.questdb.regex.Matcher;
 import com.questdb.regex.Pattern;
 import com.questdb.regex.PatternSyntaxException;
@@ -49,6 +50,7 @@ public class ReplaceStrFunction extends AbstractVirtualColumn implements Functio
     private CharSequence replacePatten;
     private VirtualColumn value;
     private Matcher matcher;
+    private Dfa dfa;
     private CharSequence base;
 
     public ReplaceStrFunction(int position) {
@@ -58,7 +60,8 @@ public class ReplaceStrFunction extends AbstractVirtualColumn implements Functio
     @Override
     public CharSequence getFlyweightStr(Record rec) {
         this.base = value.getFlyweightStr(rec);
-        if (matcher.reset(base).find() && matcher.groupCount() > 0) {
+        // automaton rejects rows cheaply, groups come from matcher
+        if ((dfa == null || base != null && dfa.find(base)) && matcher.reset(base).find() && matcher.groupCount() > 0) {
             return replacePatten;
         }
         return null;
@@ -102,6 +105,7 @@ public class ReplaceStrFunction extends AbstractVirtualColumn implements Functio
         }
         try {
             matcher = Pattern.compile(pattern.toString()).matcher("");
+            dfa = Dfa.compile(pattern, matcher);
         } catch (PatternSyntaxException e) {
             throw QueryError.position(arg.getPosition() + e.getIndex() + 2 /* zero based index + quote symbol*/).$("Regex syntax error. ").$(e.getDescription()).$();
         }
@@ -30,6 +30,7 @@ import com.questdb.ql.ops.Function;
 import com.questdb.ql.ops.VirtualColumn;
 import com.questdb.ql.ops.VirtualColumnFactory;
 import com.questdb.ql.parser.QueryError;
+import com.questdb.regex.Dfa;
 import com.questdb.regex.Matcher;
 import com.questdb.regex.Pattern;
 import com.questdb.regex.PatternSyntaxException;
@@ -46,6 +47,8 @@ public class StrRegexOperator extends AbstractBinaryOperator {
     };
 
     private Matcher matcher;
+    private RegexPrefilter prefilter;
+    private Dfa dfa;
 
     private StrRegexOperator(int position) {
         super(ColumnType.BOOLEAN, position);
@@ -54,7 +57,19 @@ public class StrRegexOperator extends AbstractBinaryOperator {
     @Override
     public boolean getBool(Record rec) {
         CharSequence cs = lhs.getFlyweightStr(rec);
-        return cs != null && matcher.reset(cs).find();
+        if (cs == null) {
+            return false;
+        }
+
+        if (prefilter != null) {
+            if (!prefilter.accept(cs)) {
+                return false;
+            }
+            if (prefilter.isComplete()) {
+                return true;
+            }
+        }
+        return dfa != null ? dfa.find(cs) : matcher.reset(cs).find();
     }
 
     @Override
@@ -67,6 +82,8 @@ public class StrRegexOperator extends AbstractBinaryOperator {
 
         try {
             matcher = Pattern.compile(pattern.toString()).matcher("");
+            prefilter = RegexPrefilter.of(pattern);
+            dfa = Dfa.compile(pattern, matcher);
         } catch (PatternSyntaxException e) {
             throw QueryError.position(rhs.getPosition() + e.getIndex() + 2 /* zero based index + quote symbol*/).$("Regex syntax error. ").$(e.getDescription()).$();
         }
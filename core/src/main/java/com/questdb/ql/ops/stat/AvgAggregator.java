@@ -36,12 +36,13 @@ import com.questdb.ql.impl.map.MapRecordValueInterceptor;
 import com.questdb.ql.ops.AbstractUnaryOperator;
 import com.questdb.ql.ops.Function;
 import com.questdb.ql.ops.VirtualColumnFactory;
+import com.questdb.std.MemoryConsumer;
 import com.questdb.std.ObjList;
 import com.questdb.store.ColumnType;
 
 import java.io.Closeable;
 
-public final class AvgAggregator extends AbstractUnaryOperator implements AggregatorFunction, MapRecordValueInterceptor, Closeable {
+public final class AvgAggregator extends AbstractUnaryOperator implements AggregatorFunction, MapRecordValueInterceptor, Closeable, MemoryConsumer {
 
     public static final VirtualColumnFactory<Function> FACTORY = new VirtualColumnFactory<Function>() {
         @Override
@@ -104,15 +105,7 @@ public final class AvgAggregator extends AbstractUnaryOperator implements Aggreg
         if (x == Double.POSITIVE_INFINITY || x == Double.NEGATIVE_INFINITY) {
 
             // save partial sum to record list
-            long head = values.getLong(oListHead);
-            long tail = values.getLong(oListTail);
-            tail = records.beginRecord(tail);
-            values.putLong(oListTail, tail);
-            if (head == -1) {
-                values.putLong(oListHead, tail);
-            }
-            records.appendDouble(sum);
-            records.appendLong(localTotal);
+            appendPartialSum(values, sum, localTotal);
 
             // reset partial sum with new value
             values.putLong(oLocalTotal, 1);
@@ -130,6 +123,46 @@ public final class AvgAggregator extends AbstractUnaryOperator implements Aggreg
         records.clear();
     }
 
+    @Override
+    public long getMemUsed() {
+        return records.getMemUsed();
+    }
+
+    @Override
+    public void merge(AggregatorFunction partial, DirectMapValues partialValues, DirectMapValues values) {
+        long localTotal = partialValues.getLong(oLocalTotal);
+        double sum = partialValues.getDouble(oSum);
+
+        if (values.isNew()) {
+            values.putLong(oTotal, partialValues.getLong(oTotal));
+            values.putDouble(oAvg, Double.NaN);
+            values.putLong(oLocalTotal, localTotal);
+            values.putDouble(oSum, sum);
+            values.putLong(oListHead, -1);
+            values.putLong(oListTail, -1);
+        } else {
+            values.putLong(oTotal, values.getLong(oTotal) + partialValues.getLong(oTotal));
+            double x = values.getDouble(oSum) + sum;
+            if (x == Double.POSITIVE_INFINITY || x == Double.NEGATIVE_INFINITY) {
+                appendPartialSum(values, sum, localTotal);
+            } else {
+                values.putLong(oLocalTotal, values.getLong(oLocalTotal) + localTotal);
+                values.putDouble(oSum, x);
+            }
+        }
+
+        // carry over sums that overflowed in partial
+        long ref = partialValues.getLong(oListHead);
+        if (ref != -1) {
+            RecordList partialRecords = ((AvgAggregator) partial).records;
+            partialRecords.of(ref);
+            while (partialRecords.hasNext()) {
+                Record r = partialRecords.next();
+                appendPartialSum(values, r.getDouble(0), r.getLong(1));
+            }
+        }
+    }
+
     @Override
     public void prepare(ObjList<RecordColumnMetadata> columns, int offset) {
         columns.add(INTERNAL_COL_TOTAL);
@@ -156,6 +189,17 @@ public final class AvgAggregator extends AbstractUnaryOperator implements Aggreg
         return false;
     }
 
+    private void appendPartialSum(DirectMapValues values, double sum, long count) {
+        long head = values.getLong(oListHead);
+        long tail = records.beginRecord(values.getLong(oListTail));
+        values.putLong(oListTail, tail);
+        if (head == -1) {
+            values.putLong(oListHead, tail);
+        }
+        records.appendDouble(sum);
+        records.appendLong(count);
+    }
+
     private void computeAvg(DirectMapValues values) {
         long ref = values.getLong(oListHead);
         if (ref == -1) {
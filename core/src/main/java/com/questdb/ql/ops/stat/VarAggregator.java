@@ -36,12 +36,13 @@ import com.questdb.ql.impl.map.MapRecordValueInterceptor;
 import com.questdb.ql.ops.AbstractUnaryOperator;
 import com.questdb.ql.ops.Function;
 import com.questdb.ql.ops.VirtualColumnFactory;
+import com.questdb.std.MemoryConsumer;
 import com.questdb.std.ObjList;
 import com.questdb.store.ColumnType;
 
 import java.io.Closeable;
 
-public class VarAggregator extends AbstractUnaryOperator implements AggregatorFunction, MapRecordValueInterceptor, Closeable {
+public class VarAggregator extends AbstractUnaryOperator implements AggregatorFunction, MapRecordValueInterceptor, Closeable, MemoryConsumer {
 
     public static final VirtualColumnFactory<Function> FACTORY = new VirtualColumnFactory<Function>() {
         @Override
@@ -132,6 +133,59 @@ public class VarAggregator extends AbstractUnaryOperator implements AggregatorFu
         srcRecords.clear();
     }
 
+    @Override
+    public long getMemUsed() {
+        return meanPartials.getMemUsed() + srcRecords.getMemUsed();
+    }
+
+    @Override
+    public void merge(AggregatorFunction partial, DirectMapValues partialValues, DirectMapValues values) {
+        VarAggregator that = (VarAggregator) partial;
+        long localTotal = partialValues.getLong(oPartialTotal);
+        double sum = partialValues.getDouble(oPartialSum);
+
+        if (values.isNew()) {
+            values.putLong(oTotal, partialValues.getLong(oTotal));
+            values.putDouble(oVariance, Double.NaN);
+            values.putLong(oPartialTotal, localTotal);
+            values.putDouble(oPartialSum, sum);
+            values.putLong(oPartialHead, -1);
+            values.putLong(oPartialTail, -1);
+            values.putLong(oValuesHead, -1);
+            values.putLong(oValuesTail, -1);
+        } else {
+            values.putLong(oTotal, values.getLong(oTotal) + partialValues.getLong(oTotal));
+            double x = values.getDouble(oPartialSum) + sum;
+            if (x == Double.POSITIVE_INFINITY || x == Double.NEGATIVE_INFINITY) {
+                beginRecord(values, oPartialHead, oPartialTail, meanPartials);
+                meanPartials.appendDouble(sum);
+                meanPartials.appendLong(localTotal);
+            } else {
+                values.putLong(oPartialTotal, values.getLong(oPartialTotal) + localTotal);
+                values.putDouble(oPartialSum, x);
+            }
+        }
+
+        // carry over sums that overflowed in partial
+        long ref = partialValues.getLong(oPartialHead);
+        if (ref != -1) {
+            that.meanPartials.of(ref);
+            while (that.meanPartials.hasNext()) {
+                Record r = that.meanPartials.next();
+                beginRecord(values, oPartialHead, oPartialTail, meanPartials);
+                meanPartials.appendDouble(r.getDouble(0));
+                meanPartials.appendLong(r.getLong(1));
+            }
+        }
+
+        // variance is computed from individual values, copy them all
+        that.srcRecords.of(partialValues.getLong(oValuesHead));
+        while (that.srcRecords.hasNext()) {
+            beginRecord(values, oValuesHead, oValuesTail, srcRecords);
+            srcRecords.appendDouble(that.srcRecords.next().getDouble(0));
+        }
+    }
+
     @Override
     public void prepare(ObjList<RecordColumnMetadata> columns, int offset) {
         columns.add(INTERNAL_COL_TOTAL);
@@ -23,14 +23,20 @@
 
 package com.questdb.ql.ops.sum;
 
+import com.questdb.misc.Unsafe;
+import com.questdb.ql.AggregatorFunction;
+import com.questdb.ql.BatchAggregatorFunction;
 import com.questdb.ql.Record;
+import com.questdb.ql.RecordBatch;
 import com.questdb.ql.impl.map.DirectMapValues;
 import com.questdb.ql.ops.AbstractUnaryAggregator;
 import com.questdb.ql.ops.Function;
 import com.questdb.ql.ops.VirtualColumnFactory;
+import com.questdb.ql.ops.col.DoubleRecordSourceColumn;
+import com.questdb.std.IntList;
 import com.questdb.store.ColumnType;
 
-public final class SumDoubleAggregator extends AbstractUnaryAggregator {
+public final class SumDoubleAggregator extends AbstractUnaryAggregator implements BatchAggregatorFunction {
 
     public static final VirtualColumnFactory<Function> FACTORY = new VirtualColumnFactory<Function>() {
         @Override
@@ -39,10 +45,47 @@ public final class SumDoubleAggregator extends AbstractUnaryAggregator {
         }
     };
 
+    private int batchColumn;
+
     private SumDoubleAggregator(int position) {
         super(ColumnType.DOUBLE, position);
     }
 
+    @Override
+    public boolean addBatchColumns(IntList columns) {
+        if (value instanceof DoubleRecordSourceColumn) {
+            batchColumn = ((DoubleRecordSourceColumn) value).getIndex();
+            columns.add(batchColumn);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void calculate(RecordBatch batch, DirectMapValues values) {
+        long address = batch.getAddress(batchColumn);
+        int n = batch.size();
+        int i = 0;
+        double sum;
+        if (values.isNew()) {
+            sum = Unsafe.getUnsafe().getDouble(address + ((long) batch.getRow(0) << 3));
+            i = 1;
+        } else {
+            sum = values.getDouble(valueIndex);
+        }
+
+        if (batch.isDense()) {
+            for (; i < n; i++) {
+                sum += Unsafe.getUnsafe().getDouble(address + ((long) i << 3));
+            }
+        } else {
+            for (; i < n; i++) {
+                sum += Unsafe.getUnsafe().getDouble(address + ((long) batch.getRow(i) << 3));
+            }
+        }
+        values.putDouble(valueIndex, sum);
+    }
+
     @Override
     public void calculate(Record rec, DirectMapValues values) {
         if (values.isNew()) {
@@ -52,4 +95,13 @@ public final class SumDoubleAggregator extends AbstractUnaryAggregator {
         }
     }
 
+    @Override
+    public void merge(AggregatorFunction partial, DirectMapValues partialValues, DirectMapValues values) {
+        if (values.isNew()) {
+            values.putDouble(valueIndex, partialValues.getDouble(valueIndex));
+        } else {
+            values.putDouble(valueIndex, values.getDouble(valueIndex) + partialValues.getDouble(valueIndex));
+        }
+    }
+
 }
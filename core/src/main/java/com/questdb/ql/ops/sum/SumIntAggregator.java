@@ -23,14 +23,20 @@
 
 package com.questdb.ql.ops.sum;
 
+import com.questdb.misc.Unsafe;
+import com.questdb.ql.AggregatorFunction;
+import com.questdb.ql.BatchAggregatorFunction;
 import com.questdb.ql.Record;
+import com.questdb.ql.RecordBatch;
 import com.questdb.ql.impl.map.DirectMapValues;
 import com.questdb.ql.ops.AbstractUnaryAggregator;
 import com.questdb.ql.ops.Function;
 import com.questdb.ql.ops.VirtualColumnFactory;
+import com.questdb.ql.ops.col.IntRecordSourceColumn;
+import com.questdb.std.IntList;
 import com.questdb.store.ColumnType;
 
-public final class SumIntAggregator extends AbstractUnaryAggregator {
+public final class SumIntAggregator extends AbstractUnaryAggregator implements BatchAggregatorFunction {
     public static final VirtualColumnFactory<Function> FACTORY = new VirtualColumnFactory<Function>() {
         @Override
         public Function newInstance(int position) {
@@ -38,10 +44,47 @@ public final class SumIntAggregator extends AbstractUnaryAggregator {
         }
     };
 
+    private int batchColumn;
+
     private SumIntAggregator(int position) {
         super(ColumnType.INT, position);
     }
 
+    @Override
+    public boolean addBatchColumns(IntList columns) {
+        if (value instanceof IntRecordSourceColumn) {
+            batchColumn = ((IntRecordSourceColumn) value).getIndex();
+            columns.add(batchColumn);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void calculate(RecordBatch batch, DirectMapValues values) {
+        long address = batch.getAddress(batchColumn);
+        int n = batch.size();
+        int i = 0;
+        int sum;
+        if (values.isNew()) {
+            sum = Unsafe.getUnsafe().getInt(address + ((long) batch.getRow(0) << 2));
+            i = 1;
+        } else {
+            sum = values.getInt(valueIndex);
+        }
+
+        if (batch.isDense()) {
+            for (; i < n; i++) {
+                sum += Unsafe.getUnsafe().getInt(address + ((long) i << 2));
+            }
+        } else {
+            for (; i < n; i++) {
+                sum += Unsafe.getUnsafe().getInt(address + ((long) batch.getRow(i) << 2));
+            }
+        }
+        values.putInt(valueIndex, sum);
+    }
+
     @Override
     public void calculate(Record rec, DirectMapValues values) {
         if (values.isNew()) {
@@ -51,4 +94,13 @@ public final class SumIntAggregator extends AbstractUnaryAggregator {
         }
     }
 
+    @Override
+    public void merge(AggregatorFunction partial, DirectMapValues partialValues, DirectMapValues values) {
+        if (values.isNew()) {
+            values.putInt(valueIndex, partialValues.getInt(valueIndex));
+        } else {
+            values.putInt(valueIndex, values.getInt(valueIndex) + partialValues.getInt(valueIndex));
+        }
+    }
+
 }
@@ -23,14 +23,20 @@
 
 package com.questdb.ql.ops.sum;
 
+import com.questdb.misc.Unsafe;
+import com.questdb.ql.AggregatorFunction;
+import com.questdb.ql.BatchAggregatorFunction;
 import com.questdb.ql.Record;
+import com.questdb.ql.RecordBatch;
 import com.questdb.ql.impl.map.DirectMapValues;
 import com.questdb.ql.ops.AbstractUnaryAggregator;
 import com.questdb.ql.ops.Function;
 import com.questdb.ql.ops.VirtualColumnFactory;
+import com.questdb.ql.ops.col.LongRecordSourceColumn;
+import com.questdb.std.IntList;
 import com.questdb.store.ColumnType;
 
-public final class SumLongAggregator extends AbstractUnaryAggregator {
+public final class SumLongAggregator extends AbstractUnaryAggregator implements BatchAggregatorFunction {
 
     public static final VirtualColumnFactory<Function> FACTORY = new VirtualColumnFactory<Function>() {
         @Override
@@ -39,10 +45,47 @@ public final class SumLongAggregator extends AbstractUnaryAggregator {
         }
     };
 
+    private int batchColumn;
+
     private SumLongAggregator(int position) {
         super(ColumnType.LONG, position);
     }
 
+    @Override
+    public boolean addBatchColumns(IntList columns) {
+        if (value instanceof LongRecordSourceColumn) {
+            batchColumn = ((LongRecordSourceColumn) value).getIndex();
+            columns.add(batchColumn);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void calculate(RecordBatch batch, DirectMapValues values) {
+        long address = batch.getAddress(batchColumn);
+        int n = batch.size();
+        int i = 0;
+        long sum;
+        if (values.isNew()) {
+            sum = Unsafe.getUnsafe().getLong(address + ((long) batch.getRow(0) << 3));
+            i = 1;
+        } else {
+            sum = values.getLong(valueIndex);
+        }
+
+        if (batch.isDense()) {
+            for (; i < n; i++) {
+                sum += Unsafe.getUnsafe().getLong(address + ((long) i << 3));
+            }
+        } else {
+            for (; i < n; i++) {
+                sum += Unsafe.getUnsafe().getLong(address + ((long) batch.getRow(i) << 3));
+            }
+        }
+        values.putLong(valueIndex, sum);
+    }
+
     @Override
     public void calculate(Record rec, DirectMapValues values) {
         if (values.isNew()) {
@@ -52,4 +95,13 @@ public final class SumLongAggregator extends AbstractUnaryAggregator {
         }
     }
 
+    @Override
+    public void merge(AggregatorFunction partial, DirectMapValues partialValues, DirectMapValues values) {
+        if (values.isNew()) {
+            values.putLong(valueIndex, partialValues.getLong(valueIndex));
+        } else {
+            values.putLong(valueIndex, values.getLong(valueIndex) + partialValues.getLong(valueIndex));
+        }
+    }
+
 }
@@ -52,6 +52,14 @@ public class ExprParser {
     public ExprParser(Lexer lexer, ObjectPool<ExprNode> exprNodePool) {
         this.lexer = lexer;
         this.exprNodePool = exprNodePool;
+        configureLexer(lexer);
+    }
+
+    public ExprParser(ObjectPool<ExprNode> exprNodePool) {
+        this(new Lexer(), exprNodePool);
+    }
+
+    static void configureLexer(Lexer lexer) {
         lexer.defineSymbol("(");
         lexer.defineSymbol(")");
         lexer.defineSymbol(",");
@@ -66,10 +74,6 @@ public class ExprParser {
         }
     }
 
-    public ExprParser(ObjectPool<ExprNode> exprNodePool) {
-        this(new Lexer(), exprNodePool);
-    }
-
     public void parseExpr(CharSequence in, ExprListener listener) throws ParserException {
         lexer.setContent(in);
         parseExpr(listener);
@@ -0,0 +1,518 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.ql.parser;
+
+import com.questdb.ex.NumericException;
+import com.questdb.ex.ParserException;
+import com.questdb.factory.JournalReaderFactory;
+import com.questdb.factory.configuration.JournalConfiguration;
+import com.questdb.factory.configuration.JournalMetadata;
+import com.questdb.io.sink.StringSink;
+import com.questdb.log.Log;
+import com.questdb.log.LogFactory;
+import com.questdb.misc.Chars;
+import com.questdb.misc.Misc;
+import com.questdb.misc.Numbers;
+import com.questdb.ql.RecordSource;
+import com.questdb.ql.ops.Parameter;
+import com.questdb.std.*;
+import com.questdb.std.ThreadLocal;
+import com.questdb.store.ColumnType;
+
+import java.io.Closeable;
+import java.io.File;
+
+/**
+ * Compiled query plans shared by all query threads.
+ * <p>
+ * Before lookup, numeric and string literals are replaced with parameters, so that queries
+ * differing only in literal values share the same plan. Parameters report type of literal
+ * they replace, which makes compiler choose same functions it would for constants. Values are
+ * bound when plan is checked out. Queries that cannot be compiled with parameters, e.g. where
+ * literal is evaluated at compile time or selects index key or timestamp interval, are cached
+ * by their exact text instead.
+ * <p>
+ * Plan is owned exclusively by one query between {@link #poll} or {@link #compile} and {@link #put}.
+ * Idle plans are bounded by native memory they hold, rather than their number. Memory is reported
+ * by record source of plan when plan is returned and includes maps, record lists and memory pages
+ * retained by plan between executions. Least recently used plans are closed when total exceeds limit.
+ * <p>
+ * Plans are invalidated when metadata file of any journal they read is replaced or modified.
+ */
+public class PlanCache implements Closeable {
+    private static final Log LOG = LogFactory.getLog(PlanCache.class);
+    private static final int MAX_EXACT_SHAPES = 4096;
+    private final CharSequenceObjHashMap<ObjList<Plan>> idle = new CharSequenceObjHashMap<>();
+    private final CharSequenceHashSet exactShapes = new CharSequenceHashSet();
+    private final ObjList<Plan> evicted = new ObjList<>();
+    private final ThreadLocal<Normalizer> normalizer = new ThreadLocal<>(new ObjectFactory<Normalizer>() {
+        @Override
+        public Normalizer newInstance() {
+            return new Normalizer();
+        }
+    });
+    private final long memoryLimit;
+    // idle plans in order of use, head is evicted first
+    private Plan head;
+    private Plan tail;
+    private long memoryUsed;
+    private int idleCount;
+
+    public PlanCache(long memoryLimit) {
+        this.memoryLimit = memoryLimit;
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            while (head != null) {
+                evicted.add(evict(head));
+            }
+            idle.clear();
+        }
+        freeEvicted();
+    }
+
+    /**
+     * Compiles query and checks resulting plan out. Plan has to be returned via {@link #put(Plan)}.
+     *
+     * @param compiler compiler owned by calling thread
+     * @param factory  factory to resolve journals with
+     * @param query    query text
+     * @return plan ready for execution
+     * @throws ParserException when query text is invalid
+     */
+    public Plan compile(QueryCompiler compiler, JournalReaderFactory factory, CharSequence query) throws ParserException {
+        final Normalizer n = normalizer.get();
+
+        n.of(query);
+        if (n.size() > 0 && !isExactShape(n.key)) {
+            CharSequenceObjHashMap<Parameter> parameters = n.declare();
+            RecordSource rs = null;
+            try {
+                rs = compiler.compile(factory, compiler.parse(n.key), parameters);
+                if (!compiler.hasIntrinsicParameters()) {
+                    Plan plan = new Plan(n.key.toString(), rs, n.parameters(parameters), compiler.getCompiledJournals(), factory.getConfiguration().getJournalBase());
+                    n.bind(plan);
+                    return plan;
+                }
+            } catch (ParserException | RuntimeException ignore) {
+                // literal is used where compiler needs its value
+            }
+            Misc.free(rs);
+
+            Plan plan = compileExact(compiler, factory, query);
+            synchronized (this) {
+                if (exactShapes.size() == MAX_EXACT_SHAPES) {
+                    exactShapes.clear();
+                }
+                exactShapes.add(n.key.toString());
+            }
+            return plan;
+        }
+        return compileExact(compiler, factory, query);
+    }
+
+    public synchronized int getIdleCount() {
+        return idleCount;
+    }
+
+    public synchronized long getMemoryUsed() {
+        return memoryUsed;
+    }
+
+    /**
+     * Checks out idle plan for query and binds literal values of query to its parameters.
+     *
+     * @param factory factory query is going to be executed with
+     * @param query   query text
+     * @return plan or null when there is no valid idle plan for query
+     */
+    public Plan poll(JournalReaderFactory factory, CharSequence query) {
+        final Normalizer n = normalizer.get();
+        final File base = factory.getConfiguration().getJournalBase();
+
+        n.of(query);
+        try {
+            while (true) {
+                Plan plan;
+                synchronized (this) {
+                    plan = take(n.size() > 0 && !exactShapes.contains(n.key) ? n.key : query);
+                }
+
+                if (plan == null) {
+                    return null;
+                }
+
+                if (plan.isValid(base)) {
+                    if (plan.parameters.size() > 0) {
+                        n.bind(plan);
+                    }
+                    return plan;
+                }
+
+                LOG.info().$("Journal metadata changed, discarding plan: ").$(plan.key).$();
+                synchronized (this) {
+                    evicted.add(plan);
+                }
+            }
+        } finally {
+            freeEvicted();
+        }
+    }
+
+    /**
+     * Returns plan checked out by {@link #poll} or {@link #compile}. Plan must not be used after it is returned.
+     *
+     * @param plan plan to return
+     */
+    public void put(Plan plan) {
+        plan.release();
+        synchronized (this) {
+            if (plan.size > memoryLimit) {
+                evicted.add(plan);
+            } else {
+                ObjList<Plan> plans = idle.get(plan.key);
+                if (plans == null) {
+                    compactIdle();
+                    idle.put(plan.key, plans = new ObjList<>());
+                }
+                plans.add(plan);
+                link(plan);
+                memoryUsed += plan.size;
+                idleCount++;
+
+                while (memoryUsed > memoryLimit) {
+                    evicted.add(evict(head));
+                }
+            }
+        }
+        freeEvicted();
+    }
+
+    private void compactIdle() {
+        // keys of plans that were evicted stay in map, drop them once they outnumber idle plans
+        if (idle.size() > 2 * idleCount + 1024) {
+            ObjList<CharSequence> keys = idle.keys();
+            ObjList<CharSequence> live = new ObjList<>();
+            ObjList<ObjList<Plan>> values = new ObjList<>();
+            for (int i = 0, n = keys.size(); i < n; i++) {
+                ObjList<Plan> plans = idle.get(keys.getQuick(i));
+                if (plans.size() > 0) {
+                    live.add(keys.getQuick(i));
+                    values.add(plans);
+                }
+            }
+            idle.clear();
+            for (int i = 0, n = live.size(); i < n; i++) {
+                idle.put(live.getQuick(i), values.getQuick(i));
+            }
+        }
+    }
+
+    private Plan compileExact(QueryCompiler compiler, JournalReaderFactory factory, CharSequence query) throws ParserException {
+        RecordSource rs = compiler.compile(factory, query);
+        return new Plan(query.toString(), rs, null, compiler.getCompiledJournals(), factory.getConfiguration().getJournalBase());
+    }
+
+    private Plan evict(Plan plan) {
+        idle.get(plan.key).remove(plan);
+        unlink(plan);
+        memoryUsed -= plan.size;
+        idleCount--;
+        return plan;
+    }
+
+    private void freeEvicted() {
+        ObjList<Plan> plans = null;
+        synchronized (this) {
+            if (evicted.size() > 0) {
+                plans = new ObjList<>(evicted.size());
+                plans.addAll(evicted);
+                evicted.clear();
+            }
+        }
+
+        if (plans != null) {
+            for (int i = 0, n = plans.size(); i < n; i++) {
+                Misc.free(plans.getQuick(i).recordSource);
+            }
+        }
+    }
+
+    private synchronized boolean isExactShape(CharSequence key) {
+        return exactShapes.contains(key);
+    }
+
+    private void link(Plan plan) {
+        plan.prev = tail;
+        plan.next = null;
+        if (tail == null) {
+            head = plan;
+        } else {
+            tail.next = plan;
+        }
+        tail = plan;
+    }
+
+    private Plan take(CharSequence key) {
+        ObjList<Plan> plans = idle.get(key);
+        if (plans == null || plans.size() == 0) {
+            return null;
+        }
+        // most recently returned plan is likely to have warm memory
+        return evict(plans.getLast());
+    }
+
+    private void unlink(Plan plan) {
+        if (plan.prev == null) {
+            head = plan.next;
+        } else {
+            plan.prev.next = plan.next;
+        }
+
+        if (plan.next == null) {
+            tail = plan.prev;
+        } else {
+            plan.next.prev = plan.prev;
+        }
+        plan.prev = plan.next = null;
+    }
+
+    public static class Plan {
+        private final String key;
+        private final RecordSource recordSource;
+        private final ObjList<Parameter> parameters;
+        private final ObjList<File> metaFiles = new ObjList<>();
+        private final LongList stamps = new LongList();
+        private final File base;
+        private long size;
+        private Plan prev;
+        private Plan next;
+
+        private Plan(String key, RecordSource recordSource, ObjList<Parameter> parameters, ObjList<JournalMetadata> journals, File base) {
+            this.key = key;
+            this.recordSource = recordSource;
+            this.parameters = parameters == null ? new ObjList<Parameter>() : parameters;
+            this.base = base;
+            for (int i = 0, n = journals.size(); i < n; i++) {
+                File f = new File(journals.getQuick(i).getLocation(), JournalConfiguration.FILE_NAME);
+                metaFiles.add(f);
+                stamps.add(f.lastModified());
+                stamps.add(f.length());
+            }
+        }
+
+        public RecordSource getRecordSource() {
+            return recordSource;
+        }
+
+        private boolean isValid(File base) {
+            if (!this.base.equals(base)) {
+                return false;
+            }
+
+            for (int i = 0, n = metaFiles.size(); i < n; i++) {
+                File f = metaFiles.getQuick(i);
+                if (f.lastModified() != stamps.getQuick(i * 2) || f.length() != stamps.getQuick(i * 2 + 1)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void release() {
+            size = recordSource.getMemUsed();
+        }
+    }
+
+    /**
+     * Replaces literals in query text with typed parameters. Literal following "from" or "join"
+     * is journal name and is kept as is.
+     */
+    private static class Normalizer {
+        private final Lexer lexer = new Lexer();
+        private final StringSink key = new StringSink();
+        private final StringSink name = new StringSink();
+        private final IntList types = new IntList();
+        private final LongList longValues = new LongList();
+        private final ObjList<String> strValues = new ObjList<>();
+
+        private Normalizer() {
+            ExprParser.configureLexer(lexer);
+        }
+
+        private static int typeOf(CharSequence tok) {
+            int len = tok.length();
+            char c = tok.charAt(0);
+            if (c == '\'') {
+                return len > 1 && tok.charAt(len - 1) == '\'' ? ColumnType.STRING : -1;
+            }
+
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+
+            try {
+                Numbers.parseInt(tok);
+                return ColumnType.INT;
+            } catch (NumericException ignore) {
+            }
+
+            try {
+                Numbers.parseLong(tok);
+                return ColumnType.LONG;
+            } catch (NumericException ignore) {
+            }
+
+            try {
+                Numbers.parseDouble(tok);
+                return ColumnType.DOUBLE;
+            } catch (NumericException ignore) {
+            }
+            return -1;
+        }
+
+        private void bind(Plan plan) {
+            for (int i = 0, n = types.size(); i < n; i++) {
+                Parameter p = plan.parameters.getQuick(i);
+                switch (types.getQuick(i)) {
+                    case ColumnType.INT:
+                        p.set((int) longValues.getQuick(i));
+                        break;
+                    case ColumnType.LONG:
+                        p.set(longValues.getQuick(i));
+                        break;
+                    case ColumnType.DOUBLE:
+                        p.set(Double.longBitsToDouble(longValues.getQuick(i)));
+                        break;
+                    default:
+                        p.set(strValues.getQuick(i));
+                        break;
+                }
+            }
+        }
+
+        private CharSequenceObjHashMap<Parameter> declare() {
+            CharSequenceObjHashMap<Parameter> map = new CharSequenceObjHashMap<>();
+            for (int i = 0, n = types.size(); i < n; i++) {
+                String name = name(i);
+                map.put(name, Parameter.declare(name, types.getQuick(i), 0));
+            }
+            return map;
+        }
+
+        private String name(int index) {
+            name.clear();
+            name.put(":$");
+            switch (types.getQuick(index)) {
+                case ColumnType.INT:
+                    name.put('i');
+                    break;
+                case ColumnType.LONG:
+                    name.put('l');
+                    break;
+                case ColumnType.DOUBLE:
+                    name.put('d');
+                    break;
+                default:
+                    name.put('s');
+                    break;
+            }
+            name.put(index);
+            return name.toString();
+        }
+
+        private void of(CharSequence query) {
+            key.clear();
+            types.clear();
+            longValues.clear();
+            strValues.clear();
+
+            lexer.setContent(query);
+            int last = 0;
+            boolean journalName = false;
+            CharSequence tok;
+            while ((tok = lexer.optionTok()) != null) {
+                int type = journalName ? -1 : typeOf(tok);
+                journalName = Chars.equalsIgnoreCase(tok, "from") || Chars.equalsIgnoreCase(tok, "join");
+
+                if (type == -1) {
+                    continue;
+                }
+
+                int lo = lexer.position();
+                int hi = lo + tok.length();
+                try {
+                    switch (type) {
+                        case ColumnType.INT:
+                            longValues.add(Numbers.parseInt(tok));
+                            strValues.add(null);
+                            break;
+                        case ColumnType.LONG:
+                            longValues.add(Numbers.parseLong(tok));
+                            strValues.add(null);
+                            break;
+                        case ColumnType.DOUBLE:
+                            longValues.add(Double.doubleToRawLongBits(Numbers.parseDouble(tok)));
+                            strValues.add(null);
+                            break;
+                        default:
+                            longValues.add(0);
+                            strValues.add(query.subSequence(lo + 1, hi - 1).toString());
+                            break;
+                    }
+                } catch (NumericException e) {
+                    // typeOf() has parsed value already
+                    throw new AssertionError(e);
+                }
+                types.add(type);
+
+                for (int i = last; i < lo; i++) {
+                    key.put(query.charAt(i));
+                }
+                key.put(name(types.size() - 1));
+                last = hi;
+            }
+
+            if (types.size() > 0) {
+                for (int i = last, n = query.length(); i < n; i++) {
+                    key.put(query.charAt(i));
+                }
+            }
+        }
+
+        private ObjList<Parameter> parameters(CharSequenceObjHashMap<Parameter> map) {
+            ObjList<Parameter> parameters = new ObjList<>(types.size());
+            for (int i = 0, n = types.size(); i < n; i++) {
+                parameters.add(map.get(name(i)));
+            }
+            return parameters;
+        }
+
+        private int size() {
+            return types.size();
+        }
+    }
+}
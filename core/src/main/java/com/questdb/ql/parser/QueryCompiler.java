@@ -23,6 +23,7 @@
 
 package com.questdb.ql.parser;
 
+import com.questdb.Journal;
 import com.questdb.JournalEntryWriter;
 import com.questdb.JournalWriter;
 import com.questdb.PartitionBy;
@@ -45,14 +46,21 @@ import com.questdb.ql.impl.interval.SingleIntervalSource;
 import com.questdb.ql.impl.join.AsOfJoinRecordSource;
 import com.questdb.ql.impl.join.AsOfPartitionedJoinRecordSource;
 import com.questdb.ql.impl.join.CrossJoinRecordSource;
+import com.questdb.ql.impl.join.GraceHashJoinRecordSource;
 import com.questdb.ql.impl.join.HashJoinRecordSource;
 import com.questdb.ql.impl.lambda.*;
 import com.questdb.ql.impl.latest.*;
 import com.questdb.ql.impl.map.RecordKeyCopierCompiler;
+import com.questdb.ql.impl.parallel.ParallelFilteredRecordSource;
+import com.questdb.ql.impl.parallel.QueryWorkerPool;
 import com.questdb.ql.impl.select.SelectedColumnsRecordSource;
 import com.questdb.ql.impl.sort.ComparatorCompiler;
+import com.questdb.ql.impl.sort.ExternalSortedRecordSource;
 import com.questdb.ql.impl.sort.RBTreeSortedRecordSource;
+import com.questdb.ql.impl.sort.RadixSortedRecordSource;
 import com.questdb.ql.impl.sort.RecordComparator;
+import com.questdb.ql.impl.sort.SpillRecord;
+import com.questdb.ql.impl.sort.TopNSortedRecordSource;
 import com.questdb.ql.impl.sys.SysFactories;
 import com.questdb.ql.impl.sys.SystemViewFactory;
 import com.questdb.ql.impl.virtual.VirtualColumnRecordSource;
@@ -69,7 +77,6 @@ import java.util.ArrayDeque;
 
 public class QueryCompiler {
 
-    private static final CharSequenceObjHashMap<Parameter> EMPTY_PARAMS = new CharSequenceObjHashMap<>();
     private final static CharSequenceHashSet nullConstants = new CharSequenceHashSet();
     private final static ObjObjHashMap<Signature, LatestByLambdaRowSourceFactory> LAMBDA_ROW_SOURCE_FACTORIES = new ObjObjHashMap<>();
     private final static LongConstant LONG_ZERO_CONST = new LongConstant(0L, 0);
@@ -77,6 +84,9 @@ public class QueryCompiler {
     private static final int ORDER_BY_UNKNOWN = 0;
     private static final int ORDER_BY_REQUIRED = 1;
     private static final int ORDER_BY_INVARIANT = 2;
+    private static final int MIN_JOIN_PARTITIONS = 16;
+    private static final int MAX_JOIN_PARTITIONS = 1024;
+    private static final int VAR_COLUMN_SIZE_ESTIMATE = 32;
     private final BytecodeAssembler asm = new BytecodeAssembler();
     private final QueryParser parser = new QueryParser();
     private final QueryFilterAnalyser queryFilterAnalyser = new QueryFilterAnalyser();
@@ -129,7 +139,12 @@ public class QueryCompiler {
     private final ObjObjHashMap<IntList, ObjList<AnalyticFunction>> grouppedAnalytic = new ObjObjHashMap<>();
     private final CopyHelperCompiler copyHelperCompiler = new CopyHelperCompiler(asm);
     private final RecordKeyCopierCompiler recordKeyCopierCompiler = new RecordKeyCopierCompiler(asm);
+    private final QueryWorkerPool workerPool;
+    private final ObjList<JournalMetadata> compiledJournals = new ObjList<>();
     private ObjList<JoinContext> emittedJoinClauses;
+    // set while compiling sub-query, rows of which must come out in order of timestamp
+    private boolean timestampOrderRequired;
+    private CharSequenceObjHashMap<Parameter> parameterMap;
     private int aggregateColumnSequence;
 
     public QueryCompiler() {
@@ -137,8 +152,13 @@ public class QueryCompiler {
     }
 
     public QueryCompiler(ServerConfiguration configuration) {
+        this(configuration, null);
+    }
+
+    public QueryCompiler(ServerConfiguration configuration, QueryWorkerPool workerPool) {
         // seed column name assembly with default column prefix, which we will reuse
         this.configuration = configuration;
+        this.workerPool = workerPool;
         columnNameAssembly.put("col");
         columnNamePrefixLen = 3;
     }
@@ -148,15 +168,7 @@ public class QueryCompiler {
     }
 
     public RecordSource compile(JournalReaderFactory factory, ParsedModel model) throws ParserException {
-        if (model.isQuery()) {
-            clearState();
-            final QueryModel qm = (QueryModel) model;
-            qm.setParameterMap(EMPTY_PARAMS);
-            RecordSource rs = compile(qm, factory);
-            rs.setParameterMap(EMPTY_PARAMS);
-            return rs;
-        }
-        throw new IllegalArgumentException("QueryModel expected");
+        return compile(factory, model, new CharSequenceObjHashMap<Parameter>());
     }
 
     public JournalWriter createWriter(JournalFactory factory, ParsedModel model) throws ParserException, JournalException {
@@ -164,6 +176,7 @@ public class QueryCompiler {
             throw new IllegalArgumentException("Statement expected");
         }
         clearState();
+        setParameterMap(new CharSequenceObjHashMap<Parameter>());
         CreateJournalModel cm = (CreateJournalModel) model;
 
         final String name = cm.getName().token;
@@ -274,6 +287,36 @@ public class QueryCompiler {
         return parser.parse(statement);
     }
 
+    /**
+     * Compiles query model with parameters looked up in given map first. Parameters
+     * not found in the map are created and added to it.
+     */
+    RecordSource compile(JournalReaderFactory factory, ParsedModel model, CharSequenceObjHashMap<Parameter> parameterMap) throws ParserException {
+        if (model.isQuery()) {
+            clearState();
+            setParameterMap(parameterMap);
+            RecordSource rs = compile((QueryModel) model, factory);
+            rs.setParameterMap(parameterMap);
+            return rs;
+        }
+        throw new IllegalArgumentException("QueryModel expected");
+    }
+
+    /**
+     * @return metadata of journals read by last compiled query, including lambda sub-queries
+     */
+    ObjList<JournalMetadata> getCompiledJournals() {
+        return compiledJournals;
+    }
+
+    /**
+     * @return true when last compiled query compared indexed or timestamp column to a parameter,
+     * such comparisons are evaluated as filters rather than index or interval lookups.
+     */
+    boolean hasIntrinsicParameters() {
+        return queryFilterAnalyser.hasIntrinsicParameters();
+    }
+
     private static void validateAndSetPartitionBy(JournalStructure struct, ExprNode partitionBy) throws ParserException {
         if (partitionBy == null) {
             return;
@@ -344,6 +387,34 @@ public class QueryCompiler {
         return set;
     }
 
+    private static boolean hasAsOfJoin(QueryModel parent) {
+        ObjList<QueryModel> joinModels = parent.getJoinModels();
+        for (int i = 1, n = joinModels.size(); i < n; i++) {
+            if (joinModels.getQuick(i).getJoinType() == QueryModel.JOIN_ASOF) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Journal rows come out in ascending order of designated timestamp, unless they are looked up
+     * by "latest by". Analytic functions, which order by this timestamp, need not sort them.
+     */
+    private static boolean isTimestampOrdered(QueryModel model, RecordMetadata metadata, AnalyticColumn col) {
+        if (model.getJournalName() == null
+                || model.getLatestBy() != null
+                || model.getTimestamp() != null
+                || model.getJoinModels().size() > 1
+                || col.getOrderBy().size() != 1
+                || col.getOrderByDirection().getQuick(0) != QueryModel.ORDER_DIRECTION_ASCENDING) {
+            return false;
+        }
+
+        int index = metadata.getTimestampIndex();
+        return index > -1 && index == metadata.getColumnIndexQuiet(col.getOrderBy().getQuick(0).token);
+    }
+
     private void addAlias(int position, String alias) throws ParserException {
         if (selectedColumnAliases.add(alias)) {
             return;
@@ -458,7 +529,7 @@ public class QueryCompiler {
         }
     }
 
-    private RecordSource analyseAndCompileOrderBy(QueryModel model, RecordSource recordSource) throws ParserException {
+    private RecordSource analyseAndCompileOrderBy(QueryModel model, RecordSource recordSource, boolean masterOnly) throws ParserException {
         literalCollectorANames.clear();
         literalCollectorAIndexes.clear();
         literalCollector.withParent(model);
@@ -488,10 +559,10 @@ public class QueryCompiler {
             }
         }
 
-        // we interested in columns that belong to journal 0 only
+        // when ordering master we interested in columns that belong to journal 0 only
         // abort if we find references to anywhere else
         boolean canUseOrderByHere = true;
-        for (int i = 0, n = literalCollectorAIndexes.size(); i < n; i++) {
+        for (int i = 0, n = masterOnly ? literalCollectorAIndexes.size() : 0; i < n; i++) {
             if (literalCollectorAIndexes.getQuick(i) != 0) {
                 canUseOrderByHere = false;
                 break;
@@ -794,6 +865,8 @@ public class QueryCompiler {
         constNameToIndex.clear();
         constNameToNode.clear();
         constNameToToken.clear();
+        compiledJournals.clear();
+        timestampOrderRequired = false;
     }
 
     private RecordSource compile(QueryModel model, JournalReaderFactory factory) throws ParserException {
@@ -804,24 +877,22 @@ public class QueryCompiler {
     }
 
     private RecordSource compileAggregates(RecordSource rs, QueryModel model) throws ParserException {
-        final int n = aggregators.size();
         final ExprNode sampleBy = model.getSampleBy();
-        ObjList<AggregatorFunction> af = new ObjList<>(n);
-        // create virtual columns
-        for (int i = 0; i < n; i++) {
-            QueryColumn qc = aggregators.get(i);
-            VirtualColumn vc = virtualColumnBuilder.createVirtualColumn(model, qc.getAst(), rs.getMetadata());
-            if (vc instanceof AggregatorFunction) {
-                vc.setName(qc.getAlias());
-                af.add((AggregatorFunction) vc);
-            } else {
-                throw QueryError.$(qc.getAst().position, "Internal configuration error. Not an aggregate");
-            }
-        }
+        ObjList<AggregatorFunction> af = createAggregators(rs, model);
 
         RecordSource out;
         if (sampleBy == null) {
-            out = new AggregatedRecordSource(rs, groupKeyColumns, af, configuration.getDbAggregatePage(), recordKeyCopierCompiler);
+            if (rs instanceof ParallelFilteredRecordSource) {
+                // each worker lane aggregates into its own map, which requires its own set of functions
+                ParallelFilteredRecordSource prs = (ParallelFilteredRecordSource) rs;
+                ObjList<ObjList<AggregatorFunction>> laneAggregators = new ObjList<>(prs.getLaneCount() - 1);
+                for (int i = 1, n = prs.getLaneCount(); i < n; i++) {
+                    laneAggregators.add(createAggregators(rs, model));
+                }
+                out = new AggregatedRecordSource(prs, groupKeyColumns, af, laneAggregators, configuration.getDbAggregatePage(), recordKeyCopierCompiler);
+            } else {
+                out = new AggregatedRecordSource(rs, groupKeyColumns, af, configuration.getDbAggregatePage(), recordKeyCopierCompiler);
+            }
         } else {
             TimestampSampler sampler = SamplerFactory.from(sampleBy.token);
             if (sampler == null) {
@@ -872,23 +943,10 @@ public class QueryCompiler {
             }
 
             final int osz = col.getOrderBy().size();
-            AnalyticFunction f = AnalyticFunctionFactories.newInstance(
-                    configuration,
-                    ast.token,
-                    valueColumn,
-                    col.getAlias(),
-                    partitionBy,
-                    rs.supportsRowIdAccess(),
-                    osz > 0
-            );
-
-            if (f == null) {
-                Misc.free(rs);
-                throw QueryError.$(col.getAst().position, "Unknown function");
-            }
             CharSequenceIntHashMap orderHash = model.getOrderHash();
 
             boolean dismissOrder;
+            boolean streamable = false;
             if (osz > 0 && orderHash.size() > 0) {
                 dismissOrder = true;
                 for (int j = 0; j < osz; j++) {
@@ -899,7 +957,24 @@ public class QueryCompiler {
                     }
                 }
             } else {
-                dismissOrder = false;
+                dismissOrder = streamable = osz > 0 && isTimestampOrdered(model, metadata, col);
+            }
+
+            // functions over rows, which are already in required order, are
+            // computed as rows stream through and hold only state of partitions
+            AnalyticFunction f = AnalyticFunctionFactories.newInstance(
+                    configuration,
+                    ast.token,
+                    valueColumn,
+                    col.getAlias(),
+                    partitionBy,
+                    rs.supportsRowIdAccess(),
+                    osz > 0 && !streamable
+            );
+
+            if (f == null) {
+                Misc.free(rs);
+                throw QueryError.$(col.getAst().position, "Unknown function");
             }
 
             if (osz > 0 && !dismissOrder) {
@@ -960,6 +1035,15 @@ public class QueryCompiler {
 
         try {
             boolean needColumnNameHistogram = model.getColumns().size() > 0;
+            IntHashSet graceJoins = null;
+            for (int i = 1, n = ordered.size(); i < n; i++) {
+                if (isGraceJoin(model, i, factory)) {
+                    if (graceJoins == null) {
+                        graceJoins = new IntHashSet();
+                    }
+                    graceJoins.add(i);
+                }
+            }
 
             model.getColumnNameHistogram().clear();
 
@@ -989,7 +1073,9 @@ public class QueryCompiler {
                     // Ordering main record source could benefit from rowid access thus
                     // making it faster compared to ordering of join record source that
                     // doesn't allow rowid access.
-                    master = analyseAndCompileOrderBy(model, slave);
+                    // Grace hash join does not keep order of master rows, so
+                    // when there is one, join record source is ordered instead.
+                    master = graceJoins == null ? analyseAndCompileOrderBy(model, slave, true) : slave;
                 } else {
                     // not the root, join to "master"
                     switch (m.getJoinType()) {
@@ -1001,7 +1087,7 @@ public class QueryCompiler {
                             master = createAsOfJoin(model.getTimestamp(), m, master, slave);
                             break;
                         default:
-                            master = createHashJoin(m, master, slave);
+                            master = createHashJoin(m, master, slave, graceJoins != null && graceJoins.contains(i), factory);
                             break;
                     }
                 }
@@ -1013,6 +1099,10 @@ public class QueryCompiler {
                 }
             }
 
+            if (graceJoins != null && model.getOrderBy().size() > 0) {
+                master = analyseAndCompileOrderBy(model, master, false);
+            }
+
             if (joinModelIsFalse(model)) {
                 return new NoOpJournalRecordSource(master);
             }
@@ -1045,6 +1135,7 @@ public class QueryCompiler {
 
         if (metadata instanceof JournalMetadata) {
             journalMetadata = (JournalMetadata) metadata;
+            compiledJournals.add(journalMetadata);
         } else {
             throw QueryError.$(0, "Internal error: invalid metadata");
         }
@@ -1057,6 +1148,7 @@ public class QueryCompiler {
 
         PartitionSource ps = new JournalPartitionSource(journalMetadata, true);
         RowSource rs = null;
+        ObjList<VirtualColumn> parallelFilters = null;
 
         String latestByCol = null;
         RecordColumnMetadata latestByMetadata = null;
@@ -1117,6 +1209,11 @@ public class QueryCompiler {
                 ps = new NoOpJournalPartitionSource(journalMetadata);
             } else {
 
+                if (latestByCol == null && im.rangeNodes.size() > 0) {
+                    // latest by has to see all partitions to find latest rows
+                    ps = createStatsPartitionSource(model, ps, im, journalMetadata);
+                }
+
                 if (im.intervalHi < Long.MAX_VALUE || im.intervalLo > Long.MIN_VALUE) {
 
                     ps = new MultiIntervalPartitionSource(ps,
@@ -1149,10 +1246,21 @@ public class QueryCompiler {
                             default:
                                 break;
                         }
+                    } else if (im.bitmapColumns.size() > 0) {
+                        rs = new BitmapIndexRowSource(im.bitmapColumns, im.bitmapIncluded, im.bitmapExcluded);
                     }
 
                     if (filter != null) {
-                        rs = new FilteredRowSource(rs == null ? new AllRowSource() : rs, filter);
+                        if (rs == null && workerPool != null) {
+                            // full scan with filter can be split between workers, each worker needs its own filter
+                            parallelFilters = new ObjList<>(workerPool.getWorkerCount() + 1);
+                            parallelFilters.add(filter);
+                            for (int i = 0, n = workerPool.getWorkerCount(); i < n; i++) {
+                                parallelFilters.add(virtualColumnBuilder.createVirtualColumn(model, im.filter, journalMetadata));
+                            }
+                        } else {
+                            rs = new FilteredRowSource(rs == null ? new AllRowSource() : rs, filter);
+                        }
                     }
                 } else {
                     if (im.keyColumn != null && im.keyValuesIsLambda) {
@@ -1236,7 +1344,7 @@ public class QueryCompiler {
         }
 
         // check for case of simple "select count() from tab"
-        if (rs == null && model.getColumns().size() == 1) {
+        if (rs == null && parallelFilters == null && model.getColumns().size() == 1) {
             QueryColumn qc = model.getColumns().getQuick(0);
             if ("count".equals(qc.getAst().token) && qc.getAst().paramCount == 0) {
                 // remove order clause
@@ -1247,7 +1355,27 @@ public class QueryCompiler {
             }
         }
 
-        RecordSource recordSource = new JournalRecordSource(ps, rs == null ? new AllRowSource() : rs);
+        if (rs == null && parallelFilters == null && latestByCol == null && workerPool != null && isParallelAggregation(model)) {
+            // unfiltered scan is worth splitting between workers only when workers can also aggregate rows
+            parallelFilters = new ObjList<>(workerPool.getWorkerCount() + 1);
+            for (int i = 0, n = workerPool.getWorkerCount(); i <= n; i++) {
+                parallelFilters.add(null);
+            }
+        }
+
+        RecordSource recordSource;
+        if (parallelFilters != null) {
+            recordSource = new ParallelFilteredRecordSource(
+                    ps,
+                    parallelFilters,
+                    workerPool,
+                    configuration.getDbParallelScanChunk(),
+                    configuration.getDbParallelScanThreshold()
+            );
+        } else {
+            recordSource = new JournalRecordSource(ps, rs == null ? new AllRowSource() : rs);
+        }
+
         if (QueryModel.hasMarker(model.getJournalName().token)) {
             return new NoRowIdRecordSource().of(recordSource);
         }
@@ -1269,7 +1397,12 @@ public class QueryCompiler {
                     nm.setRecordSource(rs);
                 }
             }
-            return limit(timestamp(order(selectColumns(rs, model), model), model), model);
+            rs = selectColumns(rs, model);
+            if (model.getOrderBy().size() > 0 && model.getLimitHiVc() != null && fitsSortMemory(rs, model.getLimitHiVc())) {
+                // sort only rows that make it into the limit
+                return timestamp(orderWithLimit(rs, model), model);
+            }
+            return limit(timestamp(order(rs, model), model), model);
         } catch (ParserException e) {
             freeModelRecordSources(model);
             throw e;
@@ -1293,7 +1426,13 @@ public class QueryCompiler {
 
     private RecordSource compileSubQuery(QueryModel model, JournalReaderFactory factory) throws ParserException {
         applyLimit(model);
-        return filter(model, compileNoOptimise(model.getNestedModel(), factory));
+        boolean required = timestampOrderRequired;
+        timestampOrderRequired = required || model.getSampleBy() != null;
+        try {
+            return filter(model, compileNoOptimise(model.getNestedModel(), factory));
+        } finally {
+            timestampOrderRequired = required;
+        }
     }
 
     private RecordSource compileSysView(QueryModel model, JournalReaderFactory factory) throws ParserException {
@@ -1349,6 +1488,23 @@ public class QueryCompiler {
         }
     }
 
+    private ObjList<AggregatorFunction> createAggregators(RecordSource rs, QueryModel model) throws ParserException {
+        final int n = aggregators.size();
+        ObjList<AggregatorFunction> af = new ObjList<>(n);
+        // create virtual columns
+        for (int i = 0; i < n; i++) {
+            QueryColumn qc = aggregators.get(i);
+            VirtualColumn vc = virtualColumnBuilder.createVirtualColumn(model, qc.getAst(), rs.getMetadata());
+            if (vc instanceof AggregatorFunction) {
+                vc.setName(qc.getAlias());
+                af.add((AggregatorFunction) vc);
+            } else {
+                throw QueryError.$(qc.getAst().position, "Internal configuration error. Not an aggregate");
+            }
+        }
+        return af;
+    }
+
     private String createAlias(int index) {
         columnNameAssembly.clear(columnNamePrefixLen);
         Numbers.append(columnNameAssembly, index);
@@ -1394,7 +1550,7 @@ public class QueryCompiler {
         }
     }
 
-    private RecordSource createHashJoin(QueryModel model, RecordSource master, RecordSource slave) throws ParserException {
+    private RecordSource createHashJoin(QueryModel model, RecordSource master, RecordSource slave, boolean grace, JournalReaderFactory factory) throws ParserException {
         JoinContext jc = model.getContext();
         RecordMetadata bm = master.getMetadata();
         RecordMetadata am = slave.getMetadata();
@@ -1425,6 +1581,21 @@ public class QueryCompiler {
             masterColIndices.add(ib);
             slaveColIndices.add(ia);
         }
+
+        if (grace) {
+            int hashMemory = configuration.getDbHashMemory();
+            long size = estimateSize(model, model.getMetadata(), factory);
+            return new GraceHashJoinRecordSource(master,
+                    masterColIndices,
+                    slave,
+                    slaveColIndices,
+                    model.getJoinType() == QueryModel.JOIN_OUTER,
+                    hashMemory,
+                    (int) Math.min(MAX_JOIN_PARTITIONS, Math.max(MIN_JOIN_PARTITIONS, size / hashMemory * 2)),
+                    workerPool
+            );
+        }
+
         return new HashJoinRecordSource(master,
                 masterColIndices,
                 slave,
@@ -1496,6 +1667,53 @@ public class QueryCompiler {
         }
     }
 
+    private PartitionSource createStatsPartitionSource(QueryModel model, PartitionSource ps, IntrinsicModel im, JournalMetadata metadata) throws ParserException {
+        StatsPartitionSource sps = new StatsPartitionSource(ps);
+        for (int i = 0, n = im.rangeNodes.size(); i < n; i++) {
+            ExprNode node = im.rangeNodes.getQuick(i);
+            int columnIndex = metadata.getColumnIndexQuiet(node.lhs.token);
+            boolean swap = columnIndex == -1 || node.lhs.type != ExprNode.LITERAL;
+            ExprNode col = swap ? node.rhs : node.lhs;
+            ExprNode val = swap ? node.lhs : node.rhs;
+
+            VirtualColumn value = virtualColumnBuilder.createVirtualColumn(model, val, metadata);
+            switch (value.getType()) {
+                case ColumnType.BYTE:
+                case ColumnType.SHORT:
+                case ColumnType.INT:
+                case ColumnType.LONG:
+                case ColumnType.DATE:
+                case ColumnType.FLOAT:
+                case ColumnType.DOUBLE:
+                    break;
+                default:
+                    // untyped parameters and nulls are left to filter
+                    continue;
+            }
+
+            int op;
+            switch (node.token) {
+                case "<":
+                    op = swap ? StatsPartitionSource.OP_GT : StatsPartitionSource.OP_LT;
+                    break;
+                case "<=":
+                    op = swap ? StatsPartitionSource.OP_GTE : StatsPartitionSource.OP_LTE;
+                    break;
+                case ">":
+                    op = swap ? StatsPartitionSource.OP_LT : StatsPartitionSource.OP_GT;
+                    break;
+                case ">=":
+                    op = swap ? StatsPartitionSource.OP_LTE : StatsPartitionSource.OP_GTE;
+                    break;
+                default:
+                    op = StatsPartitionSource.OP_EQ;
+                    break;
+            }
+            sps.add(metadata.getColumnIndex(col.token), op, value);
+        }
+        return sps.isEmpty() ? ps : sps;
+    }
+
     private JournalStructure createStructure(String location, RecordMetadata rm, CharSequenceObjHashMap<ColumnCastModel> castModels) throws ParserException {
         int n = rm.getColumnCount();
         ObjList<ColumnMetadata> m = new ObjList<>(n);
@@ -1529,6 +1747,46 @@ public class QueryCompiler {
         return new JournalStructure(location, m).$ts(rm.getTimestampIndex());
     }
 
+    /**
+     * Estimates size of data hash join would have to keep in memory for given slave model. Journals are
+     * estimated by their row count, filters are not taken into account. Models, which cannot be estimated,
+     * are assumed to be large.
+     */
+    private long estimateSize(QueryModel model, RecordMetadata metadata, JournalReaderFactory factory) throws ParserException {
+        QueryModel m = model;
+        while (m.getJournalName() == null) {
+            m = m.getNestedModel();
+            if (m == null || m.getJoinModels().size() > 1) {
+                return Long.MAX_VALUE;
+            }
+        }
+
+        RecordMetadata jm = m.collectJournalMetadata(factory);
+        if (!(jm instanceof JournalMetadata)) {
+            // system views are small
+            return 0;
+        }
+
+        long rows;
+        try {
+            Journal r = factory.reader((JournalMetadata) jm);
+            try {
+                rows = r.size();
+            } finally {
+                r.close();
+            }
+        } catch (JournalException e) {
+            return Long.MAX_VALUE;
+        }
+
+        long rowSize = 0;
+        for (int i = 0, n = metadata.getColumnCount(); i < n; i++) {
+            int size = ColumnType.sizeOf(metadata.getColumnQuick(i).getType());
+            rowSize += size == 0 ? VAR_COLUMN_SIZE_ESTIMATE : size;
+        }
+        return rows * rowSize;
+    }
+
     private CharSequence extractColumnName(CharSequence token, int dot) {
         return dot == -1 ? token : csPool.next().of(token, dot + 1, token.length() - dot - 1);
     }
@@ -1691,6 +1949,64 @@ public class QueryCompiler {
         }
     }
 
+    /**
+     * Checks if select list of journal model is a plain group-by, i.e. key columns and aggregate functions.
+     * Rows of such query can be aggregated by parallel workers without being passed back to query thread.
+     */
+    private boolean isParallelAggregation(QueryModel model) {
+        if (model.getSampleBy() != null) {
+            return false;
+        }
+
+        boolean aggregates = false;
+        ObjList<QueryColumn> columns = model.getColumns();
+        for (int i = 0, n = columns.size(); i < n; i++) {
+            QueryColumn qc = columns.getQuick(i);
+            ExprNode node = qc.getAst();
+            if (qc instanceof AnalyticColumn) {
+                return false;
+            }
+
+            if (node.type == ExprNode.FUNCTION && FunctionFactories.isAggregate(node.token)) {
+                aggregates = true;
+            } else if (node.type != ExprNode.LITERAL) {
+                return false;
+            }
+        }
+        return aggregates;
+    }
+
+    /**
+     * Hash join spills to disk when slave does not fit into hash memory. Grace hash join emits rows
+     * grouped by partition rather than in order of master rows, so it is not used when rows must stay
+     * in timestamp order for as-of join further down the join chain or for sampling.
+     *
+     * @param parent  model of joins
+     * @param pos     position of join in join order
+     * @param factory reader factory to estimate size of slave
+     * @return true when join at this position is to be compiled as grace hash join
+     */
+    private boolean isGraceJoin(QueryModel parent, int pos, JournalReaderFactory factory) throws ParserException {
+        int hashMemory = configuration.getDbHashMemory();
+        if (hashMemory <= 0 || timestampOrderRequired || parent.getSampleBy() != null) {
+            return false;
+        }
+
+        ObjList<QueryModel> joinModels = parent.getJoinModels();
+        IntList ordered = parent.getOrderedJoinModels();
+        QueryModel m = joinModels.getQuick(ordered.getQuick(pos));
+        if (m.getJoinType() == QueryModel.JOIN_CROSS || m.getJoinType() == QueryModel.JOIN_ASOF) {
+            return false;
+        }
+
+        for (int i = pos + 1, n = ordered.size(); i < n; i++) {
+            if (joinModels.getQuick(ordered.getQuick(i)).getJoinType() == QueryModel.JOIN_ASOF) {
+                return false;
+            }
+        }
+        return estimateSize(m, m.getMetadata(), factory) > hashMemory;
+    }
+
     private boolean joinModelIsFalse(QueryModel model) throws ParserException {
         ExprNode current = null;
         IntHashSet constants = model.getParsedWhereConsts();
@@ -1715,6 +2031,29 @@ public class QueryCompiler {
         }
     }
 
+    /**
+     * Top-N sort keeps all rows of the limit in memory. When sort memory is limited, rows must fit
+     * into it, otherwise query falls back to external sort. Value of parameter is not known
+     * until query is executed, so parametrised limit is never assumed to fit.
+     */
+    private boolean fitsSortMemory(RecordSource rs, VirtualColumn hi) {
+        long budget = configuration.getDbSortMemory();
+        if (budget <= 0) {
+            return true;
+        }
+
+        if (hi instanceof Parameter) {
+            return false;
+        }
+
+        // row id or address of copied row and its sequence number
+        long rowSize = 16;
+        if (!rs.supportsRowIdAccess()) {
+            rowSize += new SpillRecord(rs.getMetadata()).getFixedSize();
+        }
+        return hi.getLong(null) <= budget / rowSize;
+    }
+
     private RecordSource limit(RecordSource rs, QueryModel model) {
         if (model.getLimitLoVc() == null || model.getLimitHiVc() == null) {
             return rs;
@@ -1727,7 +2066,7 @@ public class QueryCompiler {
         switch (node.type) {
             case ExprNode.LITERAL:
                 if (Chars.startsWith(node.token, ':')) {
-                    return Parameter.getOrCreate(node, model.getParameterMap());
+                    return Parameter.getOrCreate(node, parameterMap);
                 }
                 break;
             case ExprNode.CONSTANT:
@@ -2057,11 +2396,18 @@ public class QueryCompiler {
         if (orderBy.size() > 0) {
             try {
                 RecordMetadata m = rs.getMetadata();
+                IntList indices = toOrderIndices(m, orderBy, model.getOrderByDirection());
+
+                if (configuration.getDbSortMemory() > 0) {
+                    return new ExternalSortedRecordSource(rs, cc.compile(m, indices), configuration.getDbSortMemory());
+                }
+
+                if (RadixSortedRecordSource.isSupported(m, indices)) {
+                    return new RadixSortedRecordSource(rs, indices);
+                }
+
                 return new RBTreeSortedRecordSource(rs,
-                        cc.compile(
-                                m,
-                                toOrderIndices(m, orderBy, model.getOrderByDirection())
-                        ),
+                        cc.compile(m, indices),
                         configuration.getDbSortKeyPage(),
                         configuration.getDbSortDataPage());
             } catch (ParserException e) {
@@ -2073,6 +2419,22 @@ public class QueryCompiler {
         }
     }
 
+    private RecordSource orderWithLimit(RecordSource rs, QueryModel model) throws ParserException {
+        try {
+            RecordMetadata m = rs.getMetadata();
+            return new TopNSortedRecordSource(rs,
+                    cc.compile(
+                            m,
+                            toOrderIndices(m, model.getOrderBy(), model.getOrderByDirection())
+                    ),
+                    model.getLimitLoVc(),
+                    model.getLimitHiVc());
+        } catch (ParserException e) {
+            Misc.free(rs);
+            throw e;
+        }
+    }
+
     // todo: remove
     CharSequence plan(JournalReaderFactory factory, CharSequence query) throws ParserException {
         QueryModel model = (QueryModel) parser.parse(query);
@@ -2321,7 +2683,14 @@ public class QueryCompiler {
         if (model.getJournalName() != null) {
             model.setMetadata(metadata = model.collectJournalMetadata(factory));
         } else {
-            RecordSource rs = compileNoOptimise(model.getNestedModel(), factory);
+            boolean required = timestampOrderRequired;
+            timestampOrderRequired = required || hasAsOfJoin(parent);
+            RecordSource rs;
+            try {
+                rs = compileNoOptimise(model.getNestedModel(), factory);
+            } finally {
+                timestampOrderRequired = required;
+            }
             model.setMetadata(metadata = rs.getMetadata());
             model.setRecordSource(rs);
         }
@@ -2522,6 +2891,11 @@ public class QueryCompiler {
         }
     }
 
+    private void setParameterMap(CharSequenceObjHashMap<Parameter> parameterMap) {
+        this.parameterMap = parameterMap;
+        virtualColumnBuilder.setParameterMap(parameterMap);
+    }
+
     private void splitAggregates(@Transient ExprNode node, ObjList<QueryColumn> aggregateColumns) {
 
         this.exprNodeStack.clear();
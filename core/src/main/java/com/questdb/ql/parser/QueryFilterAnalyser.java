@@ -25,6 +25,7 @@ package com.questdb.ql.parser;
 
 import com.questdb.ex.NumericException;
 import com.questdb.ex.ParserException;
+import com.questdb.factory.configuration.ColumnMetadata;
 import com.questdb.factory.configuration.RecordColumnMetadata;
 import com.questdb.factory.configuration.RecordMetadata;
 import com.questdb.misc.Chars;
@@ -37,8 +38,10 @@ import com.questdb.ql.impl.interval.YearIntervalSource;
 import com.questdb.ql.model.ExprNode;
 import com.questdb.ql.model.IntrinsicModel;
 import com.questdb.ql.model.IntrinsicValue;
+import com.questdb.ql.ops.regex.RegexPrefilter;
 import com.questdb.std.*;
 import com.questdb.store.ColumnType;
+import com.questdb.store.PartitionStats;
 
 import java.util.ArrayDeque;
 
@@ -48,6 +51,7 @@ final class QueryFilterAnalyser {
     private final FlyweightCharSequence quoteEraser = new FlyweightCharSequence();
     private final ObjList<ExprNode> keyNodes = new ObjList<>();
     private final ObjList<ExprNode> timestampNodes = new ObjList<>();
+    private final ObjList<ExprNode> bitmapNodes = new ObjList<>();
     private final ObjectPool<IntrinsicModel> models = new ObjectPool<>(IntrinsicModel.FACTORY, 8);
     private final CharSequenceHashSet tempKeys = new CharSequenceHashSet();
     private final IntList tempPos = new IntList();
@@ -55,6 +59,7 @@ final class QueryFilterAnalyser {
     private final IntList tempP = new IntList();
     private String timestamp;
     private String preferredKeyColumn;
+    private boolean intrinsicParameters;
 
     private static void checkNodeValid(ExprNode node) throws ParserException {
         if (node.lhs == null || node.rhs == null) {
@@ -62,6 +67,120 @@ final class QueryFilterAnalyser {
         }
     }
 
+    private boolean addBitmapValues(IntrinsicModel model, String col, ExprNode node, boolean include) {
+        int index = model.bitmapColumns.indexOf(col);
+        if (index == -1) {
+            index = model.bitmapColumns.size();
+            model.bitmapColumns.add(col);
+            model.bitmapIncluded.add(null);
+            model.bitmapExcluded.add(null);
+        }
+
+        if (include) {
+            CharSequenceHashSet values = model.bitmapIncluded.getQuick(index);
+            if (values == null) {
+                model.bitmapIncluded.setQuick(index, new CharSequenceHashSet(tempKeys));
+            } else {
+                // row can have only one value, keep those in all lists
+                tempK.clear();
+                for (int i = 0, n = tempKeys.size(); i < n; i++) {
+                    if (values.contains(tempKeys.get(i))) {
+                        tempK.add(tempKeys.get(i));
+                    }
+                }
+                values.clear();
+                values.addAll(tempK);
+                if (values.size() == 0) {
+                    model.intrinsicValue = IntrinsicValue.FALSE;
+                }
+            }
+        } else {
+            CharSequenceHashSet values = model.bitmapExcluded.getQuick(index);
+            if (values == null) {
+                model.bitmapExcluded.setQuick(index, new CharSequenceHashSet(tempKeys));
+            } else {
+                values.addAll(tempKeys);
+            }
+        }
+
+        bitmapNodes.add(node);
+        node.intrinsicValue = IntrinsicValue.TRUE;
+        return true;
+    }
+
+    private boolean addKeyValues(IntrinsicModel model, String col, ExprNode node) {
+        // clear values if this is new column
+        // and reset intrinsic values on nodes associated with old column
+        if (model.keyColumn == null || !model.keyColumn.equals(col)) {
+            model.keyValues.clear();
+            model.keyValuePositions.clear();
+            model.keyValues.addAll(tempKeys);
+            model.keyValuePositions.addAll(tempPos);
+            for (int n = 0, k = keyNodes.size(); n < k; n++) {
+                keyNodes.getQuick(n).intrinsicValue = IntrinsicValue.UNDEFINED;
+            }
+            keyNodes.clear();
+            model.keyColumn = col;
+            keyNodes.add(node);
+            node.intrinsicValue = IntrinsicValue.TRUE;
+            return true;
+
+        } else if (!model.keyValuesIsLambda) {
+            // calculate overlap of values
+            replaceAllWithOverlap(model);
+
+            keyNodes.add(node);
+            node.intrinsicValue = IntrinsicValue.TRUE;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean analyzeBitmapEquals(IntrinsicModel model, ExprNode node, RecordMetadata m, boolean include) {
+        ExprNode col;
+        ExprNode value;
+        if (isBitmapColumn(node.lhs, m)) {
+            col = node.lhs;
+            value = node.rhs;
+        } else if (isBitmapColumn(node.rhs, m)) {
+            col = node.rhs;
+            value = node.lhs;
+        } else {
+            return false;
+        }
+
+        if (value.type != ExprNode.CONSTANT || Chars.equals("null", value.token)) {
+            return false;
+        }
+
+        tempKeys.clear();
+        tempKeys.add(Chars.stripQuotes(value.token));
+        return addBitmapValues(model, col.token, node, include);
+    }
+
+    private boolean analyzeBitmapIn(IntrinsicModel model, ExprNode col, RecordMetadata m, ExprNode node) {
+        if (!isBitmapColumn(col, m)) {
+            return false;
+        }
+
+        tempKeys.clear();
+        if (node.paramCount < 3) {
+            if (node.rhs == null || node.rhs.type != ExprNode.CONSTANT) {
+                return false;
+            }
+            tempKeys.add(Chars.stripQuotes(node.rhs.token));
+        } else {
+            for (int i = node.paramCount - 2; i > -1; i--) {
+                ExprNode c = node.args.getQuick(i);
+                if (c.type != ExprNode.CONSTANT) {
+                    return false;
+                }
+                tempKeys.add(Chars.stripQuotes(c.token));
+            }
+        }
+        return addBitmapValues(model, col.token, node, true);
+    }
+
     private boolean analyzeEquals(IntrinsicModel model, ExprNode node, RecordMetadata m) throws ParserException {
         checkNodeValid(node);
         return analyzeEquals0(model, node, node.lhs, node.rhs, m) || analyzeEquals0(model, node, node.rhs, node.lhs, m);
@@ -147,6 +266,13 @@ final class QueryFilterAnalyser {
             }
 
         }
+
+        if (a.type == ExprNode.LITERAL && isParameter(b) && !isParameter(a)) {
+            int index = m.getColumnIndexQuiet(a.token);
+            if (isTimestamp(a) || (index != -1 && m.getColumnQuick(index).isIndexed())) {
+                intrinsicParameters = true;
+            }
+        }
         return false;
     }
 
@@ -207,7 +333,8 @@ final class QueryFilterAnalyser {
         }
         return analyzeInInterval(model, col, node)
                 || analyzeListOfValues(model, col.token, metadata, node)
-                || analyzeInLambda(model, col.token, metadata, node);
+                || analyzeInLambda(model, col.token, metadata, node)
+                || analyzeBitmapIn(model, col, metadata, node);
     }
 
     private boolean analyzeInInterval(IntrinsicModel model, ExprNode col, ExprNode in) throws ParserException {
@@ -248,6 +375,10 @@ final class QueryFilterAnalyser {
             timestampNodes.add(in);
             return true;
         }
+
+        if (isParameter(lo) || isParameter(hi)) {
+            intrinsicParameters = true;
+        }
         return false;
     }
 
@@ -338,22 +469,7 @@ final class QueryFilterAnalyser {
     }
 
     private boolean analyzeListOfValues(IntrinsicModel model, String col, RecordMetadata meta, ExprNode node) {
-        RecordColumnMetadata colMeta = meta.getColumn(col);
-        if (colMeta.isIndexed()) {
-            boolean newColumn = true;
-
-            if (preferredKeyColumn != null && !col.equals(preferredKeyColumn)) {
-                return false;
-            }
-
-            // check if we already have indexed column and it is of worse selectivity
-            if (model.keyColumn != null
-                    && (newColumn = !model.keyColumn.equals(col))
-                    && colMeta.getBucketCount() <= meta.getColumn(model.keyColumn).getBucketCount()) {
-                return false;
-            }
-
-
+        if (isKeyColumnCandidate(model, col, meta)) {
             int i = node.paramCount - 1;
             tempKeys.clear();
             tempPos.clear();
@@ -362,6 +478,7 @@ final class QueryFilterAnalyser {
             // if any of values is not an indexed constant - bail out
             if (i == 1) {
                 if (node.rhs == null || node.rhs.type != ExprNode.CONSTANT) {
+                    intrinsicParameters |= node.rhs != null && isParameter(node.rhs);
                     return false;
                 }
                 if (tempKeys.add(Chars.stripQuotes(node.rhs.token))) {
@@ -371,6 +488,7 @@ final class QueryFilterAnalyser {
                 for (i--; i > -1; i--) {
                     ExprNode c = node.args.getQuick(i);
                     if (c.type != ExprNode.CONSTANT) {
+                        intrinsicParameters |= isParameter(c);
                         return false;
                     }
                     if (tempKeys.add(Chars.stripQuotes(c.token))) {
@@ -379,32 +497,51 @@ final class QueryFilterAnalyser {
                 }
             }
 
-            // clear values if this is new column
-            // and reset intrinsic values on nodes associated with old column
-            if (newColumn) {
-                model.keyValues.clear();
-                model.keyValuePositions.clear();
-                model.keyValues.addAll(tempKeys);
-                model.keyValuePositions.addAll(tempPos);
-                for (int n = 0, k = keyNodes.size(); n < k; n++) {
-                    keyNodes.getQuick(n).intrinsicValue = IntrinsicValue.UNDEFINED;
-                }
-                keyNodes.clear();
-                model.keyColumn = col;
-                keyNodes.add(node);
-                node.intrinsicValue = IntrinsicValue.TRUE;
-                return true;
+            return addKeyValues(model, col, node);
+        }
+        return false;
+    }
+
+    /**
+     * Regex, which matches only literal anchored at both ends, looks up values in index
+     * same way "in" does. Other patterns are left to filter.
+     */
+    private boolean analyzeRegex(IntrinsicModel model, ExprNode node, RecordMetadata m) {
+        ExprNode col = node.lhs;
+        ExprNode value = node.rhs;
+        if (col == null || value == null
+                || col.type != ExprNode.LITERAL || isParameter(col)
+                || value.type != ExprNode.CONSTANT || Chars.equals("null", value.token)) {
+            return false;
+        }
 
-            } else if (!model.keyValuesIsLambda) {
-                // calculate overlap of values
-                replaceAllWithOverlap(model);
+        int index = m.getColumnIndexQuiet(col.token);
+        if (index == -1) {
+            return false;
+        }
 
-                keyNodes.add(node);
-                node.intrinsicValue = IntrinsicValue.TRUE;
-                return true;
+        switch (m.getColumnQuick(index).getType()) {
+            case ColumnType.STRING:
+            case ColumnType.SYMBOL:
+                break;
+            default:
+                return false;
+        }
+
+        RegexPrefilter prefilter = RegexPrefilter.of(Chars.stripQuotes(value.token));
+        tempKeys.clear();
+        if (prefilter == null || !prefilter.collectExactValues(tempKeys)) {
+            return false;
+        }
+
+        if (isKeyColumnCandidate(model, col.token, m)) {
+            tempPos.clear();
+            for (int i = 0, n = tempKeys.size(); i < n; i++) {
+                tempPos.add(value.position);
             }
+            return addKeyValues(model, col.token, node);
         }
-        return false;
+        return isBitmapColumn(col, m) && addBitmapValues(model, col.token, node, true);
     }
 
     private boolean analyzeNotEquals(IntrinsicModel model, ExprNode node) throws ParserException {
@@ -417,6 +554,18 @@ final class QueryFilterAnalyser {
         return false;
     }
 
+    /**
+     * Collects comparison of numeric column with constant or parameter for partition
+     * statistics. Comparison is not intrinsic and remains in filter.
+     */
+    private boolean analyzeRange(IntrinsicModel model, ExprNode node, RecordMetadata m) {
+        if (model.intrinsicValue != IntrinsicValue.FALSE
+                && (isRangeColumn(node.lhs, m) && isRangeValue(node.rhs) || isRangeColumn(node.rhs, m) && isRangeValue(node.lhs))) {
+            model.rangeNodes.add(node);
+        }
+        return false;
+    }
+
     private ExprNode collapseIntrinsicNodes(ExprNode node) {
         if (node == null || node.intrinsicValue == IntrinsicValue.TRUE) {
             return null;
@@ -445,6 +594,7 @@ final class QueryFilterAnalyser {
         this.stack.clear();
         this.keyNodes.clear();
         this.timestampNodes.clear();
+        this.bitmapNodes.clear();
         this.timestamp = timestampIndex < 0 ? null : m.getColumnName(timestampIndex);
         this.preferredKeyColumn = preferredKeyColumn;
 
@@ -475,10 +625,65 @@ final class QueryFilterAnalyser {
                 node = stack.poll();
             }
         }
+
+        if (model.keyColumn != null && bitmapNodes.size() > 0) {
+            // rows come from key column index, bitmap comparisons are left to filter
+            for (int i = 0, n = bitmapNodes.size(); i < n; i++) {
+                bitmapNodes.getQuick(i).intrinsicValue = IntrinsicValue.UNDEFINED;
+            }
+            model.bitmapColumns.clear();
+            model.bitmapIncluded.clear();
+            model.bitmapExcluded.clear();
+        }
         model.filter = collapseIntrinsicNodes(root);
         return model;
     }
 
+    private boolean isBitmapColumn(ExprNode n, RecordMetadata m) {
+        if (preferredKeyColumn != null || n.type != ExprNode.LITERAL) {
+            // latest by looks up rows by its own index
+            return false;
+        }
+        int index = m.getColumnIndexQuiet(n.token);
+        if (index == -1) {
+            return false;
+        }
+        RecordColumnMetadata meta = m.getColumnQuick(index);
+        return meta instanceof ColumnMetadata && ((ColumnMetadata) meta).bitmapIndexed;
+    }
+
+    private boolean isKeyColumnCandidate(IntrinsicModel model, String col, RecordMetadata meta) {
+        RecordColumnMetadata colMeta = meta.getColumn(col);
+        if (!colMeta.isIndexed()) {
+            return false;
+        }
+
+        if (preferredKeyColumn != null && !col.equals(preferredKeyColumn)) {
+            return false;
+        }
+
+        // check if we already have indexed column and it is of worse selectivity
+        return model.keyColumn == null
+                || model.keyColumn.equals(col)
+                || colMeta.getBucketCount() > meta.getColumn(model.keyColumn).getBucketCount();
+    }
+
+    private boolean isParameter(ExprNode n) {
+        return n.type == ExprNode.LITERAL && Chars.startsWith(n.token, ':');
+    }
+
+    private boolean isRangeColumn(ExprNode n, RecordMetadata m) {
+        if (n.type != ExprNode.LITERAL || isParameter(n)) {
+            return false;
+        }
+        int index = m.getColumnIndexQuiet(n.token);
+        return index > -1 && PartitionStats.isSupported(m.getColumnQuick(index).getType());
+    }
+
+    private boolean isRangeValue(ExprNode n) {
+        return n.type == ExprNode.CONSTANT && n.token.charAt(0) != '\'' || isParameter(n);
+    }
+
     private boolean isTimestamp(ExprNode n) {
         return timestamp != null && timestamp.equals(n.token);
     }
@@ -610,17 +815,19 @@ final class QueryFilterAnalyser {
             case "in":
                 return analyzeIn(model, node, m);
             case ">":
-                return analyzeGreater(model, node, 1);
+                return analyzeGreater(model, node, 1) || analyzeRange(model, node, m);
             case ">=":
-                return analyzeGreater(model, node, 0);
+                return analyzeGreater(model, node, 0) || analyzeRange(model, node, m);
             case "<":
-                return analyzeLess(model, node, 1);
+                return analyzeLess(model, node, 1) || analyzeRange(model, node, m);
             case "<=":
-                return analyzeLess(model, node, 0);
+                return analyzeLess(model, node, 0) || analyzeRange(model, node, m);
             case "=":
-                return analyzeEquals(model, node, m);
+                return analyzeEquals(model, node, m) || analyzeBitmapEquals(model, node, m, true) || analyzeRange(model, node, m);
             case "!=":
-                return analyzeNotEquals(model, node);
+                return analyzeNotEquals(model, node) || analyzeBitmapEquals(model, node, m, false);
+            case "~":
+                return analyzeRegex(model, node, m);
             default:
                 return false;
         }
@@ -645,7 +852,12 @@ final class QueryFilterAnalyser {
         }
     }
 
+    boolean hasIntrinsicParameters() {
+        return intrinsicParameters;
+    }
+
     void reset() {
         this.models.clear();
+        this.intrinsicParameters = false;
     }
 }
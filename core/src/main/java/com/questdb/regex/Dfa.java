@@ -0,0 +1,694 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.regex;
+
+import com.questdb.misc.Unsafe;
+import com.questdb.std.DirectCharSequence;
+import com.questdb.std.IntList;
+import com.questdb.std.ObjList;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Deterministic automaton for regular subset of ASCII patterns. Pattern is compiled into NFA,
+ * states of DFA are built lazily from sets of NFA states as input requires them and are cached
+ * together with transitions. Once built, matching is a table lookup per char, it does not
+ * backtrack and does not allocate.
+ * <p>
+ * Supported are literals, ".", character classes, \d \w \s and their negations, groups,
+ * alternatives, greedy and lazy quantifiers, "^" at start and "$" at end of pattern. Patterns
+ * with other constructs (back references, look-arounds, word boundaries, flags, non-ASCII chars)
+ * are not compiled and have to be matched by {@link Matcher}.
+ * <p>
+ * Non-ASCII chars are indistinguishable for such patterns, except for line terminators, hence
+ * alphabet of automaton is 128 ASCII chars and two classes of non-ASCII chars. Input with
+ * surrogate pairs is delegated to fallback matcher, which treats pair as single char.
+ * <p>
+ * Automaton only tells if pattern is found, positions of match and groups come from {@link Matcher}.
+ */
+public final class Dfa {
+    private static final int ALPHABET = 130;
+    private static final int OTHER = 128;
+    private static final int TERMINATOR = 129;
+    private static final int BITS = 3;
+    private static final int MAX_NFA_STATES = 4096;
+    private static final int MAX_DFA_STATES = 1024;
+
+    private static final int NFA_MATCH = 0;
+    private static final int NFA_CHAR = 1;
+    private static final int NFA_SPLIT = 2;
+
+    private static final int AST_SET = 0;
+    private static final int AST_CONCAT = 1;
+    private static final int AST_ALT = 2;
+    private static final int AST_REPEAT = 3;
+
+    private final IntList types = new IntList();
+    private final IntList out1 = new IntList();
+    private final IntList out2 = new IntList();
+    private final ObjList<long[]> sets = new ObjList<>();
+    private final ObjList<int[]> states = new ObjList<>();
+    private final HashMap<IntList, Integer> stateIndex = new HashMap<>();
+    private final IntList accepting = new IntList();
+    private final IntList stack = new IntList();
+    private final IntList closure = new IntList();
+    private final Matcher fallback;
+    private final boolean anchoredStart;
+    private final boolean anchoredEnd;
+    private int marks[];
+    private int mark;
+    private int startSet[];
+    private int transitions[] = new int[0];
+
+    private Dfa(Node ast, boolean anchoredStart, boolean anchoredEnd, Matcher fallback) {
+        this.anchoredStart = anchoredStart;
+        this.anchoredEnd = anchoredEnd;
+        this.fallback = fallback;
+        addNfaState(NFA_MATCH, -1, -1, null);
+        int start = emit(ast, 0);
+        this.marks = new int[types.size()];
+        this.startSet = closureOf(start);
+        reset();
+    }
+
+    /**
+     * Compiles pattern into automaton.
+     *
+     * @param regex    regular expression, which has been successfully compiled by {@link Pattern}
+     * @param fallback matcher of the same expression for input automaton cannot handle
+     * @return automaton or null if expression has constructs, which are not supported
+     */
+    public static Dfa compile(CharSequence regex, Matcher fallback) {
+        Parser parser = new Parser(regex);
+        Node ast = parser.parse();
+        if (ast == null || parser.nfaSize > MAX_NFA_STATES) {
+            return null;
+        }
+        return new Dfa(ast, parser.anchoredStart, parser.anchoredEnd, fallback);
+    }
+
+    public boolean find(CharSequence cs) {
+        final int n = cs.length();
+        final long address = cs instanceof DirectCharSequence ? ((DirectCharSequence) cs).getLo() : 0;
+
+        // "$" also matches before line terminator at end of input
+        int end = n;
+        if (anchoredEnd && n > 0) {
+            char last = charAt(cs, address, n - 1);
+            if (last == '\n' && n > 1 && charAt(cs, address, n - 2) == '\r') {
+                end = n - 2;
+            } else if (isLineTerminator(last)) {
+                end = n - 1;
+            }
+        }
+
+        int s = 0;
+        for (int i = 0; ; i++) {
+            if (accepting.getQuick(s) == 1 && (!anchoredEnd || i == n || i == end)) {
+                return true;
+            }
+
+            if (i == n || states.getQuick(s).length == 0) {
+                return false;
+            }
+
+            char c = charAt(cs, address, i);
+            int k;
+            if (c < 128) {
+                k = c;
+            } else if (c == '\u0085' || (c | 1) == '\u2029') {
+                k = TERMINATOR;
+            } else if (Character.isSurrogate(c)) {
+                return fallback.reset(cs).find();
+            } else {
+                k = OTHER;
+            }
+
+            int t = transitions[s * ALPHABET + k];
+            s = t > -1 ? t : transition(s, k);
+        }
+    }
+
+    private static long[] any() {
+        long bits[] = new long[BITS];
+        for (int i = 0; i < ALPHABET; i++) {
+            set(bits, i);
+        }
+        return bits;
+    }
+
+    private static char charAt(CharSequence cs, long address, int index) {
+        return address == 0 ? cs.charAt(index) : Unsafe.getUnsafe().getChar(address + (index << 1));
+    }
+
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || (c | 1) == '\u2029';
+    }
+
+    private static boolean isSet(long bits[], int k) {
+        return (bits[k >>> 6] & (1L << k)) != 0;
+    }
+
+    private static void set(long bits[], int k) {
+        bits[k >>> 6] |= 1L << k;
+    }
+
+    private int addDfaState(int set[]) {
+        IntList key = new IntList(set.length);
+        for (int i = 0; i < set.length; i++) {
+            key.add(set[i]);
+        }
+
+        Integer index = stateIndex.get(key);
+        if (index != null) {
+            return index;
+        }
+
+        int id = states.size();
+        states.add(set);
+        stateIndex.put(key, id);
+        accepting.add(set.length > 0 && set[0] == NFA_MATCH ? 1 : 0);
+
+        if (transitions.length < (id + 1) * ALPHABET) {
+            int t[] = new int[Math.max(transitions.length * 2, (id + 1) * ALPHABET)];
+            System.arraycopy(transitions, 0, t, 0, transitions.length);
+            Arrays.fill(t, transitions.length, t.length, -1);
+            transitions = t;
+        }
+        return id;
+    }
+
+    private int addNfaState(int type, int o1, int o2, long bits[]) {
+        types.add(type);
+        out1.add(o1);
+        out2.add(o2);
+        sets.add(bits);
+        return types.size() - 1;
+    }
+
+    private void addClosure(int state) {
+        stack.clear();
+        stack.add(state);
+        while (stack.size() > 0) {
+            int s = stack.getLast();
+            stack.removeIndex(stack.size() - 1);
+            if (s == -1 || marks[s] == mark) {
+                continue;
+            }
+            marks[s] = mark;
+            if (types.getQuick(s) == NFA_SPLIT) {
+                stack.add(out2.getQuick(s));
+                stack.add(out1.getQuick(s));
+            } else {
+                closure.add(s);
+            }
+        }
+    }
+
+    private int[] closureOf(int state) {
+        mark++;
+        closure.clear();
+        addClosure(state);
+        return toSet();
+    }
+
+    private int emit(Node node, int next) {
+        switch (node.type) {
+            case AST_SET:
+                return addNfaState(NFA_CHAR, next, -1, node.bits);
+            case AST_CONCAT:
+                for (int i = node.children.size() - 1; i > -1; i--) {
+                    next = emit(node.children.getQuick(i), next);
+                }
+                return next;
+            case AST_ALT:
+                int entry = emit(node.children.getLast(), next);
+                for (int i = node.children.size() - 2; i > -1; i--) {
+                    entry = addNfaState(NFA_SPLIT, emit(node.children.getQuick(i), next), entry, null);
+                }
+                return entry;
+            default:
+                int tail;
+                if (node.max == -1) {
+                    int loop = addNfaState(NFA_SPLIT, -1, next, null);
+                    out1.setQuick(loop, emit(node.child, loop));
+                    tail = loop;
+                } else {
+                    tail = next;
+                    for (int i = node.min; i < node.max; i++) {
+                        tail = addNfaState(NFA_SPLIT, emit(node.child, tail), next, null);
+                    }
+                }
+                for (int i = 0; i < node.min; i++) {
+                    tail = emit(node.child, tail);
+                }
+                return tail;
+        }
+    }
+
+    private void reset() {
+        states.clear();
+        stateIndex.clear();
+        accepting.clear();
+        Arrays.fill(transitions, -1);
+        addDfaState(startSet);
+    }
+
+    private int[] toSet() {
+        int set[] = new int[closure.size()];
+        for (int i = 0; i < set.length; i++) {
+            set[i] = closure.getQuick(i);
+        }
+        Arrays.sort(set);
+        return set;
+    }
+
+    private int transition(int state, int k) {
+        int from[] = states.getQuick(state);
+        mark++;
+        closure.clear();
+        for (int i = 0; i < from.length; i++) {
+            int s = from[i];
+            if (types.getQuick(s) == NFA_CHAR && isSet(sets.getQuick(s), k)) {
+                addClosure(out1.getQuick(s));
+            }
+        }
+
+        if (!anchoredStart) {
+            // match can start at any position
+            for (int i = 0; i < startSet.length; i++) {
+                addClosure(startSet[i]);
+            }
+        }
+
+        int set[] = toSet();
+        if (states.size() == MAX_DFA_STATES) {
+            // pathological pattern, start cache over rather than grow it
+            reset();
+            return addDfaState(set);
+        }
+
+        int t = addDfaState(set);
+        transitions[state * ALPHABET + k] = t;
+        return t;
+    }
+
+    private static class Node {
+        private final int type;
+        private long bits[];
+        private ObjList<Node> children;
+        private Node child;
+        private int min;
+        private int max;
+
+        private Node(int type) {
+            this.type = type;
+        }
+    }
+
+    private static class Parser {
+        private final CharSequence regex;
+        private final int n;
+        private int pos = 0;
+        private int nfaSize = 1;
+        private boolean anchoredStart;
+        private boolean anchoredEnd;
+
+        private Parser(CharSequence regex) {
+            this.regex = regex;
+            this.n = regex.length();
+        }
+
+        private static Node newSet(long bits[]) {
+            Node node = new Node(AST_SET);
+            node.bits = bits;
+            return node;
+        }
+
+        private static long[] predefined(char c) {
+            long bits[] = new long[BITS];
+            switch (c) {
+                case 'd':
+                case 'D':
+                    for (int i = '0'; i <= '9'; i++) {
+                        set(bits, i);
+                    }
+                    break;
+                case 'w':
+                case 'W':
+                    for (int i = 0; i < 128; i++) {
+                        if (i >= 'a' && i <= 'z' || i >= 'A' && i <= 'Z' || i >= '0' && i <= '9' || i == '_') {
+                            set(bits, i);
+                        }
+                    }
+                    break;
+                case 's':
+                case 'S':
+                    set(bits, ' ');
+                    set(bits, '\t');
+                    set(bits, '\n');
+                    set(bits, 0x0B);
+                    set(bits, '\f');
+                    set(bits, '\r');
+                    break;
+                default:
+                    return null;
+            }
+
+            if (Character.isUpperCase(c)) {
+                negate(bits);
+            }
+            return bits;
+        }
+
+        private static void negate(long bits[]) {
+            for (int i = 0; i < ALPHABET; i++) {
+                bits[i >>> 6] ^= 1L << i;
+            }
+        }
+
+        private static int control(char c) {
+            switch (c) {
+                case 't':
+                    return '\t';
+                case 'n':
+                    return '\n';
+                case 'r':
+                    return '\r';
+                case 'f':
+                    return '\f';
+                case 'a':
+                    return 0x07;
+                case 'e':
+                    return 0x1B;
+                default:
+                    return -1;
+            }
+        }
+
+        private Node parse() {
+            if (n > 0 && regex.charAt(0) == '^') {
+                anchoredStart = true;
+                pos++;
+            }
+
+            Node node = parseAlt(0);
+            if (node == null || pos < n) {
+                return null;
+            }
+
+            if ((anchoredStart || anchoredEnd) && node.type == AST_ALT) {
+                // anchor binds to first or last alternative only
+                return null;
+            }
+            return node;
+        }
+
+        private Node parseAlt(int depth) {
+            Node first = parseConcat(depth);
+            if (first == null || pos == n || regex.charAt(pos) != '|') {
+                return first;
+            }
+
+            Node alt = new Node(AST_ALT);
+            alt.children = new ObjList<>();
+            alt.children.add(first);
+            while (pos < n && regex.charAt(pos) == '|') {
+                pos++;
+                Node next = parseConcat(depth);
+                if (next == null) {
+                    return null;
+                }
+                alt.children.add(next);
+                nfaSize++;
+            }
+            return alt;
+        }
+
+        private Node parseAtom(int depth) {
+            char c = regex.charAt(pos++);
+            switch (c) {
+                case '(':
+                    if (pos < n && regex.charAt(pos) == '?') {
+                        if (pos + 1 < n && regex.charAt(pos + 1) == ':') {
+                            pos += 2;
+                        } else {
+                            return null;
+                        }
+                    }
+                    Node group = parseAlt(depth + 1);
+                    if (group == null || pos == n || regex.charAt(pos) != ')') {
+                        return null;
+                    }
+                    pos++;
+                    return group;
+                case '[':
+                    return parseClass();
+                case '.':
+                    long bits[] = any();
+                    bits[0] &= ~(1L << '\n' | 1L << '\r');
+                    bits[TERMINATOR >>> 6] &= ~(1L << TERMINATOR);
+                    nfaSize++;
+                    return newSet(bits);
+                case '\\':
+                    if (pos == n) {
+                        return null;
+                    }
+                    c = regex.charAt(pos++);
+                    long p[] = predefined(c);
+                    if (p != null) {
+                        nfaSize++;
+                        return newSet(p);
+                    }
+                    int k = control(c);
+                    if (k == -1) {
+                        if (c >= 128 || Character.isLetterOrDigit(c)) {
+                            return null;
+                        }
+                        k = c;
+                    }
+                    return literal(k);
+                case '^':
+                case '$':
+                case '*':
+                case '+':
+                case '?':
+                case '{':
+                    return null;
+                default:
+                    return c < 128 ? literal(c) : null;
+            }
+        }
+
+        private Node parseClass() {
+            long bits[] = new long[BITS];
+            boolean negated = false;
+            if (pos < n && regex.charAt(pos) == '^') {
+                negated = true;
+                pos++;
+            }
+
+            boolean first = true;
+            while (pos < n) {
+                char c = regex.charAt(pos++);
+                int lo;
+                if (c == ']' && !first) {
+                    if (negated) {
+                        negate(bits);
+                    }
+                    nfaSize++;
+                    return newSet(bits);
+                } else if (c == '[' || c == '&' || c >= 128) {
+                    // nested classes and intersections
+                    return null;
+                } else if (c == '\\') {
+                    if (pos == n) {
+                        return null;
+                    }
+                    c = regex.charAt(pos++);
+                    long p[] = predefined(c);
+                    if (p != null) {
+                        for (int i = 0; i < BITS; i++) {
+                            bits[i] |= p[i];
+                        }
+                        first = false;
+                        continue;
+                    }
+                    lo = control(c);
+                    if (lo == -1) {
+                        if (c >= 128 || Character.isLetterOrDigit(c)) {
+                            return null;
+                        }
+                        lo = c;
+                    }
+                } else {
+                    lo = c;
+                }
+                first = false;
+
+                int hi = lo;
+                if (pos + 1 < n && regex.charAt(pos) == '-' && regex.charAt(pos + 1) != ']') {
+                    char h = regex.charAt(pos + 1);
+                    if (h == '\\' || h == '[' || h >= 128) {
+                        return null;
+                    }
+                    hi = h;
+                    pos += 2;
+                    if (hi < lo) {
+                        return null;
+                    }
+                }
+
+                for (int i = lo; i <= hi; i++) {
+                    set(bits, i);
+                }
+            }
+            return null;
+        }
+
+        private Node parseConcat(int depth) {
+            Node concat = new Node(AST_CONCAT);
+            concat.children = new ObjList<>();
+            while (pos < n) {
+                char c = regex.charAt(pos);
+                if (c == '|' || c == ')') {
+                    if (c == ')' && depth == 0) {
+                        return null;
+                    }
+                    break;
+                }
+
+                if (c == '$') {
+                    if (pos != n - 1 || depth > 0) {
+                        return null;
+                    }
+                    anchoredEnd = true;
+                    pos++;
+                    break;
+                }
+
+                int size = nfaSize;
+                Node atom = parseAtom(depth);
+                if (atom == null) {
+                    return null;
+                }
+                atom = parseQuantifier(atom, nfaSize - size);
+                if (atom == null) {
+                    return null;
+                }
+                concat.children.add(atom);
+            }
+            return concat.children.size() == 1 ? concat.children.getQuick(0) : concat;
+        }
+
+        private int parseInt() {
+            int v = -1;
+            while (pos < n && regex.charAt(pos) >= '0' && regex.charAt(pos) <= '9') {
+                v = (v == -1 ? 0 : v * 10) + regex.charAt(pos++) - '0';
+                if (v > MAX_NFA_STATES) {
+                    return MAX_NFA_STATES + 1;
+                }
+            }
+            return v;
+        }
+
+        private Node parseQuantifier(Node atom, int atomSize) {
+            while (pos < n) {
+                int min;
+                int max;
+                switch (regex.charAt(pos)) {
+                    case '*':
+                        min = 0;
+                        max = -1;
+                        pos++;
+                        break;
+                    case '+':
+                        min = 1;
+                        max = -1;
+                        pos++;
+                        break;
+                    case '?':
+                        min = 0;
+                        max = 1;
+                        pos++;
+                        break;
+                    case '{':
+                        pos++;
+                        min = parseInt();
+                        if (min == -1) {
+                            return null;
+                        }
+                        max = min;
+                        if (pos < n && regex.charAt(pos) == ',') {
+                            pos++;
+                            max = parseInt();
+                            if (max != -1 && max < min) {
+                                return null;
+                            }
+                        }
+                        if (pos == n || regex.charAt(pos++) != '}') {
+                            return null;
+                        }
+                        break;
+                    default:
+                        return atom;
+                }
+
+                if (pos < n) {
+                    char c = regex.charAt(pos);
+                    if (c == '+') {
+                        // possessive quantifiers do not give back, which automaton cannot express
+                        return null;
+                    }
+                    if (c == '?') {
+                        // lazy quantifier finds same strings
+                        pos++;
+                    }
+                }
+
+                Node repeat = new Node(AST_REPEAT);
+                repeat.child = atom;
+                repeat.min = min;
+                repeat.max = max;
+                // atom is emitted once per copy
+                int copies = Math.max(min, max) + 1;
+                nfaSize += (atomSize + 1) * copies;
+                if (nfaSize > MAX_NFA_STATES) {
+                    return null;
+                }
+                atom = repeat;
+                atomSize = (atomSize + 1) * copies;
+            }
+            return atom;
+        }
+
+        private Node literal(int c) {
+            long bits[] = new long[BITS];
+            set(bits, c);
+            nfaSize++;
+            return newSet(bits);
+        }
+    }
+}
@@ -27,7 +27,7 @@ import com.questdb.misc.Unsafe;
 
 import java.io.Closeable;
 
-public class DirectMemoryStructure implements Closeable {
+public class DirectMemoryStructure implements Closeable, MemoryConsumer {
 
     protected long address;
     protected long capacity;
@@ -37,6 +37,11 @@ public class DirectMemoryStructure implements Closeable {
         free();
     }
 
+    @Override
+    public long getMemUsed() {
+        return address == 0 ? 0 : capacity;
+    }
+
     public final void free() {
         if (address != 0) {
             Unsafe.free(address, capacity);
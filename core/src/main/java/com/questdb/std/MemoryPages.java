@@ -28,7 +28,7 @@ import com.questdb.misc.Unsafe;
 
 import java.io.Closeable;
 
-public class MemoryPages implements Closeable, Mutable {
+public class MemoryPages implements Closeable, Mutable, MemoryConsumer {
     private final int pageSize;
     private final int mask;
     private final int bits;
@@ -74,6 +74,11 @@ public class MemoryPages implements Closeable, Mutable {
         pages.clear();
     }
 
+    @Override
+    public long getMemUsed() {
+        return (long) pages.size() * pageSize;
+    }
+
     public int pageRemaining(long offset) {
         return pageSize - (int) (offset & mask);
     }
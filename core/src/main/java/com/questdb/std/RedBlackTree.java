@@ -27,7 +27,7 @@ import com.questdb.misc.Unsafe;
 
 import java.io.Closeable;
 
-public class RedBlackTree implements Mutable, Closeable {
+public class RedBlackTree implements Mutable, Closeable, MemoryConsumer {
     // P(8) + L + R + C(1) + REF
     private static final int BLOCK_SIZE = 8 + 8 + 8 + 1 + 8;
     private static final int O_LEFT = 8;
@@ -96,6 +96,11 @@ public class RedBlackTree implements Mutable, Closeable {
         return comparator;
     }
 
+    @Override
+    public long getMemUsed() {
+        return mem.getMemUsed();
+    }
+
     public LongIterator iterator() {
         long p = root;
         if (p != -1) {
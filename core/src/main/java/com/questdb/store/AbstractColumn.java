@@ -26,7 +26,9 @@ package com.questdb.store;
 import com.questdb.ex.JournalException;
 
 import java.io.Closeable;
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 
 public abstract class AbstractColumn implements Closeable {
     final MemoryFile mappedFile;
@@ -75,5 +77,9 @@ public abstract class AbstractColumn implements Closeable {
         return this.getClass().getName() + "[file=" + mappedFile + ", size=" + size() + ']';
     }
 
+    public long transferTo(long offset, long count, WritableByteChannel target) throws IOException {
+        return mappedFile.transferTo(offset, count, target);
+    }
+
     public abstract void truncate(long size);
 }
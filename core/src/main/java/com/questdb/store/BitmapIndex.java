@@ -0,0 +1,410 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.store;
+
+import com.questdb.JournalMode;
+import com.questdb.ex.JournalException;
+import com.questdb.misc.Files;
+import com.questdb.misc.Unsafe;
+
+import java.io.Closeable;
+import java.io.File;
+
+/**
+ * Compressed bitmap index of symbol column. Row IDs of every key are split into chunks of 65536 rows
+ * and each chunk of key is kept in container, which is either sorted array of 16-bit row offsets or,
+ * once there are more than 4096 of those, plain bitmap of the chunk. Set operations are performed
+ * chunk at a time by OR-ing containers into 1024 word bitmaps.
+ * <p>
+ * Index is not written on append. Instead writer catches it up with symbol column on commit, before
+ * transaction is published. Readers are expected to limit rows they see to partition size.
+ * Containers are never rewritten in ways that break concurrent readers: arrays are appended
+ * to in place and are otherwise replaced with larger copies, which are linked in instead.
+ */
+public class BitmapIndex implements Closeable {
+    public static final int CHUNK_BITS = 16;
+    public static final int CHUNK_WORDS = 1 << (CHUNK_BITS - 6);
+    /*
+        struct key_file {
+            long rowCount
+            long keyCount
+            struct key {
+                long firstContainerOffset
+                long lastContainerOffset
+                long containerBeforeLastOffset
+                long valueCount
+            } keys[keyCount]
+        }
+
+        struct container {
+            long nextContainerOffset
+            int chunk
+            int valueCount
+            int capacity, 0 for bitmap
+            int reserved
+            short values[capacity] or long words[CHUNK_WORDS]
+        }
+     */
+    private static final int KEY_HEADER_SIZE = 16;
+    private static final int KEY_ENTRY_SIZE = 32;
+    private static final int CONTAINER_HEADER_SIZE = 24;
+    private static final int BITMAP_SIZE = CHUNK_WORDS * 8;
+    private static final int MAX_ARRAY_CAPACITY = BITMAP_SIZE / 2;
+    private static final int MIN_ARRAY_CAPACITY = 8;
+    private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+    private final MemoryFile kData;
+    private final MemoryFile cData;
+
+    public BitmapIndex(File baseName, int bitHint, int journalMode) throws JournalException {
+        this.kData = new MemoryFile(new File(baseName.getParentFile(), baseName.getName() + ".bk"), Math.min(bitHint, 16), journalMode);
+        try {
+            this.cData = new MemoryFile(new File(baseName.getParentFile(), baseName.getName() + ".bc"), bitHint, journalMode);
+        } catch (JournalException e) {
+            kData.close();
+            throw e;
+        }
+
+        if (kData.getAppendOffset() == 0 && cData.getAppendOffset() == 0 && journalMode != JournalMode.READ && journalMode != JournalMode.BULK_READ) {
+            Unsafe.getUnsafe().setMemory(kData.addressOf(0, KEY_HEADER_SIZE), KEY_HEADER_SIZE, (byte) 0);
+            kData.setAppendOffset(KEY_HEADER_SIZE);
+            // zero offset stands for no container
+            cData.setAppendOffset(8);
+        }
+    }
+
+    public static void delete(File base) {
+        Files.delete(new File(base.getParentFile(), base.getName() + ".bk"));
+        Files.delete(new File(base.getParentFile(), base.getName() + ".bc"));
+    }
+
+    @Override
+    public void close() {
+        cData.close();
+        kData.close();
+    }
+
+    public void compact() throws JournalException {
+        kData.compact();
+        cData.compact();
+    }
+
+    public void force() {
+        cData.force();
+        kData.force();
+    }
+
+    /**
+     * Counts rows of key, including rows that are not yet committed.
+     *
+     * @param key symbol key, -1 for null
+     * @return number of rows
+     */
+    public long getValueCount(int key) {
+        long slot = key + 1;
+        if (slot < 0 || slot >= getKeyCount()) {
+            return 0;
+        }
+        return Unsafe.getUnsafe().getLong(kData.addressOf(keyOffset(slot) + 24, 8));
+    }
+
+    /**
+     * @return number of rows index covers.
+     */
+    public long size() {
+        return Unsafe.getUnsafe().getLong(kData.addressOf(0, 8));
+    }
+
+    public void truncate(long size) {
+        if (size() <= size) {
+            return;
+        }
+
+        for (long slot = 0, n = getKeyCount(); slot < n; slot++) {
+            long entry = kData.addressOf(keyOffset(slot), KEY_ENTRY_SIZE);
+            long container = Unsafe.getUnsafe().getLong(entry);
+            long prev = 0;
+            long beforePrev = 0;
+            long count = 0;
+
+            while (container != 0) {
+                long address = cData.addressOf(container, CONTAINER_HEADER_SIZE);
+                long chunk = Unsafe.getUnsafe().getInt(address + 8);
+                if (chunk << CHUNK_BITS >= size) {
+                    break;
+                }
+
+                if ((chunk + 1) << CHUNK_BITS > size) {
+                    trim(container, (int) (size & CHUNK_MASK));
+                    address = cData.addressOf(container, CONTAINER_HEADER_SIZE);
+                }
+                count += Unsafe.getUnsafe().getInt(address + 12);
+                beforePrev = prev;
+                prev = container;
+                container = Unsafe.getUnsafe().getLong(address);
+            }
+
+            if (prev == 0) {
+                Unsafe.getUnsafe().putLong(entry, 0);
+            } else {
+                Unsafe.getUnsafe().putLong(cData.addressOf(prev, 8), 0);
+            }
+            Unsafe.getUnsafe().putLong(entry + 8, prev);
+            Unsafe.getUnsafe().putLong(entry + 16, beforePrev);
+            Unsafe.getUnsafe().putLong(entry + 24, count);
+        }
+        Unsafe.getUnsafe().putLong(kData.addressOf(0, 8), size);
+    }
+
+    /**
+     * Indexes rows appended to symbol column since last update.
+     *
+     * @param column symbol column
+     * @param size   number of rows to index
+     * @return true if index changed
+     */
+    public boolean update(FixedColumn column, long size) {
+        long rowCount = size();
+        if (size <= rowCount) {
+            return false;
+        }
+
+        for (long row = rowCount; row < size; row++) {
+            add(column.getInt(row) + 1, row);
+        }
+        Unsafe.getUnsafe().putLong(kData.addressOf(0, 8), size);
+        return true;
+    }
+
+    private static long keyOffset(long slot) {
+        return KEY_HEADER_SIZE + slot * KEY_ENTRY_SIZE;
+    }
+
+    private void add(long slot, long row) {
+        long keyCount = getKeyCount();
+        if (slot >= keyCount) {
+            // entries of keys not seen yet are empty
+            Unsafe.getUnsafe().setMemory(kData.addressOf(keyOffset(keyCount), (int) ((slot + 1 - keyCount) * KEY_ENTRY_SIZE)), (slot + 1 - keyCount) * KEY_ENTRY_SIZE, (byte) 0);
+            Unsafe.getUnsafe().putLong(kData.addressOf(8, 8), slot + 1);
+            kData.setAppendOffset(keyOffset(slot + 1));
+        }
+
+        final long entry = kData.addressOf(keyOffset(slot), KEY_ENTRY_SIZE);
+        final int chunk = (int) (row >>> CHUNK_BITS);
+        final int value = (int) (row & CHUNK_MASK);
+        long last = Unsafe.getUnsafe().getLong(entry + 8);
+
+        if (last == 0 || Unsafe.getUnsafe().getInt(cData.addressOf(last, CONTAINER_HEADER_SIZE) + 8) != chunk) {
+            long container = allocate(chunk, MIN_ARRAY_CAPACITY);
+            if (last == 0) {
+                Unsafe.getUnsafe().putLong(entry, container);
+            } else {
+                Unsafe.getUnsafe().putLong(cData.addressOf(last, 8), container);
+            }
+            Unsafe.getUnsafe().putLong(entry + 16, last);
+            Unsafe.getUnsafe().putLong(entry + 8, last = container);
+        }
+
+        long address = cData.addressOf(last, CONTAINER_HEADER_SIZE);
+        int count = Unsafe.getUnsafe().getInt(address + 12);
+        int capacity = Unsafe.getUnsafe().getInt(address + 16);
+
+        if (capacity > 0 && count == capacity) {
+            // container is full, replace it with bigger one
+            long container = allocate(chunk, capacity < MAX_ARRAY_CAPACITY ? capacity * 2 : 0);
+            long src = cData.addressOf(last + CONTAINER_HEADER_SIZE, capacity * 2);
+            long dst = cData.addressOf(container, CONTAINER_HEADER_SIZE);
+            if (capacity < MAX_ARRAY_CAPACITY) {
+                Unsafe.getUnsafe().copyMemory(src, dst + CONTAINER_HEADER_SIZE, capacity * 2);
+            } else {
+                for (int i = 0; i < count; i++) {
+                    setBit(dst + CONTAINER_HEADER_SIZE, Unsafe.getUnsafe().getShort(src + i * 2) & 0xffff);
+                }
+            }
+            Unsafe.getUnsafe().putInt(dst + 12, count);
+
+            long prev = Unsafe.getUnsafe().getLong(entry + 16);
+            if (prev == 0) {
+                Unsafe.getUnsafe().putLong(entry, container);
+            } else {
+                Unsafe.getUnsafe().putLong(cData.addressOf(prev, 8), container);
+            }
+            Unsafe.getUnsafe().putLong(entry + 8, last = container);
+            address = dst;
+            capacity = Unsafe.getUnsafe().getInt(address + 16);
+        }
+
+        if (capacity == 0) {
+            setBit(address + CONTAINER_HEADER_SIZE, value);
+        } else {
+            Unsafe.getUnsafe().putShort(address + CONTAINER_HEADER_SIZE + count * 2, (short) value);
+        }
+        Unsafe.getUnsafe().putInt(address + 12, count + 1);
+        Unsafe.getUnsafe().putLong(entry + 24, Unsafe.getUnsafe().getLong(entry + 24) + 1);
+    }
+
+    private long allocate(int chunk, int capacity) {
+        long offset = cData.getAppendOffset();
+        int size = CONTAINER_HEADER_SIZE + (capacity == 0 ? BITMAP_SIZE : capacity * 2);
+        long address = cData.addressOf(offset, size);
+        Unsafe.getUnsafe().setMemory(address, size, (byte) 0);
+        Unsafe.getUnsafe().putInt(address + 8, chunk);
+        Unsafe.getUnsafe().putInt(address + 16, capacity);
+        cData.setAppendOffset(offset + size);
+        return offset;
+    }
+
+    private long firstContainer(int key) {
+        long slot = key + 1;
+        if (slot < 0 || slot >= getKeyCount()) {
+            return 0;
+        }
+        return Unsafe.getUnsafe().getLong(kData.addressOf(keyOffset(slot), 8));
+    }
+
+    private long getKeyCount() {
+        return Unsafe.getUnsafe().getLong(kData.addressOf(8, 8));
+    }
+
+    private static void setBit(long words, int value) {
+        long address = words + (value >>> 6) * 8;
+        Unsafe.getUnsafe().putLong(address, Unsafe.getUnsafe().getLong(address) | (1L << value));
+    }
+
+    private void trim(long container, int limit) {
+        long address = cData.addressOf(container, CONTAINER_HEADER_SIZE);
+        int count = Unsafe.getUnsafe().getInt(address + 12);
+        int capacity = Unsafe.getUnsafe().getInt(address + 16);
+        if (capacity == 0) {
+            long words = cData.addressOf(container + CONTAINER_HEADER_SIZE, BITMAP_SIZE);
+            count = 0;
+            for (int i = 0; i < CHUNK_WORDS; i++) {
+                long w = Unsafe.getUnsafe().getLong(words + i * 8);
+                int lo = i << 6;
+                if (lo >= limit) {
+                    w = 0;
+                } else if (lo + 64 > limit) {
+                    w &= (1L << (limit - lo)) - 1;
+                }
+                Unsafe.getUnsafe().putLong(words + i * 8, w);
+                count += Long.bitCount(w);
+            }
+        } else {
+            long values = cData.addressOf(container + CONTAINER_HEADER_SIZE, capacity * 2);
+            while (count > 0 && (Unsafe.getUnsafe().getShort(values + (count - 1) * 2) & 0xffff) >= limit) {
+                count--;
+            }
+        }
+        Unsafe.getUnsafe().putInt(address + 12, count);
+    }
+
+    /**
+     * Iterates containers of single key in chunk order. Chunks can only be visited in ascending order.
+     */
+    public static class Cursor {
+        private BitmapIndex index;
+        private long container;
+
+        /**
+         * Clears bits of key rows in given chunk.
+         *
+         * @param chunk chunk number
+         * @param words bitmap of chunk, {@link #CHUNK_WORDS} long
+         */
+        public void andNot(int chunk, long words[]) {
+            if (seek(chunk) != chunk) {
+                return;
+            }
+
+            long address = index.cData.addressOf(container, CONTAINER_HEADER_SIZE);
+            int count = Unsafe.getUnsafe().getInt(address + 12);
+            int capacity = Unsafe.getUnsafe().getInt(address + 16);
+            if (capacity == 0) {
+                long src = index.cData.addressOf(container + CONTAINER_HEADER_SIZE, BITMAP_SIZE);
+                for (int i = 0; i < CHUNK_WORDS; i++) {
+                    words[i] &= ~Unsafe.getUnsafe().getLong(src + i * 8);
+                }
+            } else {
+                long src = index.cData.addressOf(container + CONTAINER_HEADER_SIZE, capacity * 2);
+                for (int i = 0; i < count; i++) {
+                    int v = Unsafe.getUnsafe().getShort(src + i * 2) & 0xffff;
+                    words[v >>> 6] &= ~(1L << v);
+                }
+            }
+        }
+
+        public Cursor of(BitmapIndex index, int key) {
+            this.index = index;
+            this.container = index.firstContainer(key);
+            return this;
+        }
+
+        /**
+         * Sets bits of key rows in given chunk.
+         *
+         * @param chunk chunk number
+         * @param words bitmap of chunk, {@link #CHUNK_WORDS} long
+         * @return false if key has no rows in chunk
+         */
+        public boolean or(int chunk, long words[]) {
+            if (seek(chunk) != chunk) {
+                return false;
+            }
+
+            long address = index.cData.addressOf(container, CONTAINER_HEADER_SIZE);
+            int count = Unsafe.getUnsafe().getInt(address + 12);
+            int capacity = Unsafe.getUnsafe().getInt(address + 16);
+            if (capacity == 0) {
+                long src = index.cData.addressOf(container + CONTAINER_HEADER_SIZE, BITMAP_SIZE);
+                for (int i = 0; i < CHUNK_WORDS; i++) {
+                    words[i] |= Unsafe.getUnsafe().getLong(src + i * 8);
+                }
+            } else {
+                long src = index.cData.addressOf(container + CONTAINER_HEADER_SIZE, capacity * 2);
+                for (int i = 0; i < count; i++) {
+                    int v = Unsafe.getUnsafe().getShort(src + i * 2) & 0xffff;
+                    words[v >>> 6] |= 1L << v;
+                }
+            }
+            return count > 0;
+        }
+
+        /**
+         * Moves to first container at or after given chunk.
+         *
+         * @param chunk chunk number
+         * @return chunk of container or Integer.MAX_VALUE when key has no more rows
+         */
+        public int seek(int chunk) {
+            while (container != 0) {
+                long address = index.cData.addressOf(container, CONTAINER_HEADER_SIZE);
+                int c = Unsafe.getUnsafe().getInt(address + 8);
+                if (c >= chunk) {
+                    return c;
+                }
+                container = Unsafe.getUnsafe().getLong(address);
+            }
+            return Integer.MAX_VALUE;
+        }
+    }
+}
@@ -0,0 +1,296 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.store;
+
+import com.questdb.misc.Unsafe;
+
+/**
+ * Block codecs of sealed partition columns:
+ * <ul>
+ * <li>LONG and DATE values are delta-of-delta encoded, regular timestamps cost one bit per value</li>
+ * <li>DOUBLE values are XOR-ed with previous value and only meaningful bits of result are kept</li>
+ * <li>SYMBOL keys are bit-packed relative to smallest key of block</li>
+ * </ul>
+ * Values are read and written as bit stream, least significant bit first. Every block is padded to
+ * 8 bytes, so that decoder never reads beyond block it decodes. Codec keeps stream state and is
+ * not thread safe.
+ */
+public class ColumnCodec {
+    private long ptr;
+    private long bitBuf;
+    private int bitCount;
+
+    public static boolean isSupported(int type) {
+        switch (type) {
+            case ColumnType.LONG:
+            case ColumnType.DATE:
+            case ColumnType.DOUBLE:
+            case ColumnType.SYMBOL:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @param count number of values in block
+     * @return number of bytes encoded block can take in worst case
+     */
+    public static long maxEncodedSize(int count) {
+        // escaped XOR value takes 78 bits
+        return count * 10L + 16;
+    }
+
+    /**
+     * Decodes block of values.
+     *
+     * @param type  column type
+     * @param src   address of encoded block
+     * @param count number of values in block
+     * @param dst   address to write values to, must have room for count values
+     */
+    public void decode(int type, long src, int count, long dst) {
+        ptr = src;
+        bitBuf = 0;
+        bitCount = 0;
+        switch (type) {
+            case ColumnType.DOUBLE:
+                decodeXor(count, dst);
+                break;
+            case ColumnType.SYMBOL:
+                decodePacked(count, dst);
+                break;
+            default:
+                decodeDeltaOfDelta(count, dst);
+                break;
+        }
+    }
+
+    /**
+     * Encodes block of values.
+     *
+     * @param type  column type
+     * @param src   address of values
+     * @param count number of values, must be positive
+     * @param dst   address to write encoded block to, must have room for {@link #maxEncodedSize(int)} bytes
+     * @return number of bytes written
+     */
+    public long encode(int type, long src, int count, long dst) {
+        ptr = dst;
+        bitBuf = 0;
+        bitCount = 0;
+        switch (type) {
+            case ColumnType.DOUBLE:
+                encodeXor(src, count);
+                break;
+            case ColumnType.SYMBOL:
+                encodePacked(src, count);
+                break;
+            default:
+                encodeDeltaOfDelta(src, count);
+                break;
+        }
+        if (bitCount > 0) {
+            Unsafe.getUnsafe().putLong(ptr, bitBuf);
+            ptr += 8;
+        }
+        return ptr - dst;
+    }
+
+    private void decodeDeltaOfDelta(int count, long dst) {
+        long value = get(64);
+        long delta = 0;
+        Unsafe.getUnsafe().putLong(dst, value);
+        for (int i = 1; i < count; i++) {
+            long dod;
+            if (get(1) == 0) {
+                dod = 0;
+            } else if (get(1) == 0) {
+                dod = unzigzag(get(7));
+            } else if (get(1) == 0) {
+                dod = unzigzag(get(12));
+            } else if (get(1) == 0) {
+                dod = unzigzag(get(20));
+            } else {
+                dod = unzigzag(get(64));
+            }
+            delta += dod;
+            value += delta;
+            Unsafe.getUnsafe().putLong(dst + i * 8L, value);
+        }
+    }
+
+    private void decodePacked(int count, long dst) {
+        int min = (int) get(32);
+        int width = (int) get(6);
+        for (int i = 0; i < count; i++) {
+            Unsafe.getUnsafe().putInt(dst + i * 4L, width == 0 ? min : min + (int) get(width));
+        }
+    }
+
+    private void decodeXor(int count, long dst) {
+        long value = get(64);
+        int leading = 0;
+        int trailing = 0;
+        Unsafe.getUnsafe().putLong(dst, value);
+        for (int i = 1; i < count; i++) {
+            if (get(1) != 0) {
+                if (get(1) != 0) {
+                    leading = (int) get(6);
+                    trailing = 64 - leading - (int) get(6) - 1;
+                }
+                value ^= get(64 - leading - trailing) << trailing;
+            }
+            Unsafe.getUnsafe().putLong(dst + i * 8L, value);
+        }
+    }
+
+    private void encodeDeltaOfDelta(long src, int count) {
+        long prev = Unsafe.getUnsafe().getLong(src);
+        long prevDelta = 0;
+        put(prev, 64);
+        for (int i = 1; i < count; i++) {
+            long value = Unsafe.getUnsafe().getLong(src + i * 8L);
+            long delta = value - prev;
+            long z = zigzag(delta - prevDelta);
+            if (z == 0) {
+                put(0, 1);
+            } else if (z < (1L << 7)) {
+                put(0b01, 2);
+                put(z, 7);
+            } else if (z < (1L << 12)) {
+                put(0b011, 3);
+                put(z, 12);
+            } else if (z < (1L << 20)) {
+                put(0b0111, 4);
+                put(z, 20);
+            } else {
+                put(0b1111, 4);
+                put(z, 64);
+            }
+            prev = value;
+            prevDelta = delta;
+        }
+    }
+
+    private void encodePacked(long src, int count) {
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            int v = Unsafe.getUnsafe().getInt(src + i * 4L);
+            min = v < min ? v : min;
+            max = v > max ? v : max;
+        }
+
+        long range = (long) max - min;
+        int width = 64 - Long.numberOfLeadingZeros(range);
+        put(min, 32);
+        put(width, 6);
+        if (width > 0) {
+            for (int i = 0; i < count; i++) {
+                put(Unsafe.getUnsafe().getInt(src + i * 4L) - min, width);
+            }
+        }
+    }
+
+    private void encodeXor(long src, int count) {
+        long prev = Unsafe.getUnsafe().getLong(src);
+        int prevLeading = -1;
+        int prevTrailing = 0;
+        put(prev, 64);
+        for (int i = 1; i < count; i++) {
+            long value = Unsafe.getUnsafe().getLong(src + i * 8L);
+            long x = value ^ prev;
+            if (x == 0) {
+                put(0, 1);
+            } else {
+                int leading = Long.numberOfLeadingZeros(x);
+                int trailing = Long.numberOfTrailingZeros(x);
+                if (prevLeading != -1 && leading >= prevLeading && trailing >= prevTrailing) {
+                    // meaningful bits fit into window of previous value
+                    put(0b01, 2);
+                    put(x >>> prevTrailing, 64 - prevLeading - prevTrailing);
+                } else {
+                    int len = 64 - leading - trailing;
+                    put(0b11, 2);
+                    put(leading, 6);
+                    put(len - 1, 6);
+                    put(x >>> trailing, len);
+                    prevLeading = leading;
+                    prevTrailing = trailing;
+                }
+            }
+            prev = value;
+        }
+    }
+
+    private long get(int bits) {
+        long result;
+        if (bits <= bitCount) {
+            if (bits == 64) {
+                result = bitBuf;
+                bitBuf = 0;
+            } else {
+                result = bitBuf & ((1L << bits) - 1);
+                bitBuf >>>= bits;
+            }
+            bitCount -= bits;
+        } else {
+            long next = Unsafe.getUnsafe().getLong(ptr);
+            ptr += 8;
+            int need = bits - bitCount;
+            if (need == 64) {
+                result = next;
+                bitBuf = 0;
+            } else {
+                result = bitBuf | ((next & ((1L << need) - 1)) << bitCount);
+                bitBuf = next >>> need;
+            }
+            bitCount = 64 - need;
+        }
+        return result;
+    }
+
+    private void put(long value, int bits) {
+        long v = bits == 64 ? value : value & ((1L << bits) - 1);
+        bitBuf |= v << bitCount;
+        int n = bitCount + bits;
+        if (n >= 64) {
+            Unsafe.getUnsafe().putLong(ptr, bitBuf);
+            ptr += 8;
+            n -= 64;
+            bitBuf = n == 0 ? 0 : v >>> (bits - n);
+        }
+        bitCount = n;
+    }
+
+    private static long unzigzag(long z) {
+        return (z >>> 1) ^ -(z & 1);
+    }
+
+    private static long zigzag(long n) {
+        return (n << 1) ^ (n >> 63);
+    }
+}
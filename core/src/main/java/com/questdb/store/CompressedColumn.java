@@ -0,0 +1,267 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.store;
+
+import com.questdb.JournalMode;
+import com.questdb.ex.JournalException;
+import com.questdb.ex.JournalRuntimeException;
+import com.questdb.misc.ByteBuffers;
+import com.questdb.misc.Numbers;
+import com.questdb.misc.Unsafe;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Read-only column of sealed partition. Values are stored in blocks encoded by {@link ColumnCodec}
+ * and decoded one block at a time on access. Decoded block is cached, so that sequential access
+ * decodes every block once. Addresses and buffers this column hands out remain valid until
+ * different block is accessed.
+ * <p>
+ * File layout after header of {@link MemoryFile} is:
+ * <pre>
+ * long   row count
+ * int    block size bits
+ * int    column type
+ * long[] offsets of blocks relative to end of offset table, block count + 1 entries
+ * blocks
+ * </pre>
+ */
+public class CompressedColumn extends FixedColumn {
+    public static final String FILE_SUFFIX = ".z";
+    private static final int HEADER_SIZE = 16;
+    private static final int BLOCK_BITS = 12;
+    private final ColumnCodec codec = new ColumnCodec();
+    private final int width;
+    private final int bits;
+    private final long rowCount;
+    private final int blockBits;
+    private final int type;
+    private final long dataOffset;
+    private final long bufSize;
+    private long buf;
+    private long block = -1;
+
+    public CompressedColumn(MemoryFile mappedFile, int width) {
+        super(mappedFile, width);
+        this.width = width;
+        this.bits = Numbers.msb(width);
+        long header = mappedFile.addressOf(0, HEADER_SIZE);
+        this.rowCount = Unsafe.getUnsafe().getLong(header);
+        this.blockBits = Unsafe.getUnsafe().getInt(header + 8);
+        this.type = Unsafe.getUnsafe().getInt(header + 12);
+        this.dataOffset = HEADER_SIZE + (((rowCount + (1L << blockBits) - 1) >>> blockBits) + 1) * 8;
+        this.bufSize = 1L << (blockBits + bits);
+        this.buf = Unsafe.malloc(bufSize);
+    }
+
+    /**
+     * Writes encoded copy of column.
+     *
+     * @param column  column to encode
+     * @param type    column type, must be supported by {@link ColumnCodec}
+     * @param file    file to write
+     * @param bitHint size hint of file
+     * @throws JournalException when file cannot be written
+     */
+    public static void write(FixedColumn column, int type, File file, int bitHint) throws JournalException {
+        final long rowCount = column.size();
+        final int blockRows = 1 << BLOCK_BITS;
+        final int width = ColumnType.sizeOf(type);
+        final long blockCount = (rowCount + blockRows - 1) >>> BLOCK_BITS;
+        final long dataOffset = HEADER_SIZE + (blockCount + 1) * 8;
+        final int maxSize = (int) ColumnCodec.maxEncodedSize(blockRows);
+        final ColumnCodec codec = new ColumnCodec();
+        long scratch = 0;
+
+        try (MemoryFile mf = new MemoryFile(file, bitHint, JournalMode.APPEND)) {
+            long header = mf.addressOf(0, HEADER_SIZE);
+            Unsafe.getUnsafe().putLong(header, rowCount);
+            Unsafe.getUnsafe().putInt(header + 8, BLOCK_BITS);
+            Unsafe.getUnsafe().putInt(header + 12, type);
+
+            long offset = 0;
+            for (long b = 0; b < blockCount; b++) {
+                long lo = b << BLOCK_BITS;
+                int count = (int) Math.min(blockRows, rowCount - lo);
+                long src;
+                if (column.getVectorSize(lo) >= count) {
+                    src = column.getVectorAddress(lo);
+                } else {
+                    // block spans mapped regions
+                    if (scratch == 0) {
+                        scratch = Unsafe.malloc(blockRows * width);
+                    }
+                    for (int i = 0; i < count; i++) {
+                        Unsafe.getUnsafe().copyMemory(column.getVectorAddress(lo + i), scratch + i * width, width);
+                    }
+                    src = scratch;
+                }
+                Unsafe.getUnsafe().putLong(mf.addressOf(HEADER_SIZE + b * 8, 8), offset);
+                offset += codec.encode(type, src, count, mf.addressOf(dataOffset + offset, maxSize));
+            }
+            Unsafe.getUnsafe().putLong(mf.addressOf(HEADER_SIZE + blockCount * 8, 8), offset);
+            mf.setAppendOffset(dataOffset + offset);
+            // raw column is deleted once this file is in place
+            mf.force();
+            mf.compact();
+        } finally {
+            if (scratch != 0) {
+                Unsafe.free(scratch, blockRows * width);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (buf != 0) {
+            Unsafe.free(buf, bufSize);
+            buf = 0;
+        }
+        super.close();
+    }
+
+    /**
+     * Appends decoded values to raw column.
+     *
+     * @param column column to append to
+     */
+    public void decodeTo(FixedColumn column) {
+        for (long lo = 0; lo < rowCount; lo += 1L << blockBits) {
+            column.putVector(addressOf(lo), Math.min(1L << blockBits, rowCount - lo));
+            column.commit();
+        }
+    }
+
+    @Override
+    public boolean getBool(long localRowID) {
+        return Unsafe.getBool(addressOf(localRowID));
+    }
+
+    @Override
+    public byte getByte(long localRowID) {
+        return Unsafe.getUnsafe().getByte(addressOf(localRowID));
+    }
+
+    @Override
+    public double getDouble(long localRowID) {
+        return Unsafe.getUnsafe().getDouble(addressOf(localRowID));
+    }
+
+    @Override
+    public float getFloat(long localRowID) {
+        return Unsafe.getUnsafe().getFloat(addressOf(localRowID));
+    }
+
+    @Override
+    public int getInt(long localRowID) {
+        return Unsafe.getUnsafe().getInt(addressOf(localRowID));
+    }
+
+    @Override
+    public long getLong(long localRowID) {
+        return Unsafe.getUnsafe().getLong(addressOf(localRowID));
+    }
+
+    @Override
+    public long getVectorAddress(long localRowID) {
+        return addressOf(localRowID);
+    }
+
+    /**
+     * Number of values decoded block has from given row on.
+     *
+     * @param localRowID row within partition
+     * @return number of contiguous values, at least 1
+     */
+    @Override
+    public long getVectorSize(long localRowID) {
+        return (1L << blockBits) - (localRowID & ((1L << blockBits) - 1));
+    }
+
+    @Override
+    public long size() {
+        return rowCount;
+    }
+
+    @Override
+    public void truncate(long size) {
+        throw new JournalRuntimeException("Cannot truncate sealed column: %s", this);
+    }
+
+    @Override
+    public short getShort(long localRowID) {
+        return Unsafe.getUnsafe().getShort(addressOf(localRowID));
+    }
+
+    @Override
+    public ByteBuffer getBuffer(long offset, int size) {
+        long row = offset >>> bits;
+        long blockLo = (row >>> blockBits) << (blockBits + bits);
+        long len = Math.min(bufSize - (offset - blockLo), getOffset() - offset);
+        return ByteBuffers.wrap(addressOf(row) + (offset & (width - 1)), (int) len);
+    }
+
+    @Override
+    public long getOffset() {
+        return rowCount << bits;
+    }
+
+    @Override
+    public void preCommit(long appendOffset) {
+        throw new JournalRuntimeException("Cannot append to sealed column: %s", this);
+    }
+
+    @Override
+    public long transferTo(long offset, long count, WritableByteChannel target) throws IOException {
+        ByteBuffer b = getBuffer(offset, 1);
+        if (b.remaining() > count) {
+            b.limit((int) count);
+        }
+        return target.write(b);
+    }
+
+    private long addressOf(long localRowID) {
+        long b = localRowID >>> blockBits;
+        if (b != block) {
+            decode(b);
+        }
+        return buf + ((localRowID & ((1L << blockBits) - 1)) << bits);
+    }
+
+    private void decode(long b) {
+        long rowLo = b << blockBits;
+        if (rowLo >= rowCount) {
+            throw new JournalRuntimeException("Row %d is beyond end of %s", rowLo, this);
+        }
+        long p = mappedFile.addressOf(HEADER_SIZE + b * 8, 16);
+        long lo = Unsafe.getUnsafe().getLong(p);
+        long hi = Unsafe.getUnsafe().getLong(p + 8);
+        codec.decode(type, mappedFile.addressOf(dataOffset + lo, (int) (hi - lo)), (int) Math.min(1L << blockBits, rowCount - rowLo), buf);
+        block = b;
+    }
+}
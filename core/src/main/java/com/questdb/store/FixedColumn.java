@@ -27,6 +27,7 @@ import com.questdb.misc.Numbers;
 import com.questdb.misc.Unsafe;
 
 public class FixedColumn extends AbstractColumn {
+    private static final int MAX_COPY_LEN = 1 << 30;
     private final int width;
     private final int bits;
 
@@ -97,6 +98,30 @@ public class FixedColumn extends AbstractColumn {
         return localRowID << bits;
     }
 
+    /**
+     * Address of value at given row. Values of rows that follow are laid out contiguously from this address
+     * for as many rows as {@link #getVectorSize(long)} reports.
+     *
+     * @param localRowID row within partition
+     * @return memory address of value
+     */
+    public long getVectorAddress(long localRowID) {
+        return mappedFile.addressOf(getOffset(localRowID), width);
+    }
+
+    /**
+     * Number of values, starting from given row, that can be read sequentially from address returned by
+     * {@link #getVectorAddress(long)}. Count is limited by mapped page and can exceed number of rows in column.
+     *
+     * @param localRowID row within partition
+     * @return number of contiguous values, at least 1
+     */
+    public long getVectorSize(long localRowID) {
+        long offset = getOffset(localRowID);
+        mappedFile.addressOf(offset, width);
+        return Math.max(1, mappedFile.pageRemaining(offset) >> bits);
+    }
+
     @Override
     public long size() {
         return getOffset() >> bits;
@@ -146,6 +171,28 @@ public class FixedColumn extends AbstractColumn {
         Unsafe.getUnsafe().putShort(getAddress(), value);
     }
 
+    /**
+     * Appends values laid out contiguously from given address in format of this column.
+     *
+     * @param address address of first value
+     * @param count   number of values
+     * @return row id of first appended value
+     */
+    public long putVector(long address, long count) {
+        long appendOffset = mappedFile.getAppendOffset();
+        long offset = appendOffset;
+        long len = count << bits;
+        preCommit(appendOffset + len);
+        while (len > 0) {
+            int n = (int) Math.min(len, MAX_COPY_LEN);
+            Unsafe.getUnsafe().copyMemory(address, mappedFile.addressOf(offset, n), n);
+            address += n;
+            offset += n;
+            len -= n;
+        }
+        return appendOffset >> bits;
+    }
+
     private long bsearchAny(long val, BSearchType type, long lo, long hi) {
         long _lo = lo;
         long _hi = hi;
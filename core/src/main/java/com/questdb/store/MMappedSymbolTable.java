@@ -32,8 +32,7 @@ import com.questdb.misc.Hash;
 import com.questdb.misc.Misc;
 import com.questdb.misc.Numbers;
 import com.questdb.std.AbstractImmutableIterator;
-import com.questdb.std.CharSequenceIntHashMap;
-import com.questdb.std.ObjList;
+import com.questdb.std.ObjectFactory;
 
 import java.io.Closeable;
 import java.io.File;
@@ -46,9 +45,7 @@ public class MMappedSymbolTable implements Closeable, SymbolTable {
     private static final double CACHE_LOAD_FACTOR = 0.2;
     private final int hashKeyCount;
     private final String column;
-    private final CharSequenceIntHashMap valueCache;
-    private final ObjList<String> keyCache;
-    private final boolean noCache;
+    private final SymbolValueCache cache;
     private final Iter iter = new Iter();
     private VariableColumn data;
     private KVIndex index;
@@ -59,7 +56,6 @@ public class MMappedSymbolTable implements Closeable, SymbolTable {
         // assume it is 20% of stated capacity
         this.hashKeyCount = Numbers.ceilPow2(Math.max(2, (int) (keyCount * CACHE_LOAD_FACTOR))) - 1;
         this.column = column;
-        this.noCache = noCache;
         int m;
 
         switch (journalMode) {
@@ -86,14 +82,26 @@ public class MMappedSymbolTable implements Closeable, SymbolTable {
         this.data = new VariableColumn(dataFile, indexFile);
         this.size = size;
 
+        if (noCache) {
+            this.cache = null;
+        } else {
+            // readers of symbol file share values
+            final int capacity = keyCount;
+            SymbolValueCache c = dataFile.getAttachment(new ObjectFactory<SymbolValueCache>() {
+                @Override
+                public SymbolValueCache newInstance() {
+                    return new SymbolValueCache(capacity);
+                }
+            });
+            this.cache = c == null ? new SymbolValueCache(keyCount) : c;
+        }
+
         try {
             this.index = new KVIndex(new File(directory, column + HASH_INDEX_FILE_SUFFIX), this.hashKeyCount, keyCount, txCountHint, journalMode, indexTxAddress);
         } catch (JournalException e) {
             this.data.close();
             throw e;
         }
-        this.valueCache = new CharSequenceIntHashMap(noCache ? 0 : keyCount, 0.5, VALUE_NOT_FOUND);
-        this.keyCache = new ObjList<>(noCache ? 0 : keyCount);
     }
 
     public void alignSize() {
@@ -101,6 +109,10 @@ public class MMappedSymbolTable implements Closeable, SymbolTable {
     }
 
     public void applyTx(int size, long indexTxAddress) {
+        if (size < this.size) {
+            // values above size have been rolled back and keys will be reused
+            clearCache();
+        }
         this.size = size;
         this.index.setTxAddress(indexTxAddress);
     }
@@ -144,10 +156,11 @@ public class MMappedSymbolTable implements Closeable, SymbolTable {
             return VALUE_IS_NULL;
         }
 
-        if (!noCache) {
-            int key = valueCache.get(value);
+        if (cache != null) {
+            int key = cache.get(value);
             if (key != VALUE_NOT_FOUND) {
-                return key;
+                // symbol values are append only, value cached by reader of newer transaction does not exist for this one
+                return key < size ? key : VALUE_NOT_FOUND;
             }
         }
 
@@ -166,7 +179,7 @@ public class MMappedSymbolTable implements Closeable, SymbolTable {
         }
 
         if (key < size) {
-            String value = key < keyCache.size() ? keyCache.getQuick(key) : null;
+            String value = cache == null ? null : cache.value(key);
             if (value == null) {
                 cache(key, value = data.getStr(key));
             }
@@ -177,11 +190,12 @@ public class MMappedSymbolTable implements Closeable, SymbolTable {
     }
 
     public MMappedSymbolTable preLoad() {
-        for (int key = 0, size = (int) data.size(); key < size; key++) {
-            String value = data.getStr(key);
-            valueCache.putIfAbsent(value, key);
-            keyCache.add(value);
-
+        if (cache != null) {
+            for (int key = 0, size = (int) data.size(); key < size; key++) {
+                if (cache.value(key) == null) {
+                    cache.put(key, data.getStr(key));
+                }
+            }
         }
         return this;
     }
@@ -230,18 +244,20 @@ public class MMappedSymbolTable implements Closeable, SymbolTable {
         return iter;
     }
 
+    SymbolValueCache getCache() {
+        return cache;
+    }
+
     private void cache(int key, String value) {
-        if (noCache) {
-            return;
+        if (cache != null) {
+            cache.put(key, value);
         }
-
-        valueCache.put(value, key);
-        keyCache.extendAndSet(key, value);
     }
 
     private void clearCache() {
-        valueCache.clear();
-        keyCache.clear();
+        if (cache != null) {
+            cache.clear();
+        }
     }
 
     private int get0(CharSequence value) {
@@ -0,0 +1,257 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.store;
+
+import com.questdb.ex.JournalException;
+import com.questdb.ex.JournalNoSuchFileException;
+import com.questdb.ex.JournalRuntimeException;
+import com.questdb.log.Log;
+import com.questdb.log.LogFactory;
+import com.questdb.misc.Files;
+import com.questdb.misc.Misc;
+import com.questdb.misc.Os;
+import com.questdb.std.ObjectFactory;
+import com.questdb.std.Path;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+
+/**
+ * Process-wide cache of read-only file mappings. Every reader of journal, be it from the same or different
+ * factory, maps the same files. Readers in {@link com.questdb.JournalMode#READ} mode share single file
+ * descriptor and mapped regions of each file instead, so number of mappings and open files does not
+ * grow with number of readers.
+ * <p>
+ * Files are identified by device and inode rather than by name, so that files replaced by writer, for
+ * example when partition is sealed, are not confused with their predecessors. Regions are reference
+ * counted. Region can grow in place, in which case all of its users benefit. When it cannot, new region
+ * becomes the one shared by subsequent requests, while older region stays mapped until it is released by
+ * all of its users.
+ * <p>
+ * Readers also share what they derive from file content, such as symbol values or decoded head of
+ * transaction log, via attachment of file. Attachment lives as long as the file is open by any reader
+ * and has to be thread safe.
+ * <p>
+ * Cache is only involved when files are opened, grown or closed, hence all methods are synchronized.
+ */
+public final class MappedFileCache {
+    public static final MappedFileCache INSTANCE = new MappedFileCache();
+    private static final Log LOG = LogFactory.getLog(MappedFileCache.class);
+    private final HashMap<Object, Entry> entries = new HashMap<>();
+    private int regionCount = 0;
+    private int channelCount = 0;
+
+    private MappedFileCache() {
+    }
+
+    public synchronized int getChannelCount() {
+        return channelCount;
+    }
+
+    public synchronized int getFileCount() {
+        return entries.size();
+    }
+
+    public synchronized int getRegionCount() {
+        return regionCount;
+    }
+
+    synchronized void close(Entry entry) {
+        if (--entry.refCount == 0) {
+            entries.remove(entry.key);
+            Files.close(entry.fd);
+            if (entry.channel != null) {
+                entry.channel = Misc.free(entry.channel);
+                channelCount--;
+            }
+        }
+    }
+
+    /**
+     * Returns attachment of file, attachment is created by factory when file does not have one yet.
+     *
+     * @param entry   shared file
+     * @param factory creates attachment
+     * @param <T>     type of attachment, all users of file have to agree on it
+     * @return attachment
+     */
+    @SuppressWarnings("unchecked")
+    synchronized <T> T attachment(Entry entry, ObjectFactory<T> factory) {
+        if (entry.attachment == null) {
+            entry.attachment = factory.newInstance();
+        }
+        return (T) entry.attachment;
+    }
+
+    /**
+     * Channel of file for {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)},
+     * which native descriptor cannot serve. Channel is opened once per file and closed together with descriptor
+     * of file, caller must not close it.
+     *
+     * @param entry shared file
+     * @return channel or null when file has been replaced since it was opened
+     * @throws IOException when file cannot be opened
+     */
+    synchronized FileChannel channel(Entry entry) throws IOException {
+        if (entry.channel == null) {
+            RandomAccessFile raf = new RandomAccessFile(entry.file, "r");
+            if (!entry.key.equals(fileKey(entry.file))) {
+                // name is taken by another file now
+                raf.close();
+                return null;
+            }
+            entry.channel = raf.getChannel();
+            channelCount++;
+        }
+        return entry.channel;
+    }
+
+    /**
+     * Returns region mapping at least given number of bytes of file. Region passed in is the one
+     * caller currently uses, caller's reference to it is retained. Any other returned region is
+     * acquired for caller and has to be released.
+     *
+     * @param entry   shared file
+     * @param current region used by caller, can be null
+     * @param size    minimum region size
+     * @return region
+     */
+    synchronized Region map(Entry entry, Region current, long size) {
+        Region r = entry.newest;
+        if (r != null) {
+            if (r.size < size && Files.mremap(r.address, r.size, size) == r.address) {
+                r.size = size;
+            }
+
+            if (r.size >= size) {
+                if (r != current) {
+                    r.refCount++;
+                }
+                return r;
+            }
+        }
+
+        long a = Files.mmap(entry.fd, size, 0, Files.MAP_RO);
+        if (a == -1) {
+            throw new JournalRuntimeException("Cannot map %s [size=%d, errno=%d]", entry.file.getAbsolutePath(), size, Os.errno());
+        }
+        r = new Region(a, size);
+        entry.newest = r;
+        regionCount++;
+        return r;
+    }
+
+    synchronized Entry open(File file) throws JournalException {
+        while (true) {
+            Object key = fileKey(file);
+            if (key == null) {
+                throw new JournalNoSuchFileException(new FileNotFoundException(file.getAbsolutePath()));
+            }
+
+            Entry e = entries.get(key);
+            if (e != null) {
+                e.refCount++;
+                return e;
+            }
+
+            long fd;
+            try (Path path = new Path(file.getAbsolutePath())) {
+                fd = Files.openRO(path);
+            }
+
+            if (fd == -1) {
+                throw new JournalNoSuchFileException(new FileNotFoundException(file.getAbsolutePath()));
+            }
+
+            if (key.equals(fileKey(file))) {
+                e = new Entry(key, file, fd);
+                entries.put(key, e);
+                return e;
+            }
+
+            // file has been replaced while we were opening it
+            LOG.debug().$("File replaced while opening ").$(file).$();
+            Files.close(fd);
+        }
+    }
+
+    synchronized void release(Entry entry, Region region) {
+        if (--region.refCount == 0) {
+            Files.munmap(region.address, region.size);
+            regionCount--;
+            if (entry.newest == region) {
+                entry.newest = null;
+            }
+        }
+    }
+
+    private static Object fileKey(File file) {
+        BasicFileAttributes attributes;
+        try {
+            attributes = java.nio.file.Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+        // file systems without inodes cannot replace open files
+        Object key = attributes.fileKey();
+        return key == null ? file.getAbsolutePath() : key;
+    }
+
+    static final class Entry {
+        final long fd;
+        private final Object key;
+        private final File file;
+        private int refCount = 1;
+        private Region newest;
+        private FileChannel channel;
+        private Object attachment;
+
+        private Entry(Object key, File file, long fd) {
+            this.key = key;
+            this.file = file;
+            this.fd = fd;
+        }
+    }
+
+    static final class Region {
+        final long address;
+        private volatile long size;
+        private int refCount = 1;
+
+        private Region(long address, long size) {
+            this.address = address;
+            this.size = size;
+        }
+
+        long getSize() {
+            return size;
+        }
+    }
+}
@@ -21,6 +21,7 @@
  *
  ******************************************************************************/
 
+
 package com.questdb.store;
 
 import com.questdb.JournalMode;
@@ -30,72 +31,106 @@ import com.questdb.ex.JournalRuntimeException;
 import com.questdb.log.Log;
 import com.questdb.log.LogFactory;
 import com.questdb.misc.*;
+import com.questdb.std.LongList;
 import com.questdb.std.ObjList;
+import com.questdb.std.ObjectFactory;
+import com.questdb.std.Path;
 
 import java.io.*;
-import java.nio.ByteOrder;
-import java.nio.MappedByteBuffer;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
-
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * File mapped to memory as single contiguous region. Address of any offset is computed
+ * with one bounds check. When file outgrows the region, region is either extended in place
+ * or replaced by larger one. Replaced regions stay mapped until file is closed, so addresses
+ * handed out earlier remain valid, except for bulk modes, where they are unmapped unless buffers are locked.
+ * <p>
+ * Bulk modes also advise kernel of sequential access and release pages behind current
+ * window, which prevents OS from keeping large files resident.
+ * <p>
+ * Files opened in {@link JournalMode#READ} mode share descriptor and regions with other readers
+ * of the same file via {@link MappedFileCache}.
+ */
 public class MemoryFile implements Closeable {
 
     private static final Log LOG = LogFactory.getLog(MemoryFile.class);
     // reserve first 8 bytes in the file for storing pointer to logical end of file
     // so the actual data begins from "DATA_OFFSET"
     private final static int DATA_OFFSET = 8;
+    // Windows cannot map beyond end of file, there regions are mapped to exact file size
+    private final static boolean RESERVE = Os.type != Os.WINDOWS;
+    private final static long MAX_GROWTH = 1L << 32;
+    private final static int MIN_RELEASE_BITS = 16;
     private final File file;
     private final int journalMode;
+    private final boolean bulk;
+    private final LongList retired = new LongList();
+    private final ObjList<MappedFileCache.Region> retiredRegions = new ObjList<>();
     private int bitHint;
-    private FileChannel channel;
-    private MappedByteBuffer offsetBuffer;
-    private ObjList<MappedByteBuffer> buffers;
-    private ObjList<ByteBufferWrapper> stitches;
-    private MappedByteBuffer cachedBuffer;
-    private long cachedBufferLo = -1;
-    private long cachedBufferHi = -1;
+    private long fd = -1;
+    private boolean readOnly;
+    private long address = 0;
+    private long mappedSize = 0;
+    private long fileSize = 0;
+    private long limit = -1;
+    private long releaseMark = Long.MAX_VALUE;
+    private long releasedTo = 0;
     private long cachedAppendOffset = -1;
-    private long cachedAddress;
-    private long cachedPointer;
-    private long offsetDirectAddr;
     private boolean unlockedBuffers = true;
+    private FileChannel transferChannel;
+    private MappedFileCache.Entry shared;
+    private MappedFileCache.Region region;
 
     public MemoryFile(File file, int bitHint, int journalMode) throws JournalException {
         this.file = file;
         this.journalMode = journalMode;
+        this.bulk = journalMode == JournalMode.BULK_READ || journalMode == JournalMode.BULK_APPEND;
         if (bitHint < 2) {
             LOG.info().$("BitHint is too small for ").$(file).$();
         }
         this.bitHint = bitHint;
-        long size = open();
-        this.buffers = new ObjList<>((int) (size >>> this.bitHint) + 1);
-        this.stitches = new ObjList<>(buffers.size());
+        open();
     }
 
     public long addressOf(long offset, int size) {
-        if (offset > cachedBufferLo && offset + size < cachedBufferHi) {
-            return cachedPointer + offset;
-        } else {
-            return allocateAddress(offset, size);
+        if (offset + size <= limit) {
+            if (offset >= releaseMark) {
+                releaseBehind(offset);
+            }
+            return address + DATA_OFFSET + offset;
         }
+        return allocateAddress(offset, size);
     }
 
     @Override
     public void close() {
+        // channel belongs to shared file
+        transferChannel = null;
         unmap();
-        this.channel = Misc.free(channel);
+        if (fd != -1) {
+            if (shared != null) {
+                MappedFileCache.INSTANCE.close(shared);
+                shared = null;
+            } else {
+                Files.close(fd);
+            }
+            fd = -1;
+        }
     }
 
     public void compact() throws JournalException {
         close();
         try {
-            openInternal("rw");
+            openInternal(false);
             try {
                 long newSize = getAppendOffset() + DATA_OFFSET;
-                offsetBuffer = ByteBuffers.release(offsetBuffer);
+                unmap();
                 LOG.debug().$("Compacting ").$(this).$(" to ").$(newSize).$(" bytes").$();
-                channel.truncate(newSize).close();
-            } catch (IOException e) {
-                throw new JournalException("Could not compact %s to %d bytes", e, getFullFileName(), getAppendOffset());
+                if (!Files.truncate(fd, newSize)) {
+                    throw new JournalException("Could not compact %s to %d bytes [errno=%d]", getFullFileName(), newSize - DATA_OFFSET, Os.errno());
+                }
             } finally {
                 close();
             }
@@ -110,20 +145,8 @@ public class MemoryFile implements Closeable {
     }
 
     public void force() {
-        int stitchesSize = stitches.size();
-        offsetBuffer.force();
-        for (int i = 0, k = buffers.size(); i < k; i++) {
-            MappedByteBuffer b = buffers.getQuick(i);
-            if (b != null) {
-                b.force();
-            }
-
-            if (i < stitchesSize) {
-                ByteBufferWrapper s = stitches.getQuick(i);
-                if (s != null) {
-                    s.getByteBuffer().force();
-                }
-            }
+        if (address != 0) {
+            Files.msync(address, Math.min(fileSize, mappedSize), false);
         }
     }
 
@@ -131,28 +154,28 @@ public class MemoryFile implements Closeable {
         if (cachedAppendOffset != -1 && (journalMode == JournalMode.APPEND || journalMode == JournalMode.BULK_APPEND)) {
             return cachedAppendOffset;
         } else {
-            if (offsetBuffer != null) {
-                return cachedAppendOffset = Unsafe.getUnsafe().getLong(offsetDirectAddr);
+            if (address != 0 || mapHeader()) {
+                return cachedAppendOffset = Unsafe.getUnsafe().getLong(address);
             }
-            return -1L;
+            return fd == -1 ? -1L : 0L;
         }
     }
 
     public void setAppendOffset(long offset) {
-        Unsafe.getUnsafe().putLong(offsetDirectAddr, cachedAppendOffset = offset);
+        Unsafe.getUnsafe().putLong(address, cachedAppendOffset = offset);
     }
 
-    public MappedByteBuffer getBuffer(long offset, int size) {
-        if (offset > cachedBufferLo && offset + size < cachedBufferHi) {
-            cachedBuffer.position((int) (offset - cachedBufferLo - 1));
-        } else {
-            cachedBuffer = getBufferInternal(offset, size);
-            cachedBufferLo = offset - cachedBuffer.position() - 1;
-            cachedBufferHi = cachedBufferLo + cachedBuffer.limit() + 2;
-            cachedAddress = ByteBuffers.getAddress(cachedBuffer);
-            cachedPointer = cachedAddress - cachedBufferLo - 1;
-        }
-        return cachedBuffer;
+    /**
+     * View of file from given offset to end of mapped region. View must not be used after file
+     * is remapped or closed.
+     *
+     * @param offset offset in file
+     * @param size   minimum number of bytes view must have
+     * @return little-endian buffer positioned at 0
+     */
+    public ByteBuffer getBuffer(long offset, int size) {
+        long a = addressOf(offset, size);
+        return ByteBuffers.wrap(a, pageRemaining(offset));
     }
 
     public void lockBuffers() {
@@ -164,147 +187,148 @@ public class MemoryFile implements Closeable {
         return this.getClass().getName() + "[file=" + file + ", appendOffset=" + getAppendOffset() + ']';
     }
 
-    public void unlockBuffers() {
-        unlockedBuffers = true;
-    }
-
-    private long allocateAddress(long offset, int size) {
-        cachedBuffer = getBufferInternal(offset, size);
-        int p = cachedBuffer.position();
-        cachedBufferLo = offset - p - 1;
-        cachedBufferHi = cachedBufferLo + cachedBuffer.limit() + 2;
-        cachedAddress = ByteBuffers.getAddress(cachedBuffer);
-        cachedPointer = cachedAddress - cachedBufferLo - 1;
-        return cachedAddress + p;
-    }
-
-    private MappedByteBuffer createMappedBuffer(int index, int bufferSize, long bufferOffset) {
-        MappedByteBuffer buffer;
-        buffer = mapBufferInternal(bufferOffset, bufferSize);
-        assert bufferSize > 0;
-        buffers.extendAndSet(index, buffer);
-        if (unlockedBuffers) {
-            switch (journalMode) {
-                case JournalMode.BULK_READ:
-                case JournalMode.BULK_APPEND:
-                    // for bulk operations unmap all buffers except for current one
-                    // this is to prevent OS paging large files.
-                    cachedBuffer = null;
-                    cachedBufferLo = cachedBufferHi = -1;
-                    int ssz = stitches.size();
-                    for (int i = index - 1; i > -1; i--) {
-                        ByteBuffers.release(buffers.getAndSetQuick(i, null));
-                        if (i < ssz) {
-                            Misc.free(stitches.getAndSetQuick(i, null));
-                        }
-                    }
-                    break;
-                default:
-                    break;
-            }
+    /**
+     * Sends region of file to channel without mapping it. When target is socket channel OS copies
+     * data from page cache to socket directly (sendfile), JVM does not touch the bytes.
+     * <p>
+     * Only files shared via {@link MappedFileCache} are sent this way, from channel of shared file. Other
+     * files are written to channel from mapped memory, so that they do not hold second descriptor.
+     *
+     * @param offset offset in file
+     * @param count  maximum number of bytes to send
+     * @param target channel to send bytes to
+     * @return number of bytes sent, which can be less than count
+     * @throws IOException when file cannot be read or channel cannot be written to
+     */
+    public long transferTo(long offset, long count, WritableByteChannel target) throws IOException {
+        if (transferChannel == null && shared != null) {
+            transferChannel = MappedFileCache.INSTANCE.channel(shared);
         }
-        return buffer;
-    }
 
-    private MappedByteBuffer createStitchBuffer(int size, int index, long stitchOffset) {
-        ByteBufferWrapper bufferWrapper = stitches.getQuiet(index);
-        if (bufferWrapper != null) {
-            // if we already have a stitch for this buffer
-            // it could be too small for the size
-            // if that's the case - discard the existing stitch and create a larger one.
-            if (bufferWrapper.getOffset() != stitchOffset || bufferWrapper.getByteBuffer().limit() < size) {
-                bufferWrapper.close();
-                bufferWrapper = null;
-            } else {
-                bufferWrapper.getByteBuffer().rewind();
-            }
+        if (transferChannel != null) {
+            return transferChannel.transferTo(DATA_OFFSET + offset, count, target);
         }
 
-        if (bufferWrapper == null) {
-            bufferWrapper = new ByteBufferWrapper(stitchOffset, mapBufferInternal(stitchOffset, size));
-            stitches.extendAndSet(index, bufferWrapper);
+        // descriptor is not shared or file has been replaced, send from mapped memory rather than open file again
+        ByteBuffer buf = getBuffer(offset, 1);
+        if (buf.remaining() > count) {
+            buf.limit((int) count);
         }
-
-        return bufferWrapper.getByteBuffer();
+        return target.write(buf);
     }
 
-    private MappedByteBuffer getBufferInternal(long offset, int size) {
-
-        int bufferSize = 1 << bitHint;
-        int index = (int) (offset >>> bitHint);
-        long bufferOffset = ((long) index) << ((long) bitHint);
-        int bufferPos = (int) (offset - bufferOffset);
-
-        MappedByteBuffer buffer = buffers.getQuiet(index);
+    public void unlockBuffers() {
+        unlockedBuffers = true;
+    }
 
-        // this may occur when journal is refreshed.
-        if (buffer != null && buffer.limit() < bufferPos) {
-            buffer = ByteBuffers.release(buffer);
+    private long allocateAddress(long offset, int size) {
+        long required = offset + size + DATA_OFFSET;
+        if (required > fileSize) {
+            if (readOnly) {
+                // writer may have appended since file was mapped, file can also be
+                // deleted by now when partition is sealed, hence size of descriptor
+                fileSize = Files.getFileSize(fd);
+                if (required > fileSize) {
+                    throw new JournalRuntimeException("Offset %d is beyond end of file %s [size=%d]", offset + size, getFullFileName(), fileSize - DATA_OFFSET);
+                }
+            } else {
+                long pageSize = 1L << bitHint;
+                long sz = DATA_OFFSET + ((offset + size + pageSize - 1) & -pageSize);
+                if (!RESERVE) {
+                    // every growth remaps file, keep number of regions logarithmic
+                    sz = Math.max(sz, fileSize + Math.min(fileSize, MAX_GROWTH));
+                }
+                if (!Files.truncate(fd, sz)) {
+                    throw new JournalRuntimeException("Cannot extend %s to %d bytes [errno=%d]", getFullFileName(), sz, Os.errno());
+                }
+                fileSize = sz;
+            }
         }
 
-        if (buffer == null) {
-            buffer = createMappedBuffer(index, bufferSize, bufferOffset);
+        if (required > mappedSize) {
+            map(fileSize);
+        } else {
+            limit = Math.min(fileSize, mappedSize) - DATA_OFFSET;
         }
 
-        buffer.position(bufferPos);
-
-        if (buffer.remaining() < size) {
-            // if the desired size is larger than remaining buffer we need to crate
-            // a stitch buffer, which would accommodate the size
-            return createStitchBuffer(size, index, bufferOffset + bufferPos);
+        if (offset >= releaseMark) {
+            releaseBehind(offset);
         }
-        return buffer;
+        return address + DATA_OFFSET + offset;
     }
 
     private String getFullFileName() {
         return this.file.getAbsolutePath();
     }
 
-    private MappedByteBuffer mapBufferInternal(long offset, int size) {
-        long actualOffset = offset + DATA_OFFSET;
+    private void map(long size) {
+        long sz = size;
+        if (RESERVE) {
+            // reserve address space beyond end of file, so that region grows in place
+            sz = Math.max(sz, mappedSize + Math.min(Math.max(mappedSize, 1L << bitHint), MAX_GROWTH));
+        }
 
-        try {
-            MappedByteBuffer buf;
-            switch (journalMode) {
-                case JournalMode.READ:
-                case JournalMode.BULK_READ:
-                    // make sure size does not extend beyond actual file size, otherwise
-                    // java would assume we want to write and throw an exception
-                    long sz;
-                    if (actualOffset + ((long) size) > channel.size()) {
-                        sz = channel.size() - actualOffset;
-                    } else {
-                        sz = size;
-                    }
-                    assert sz > 0;
-                    buf = channel.map(FileChannel.MapMode.READ_ONLY, actualOffset, sz);
-                    break;
-                default:
-                    buf = channel.map(FileChannel.MapMode.READ_WRITE, actualOffset, size);
-                    break;
+        if (shared != null) {
+            MappedFileCache.Region r = MappedFileCache.INSTANCE.map(shared, region, sz);
+            if (r != region) {
+                if (region != null) {
+                    retiredRegions.add(region);
+                }
+                region = r;
+                address = r.address;
+            }
+            mappedSize = r.getSize();
+        } else if (address != 0 && Files.mremap(address, mappedSize, sz) == address) {
+            mappedSize = sz;
+        } else {
+            long a = Files.mmap(fd, sz, 0, readOnly ? Files.MAP_RO : Files.MAP_RW);
+            if (a == -1) {
+                throw new JournalRuntimeException("Cannot map %s [size=%d, errno=%d]", getFullFileName(), sz, Os.errno());
             }
-            buf.order(ByteOrder.LITTLE_ENDIAN);
-            return buf;
-        } catch (IOException e) {
-            throw new JournalRuntimeException("Failed to memory map: %s", e, file.getAbsolutePath());
+
+            if (address != 0) {
+                if (bulk && unlockedBuffers) {
+                    Files.munmap(address, mappedSize);
+                } else {
+                    retired.add(address);
+                    retired.add(mappedSize);
+                }
+            }
+
+            if (bulk) {
+                Files.madvise(a, sz, Files.MADV_SEQUENTIAL);
+            }
+            address = a;
+            mappedSize = sz;
         }
+        limit = Math.min(fileSize, mappedSize) - DATA_OFFSET;
     }
 
-    private long open() throws JournalException {
-        String m;
+    private boolean mapHeader() {
+        if (fd == -1) {
+            return false;
+        }
+        fileSize = file.length();
+        if (fileSize < DATA_OFFSET) {
+            return false;
+        }
+        map(fileSize);
+        return true;
+    }
+
+    private void open() throws JournalException {
         switch (journalMode) {
             case JournalMode.READ:
             case JournalMode.BULK_READ:
-                m = "r";
+                openInternal(true);
                 break;
             default:
-                m = "rw";
+                openInternal(false);
                 break;
         }
-        return openInternal(m);
     }
 
-    private long openInternal(String mode) throws JournalException {
+    private void openInternal(boolean readOnly) throws JournalException {
 
         File pf = file.getParentFile();
         if (pf == null) {
@@ -315,75 +339,121 @@ public class MemoryFile implements Closeable {
             throw new JournalException("Could not create directories: %s", file.getParentFile().getAbsolutePath());
         }
 
-        try {
-            this.channel = new RandomAccessFile(file, mode).getChannel();
-        } catch (FileNotFoundException e) {
-            throw new JournalNoSuchFileException(e);
+        String name = getFullFileName();
+        if (name.indexOf(0) != -1) {
+            // native layer would silently truncate name
+            throw new JournalNoSuchFileException(new FileNotFoundException("Invalid file path: " + name));
         }
 
-        long size;
-        try {
-            size = channel.size();
-        } catch (IOException e) {
-            throw new JournalException(e);
+        this.readOnly = readOnly;
+        if (readOnly && journalMode == JournalMode.READ) {
+            this.shared = MappedFileCache.INSTANCE.open(file);
+            this.fd = shared.fd;
+        } else {
+            try (Path path = new Path(name)) {
+                this.fd = readOnly ? Files.openRO(path) : Files.openRW(path);
+            }
         }
 
-        try {
-            if ("r".equals(mode)) {
-                this.offsetBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, 8));
-            } else {
-                this.offsetBuffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, 8);
+        if (fd == -1) {
+            if (readOnly) {
+                throw new JournalNoSuchFileException(new FileNotFoundException(name));
             }
-            offsetBuffer.order(ByteOrder.LITTLE_ENDIAN);
-            offsetDirectAddr = ByteBuffers.getAddress(offsetBuffer);
-            // adjust bitHint to make sure it is not too small
-            long offset = getAppendOffset();
-            if (offset > 0) {
-                if (offset > Integer.MAX_VALUE) {
-                    bitHint = 30;
-                } else {
-                    int hint = Numbers.msb((int) offset) + 1;
-                    if (hint < 0 || hint > 30) {
-                        bitHint = 30;
-                    } else if (hint > bitHint) {
-                        bitHint = hint;
-                    }
-                }
+            throw new JournalException("Cannot open %s [errno=%d]", name, Os.errno());
+        }
+
+        fileSize = file.length();
+        if (!readOnly && fileSize < DATA_OFFSET) {
+            if (!Files.truncate(fd, DATA_OFFSET)) {
+                close();
+                throw new JournalException("Cannot extend %s [errno=%d]", getFullFileName(), Os.errno());
             }
-        } catch (IOException e) {
+            fileSize = DATA_OFFSET;
+        }
+
+        if (fileSize >= DATA_OFFSET) {
             try {
-                this.channel.close();
-            } catch (IOException ignore) {
-                // ignore
+                map(fileSize);
+            } catch (JournalRuntimeException e) {
+                close();
+                throw new JournalException(e);
             }
-            this.channel = null;
-            throw new JournalException(e);
         }
 
-        return size;
+        releaseMark = bulk ? 0 : Long.MAX_VALUE;
+        releasedTo = 0;
+
+        // adjust bitHint to make sure it is not too small
+        long offset = getAppendOffset();
+        if (offset > 0) {
+            if (offset > Integer.MAX_VALUE) {
+                bitHint = 30;
+            } else {
+                int hint = Numbers.msb((int) offset) + 1;
+                if (hint < 0 || hint > 30) {
+                    bitHint = 30;
+                } else if (hint > bitHint) {
+                    bitHint = hint;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param factory creates attachment for the first reader of file
+     * @param <T>     type of attachment
+     * @return attachment shared by readers of file via {@link MappedFileCache} or null when file is not shared
+     */
+    <T> T getAttachment(ObjectFactory<T> factory) {
+        return shared == null ? null : MappedFileCache.INSTANCE.attachment(shared, factory);
     }
 
     int pageRemaining(long offset) {
-        if (offset > cachedBufferLo && offset < cachedBufferHi) {
-            return (int) (cachedBufferHi - offset - 1);
-        } else {
-            return 0;
+        return offset < limit ? (int) Math.min(limit - offset, Integer.MAX_VALUE) : 0;
+    }
+
+    private void releaseBehind(long offset) {
+        // windows are aligned in file coordinates, region start is page aligned
+        int bits = Math.max(bitHint, MIN_RELEASE_BITS);
+        long lo = ((offset + DATA_OFFSET) >>> bits) << bits;
+        if (unlockedBuffers && lo > releasedTo) {
+            Files.madvise(address + releasedTo, lo - releasedTo, Files.MADV_DONTNEED);
+            releasedTo = lo;
         }
+        releaseMark = lo + (1L << bits) - DATA_OFFSET;
     }
 
     private void unmap() {
-        for (int i = 0, k = buffers.size(); i < k; i++) {
-            ByteBuffers.release(buffers.getQuick(i));
+        if (shared != null) {
+            for (int i = 0, n = retiredRegions.size(); i < n; i++) {
+                MappedFileCache.INSTANCE.release(shared, retiredRegions.getQuick(i));
+            }
+            retiredRegions.clear();
+
+            if (region != null) {
+                MappedFileCache.INSTANCE.release(shared, region);
+                region = null;
+            }
+            address = 0;
+            mappedSize = 0;
+            limit = -1;
+            return;
         }
-        for (int i = 0, k = stitches.size(); i < k; i++) {
-            Misc.free(stitches.getQuick(i));
+
+        for (int i = 0, n = retired.size(); i < n; i += 2) {
+            Files.munmap(retired.getQuick(i), retired.getQuick(i + 1));
         }
-        cachedBuffer = null;
-        cachedBufferLo = cachedBufferHi = -1;
-        buffers.clear();
-        stitches.clear();
+        retired.clear();
+
+        if (address != 0) {
+            Files.munmap(address, mappedSize);
+            address = 0;
+        }
+        mappedSize = 0;
+        limit = -1;
+    }
 
-        offsetBuffer = ByteBuffers.release(offsetBuffer);
-        assert offsetBuffer == null;
+    static {
+        Os.init();
     }
 }
@@ -0,0 +1,306 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.store;
+
+import com.questdb.ex.JournalException;
+import com.questdb.factory.configuration.JournalMetadata;
+import com.questdb.misc.Files;
+import com.questdb.misc.Numbers;
+import com.questdb.misc.Os;
+import com.questdb.misc.Unsafe;
+import com.questdb.std.Path;
+
+import java.io.File;
+
+/**
+ * Min, max and null count of numeric and date columns of single partition. Statistics are
+ * kept by writer and persisted in partition directory on every commit, before transaction
+ * is published. Readers can therefore rely on statistics covering at least every row they
+ * can see, values are never narrowed, so statistics of truncated partition remain valid
+ * superset of actual values.
+ * <p>
+ * Integer values are kept as is, including NaN sentinels, so that range of values matches
+ * what comparison operators see. Float and double NaNs are counted as nulls only as they
+ * never satisfy a comparison.
+ */
+public class PartitionStats {
+    public static final String FILE_NAME = "_stats";
+    private static final String TEMP_FILE_NAME = "_stats.tmp";
+    private static final int HEADER_SIZE = 8;
+    private static final int ENTRY_SIZE = 24;
+    private final int columnCount;
+    private final int types[];
+    private final long min[];
+    private final long max[];
+    private final long nullCount[];
+    private final int size;
+    private long rowCount;
+
+    public PartitionStats(JournalMetadata metadata) {
+        this.columnCount = metadata.getColumnCount();
+        this.types = new int[columnCount];
+        this.min = new long[columnCount];
+        this.max = new long[columnCount];
+        this.nullCount = new long[columnCount];
+        this.size = HEADER_SIZE + columnCount * ENTRY_SIZE;
+        for (int i = 0; i < columnCount; i++) {
+            types[i] = metadata.getColumnQuick(i).getType();
+        }
+        reset();
+    }
+
+    public static boolean isSupported(int type) {
+        switch (type) {
+            case ColumnType.BYTE:
+            case ColumnType.SHORT:
+            case ColumnType.INT:
+            case ColumnType.LONG:
+            case ColumnType.DATE:
+            case ColumnType.FLOAT:
+            case ColumnType.DOUBLE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    public double getDoubleMax(int columnIndex) {
+        return isFloatingPoint(columnIndex) ? Double.longBitsToDouble(max[columnIndex]) : (double) max[columnIndex];
+    }
+
+    public double getDoubleMin(int columnIndex) {
+        return isFloatingPoint(columnIndex) ? Double.longBitsToDouble(min[columnIndex]) : (double) min[columnIndex];
+    }
+
+    public long getMax(int columnIndex) {
+        return max[columnIndex];
+    }
+
+    public long getMin(int columnIndex) {
+        return min[columnIndex];
+    }
+
+    public long getNullCount(int columnIndex) {
+        return nullCount[columnIndex];
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public boolean isFloatingPoint(int columnIndex) {
+        return types[columnIndex] == ColumnType.DOUBLE || types[columnIndex] == ColumnType.FLOAT;
+    }
+
+    /**
+     * Reads statistics of partition.
+     *
+     * @param partitionDir partition directory
+     * @return false when partition has no statistics or statistics were written for different column layout.
+     * @throws JournalException when statistics file cannot be read
+     */
+    public boolean read(File partitionDir) throws JournalException {
+        File file = new File(partitionDir, FILE_NAME);
+        try (Path path = new Path(file.getAbsolutePath())) {
+            if (Files.length(path) != size) {
+                return false;
+            }
+
+            long fd = Files.openRO(path);
+            if (fd < 0) {
+                return false;
+            }
+
+            long buf = Unsafe.malloc(size);
+            try {
+                if (Files.read(fd, buf, size, 0) != size) {
+                    throw new JournalException("Cannot read %s [errno=%d]", file, Os.errno());
+                }
+
+                rowCount = Unsafe.getUnsafe().getLong(buf);
+                for (int i = 0; i < columnCount; i++) {
+                    long p = buf + HEADER_SIZE + i * ENTRY_SIZE;
+                    min[i] = Unsafe.getUnsafe().getLong(p);
+                    max[i] = Unsafe.getUnsafe().getLong(p + 8);
+                    nullCount[i] = Unsafe.getUnsafe().getLong(p + 16);
+                }
+                return true;
+            } finally {
+                Unsafe.free(buf, size);
+                Files.close(fd);
+            }
+        }
+    }
+
+    public final void reset() {
+        rowCount = 0;
+        for (int i = 0; i < columnCount; i++) {
+            if (isFloatingPoint(i)) {
+                min[i] = Double.doubleToRawLongBits(Double.POSITIVE_INFINITY);
+                max[i] = Double.doubleToRawLongBits(Double.NEGATIVE_INFINITY);
+            } else {
+                min[i] = Long.MAX_VALUE;
+                max[i] = Long.MIN_VALUE;
+            }
+            nullCount[i] = 0;
+        }
+    }
+
+    /**
+     * Excludes rows above given size from statistics row count without narrowing value ranges.
+     * Rows re-appended from this point on are then accounted for on next update.
+     *
+     * @param size new partition size
+     */
+    public void truncate(long size) {
+        if (rowCount > size) {
+            rowCount = size;
+        }
+    }
+
+    /**
+     * Accounts for rows appended since last update.
+     *
+     * @param columns partition columns, indexed same as metadata statistics were created for
+     * @param size    partition size
+     * @return true if statistics changed
+     */
+    public boolean update(AbstractColumn columns[], long size) {
+        if (size < rowCount) {
+            // partition is smaller than it used to be and rows it still has are unknown
+            reset();
+        }
+
+        if (size == rowCount) {
+            return false;
+        }
+
+        for (int i = 0; i < columnCount; i++) {
+            if (isSupported(types[i])) {
+                update(i, (FixedColumn) columns[i], rowCount, size);
+            }
+        }
+        rowCount = size;
+        return true;
+    }
+
+    public void write(File partitionDir) throws JournalException {
+        File tmp = new File(partitionDir, TEMP_FILE_NAME);
+        File file = new File(partitionDir, FILE_NAME);
+
+        try (Path path = new Path(tmp.getAbsolutePath())) {
+            long fd = Files.openRW(path);
+            if (fd < 0) {
+                throw new JournalException("Cannot open %s [errno=%d]", tmp, Os.errno());
+            }
+
+            long buf = Unsafe.malloc(size);
+            try {
+                Unsafe.getUnsafe().putLong(buf, rowCount);
+                for (int i = 0; i < columnCount; i++) {
+                    long p = buf + HEADER_SIZE + i * ENTRY_SIZE;
+                    Unsafe.getUnsafe().putLong(p, min[i]);
+                    Unsafe.getUnsafe().putLong(p + 8, max[i]);
+                    Unsafe.getUnsafe().putLong(p + 16, nullCount[i]);
+                }
+
+                if (!Files.truncate(fd, size) || Files.write(fd, buf, size, 0) != size) {
+                    throw new JournalException("Cannot write %s [errno=%d]", tmp, Os.errno());
+                }
+            } finally {
+                Unsafe.free(buf, size);
+                Files.close(fd);
+            }
+        }
+
+        // readers must see either old or new statistics, never partially written file
+        if (!tmp.renameTo(file) && !(file.delete() && tmp.renameTo(file))) {
+            throw new JournalException("Cannot rename %s to %s", tmp, file);
+        }
+    }
+
+    private void update(int columnIndex, FixedColumn column, long lo, long hi) {
+        long mn = min[columnIndex];
+        long mx = max[columnIndex];
+        long nulls = nullCount[columnIndex];
+
+        switch (types[columnIndex]) {
+            case ColumnType.BYTE:
+                for (long r = lo; r < hi; r++) {
+                    byte v = column.getByte(r);
+                    mn = v < mn ? v : mn;
+                    mx = v > mx ? v : mx;
+                }
+                break;
+            case ColumnType.SHORT:
+                for (long r = lo; r < hi; r++) {
+                    short v = column.getShort(r);
+                    mn = v < mn ? v : mn;
+                    mx = v > mx ? v : mx;
+                }
+                break;
+            case ColumnType.INT:
+                for (long r = lo; r < hi; r++) {
+                    int v = column.getInt(r);
+                    if (v == Numbers.INT_NaN) {
+                        nulls++;
+                    }
+                    mn = v < mn ? v : mn;
+                    mx = v > mx ? v : mx;
+                }
+                break;
+            case ColumnType.LONG:
+            case ColumnType.DATE:
+                for (long r = lo; r < hi; r++) {
+                    long v = column.getLong(r);
+                    if (v == Numbers.LONG_NaN) {
+                        nulls++;
+                    }
+                    mn = v < mn ? v : mn;
+                    mx = v > mx ? v : mx;
+                }
+                break;
+            default:
+                double dmn = Double.longBitsToDouble(mn);
+                double dmx = Double.longBitsToDouble(mx);
+                boolean dbl = types[columnIndex] == ColumnType.DOUBLE;
+                for (long r = lo; r < hi; r++) {
+                    double v = dbl ? column.getDouble(r) : column.getFloat(r);
+                    if (v != v) {
+                        nulls++;
+                        continue;
+                    }
+                    dmn = v < dmn ? v : dmn;
+                    dmx = v > dmx ? v : dmx;
+                }
+                mn = Double.doubleToRawLongBits(dmn);
+                mx = Double.doubleToRawLongBits(dmx);
+                break;
+        }
+
+        min[columnIndex] = mn;
+        max[columnIndex] = mx;
+        nullCount[columnIndex] = nulls;
+    }
+}
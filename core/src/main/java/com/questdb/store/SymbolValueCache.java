@@ -0,0 +1,69 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.store;
+
+import com.questdb.std.CharSequenceIntHashMap;
+
+import java.util.Arrays;
+
+/**
+ * Symbol values, which are resolved by symbol table, by key and by value. Readers of the same symbol file share
+ * single instance via {@link MappedFileCache}, so values are loaded once per process rather than once per reader.
+ * <p>
+ * Key lookup does not lock. Values are immutable strings, so reader can only see stale null, which is a cache miss.
+ * Value lookup and updates are synchronized. Cache can contain keys above size of particular reader, which is up to
+ * reader to check.
+ */
+final class SymbolValueCache {
+    private final CharSequenceIntHashMap valueCache;
+    private volatile String keys[];
+
+    SymbolValueCache(int capacity) {
+        this.valueCache = new CharSequenceIntHashMap(capacity, 0.5, SymbolTable.VALUE_NOT_FOUND);
+        this.keys = new String[Math.max(capacity, 16)];
+    }
+
+    synchronized void clear() {
+        valueCache.clear();
+        Arrays.fill(keys, null);
+    }
+
+    synchronized int get(CharSequence value) {
+        return valueCache.get(value);
+    }
+
+    synchronized void put(int key, String value) {
+        valueCache.put(value, key);
+        String k[] = keys;
+        if (key >= k.length) {
+            keys = k = Arrays.copyOf(k, Math.max(k.length << 1, key + 1));
+        }
+        k[key] = value;
+    }
+
+    String value(int key) {
+        String k[] = keys;
+        return key < k.length ? k[key] : null;
+    }
+}
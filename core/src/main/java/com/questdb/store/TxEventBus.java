@@ -0,0 +1,195 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.store;
+
+import com.questdb.Journal;
+import com.questdb.ex.TimeoutException;
+import com.questdb.mp.*;
+import com.questdb.std.ObjectFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process fan-out of journal commits. Writers publish event on every commit, subscribers consume
+ * events from their own sequences, hence publisher does not depend on number of subscribers and
+ * subscribers do not poll transaction log.
+ * <p>
+ * Events only cover writers of this process. Head of transaction log, which is read from mapped memory,
+ * remains the source of truth, so {@link #await(Journal, long, long)} also checks journal periodically
+ * to pick up commits of other processes.
+ * <p>
+ * Publishing never blocks writer. When subscribers fall behind by queue size, event is dropped and counted
+ * by {@link #getDroppedCount()}, subscribers pick up the commit from journal on their next periodic check.
+ */
+public class TxEventBus {
+    public static final TxEventBus INSTANCE = new TxEventBus(1024, 100);
+    private final RingQueue<TxEvent> queue;
+    private final Sequence publisher;
+    private final FanOut fanOut;
+    private final long checkInterval;
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    /**
+     * @param queueSize     number of events subscriber can fall behind before events are dropped, power of 2
+     * @param checkInterval interval in milliseconds between checks for commits, which are not published to this bus
+     */
+    public TxEventBus(int queueSize, long checkInterval) {
+        this.queue = new RingQueue<>(TxEvent.FACTORY, queueSize);
+        this.publisher = new MPSequence(queue.getCapacity());
+        this.fanOut = new FanOut();
+        this.publisher.then(fanOut).then(publisher);
+        this.checkInterval = checkInterval;
+    }
+
+    /**
+     * Waits until journal has transaction newer than given one.
+     *
+     * @param journal reader, which is refreshed by this method
+     * @param txn     last transaction known to caller
+     * @param timeout max time to wait in milliseconds
+     * @return true if journal has newer transaction, false if wait timed out
+     */
+    public boolean await(Journal journal, long txn, long timeout) {
+        Sequence sequence = subscribe(new TimeoutBlockingWaitStrategy(checkInterval, TimeUnit.MILLISECONDS));
+        try {
+            String location = journal.getMetadata().getLocation();
+            long deadline = System.currentTimeMillis() + timeout;
+            long dropped = droppedCount.get();
+            boolean check = true;
+            while (true) {
+                // commits made before subscription are picked up here
+                if (check) {
+                    journal.refresh();
+                    if (journal.getTxn() > txn) {
+                        return true;
+                    }
+                }
+
+                if (System.currentTimeMillis() >= deadline) {
+                    return false;
+                }
+
+                try {
+                    long cursor = sequence.waitForNext();
+                    check = false;
+                    do {
+                        check |= isEventFor(cursor, location);
+                        sequence.done(cursor);
+                    } while ((cursor = sequence.next()) > -1);
+
+                    // dropped event could have been ours
+                    long d = droppedCount.get();
+                    if (d != dropped) {
+                        dropped = d;
+                        check = true;
+                    }
+                } catch (TimeoutException ignore) {
+                    // check journal anyway
+                    check = true;
+                }
+            }
+        } finally {
+            unsubscribe(sequence);
+        }
+    }
+
+    public long getCheckInterval() {
+        return checkInterval;
+    }
+
+    /**
+     * @return number of events, which were not published because subscribers were too far behind
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public RingQueue<TxEvent> getQueue() {
+        return queue;
+    }
+
+    /**
+     * @param cursor   cursor of subscriber sequence
+     * @param location journal location as in {@link com.questdb.factory.configuration.JournalMetadata#getLocation()}
+     * @return true if event at cursor is commit to journal at given location
+     */
+    public boolean isEventFor(long cursor, String location) {
+        return location.equals(queue.get(cursor).location);
+    }
+
+    public void publish(String location, long txn) {
+        long cursor;
+        // -2 is lost race with another publisher, -1 is full queue
+        while ((cursor = publisher.next()) == -2) {
+            // retry
+        }
+
+        if (cursor < 0) {
+            droppedCount.incrementAndGet();
+            return;
+        }
+
+        TxEvent event = queue.get(cursor);
+        event.location = location;
+        event.txn = txn;
+        publisher.done(cursor);
+    }
+
+    /**
+     * Creates sequence, which receives events published from now on. Subscriber has to consume events
+     * promptly, as events are dropped once publishers get queue size ahead of it, and has to unsubscribe when done.
+     *
+     * @param waitStrategy strategy of waiting for events
+     * @return sequence of events in {@link #getQueue()}
+     */
+    public Sequence subscribe(WaitStrategy waitStrategy) {
+        return fanOut.addAndGet(new SCSequence(publisher.current(), waitStrategy));
+    }
+
+    public void unsubscribe(Sequence sequence) {
+        fanOut.remove(sequence);
+    }
+
+    public static class TxEvent {
+        private static final ObjectFactory<TxEvent> FACTORY = new ObjectFactory<TxEvent>() {
+            @Override
+            public TxEvent newInstance() {
+                return new TxEvent();
+            }
+        };
+
+        private String location;
+        private long txn;
+
+        public String getLocation() {
+            return location;
+        }
+
+        public long getTxn() {
+            return txn;
+        }
+    }
+}
@@ -27,6 +27,7 @@ import com.questdb.ex.JournalException;
 import com.questdb.misc.ByteBuffers;
 import com.questdb.misc.Rnd;
 import com.questdb.misc.Unsafe;
+import com.questdb.std.ObjectFactory;
 
 import java.io.Closeable;
 import java.io.File;
@@ -36,6 +37,7 @@ public class TxLog implements Closeable {
     public static final String FILE_NAME = "_tx";
     private final UnstructuredFile hb;
     private final Rnd rnd;
+    private final SharedHead head;
     private long headAddress = 0;
     private long currentAddress = 0;
     private long txn;
@@ -43,6 +45,7 @@ public class TxLog implements Closeable {
     public TxLog(File baseLocation, int journalMode, int txCount) throws JournalException {
         this.hb = new UnstructuredFile(new File(baseLocation, FILE_NAME), ByteBuffers.getBitHint(512, txCount), journalMode);
         this.rnd = new Rnd(System.currentTimeMillis(), System.nanoTime());
+        this.head = hb.getAttachment(SharedHead.FACTORY);
         this.txn = getCurrentTxn() + 1;
     }
 
@@ -113,10 +116,52 @@ public class TxLog implements Closeable {
         return result;
     }
 
+    /**
+     * Reads head transaction unless it has been read by previous call. Head address is read from
+     * mapped memory, so checking for new transaction costs no IO.
+     *
+     * @param tx transaction to read into, must be the same instance on every call
+     * @return true if head transaction changed and has been read
+     */
+    public boolean headIfChanged(Tx tx) {
+        long address = readCurrentTxAddress();
+        if (address == headAddress) {
+            return false;
+        }
+        read(headAddress = currentAddress = address, tx);
+        return true;
+    }
+
     public boolean isEmpty() {
         return hb.getAppendOffset() < 10 || readCurrentTxAddress() < 1;
     }
 
+    /**
+     * Reads head transaction same way as {@link #head(Tx)}, except that readers, which share log file via
+     * {@link MappedFileCache}, also share head transaction, so that it is read once per commit rather than
+     * once per reader. Returned transaction must not be modified.
+     *
+     * @param tx transaction to read into when log is not shared
+     * @return head transaction, either given or shared instance
+     */
+    public Tx snapshot(Tx tx) {
+        return snapshot(readCurrentTxAddress(), tx);
+    }
+
+    /**
+     * Reads head transaction as in {@link #snapshot(Tx)} unless it has been read by previous call.
+     *
+     * @param tx transaction to read into when log is not shared
+     * @return head transaction or null if head has not changed
+     */
+    public Tx snapshotIfChanged(Tx tx) {
+        long address = readCurrentTxAddress();
+        if (address == headAddress) {
+            return null;
+        }
+        return snapshot(address, tx);
+    }
+
     public void read(long address, Tx tx) {
         assert address > 0 : "zero headAddress: " + address;
         tx.address = address;
@@ -199,4 +244,38 @@ public class TxLog implements Closeable {
 
         currentAddress = address;
     }
+
+    private Tx snapshot(long address, Tx tx) {
+        headAddress = currentAddress = address;
+        if (head == null) {
+            read(address, tx);
+            return tx;
+        }
+
+        Tx t = head.tx;
+        if (t == null || t.address != address || t.txPin != readTxPin(address)) {
+            t = new Tx();
+            read(address, t);
+            // readers of older head can overwrite newer one, which only costs another read
+            head.tx = t;
+        }
+        return t;
+    }
+
+    // writer can reuse address after rollback, random pin tells transactions apart
+    private long readTxPin(long address) {
+        hb.setPos(address + 16);
+        return hb.getLong();
+    }
+
+    private static class SharedHead {
+        private static final ObjectFactory<SharedHead> FACTORY = new ObjectFactory<SharedHead>() {
+            @Override
+            public SharedHead newInstance() {
+                return new SharedHead();
+            }
+        };
+
+        private volatile Tx tx;
+    }
 }
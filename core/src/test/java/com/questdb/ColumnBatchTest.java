@@ -0,0 +1,167 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb;
+
+import com.questdb.ex.JournalException;
+import com.questdb.factory.configuration.JournalStructure;
+import com.questdb.misc.Dates;
+import com.questdb.misc.Unsafe;
+import com.questdb.ql.RecordSource;
+import com.questdb.std.ObjList;
+import com.questdb.test.tools.AbstractTest;
+import com.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ColumnBatchTest extends AbstractTest {
+
+    private static final int N = 3000;
+    private static final long START = Dates.toMillis(2016, 3, 10, 0, 0);
+    private static final long STEP = 90000L;
+
+    @Test
+    public void testAppendAcrossPartitions() throws Exception {
+        try (JournalWriter rows = factory.writer(structure("rows")); JournalWriter cols = factory.writer(structure("cols"))) {
+            for (int i = 0; i < N; i++) {
+                JournalEntryWriter w = rows.entryWriter(START + i * STEP);
+                w.putSym(0, "S" + (i % 7));
+                w.putInt(1, i);
+                w.putDouble(2, i / 4.0);
+                if (i % 3 > 0) {
+                    w.putStr(3, "note" + i);
+                }
+                w.append();
+            }
+            rows.commit();
+
+            long ts = Unsafe.malloc(N * 8L);
+            long qty = Unsafe.malloc(N * 4L);
+            long px = Unsafe.malloc(N * 8L);
+            try {
+                ObjList<String> syms = new ObjList<>();
+                ObjList<String> notes = new ObjList<>();
+                for (int i = 0; i < N; i++) {
+                    Unsafe.getUnsafe().putLong(ts + i * 8L, START + i * STEP);
+                    Unsafe.getUnsafe().putInt(qty + i * 4L, i);
+                    Unsafe.getUnsafe().putDouble(px + i * 8L, i / 4.0);
+                    syms.add("S" + (i % 7));
+                    notes.add(i % 3 > 0 ? "note" + i : null);
+                }
+
+                ColumnBatch batch = new ColumnBatch(cols.getMetadata());
+                // append in two batches, second one starts in the middle of partition
+                batch.of(1000).putStr(0, syms).put(1, qty).put(2, px).putStr(3, notes).put(4, ts);
+                cols.appendBatch(batch);
+
+                ObjList<String> syms2 = new ObjList<>();
+                ObjList<String> notes2 = new ObjList<>();
+                for (int i = 1000; i < N; i++) {
+                    syms2.add(syms.getQuick(i));
+                    notes2.add(notes.getQuick(i));
+                }
+                batch.of(N - 1000).putStr(0, syms2).put(1, qty + 4000).put(2, px + 8000).putStr(3, notes2).put(4, ts + 8000);
+                cols.appendBatch(batch);
+                cols.commit();
+            } finally {
+                Unsafe.free(ts, N * 8L);
+                Unsafe.free(qty, N * 4L);
+                Unsafe.free(px, N * 8L);
+            }
+
+            Assert.assertEquals(4, cols.getPartitionCount());
+            Assert.assertEquals(N, cols.size());
+        }
+
+        assertSameResult("rows", "cols");
+        assertSameResult("rows where sym = 'S3'", "cols where sym = 'S3'");
+        assertSameResult("rows where qty = 2500", "cols where qty = 2500");
+        assertSameResult("rows where note = 'note2999'", "cols where note = 'note2999'");
+    }
+
+    @Test
+    public void testMissingColumnsAreNull() throws Exception {
+        try (JournalWriter w = factory.writer(structure("nulls"))) {
+            long ts = Unsafe.malloc(8);
+            try {
+                Unsafe.getUnsafe().putLong(ts, START);
+                w.appendBatch(new ColumnBatch(w.getMetadata()).of(1).put(4, ts));
+                w.commit();
+            } finally {
+                Unsafe.free(ts, 8);
+            }
+        }
+        assertThat("\tNaN\tNaN\t\t2016-03-10T00:00:00.000Z\n", "nulls");
+    }
+
+    @Test
+    public void testOutOfOrder() throws Exception {
+        try (JournalWriter w = factory.writer(structure("ooo"))) {
+            long ts = Unsafe.malloc(4 * 8);
+            try {
+                Unsafe.getUnsafe().putLong(ts, START);
+                Unsafe.getUnsafe().putLong(ts + 8, START + STEP);
+                Unsafe.getUnsafe().putLong(ts + 16, START);
+                Unsafe.getUnsafe().putLong(ts + 24, START + 2 * STEP);
+
+                ColumnBatch batch = new ColumnBatch(w.getMetadata()).of(4).put(4, ts);
+                try {
+                    w.appendBatch(batch);
+                    Assert.fail();
+                } catch (JournalException ignore) {
+                    // expected
+                }
+                w.commit();
+                Assert.assertEquals(2, w.size());
+            } finally {
+                Unsafe.free(ts, 4 * 8);
+            }
+        }
+    }
+
+    private static JournalStructure structure(String name) {
+        return new JournalStructure(name)
+                .$sym("sym").index().buckets(10)
+                .$int("qty").index().buckets(100)
+                .$double("px")
+                .$str("note").index()
+                .$ts()
+                .partitionBy(PartitionBy.DAY);
+    }
+
+    private void assertSameResult(String expectedQuery, String query) throws Exception {
+        String expected;
+        try (RecordSource rs = compile(expectedQuery)) {
+            sink.clear();
+            printer.print(rs.prepareCursor(factory), true, rs.getMetadata());
+            expected = sink.toString();
+        }
+
+        try (RecordSource rs = compile(query)) {
+            sink.clear();
+            printer.print(rs.prepareCursor(factory), true, rs.getMetadata());
+            TestUtils.assertEquals(expected, sink);
+        }
+    }
+}
@@ -115,6 +115,62 @@ public class DelimitedTextParserTest extends AbstractTest {
         assertThat(expected, "select StrSym, IntSym, IntCol, DoubleCol, IsoDate from 'test-import-nan.csv' where DoubleCol = NaN");
     }
 
+    @Test
+    public void testImportPipelined() throws Exception {
+        String file = this.getClass().getResource("/csv/test-import.csv").getFile();
+        ImportManager.importFile(factory, file, TextFileDelimiter.CSV, null, 100, 2);
+
+        File actual = new File(factory.getConfiguration().getJournalBase(), "exp.csv");
+        File expected = new File(this.getClass().getResource("/csv/test-export-expected.csv").getFile());
+
+        try (RecordSource rs = compile("'test-import.csv'")) {
+            ExportManager.export(rs, factory, actual, TextFileDelimiter.CSV);
+            TestUtils.assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    public void testImportPipelinedChunks() throws Exception {
+        // over 1MB of text with quoted separators, newlines and values that fail conversion
+        StringBuilder b = new StringBuilder();
+        b.append("Sym,Qty,Note,Px,Ts\n");
+        for (int i = 0; i < 60000; i++) {
+            b.append("CMP").append(i % 7).append(',');
+            b.append(i % 997 == 500 ? "x" : Integer.toString(i)).append(',');
+            b.append("\"note ").append(i).append(", with \"\"quotes\"\"").append(i % 13 == 0 ? "\nand newline" : "").append("\",");
+            b.append(i * 0.25).append(',');
+            b.append("2015-01-05T19:15:09.000Z\n");
+        }
+        b.append("CMP0,1,\"last line without newline\",0.5,2015-01-05T19:15:09.000Z");
+
+        File dir = com.questdb.misc.Files.makeTempDir();
+        try {
+            File seq = new File(dir, "seq.csv");
+            File pip = new File(dir, "pip.csv");
+            com.questdb.misc.Files.writeStringToFile(seq, b.toString());
+            com.questdb.misc.Files.writeStringToFile(pip, b.toString());
+
+            ImportManager.importFile(factory, seq.getAbsolutePath(), TextFileDelimiter.CSV, null, 100, 0);
+            ImportManager.importFile(factory, pip.getAbsolutePath(), TextFileDelimiter.CSV, null, 100, 3);
+
+            try (Journal r = factory.reader("pip.csv")) {
+                Assert.assertEquals(60001 - 60, r.size());
+            }
+
+            File expected = new File(factory.getConfiguration().getJournalBase(), "seq-exp.csv");
+            File actual = new File(factory.getConfiguration().getJournalBase(), "pip-exp.csv");
+            try (RecordSource rs = compile("'seq.csv'")) {
+                ExportManager.export(rs, factory, expected, TextFileDelimiter.CSV);
+            }
+            try (RecordSource rs = compile("'pip.csv'")) {
+                ExportManager.export(rs, factory, actual, TextFileDelimiter.CSV);
+            }
+            TestUtils.assertEquals(expected, actual);
+        } finally {
+            com.questdb.misc.Files.delete(dir);
+        }
+    }
+
     @Test
     public void testImportSchema() throws Exception {
         String file = this.getClass().getResource("/csv/test-import.csv").getFile();
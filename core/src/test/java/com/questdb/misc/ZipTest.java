@@ -26,6 +26,7 @@ package com.questdb.misc;
 import com.questdb.ex.FatalError;
 import com.questdb.std.Path;
 import com.questdb.test.tools.TestUtils;
+import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -136,4 +137,54 @@ public class ZipTest {
 
         TestUtils.assertEquals(expected, actual);
     }
+
+    @Test
+    public void testLz4() throws Exception {
+        final int len = 1024 * 1024;
+        final int cap = Zip.lz4MaxCompressedLength(len);
+        long src = Unsafe.malloc(len);
+        long compressed = Unsafe.malloc(cap);
+        long dst = Unsafe.malloc(len);
+        try {
+            // symbol keys are typical column data that compresses well
+            for (int i = 0; i < len / 4; i++) {
+                Unsafe.getUnsafe().putInt(src + i * 4, (i / 16) % 8);
+            }
+            int n = Zip.lz4Compress(src, len, compressed, cap);
+            Assert.assertTrue(n > 0 && n < len / 4);
+            Assert.assertEquals(len, Zip.lz4Decompress(compressed, n, dst, len));
+            assertMemEquals(src, dst, len);
+
+            Rnd rnd = new Rnd();
+            for (int i = 0; i < len / 8; i++) {
+                Unsafe.getUnsafe().putLong(src + i * 8, rnd.nextLong());
+            }
+            // random data does not fit less space than it takes
+            Assert.assertEquals(0, Zip.lz4Compress(src, len, compressed, len - 1));
+            n = Zip.lz4Compress(src, len, compressed, cap);
+            Assert.assertTrue(n > len);
+            Assert.assertEquals(len, Zip.lz4Decompress(compressed, n, dst, len));
+            assertMemEquals(src, dst, len);
+
+            // output that does not fit and truncated input are errors
+            Assert.assertEquals(-1, Zip.lz4Decompress(compressed, n, dst, len - 1));
+            Assert.assertEquals(-1, Zip.lz4Decompress(compressed, n - 1, dst, len));
+        } finally {
+            Unsafe.free(src, len);
+            Unsafe.free(compressed, cap);
+            Unsafe.free(dst, len);
+        }
+    }
+
+    private static void assertMemEquals(long a, long b, int len) {
+        for (int i = 0; i < len; i++) {
+            if (Unsafe.getUnsafe().getByte(a + i) != Unsafe.getUnsafe().getByte(b + i)) {
+                Assert.fail("Mismatch at " + i);
+            }
+        }
+    }
+
+    static {
+        Os.init();
+    }
 }
\ No newline at end of file
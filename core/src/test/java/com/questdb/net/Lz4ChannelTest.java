@@ -0,0 +1,122 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.net;
+
+import com.questdb.misc.ByteBuffers;
+import com.questdb.misc.Os;
+import com.questdb.misc.Rnd;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+public class Lz4ChannelTest {
+
+    @Rule
+    public final TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        final int blockSize = 64 * 1024;
+        final int len = 1024 * 1024;
+        ByteBuffer src = ByteBuffer.allocateDirect(len);
+        ByteBuffer dst = ByteBuffer.allocateDirect(len);
+        File file = temp.newFile();
+
+        try {
+            Rnd rnd = new Rnd();
+            // first half is repetitive, second half is random
+            for (int i = 0; i < len / 2; i += 8) {
+                src.putLong(i, i / 64);
+            }
+            for (int i = len / 2; i < len; i += 8) {
+                src.putLong(i, rnd.nextLong());
+            }
+
+            // mix of small writes, which are not compressed, and large ones
+            int sizes[] = {8, 4, 100000, 3, 300000, 60, len};
+            long writeEnds[] = new long[sizes.length];
+            int total = 0;
+            try (
+                    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+                    FileChannel out = raf.getChannel();
+                    Lz4WritableChannel<FileChannel> lz4 = new Lz4WritableChannel<>(blockSize)
+            ) {
+                lz4.of(out);
+                for (int i = 0; i < sizes.length; i++) {
+                    int sz = Math.min(sizes[i], len - total);
+                    src.limit(total + sz).position(total);
+                    Assert.assertEquals(sz, lz4.write(src));
+                    total += sz;
+                    writeEnds[i] = out.position();
+                }
+                Assert.assertEquals(len, total);
+                Assert.assertEquals(len, lz4.getRawCount());
+                Assert.assertEquals(out.size(), lz4.getCompressedCount());
+                Assert.assertTrue(out.size() < len * 3 / 4);
+            }
+
+            try (
+                    RandomAccessFile raf = new RandomAccessFile(file, "r");
+                    FileChannel in = raf.getChannel();
+                    Lz4ReadableChannel<FileChannel> lz4 = new Lz4ReadableChannel<>(blockSize)
+            ) {
+                lz4.of(in);
+                int p = 0;
+                for (int i = 0; i < sizes.length; i++) {
+                    int sz = Math.min(sizes[i], len - p);
+                    // read each write back in odd sized pieces
+                    while (sz > 0) {
+                        int n = Math.min(sz, 7777);
+                        dst.limit(p + n).position(p);
+                        ByteBuffers.copy(lz4, dst);
+                        p += n;
+                        sz -= n;
+                    }
+                    // nothing is read ahead of what was asked for
+                    Assert.assertEquals(writeEnds[i], in.position());
+                }
+                dst.clear();
+                Assert.assertEquals(-1, lz4.read(dst));
+            }
+
+            src.clear();
+            dst.clear();
+            Assert.assertEquals(src, dst);
+        } finally {
+            ByteBuffers.release(src);
+            ByteBuffers.release(dst);
+        }
+    }
+
+    static {
+        Os.init();
+    }
+}
@@ -27,12 +27,16 @@ import com.questdb.JournalMode;
 import com.questdb.ex.JournalException;
 import com.questdb.net.ha.comsumer.FixedColumnDeltaConsumer;
 import com.questdb.net.ha.producer.FixedColumnDeltaProducer;
+import com.questdb.store.AbstractColumn;
 import com.questdb.store.FixedColumn;
+import com.questdb.store.MappedFileCache;
 import com.questdb.store.MemoryFile;
 import org.junit.*;
 import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 
 public class FixedColumnTest {
 
@@ -244,4 +248,110 @@ public class FixedColumnTest {
         Assert.assertFalse(producer.hasContent());
         Assert.assertEquals(col1.size(), col2.size());
     }
+
+    @Test
+    public void testZeroCopy() throws Exception {
+        FixedColumn col1 = new FixedColumn(file, 4);
+        FixedColumn col2 = new FixedColumn(file2, 4);
+
+        FixedColumnDeltaProducer producer = new FixedColumnDeltaProducer(col1);
+        ChannelConsumer consumer = new FixedColumnDeltaConsumer(col2);
+        ZeroCopyMockChannel zc = new ZeroCopyMockChannel(channel);
+
+        int max = 1500000;
+
+        for (int i = 0; i < max; i++) {
+            col1.putInt(max - i);
+            col1.commit();
+        }
+
+        for (int i = 0; i < max - 500000; i++) {
+            col2.putInt(max - i);
+            col2.commit();
+        }
+
+        producer.configure(col2.size(), col1.size());
+        Assert.assertTrue(producer.hasContent());
+        producer.write(zc);
+        consumer.read(channel);
+        col2.commit();
+
+        Assert.assertTrue(zc.transferCount > 0);
+        Assert.assertEquals(col1.size(), col2.size());
+
+        for (int i = 0; i < max; i++) {
+            Assert.assertEquals(max - i, col2.getInt(i));
+        }
+    }
+
+    @Test
+    public void testZeroCopySharesFileChannel() throws Exception {
+        FixedColumn col1 = new FixedColumn(file, 4);
+        FixedColumn col2 = new FixedColumn(file2, 4);
+        int max = 100000;
+        for (int i = 0; i < max; i++) {
+            col1.putInt(max - i);
+            col1.commit();
+        }
+
+        MappedFileCache cache = MappedFileCache.INSTANCE;
+        int channels = cache.getChannelCount();
+        File f = new File(temporaryFolder.getRoot(), "col.d");
+        try (MemoryFile r1 = new MemoryFile(f, 22, JournalMode.READ); MemoryFile r2 = new MemoryFile(f, 22, JournalMode.READ)) {
+            FixedColumn reader1 = new FixedColumn(r1, 4);
+            FixedColumn reader2 = new FixedColumn(r2, 4);
+
+            FixedColumnDeltaProducer producer = new FixedColumnDeltaProducer(reader1);
+            producer.configure(0, reader1.size());
+            producer.write(new ZeroCopyMockChannel(channel));
+            new FixedColumnDeltaConsumer(col2).read(channel);
+            col2.commit();
+            Assert.assertEquals(max, col2.size());
+            for (int i = 0; i < max; i++) {
+                Assert.assertEquals(max - i, col2.getInt(i));
+            }
+
+            MockByteChannel c = new MockByteChannel();
+            Assert.assertEquals(400, reader2.transferTo(0, 400, c));
+            Assert.assertEquals(400, c.size());
+
+            // readers of the same file send from one channel
+            Assert.assertEquals(channels + 1, cache.getChannelCount());
+        }
+        Assert.assertEquals(channels, cache.getChannelCount());
+    }
+
+    private static class ZeroCopyMockChannel implements ZeroCopyChannel {
+        private final MockByteChannel delegate;
+        private int transferCount = 0;
+
+        public ZeroCopyMockChannel(MockByteChannel delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean isZeroCopy() {
+            return true;
+        }
+
+        @Override
+        public long transfer(AbstractColumn column, long offset, long count) throws IOException {
+            transferCount++;
+            return column.transferTo(offset, count, delegate);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            return delegate.write(src);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
 }
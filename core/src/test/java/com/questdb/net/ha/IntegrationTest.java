@@ -85,6 +85,16 @@ public class IntegrationTest extends AbstractTest {
         server.halt();
     }
 
+    @Test
+    public void testCompressedSync() throws Exception {
+        assertCompressedSync(true);
+    }
+
+    @Test
+    public void testCompressionRefused() throws Exception {
+        assertCompressedSync(false);
+    }
+
     /**
      * Create two journal that are in sync.
      * Disconnect synchronisation and advance client by two transaction and server by one
@@ -427,4 +437,45 @@ public class IntegrationTest extends AbstractTest {
         server.halt();
     }
 
+    private void assertCompressedSync(final boolean serverCompression) throws Exception {
+        int size = 100000;
+        server = new JournalServer(new ServerConfig() {{
+            setHeartbeatFrequency(TimeUnit.MILLISECONDS.toMillis(100));
+            setEnableMultiCast(false);
+            setEnableCompression(serverCompression);
+        }}, factory);
+        client = new JournalClient(new ClientConfig("localhost") {{
+            setEnableCompression(true);
+        }}, factory);
+
+        JournalWriter<Quote> remote = factory.writer(Quote.class, "remote", 2 * size);
+        server.publish(remote);
+        server.start();
+
+        final AtomicInteger counter = new AtomicInteger();
+        client.subscribe(Quote.class, "remote", "local", 2 * size, new TxListener() {
+            @Override
+            public void onCommit() {
+                counter.incrementAndGet();
+            }
+
+            @Override
+            public void onError() {
+
+            }
+        });
+        client.start();
+
+        TestUtils.generateQuoteData(remote, size);
+        TestUtils.assertCounter(counter, 1, 5, TimeUnit.SECONDS);
+
+        TestUtils.generateQuoteData(remote, size, remote.getMaxTimestamp());
+        remote.commit();
+        TestUtils.assertCounter(counter, 2, 5, TimeUnit.SECONDS);
+
+        client.halt();
+        server.halt();
+        Journal<Quote> local = factory.reader(Quote.class, "local");
+        TestUtils.assertDataEquals(remote, local);
+    }
 }
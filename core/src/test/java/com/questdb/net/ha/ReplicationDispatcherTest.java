@@ -0,0 +1,102 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.net.ha;
+
+import com.questdb.Journal;
+import com.questdb.JournalWriter;
+import com.questdb.model.Quote;
+import com.questdb.net.ha.config.ClientConfig;
+import com.questdb.net.ha.config.ServerConfig;
+import com.questdb.store.TxListener;
+import com.questdb.test.tools.AbstractTest;
+import com.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ReplicationDispatcherTest extends AbstractTest {
+
+    private static final int CLIENT_COUNT = 5;
+
+    @Test
+    public void testManyClients() throws Exception {
+        JournalServer server = new JournalServer(new ServerConfig() {{
+            setHeartbeatFrequency(TimeUnit.MILLISECONDS.toMillis(100));
+            setEnableMultiCast(false);
+            setWorkerCount(2);
+        }}, factory);
+
+        JournalWriter<Quote> remote = factory.writer(Quote.class, "remote");
+        server.publish(remote);
+        server.start();
+
+        JournalClient clients[] = new JournalClient[CLIENT_COUNT];
+        final AtomicInteger counter = new AtomicInteger();
+        try {
+            for (int i = 0; i < CLIENT_COUNT; i++) {
+                clients[i] = new JournalClient(new ClientConfig("localhost"), factory);
+                clients[i].subscribe(Quote.class, "remote", "local" + i, new TxListener() {
+                    @Override
+                    public void onCommit() {
+                        counter.incrementAndGet();
+                    }
+
+                    @Override
+                    public void onError() {
+                    }
+                });
+                clients[i].start();
+            }
+
+            TestUtils.generateQuoteData(remote, 50000);
+            TestUtils.assertCounter(counter, CLIENT_COUNT, 5, TimeUnit.SECONDS);
+            Assert.assertEquals(CLIENT_COUNT, server.getConnectedClients());
+
+            for (int i = 2; i < 4; i++) {
+                TestUtils.generateQuoteData(remote, 50000, remote.getMaxTimestamp());
+                remote.commit();
+                TestUtils.assertCounter(counter, CLIENT_COUNT * i, 5, TimeUnit.SECONDS);
+            }
+
+            for (int i = 0; i < CLIENT_COUNT; i++) {
+                try (Journal<Quote> local = factory.reader(Quote.class, "local" + i)) {
+                    TestUtils.assertDataEquals(remote, local);
+                }
+            }
+        } finally {
+            server.halt();
+            for (int i = 0; i < CLIENT_COUNT; i++) {
+                if (clients[i] != null) {
+                    clients[i].halt();
+                }
+            }
+        }
+
+        Assert.assertEquals(0, server.getConnectedClients());
+        Assert.assertFalse(server.isRunning());
+    }
+}
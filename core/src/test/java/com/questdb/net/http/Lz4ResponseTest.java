@@ -0,0 +1,234 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.net.http;
+
+import com.questdb.JournalEntryWriter;
+import com.questdb.JournalWriter;
+import com.questdb.ex.ResponseContentBufferTooSmallException;
+import com.questdb.factory.JournalFactoryPool;
+import com.questdb.factory.configuration.JournalStructure;
+import com.questdb.misc.Misc;
+import com.questdb.misc.Numbers;
+import com.questdb.misc.Unsafe;
+import com.questdb.misc.Zip;
+import com.questdb.net.http.handlers.CsvHandler;
+import com.questdb.ql.parser.AbstractOptimiserTest;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+
+public class Lz4ResponseTest extends AbstractOptimiserTest {
+
+    @Test
+    public void testChunkedResponse() throws Exception {
+        final int count = 2000;
+        ServerConfiguration configuration = new ServerConfiguration();
+        configuration.setHttpBufRespContent(1024);
+        HttpServer server = new HttpServer(configuration, new SimpleUrlMatcher() {{
+            put("/test", new ContextHandler() {
+                private int counter = -1;
+
+                @Override
+                public void handle(IOContext context) throws IOException {
+                    ChunkedResponse r = context.chunkedResponse();
+                    r.setLz4Compressed(true);
+                    r.status(200, "text/plain; charset=utf-8");
+                    r.sendHeader();
+                    counter = -1;
+                    resume(context);
+                }
+
+                @Override
+                public void resume(IOContext context) throws IOException {
+                    ChunkedResponse r = context.chunkedResponse();
+                    for (int i = counter + 1; i < count; ) {
+                        r.bookmark();
+                        try {
+                            for (int k = 0; k < 10; k++) {
+                                Numbers.append(r, i);
+                            }
+                            r.put(Misc.EOL);
+                            counter = i++;
+                        } catch (ResponseContentBufferTooSmallException ignore) {
+                            r.resetToBookmark();
+                            r.sendChunk();
+                        }
+                    }
+                    r.done();
+                }
+
+                @Override
+                public void setupThread() {
+                }
+            });
+        }});
+
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            for (int k = 0; k < 10; k++) {
+                expected.append(i);
+            }
+            expected.append(Misc.EOL);
+        }
+
+        server.start();
+        try {
+            StringBuilder headers = new StringBuilder();
+            Assert.assertEquals(expected.toString(), new String(get("/test", false, headers), "UTF-8"));
+            Assert.assertTrue(headers.toString().contains("Content-Encoding: lz4"));
+        } finally {
+            server.halt();
+        }
+    }
+
+    @Test
+    public void testCsvExport() throws Exception {
+        try (JournalWriter w = factory.writer(new JournalStructure("lz4tab")
+                .$int("id")
+                .$sym("ccy")
+                .$ts()
+                .$())) {
+            String ccy[] = {"USD", "EUR", "GBP", "JPY"};
+            for (int i = 0; i < 10000; i++) {
+                JournalEntryWriter ew = w.entryWriter(i * 1000L);
+                ew.putInt(0, i);
+                ew.putSym(1, ccy[i % ccy.length]);
+                ew.append();
+            }
+            w.commit();
+        }
+
+        final JournalFactoryPool factoryPool = new JournalFactoryPool(factory.getConfiguration(), 1);
+        HttpServer server = new HttpServer(new ServerConfiguration(), new SimpleUrlMatcher() {{
+            put("/csv", new CsvHandler(factoryPool, new ServerConfiguration()));
+        }});
+
+        server.start();
+        try {
+            StringBuilder plainHeaders = new StringBuilder();
+            byte[] plain = get("/csv?query=lz4tab", false, plainHeaders);
+            Assert.assertFalse(plainHeaders.toString().contains("Content-Encoding"));
+
+            StringBuilder headers = new StringBuilder();
+            byte[] decoded = get("/csv?query=lz4tab", true, headers);
+            Assert.assertTrue(headers.toString().contains("Content-Encoding: lz4"));
+            Assert.assertEquals(new String(plain, "UTF-8"), new String(decoded, "UTF-8"));
+            Assert.assertTrue(plain.length > 10000);
+        } finally {
+            server.halt();
+            factoryPool.close();
+        }
+    }
+
+    private static byte[] decodeFrame(byte[] frame) {
+        Assert.assertTrue(frame.length >= Zip.LZ4_FRAME_HEADER_LEN + Zip.LZ4_FRAME_END_MARK_LEN);
+        Assert.assertEquals(0x184D2204, getInt(frame, 0));
+        int maxBlockSize = 1 << (8 + 2 * ((frame[5] >> 4) & 7));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long src = Unsafe.malloc(frame.length);
+        long dst = Unsafe.malloc(maxBlockSize);
+        try {
+            for (int i = 0; i < frame.length; i++) {
+                Unsafe.getUnsafe().putByte(src + i, frame[i]);
+            }
+
+            int p = Zip.LZ4_FRAME_HEADER_LEN;
+            int size;
+            while ((size = getInt(frame, p)) != 0) {
+                p += 4;
+                if ((size & Zip.LZ4_UNCOMPRESSED_BLOCK) != 0) {
+                    size &= ~Zip.LZ4_UNCOMPRESSED_BLOCK;
+                    out.write(frame, p, size);
+                } else {
+                    int n = Zip.lz4Decompress(src + p, size, dst, maxBlockSize);
+                    Assert.assertTrue(n > 0);
+                    for (int i = 0; i < n; i++) {
+                        out.write(Unsafe.getUnsafe().getByte(dst + i));
+                    }
+                }
+                p += size;
+            }
+            Assert.assertEquals(frame.length, p + Zip.LZ4_FRAME_END_MARK_LEN);
+        } finally {
+            Unsafe.free(src, frame.length);
+            Unsafe.free(dst, maxBlockSize);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] get(String url, boolean acceptLz4, StringBuilder headers) throws IOException {
+        try (Socket socket = new Socket("127.0.0.1", 9000)) {
+            OutputStream os = socket.getOutputStream();
+            os.write(("GET " + url + " HTTP/1.1\r\n" +
+                    "Host: localhost:9000\r\n" +
+                    (acceptLz4 ? "Accept-Encoding: gzip, lz4\r\n" : "") +
+                    "\r\n").getBytes("UTF-8"));
+            os.flush();
+
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            String line;
+            while ((line = readLine(in)).length() > 0) {
+                headers.append(line).append('\n');
+            }
+
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            int len;
+            while ((len = Integer.parseInt(readLine(in), 16)) > 0) {
+                byte[] chunk = new byte[len];
+                in.readFully(chunk);
+                body.write(chunk);
+                Assert.assertEquals("", readLine(in));
+            }
+
+            String h = headers.toString();
+            return h.contains("Content-Encoding: lz4") ? decodeFrame(body.toByteArray()) : body.toByteArray();
+        }
+    }
+
+    private static int getInt(byte[] b, int p) {
+        return (b[p] & 0xff) | (b[p + 1] & 0xff) << 8 | (b[p + 2] & 0xff) << 16 | (b[p + 3] & 0xff) << 24;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder b = new StringBuilder();
+        int c;
+        while ((c = in.read()) != '\n') {
+            if (c < 0) {
+                throw new IOException("Unexpected end of stream");
+            }
+            if (c != '\r') {
+                b.append((char) c);
+            }
+        }
+        return b.toString();
+    }
+}
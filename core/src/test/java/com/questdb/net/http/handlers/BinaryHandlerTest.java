@@ -0,0 +1,346 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.net.http.handlers;
+
+import com.questdb.JournalEntryWriter;
+import com.questdb.JournalWriter;
+import com.questdb.factory.JournalFactoryPool;
+import com.questdb.factory.configuration.JournalStructure;
+import com.questdb.iter.clock.MilliClock;
+import com.questdb.misc.Dates;
+import com.questdb.misc.Rnd;
+import com.questdb.net.http.IOContext;
+import com.questdb.net.http.ServerConfiguration;
+import com.questdb.ql.Record;
+import com.questdb.ql.RecordSource;
+import com.questdb.ql.parser.AbstractOptimiserTest;
+import com.questdb.std.DirectInputStream;
+import com.questdb.store.ColumnType;
+import com.questdb.test.tools.TestChannel;
+import com.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+
+public class BinaryHandlerTest extends AbstractOptimiserTest {
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        try (JournalWriter w = factory.writer(new JournalStructure("bin_wire")
+                .$sym("id")
+                .$str("s")
+                .$double("d")
+                .$float("f")
+                .$int("i")
+                .$long("l")
+                .$short("sh")
+                .$byte("b")
+                .$bool("bo")
+                .$bin("bin")
+                .$ts()
+                .$())) {
+            Rnd rnd = new Rnd();
+            long t = Dates.parseDateTime("2015-03-12T00:00:00.000Z");
+            for (int i = 0; i < 500; i++) {
+                JournalEntryWriter ew = w.entryWriter(t + i * 10);
+                ew.putSym(0, i % 7 == 0 ? null : rnd.nextString(2));
+                ew.putStr(1, i % 5 == 0 ? null : rnd.nextString(rnd.nextPositiveInt() % 20));
+                ew.putDouble(2, rnd.nextDouble());
+                ew.putFloat(3, rnd.nextFloat());
+                if (i % 11 == 0) {
+                    ew.putNull(4);
+                } else {
+                    ew.putInt(4, rnd.nextInt());
+                }
+                ew.putLong(5, rnd.nextLong());
+                ew.putShort(6, (short) rnd.nextInt());
+                ew.put(7, (byte) rnd.nextInt());
+                ew.putBool(8, rnd.nextBoolean());
+                if (i % 3 == 0) {
+                    ew.putNull(9);
+                } else {
+                    ByteBuffer buf = ByteBuffer.allocate(rnd.nextPositiveInt() % 16);
+                    while (buf.hasRemaining()) {
+                        buf.put((byte) rnd.nextInt());
+                    }
+                    buf.flip();
+                    ew.putBin(9, buf);
+                }
+                ew.append();
+            }
+            w.commit();
+        }
+
+        try (JournalWriter w = factory.writer(new JournalStructure("bin_wide")
+                .$str("s")
+                .$())) {
+            Rnd rnd = new Rnd();
+            for (int i = 0; i < 200; i++) {
+                JournalEntryWriter ew = w.entryWriter();
+                ew.putStr(0, rnd.nextString(30 + rnd.nextPositiveInt() % 91));
+                ew.append();
+            }
+            w.commit();
+        }
+    }
+
+    @Test
+    public void testLimit() throws Exception {
+        assertResponse("bin_wire where i > 0", "&limit=10%2C40", 10, 40, 512);
+    }
+
+    @Test
+    public void testRowsLargerThanHalfOfBuffer() throws Exception {
+        // rows take up to 244 bytes of 256 byte buffer
+        assertResponse("bin_wide", "", 0, Long.MAX_VALUE, 256);
+    }
+
+    @Test
+    public void testPagesMatchRecords() throws Exception {
+        for (int size : new int[]{256, 1000, 4096, 1024 * 1024}) {
+            assertResponse("bin_wire", "", 0, Long.MAX_VALUE, size);
+        }
+    }
+
+    private static void assertResponse(String query, String urlParams, long skip, long stop, int bufferSize) throws Exception {
+        StringBuilder expected = new StringBuilder();
+        try (RecordSource rs = compiler.compile(factory, query)) {
+            long n = 0;
+            for (Record r : rs.prepareCursor(factory)) {
+                n++;
+                if (n > skip && n <= stop) {
+                    for (int i = 0, k = rs.getMetadata().getColumnCount(); i < k; i++) {
+                        if (i > 0) {
+                            expected.append(',');
+                        }
+                        render(expected, rs.getMetadata().getColumnQuick(i).getType(), r, i);
+                    }
+                    expected.append('\n');
+                }
+            }
+        }
+
+        BinaryHandler handler = new BinaryHandler(new JournalFactoryPool(factory.getConfiguration(), 1), new ServerConfiguration());
+        handler.setupThread();
+        TestChannel channel = new TestChannel("GET /bin?query=" + URLEncoder.encode(query, "UTF-8").replace("+", "%20") + urlParams + " HTTP/1.1\r\n" +
+                "Host: localhost:9000\r\n" +
+                "\r\n");
+        try {
+            ServerConfiguration configuration = new ServerConfiguration();
+            configuration.setHttpBufRespContent(bufferSize);
+            try (IOContext context = new IOContext(channel, configuration, MilliClock.INSTANCE)) {
+                context.request.read();
+                handler.handle(context);
+                Decoder decoder = new Decoder(channel.getOutput());
+                TestUtils.assertEquals(expected, decoder.decode());
+                if (bufferSize < 4096) {
+                    Assert.assertTrue(decoder.pages > 1);
+                }
+            }
+        } finally {
+            channel.free();
+        }
+    }
+
+    private static void render(StringBuilder sink, int type, Record r, int col) throws IOException {
+        switch (type) {
+            case ColumnType.BOOLEAN:
+                sink.append(r.getBool(col));
+                break;
+            case ColumnType.BYTE:
+                sink.append(r.get(col));
+                break;
+            case ColumnType.DOUBLE:
+                sink.append(r.getDouble(col));
+                break;
+            case ColumnType.FLOAT:
+                sink.append(r.getFloat(col));
+                break;
+            case ColumnType.INT:
+                sink.append(r.getInt(col));
+                break;
+            case ColumnType.LONG:
+                sink.append(r.getLong(col));
+                break;
+            case ColumnType.DATE:
+                sink.append(r.getDate(col));
+                break;
+            case ColumnType.SHORT:
+                sink.append(r.getShort(col));
+                break;
+            case ColumnType.STRING:
+                sink.append(r.getFlyweightStr(col));
+                break;
+            case ColumnType.SYMBOL:
+                sink.append(r.getSym(col));
+                break;
+            case ColumnType.BINARY:
+                DirectInputStream in = r.getBin(col);
+                if (in == null) {
+                    sink.append("null");
+                } else {
+                    int b;
+                    sink.append('[');
+                    while ((b = in.read()) != -1) {
+                        sink.append((byte) b).append(' ');
+                    }
+                    sink.append(']');
+                }
+                break;
+            default:
+                Assert.fail("Unexpected type: " + type);
+        }
+    }
+
+    private static class Decoder {
+        private final CharSequence in;
+        private int pos = 0;
+        private int pages = 0;
+
+        private Decoder(CharSequence in) {
+            this.in = in;
+        }
+
+        private int b() {
+            return in.charAt(pos++) & 0xff;
+        }
+
+        private CharSequence decode() {
+            Assert.assertEquals(BinaryHandler.MAGIC, i());
+            int columnCount = i();
+            int[] types = new int[columnCount];
+            for (int c = 0; c < columnCount; c++) {
+                types[c] = i();
+                str();
+            }
+
+            StringBuilder[][] pageRows;
+            StringBuilder result = new StringBuilder();
+            int pageLen;
+            while ((pageLen = i()) > 0) {
+                int end = pos + pageLen;
+                int rows = i();
+                pageRows = new StringBuilder[rows][columnCount];
+                for (int c = 0; c < columnCount; c++) {
+                    String[] dict = null;
+                    if (types[c] == ColumnType.STRING || types[c] == ColumnType.BINARY) {
+                        i();
+                    } else if (types[c] == ColumnType.SYMBOL) {
+                        dict = new String[i()];
+                        for (int k = 0; k < dict.length; k++) {
+                            dict[k] = str();
+                        }
+                    }
+                    for (int r = 0; r < rows; r++) {
+                        StringBuilder sink = pageRows[r][c] = new StringBuilder();
+                        switch (types[c]) {
+                            case ColumnType.BOOLEAN:
+                                sink.append(b() == 1);
+                                break;
+                            case ColumnType.BYTE:
+                                sink.append((byte) b());
+                                break;
+                            case ColumnType.DOUBLE:
+                                sink.append(Double.longBitsToDouble(l()));
+                                break;
+                            case ColumnType.FLOAT:
+                                sink.append(Float.intBitsToFloat(i()));
+                                break;
+                            case ColumnType.INT:
+                                sink.append(i());
+                                break;
+                            case ColumnType.LONG:
+                            case ColumnType.DATE:
+                                sink.append(l());
+                                break;
+                            case ColumnType.SHORT:
+                                sink.append((short) (b() | (b() << 8)));
+                                break;
+                            case ColumnType.STRING:
+                                sink.append(str());
+                                break;
+                            case ColumnType.SYMBOL:
+                                int key = i();
+                                sink.append(key == -1 ? null : dict[key]);
+                                break;
+                            case ColumnType.BINARY:
+                                int len = i();
+                                if (len == -1) {
+                                    sink.append("null");
+                                } else {
+                                    sink.append('[');
+                                    for (int k = 0; k < len; k++) {
+                                        sink.append((byte) b()).append(' ');
+                                    }
+                                    sink.append(']');
+                                }
+                                break;
+                            default:
+                                Assert.fail("Unexpected type: " + types[c]);
+                        }
+                    }
+                }
+                Assert.assertEquals(end, pos);
+
+                for (int r = 0; r < rows; r++) {
+                    for (int c = 0; c < columnCount; c++) {
+                        if (c > 0) {
+                            result.append(',');
+                        }
+                        result.append(pageRows[r][c]);
+                    }
+                    result.append('\n');
+                }
+                pages++;
+            }
+            Assert.assertEquals(in.length(), pos);
+            return result;
+        }
+
+        private int i() {
+            return b() | (b() << 8) | (b() << 16) | (b() << 24);
+        }
+
+        private long l() {
+            return (i() & 0xffffffffL) | (((long) i()) << 32);
+        }
+
+        private String str() {
+            int len = i();
+            if (len == -1) {
+                return null;
+            }
+            char[] chars = new char[len];
+            for (int k = 0; k < len; k++) {
+                chars[k] = (char) (b() | (b() << 8));
+            }
+            return new String(chars);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.net.http.handlers;
+
+import com.questdb.net.http.HttpServer;
+import com.questdb.net.http.ServerConfiguration;
+import com.questdb.net.http.SimpleUrlMatcher;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Random;
+
+public class StaticContentHandlerTest {
+
+    @Rule
+    public final TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void testLargeFile() throws Exception {
+        final byte[] data = createFile("large.csv", 8 * 1024 * 1024);
+        HttpServer server = createServer();
+        server.start();
+        try {
+            StringBuilder headers = new StringBuilder();
+            // slow reader makes server park connection several times
+            byte[] body = get("GET /large.csv HTTP/1.1\r\n\r\n", headers, true);
+            Assert.assertTrue(headers.toString().startsWith("HTTP/1.1 200"));
+            Assert.assertTrue(headers.toString().contains("Content-Length: " + data.length));
+            Assert.assertArrayEquals(data, body);
+        } finally {
+            server.halt();
+        }
+    }
+
+    @Test
+    public void testRange() throws Exception {
+        final byte[] data = createFile("range.csv", 3 * 1024 * 1024 + 17);
+        HttpServer server = createServer();
+        server.start();
+        try {
+            StringBuilder headers = new StringBuilder();
+            byte[] body = get("GET /range.csv HTTP/1.1\r\nRange: bytes=1000-2000000\r\n\r\n", headers, false);
+            Assert.assertTrue(headers.toString().startsWith("HTTP/1.1 206"));
+            Assert.assertArrayEquals(Arrays.copyOfRange(data, 1000, 2000000), body);
+
+            headers.setLength(0);
+            body = get("GET /range.csv HTTP/1.1\r\nRange: bytes=3000000-\r\n\r\n", headers, false);
+            Assert.assertTrue(headers.toString().startsWith("HTTP/1.1 206"));
+            Assert.assertArrayEquals(Arrays.copyOfRange(data, 3000000, data.length), body);
+        } finally {
+            server.halt();
+        }
+    }
+
+    private static byte[] get(String request, StringBuilder headers, boolean slow) throws IOException, InterruptedException {
+        try (Socket socket = new Socket()) {
+            socket.setReceiveBufferSize(8192);
+            socket.connect(new InetSocketAddress("127.0.0.1", 9000));
+            OutputStream os = socket.getOutputStream();
+            os.write(request.getBytes("UTF-8"));
+            os.flush();
+
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            long len = -1;
+            String line;
+            while ((line = readLine(in)).length() > 0) {
+                headers.append(line).append('\n');
+                if (line.startsWith("Content-Length: ")) {
+                    len = Long.parseLong(line.substring("Content-Length: ".length()));
+                }
+            }
+            Assert.assertTrue(len > -1);
+
+            byte[] body = new byte[(int) len];
+            int p = 0;
+            while (p < body.length) {
+                int n = in.read(body, p, Math.min(body.length - p, 64 * 1024));
+                if (n < 0) {
+                    throw new EOFException();
+                }
+                p += n;
+                if (slow) {
+                    Thread.sleep(1);
+                }
+            }
+            return body;
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder b = new StringBuilder();
+        int c;
+        while ((c = in.read()) != '\n') {
+            if (c < 0) {
+                throw new IOException("Unexpected end of stream");
+            }
+            if (c != '\r') {
+                b.append((char) c);
+            }
+        }
+        return b.toString();
+    }
+
+    private byte[] createFile(String name, int size) throws IOException {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        try (FileOutputStream fos = new FileOutputStream(new File(temp.getRoot(), name))) {
+            fos.write(data);
+        }
+        return data;
+    }
+
+    private HttpServer createServer() throws Exception {
+        final ServerConfiguration configuration = new ServerConfiguration(new File(StaticContentHandlerTest.class.getResource("/site").getPath(), "conf/questdb.conf")) {
+            @Override
+            public File getHttpPublic() {
+                return temp.getRoot();
+            }
+        };
+        configuration.getSslConfig().setSecure(false);
+        return new HttpServer(configuration, new SimpleUrlMatcher() {{
+            setDefaultHandler(new StaticContentHandler(configuration));
+        }});
+    }
+}
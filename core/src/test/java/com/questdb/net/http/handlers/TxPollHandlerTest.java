@@ -0,0 +1,179 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.net.http.handlers;
+
+import com.questdb.JournalEntryWriter;
+import com.questdb.JournalWriter;
+import com.questdb.factory.JournalFactoryPool;
+import com.questdb.factory.configuration.JournalStructure;
+import com.questdb.misc.Dates;
+import com.questdb.net.http.HttpServer;
+import com.questdb.net.http.ServerConfiguration;
+import com.questdb.net.http.SimpleUrlMatcher;
+import com.questdb.store.TxEventBus;
+import com.questdb.test.tools.AbstractTest;
+import com.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public class TxPollHandlerTest extends AbstractTest {
+
+    @Test
+    public void testNoTxn() throws Exception {
+        try (JournalWriter w = factory.writer(structure("quotes"))) {
+            append(w, 0);
+            w.commit();
+
+            JournalFactoryPool pool = new JournalFactoryPool(factory.getConfiguration(), 1);
+            HttpServer server = createServer(pool);
+            try {
+                TestUtils.assertEquals("{\"journal\":\"quotes\",\"txn\":" + w.getTxn() + ",\"changed\":false}", poll("j=quotes"));
+                Assert.assertTrue(poll("j=trades").startsWith("Journal does not exist"));
+                Assert.assertTrue(poll("txn=0").startsWith("Journal name expected"));
+            } finally {
+                server.halt();
+                pool.close();
+            }
+        }
+    }
+
+    @Test
+    public void testParkedPollsDoNotBlockServer() throws Exception {
+        try (
+                JournalWriter quotes = factory.writer(structure("quotes"));
+                JournalWriter trades = factory.writer(structure("trades"))
+        ) {
+            append(quotes, 0);
+            quotes.commit();
+            final long txn = quotes.getTxn();
+
+            JournalFactoryPool pool = new JournalFactoryPool(factory.getConfiguration(), 1);
+            HttpServer server = createServer(pool);
+            try {
+                // more pollers than IO threads
+                final int n = 4;
+                final CountDownLatch latch = new CountDownLatch(n);
+                final AtomicReferenceArray<String> responses = new AtomicReferenceArray<>(n);
+                for (int i = 0; i < n; i++) {
+                    final int index = i;
+                    new Thread() {
+                        @Override
+                        public void run() {
+                            try {
+                                responses.set(index, poll("j=quotes&txn=" + txn + "&timeout=20000"));
+                            } catch (Exception e) {
+                                responses.set(index, e.getMessage());
+                            }
+                            latch.countDown();
+                        }
+                    }.start();
+                }
+
+                // let pollers park
+                Thread.sleep(500);
+
+                long t = System.currentTimeMillis();
+                TestUtils.assertEquals("{\"journal\":\"quotes\",\"txn\":" + txn + ",\"changed\":false}", poll("j=quotes"));
+                Assert.assertTrue(System.currentTimeMillis() - t < 5000);
+
+                // commit to other journal does not complete polls
+                append(trades, 0);
+                trades.commit();
+                Assert.assertFalse(latch.await(500, TimeUnit.MILLISECONDS));
+
+                append(quotes, 1);
+                quotes.commit();
+                Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+                for (int i = 0; i < n; i++) {
+                    TestUtils.assertEquals("{\"journal\":\"quotes\",\"txn\":" + quotes.getTxn() + ",\"changed\":true}", responses.get(i));
+                }
+            } finally {
+                server.halt();
+                pool.close();
+            }
+        }
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        try (JournalWriter w = factory.writer(structure("quotes"))) {
+            append(w, 0);
+            w.commit();
+
+            JournalFactoryPool pool = new JournalFactoryPool(factory.getConfiguration(), 1);
+            HttpServer server = createServer(pool);
+            try {
+                long t = System.currentTimeMillis();
+                TestUtils.assertEquals("{\"journal\":\"quotes\",\"txn\":" + w.getTxn() + ",\"changed\":false}", poll("j=quotes&txn=" + w.getTxn() + "&timeout=300"));
+                Assert.assertTrue(System.currentTimeMillis() - t >= 300);
+
+                // commit is already visible
+                TestUtils.assertEquals("{\"journal\":\"quotes\",\"txn\":" + w.getTxn() + ",\"changed\":true}", poll("j=quotes&txn=" + (w.getTxn() - 1)));
+            } finally {
+                server.halt();
+                pool.close();
+            }
+        }
+    }
+
+    private static void append(JournalWriter w, int i) throws Exception {
+        JournalEntryWriter ew = w.entryWriter(Dates.toMillis(2016, 5, 1, 0, 0) + i * 1000);
+        ew.putInt(0, i);
+        ew.append();
+    }
+
+    private static HttpServer createServer(final JournalFactoryPool pool) {
+        HttpServer server = new HttpServer(new ServerConfiguration(), new SimpleUrlMatcher() {{
+            put("/txn", new TxPollHandler(pool, TxEventBus.INSTANCE));
+        }});
+        server.start();
+        return server;
+    }
+
+    private static JournalStructure structure(String location) {
+        return new JournalStructure(location).$int("qty").$ts().$();
+    }
+
+    private static String poll(String params) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:9000/txn?" + params).openConnection();
+        try (InputStream is = connection.getResponseCode() < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[4096];
+            int l;
+            while ((l = is.read(buf)) > 0) {
+                out.write(buf, 0, l);
+            }
+            return out.toString("UTF-8");
+        }
+    }
+}
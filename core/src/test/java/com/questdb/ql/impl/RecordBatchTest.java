@@ -0,0 +1,166 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.ql.impl;
+
+import com.questdb.JournalEntryWriter;
+import com.questdb.JournalWriter;
+import com.questdb.PartitionBy;
+import com.questdb.factory.configuration.JournalStructure;
+import com.questdb.misc.Dates;
+import com.questdb.misc.Rnd;
+import com.questdb.misc.Unsafe;
+import com.questdb.ql.*;
+import com.questdb.ql.parser.AbstractOptimiserTest;
+import com.questdb.std.IntList;
+import com.questdb.std.LongList;
+import com.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class RecordBatchTest extends AbstractOptimiserTest {
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        try (JournalWriter w = factory.writer(new JournalStructure("batch")
+                .$sym("sym").index()
+                .$str("venue")
+                .$double("px")
+                .$int("qty")
+                .$long("l")
+                .$ts()
+                .partitionBy(PartitionBy.DAY)
+                // small pages make batches break on page boundaries
+                .recordCountHint(1000)
+                .$())) {
+
+            Rnd rnd = new Rnd();
+            String[] sym = {"AX", "XX", "BZ", "KK", "PP"};
+
+            long t = Dates.toMillis(2016, 5, 1, 10, 20);
+            for (int i = 0; i < 30000; i++) {
+                JournalEntryWriter ew = w.entryWriter(t += 10000);
+                ew.putSym(0, sym[rnd.nextPositiveInt() % sym.length]);
+                ew.putStr(1, rnd.nextString(4));
+                ew.putDouble(2, rnd.nextDouble());
+                ew.putInt(3, rnd.nextPositiveInt() % 1000);
+                ew.putLong(4, rnd.nextLong());
+                ew.append();
+            }
+            w.commit();
+        }
+    }
+
+    @Test
+    public void testAggregates() throws Exception {
+        assertSameAsRows("select count(), sum(px), min(px), max(px), sum(qty), sum(l) from batch", "(select px, qty, l from batch)");
+    }
+
+    @Test
+    public void testBatchesMatchRows() throws Exception {
+        assertBatchesMatchRows("batch");
+        assertBatchesMatchRows("batch where qty > 500");
+        assertBatchesMatchRows("(batch where px > 0.5) where qty < 300");
+        assertBatchesMatchRows("batch limit 3000, 21000");
+    }
+
+    @Test
+    public void testFilteredAggregates() throws Exception {
+        assertSameAsRows("select count(), sum(px), min(px), max(px), sum(qty), sum(l) from batch where qty > 500", "(select px, qty, l from batch) where qty > 500");
+        assertSameAsRows("select count(), sum(px), sum(qty) from (batch where qty > 500) where px < 0.3", "((select px, qty, l from batch) where qty > 500) where px < 0.3");
+    }
+
+    @Test
+    public void testIndexLookupFallsBackToRows() throws Exception {
+        try (RecordSource rs = compiler.compile(factory, "batch where sym = 'KK'")) {
+            Assert.assertNull(((BatchRecordSource) rs).prepareBatchCursor(factory, new IntList(), NoOpCancellationHandler.INSTANCE));
+        }
+        assertSameAsRows("select count(), sum(px) from batch where sym = 'KK'", "(select sym, px from batch) where sym = 'KK'");
+    }
+
+    @Test
+    public void testTopAggregates() throws Exception {
+        assertSameAsRows("select count(), sum(px), max(px), sum(qty) from (batch limit 3000, 21000)", "(select px, qty from batch limit 3000, 21000)");
+        assertSameAsRows("select count(), sum(px) from (batch where qty > 500 limit 17, 2500)", "((select px, qty from batch) where qty > 500 limit 17, 2500)");
+        assertSameAsRows("select count(), sum(px) from (batch limit 40000, 50000)", "(select px from batch limit 40000, 50000)");
+    }
+
+    private static void assertBatchesMatchRows(String query) throws Exception {
+        try (RecordSource rs = compiler.compile(factory, query)) {
+            int px = rs.getMetadata().getColumnIndex("px");
+            int qty = rs.getMetadata().getColumnIndex("qty");
+
+            LongList pxValues = new LongList();
+            IntList qtyValues = new IntList();
+            for (Record r : rs.prepareCursor(factory)) {
+                pxValues.add(Double.doubleToRawLongBits(r.getDouble(px)));
+                qtyValues.add(r.getInt(qty));
+            }
+            Assert.assertTrue(pxValues.size() > 0);
+
+            IntList columns = new IntList();
+            columns.add(px);
+            columns.add(qty);
+
+            RecordBatchCursor batches = ((BatchRecordSource) rs).prepareBatchCursor(factory, columns, NoOpCancellationHandler.INSTANCE);
+            Assert.assertNotNull(batches);
+
+            int count = 0;
+            int batchCount = 0;
+            while (batches.hasNext()) {
+                RecordBatch batch = batches.next();
+                batchCount++;
+                Assert.assertTrue(batch.size() > 0);
+                Assert.assertTrue(batch.size() <= RecordBatch.CAPACITY);
+                for (int i = 0, n = batch.size(); i < n; i++) {
+                    Assert.assertEquals(pxValues.getQuick(count), Unsafe.getUnsafe().getLong(batch.getAddress(px) + batch.getRow(i) * 8L));
+                    Assert.assertEquals(qtyValues.getQuick(count), Unsafe.getUnsafe().getInt(batch.getAddress(qty) + batch.getRow(i) * 4L));
+                    Assert.assertEquals(qtyValues.getQuick(count), batch.getRecord(i).getInt(qty));
+                    count++;
+                }
+            }
+            Assert.assertEquals(pxValues.size(), count);
+            Assert.assertTrue(batchCount > count / RecordBatch.CAPACITY);
+        }
+    }
+
+    private static void assertSameAsRows(String query, String rowSubquery) throws Exception {
+        // same aggregation over sub-query, which cannot produce batches, goes row by row
+        String rowQuery = query.substring(0, query.indexOf(" from ") + 6) + rowSubquery;
+
+        sink.clear();
+        try (RecordSource rs = compiler.compile(factory, rowQuery)) {
+            printer.print(rs, factory);
+        }
+        String expected = sink.toString();
+
+        try (RecordSource rs = compiler.compile(factory, query)) {
+            for (int i = 0; i < 2; i++) {
+                sink.clear();
+                printer.print(rs, factory);
+                TestUtils.assertEquals(expected, sink);
+            }
+        }
+    }
+}
@@ -24,6 +24,7 @@
 package com.questdb.ql.impl.analytic;
 
 import com.questdb.ex.ParserException;
+import com.questdb.ql.RecordSource;
 import com.questdb.ql.parser.QueryError;
 import com.questdb.test.tools.TestUtils;
 import org.junit.Assert;
@@ -710,7 +711,7 @@ public class PrevAnalyticFunctionTest extends AbstractAnalyticRecordSourceTest {
                 "    \"src\": {\n" +
                 "      \"op\": \"SelectedColumnsRecordSource\",\n" +
                 "      \"src\": {\n" +
-                "        \"op\": \"RBTreeSortedRecordSource\",\n" +
+                "        \"op\": \"RadixSortedRecordSource\",\n" +
                 "        \"byRowId\": true,\n" +
                 "        \"src\": {\n" +
                 "          \"op\": \"JournalRecordSource\",\n" +
@@ -731,7 +732,7 @@ public class PrevAnalyticFunctionTest extends AbstractAnalyticRecordSourceTest {
     @Test
     public void testImplicitOrderSimple() throws Exception {
         assertPlan2("{\n" +
-                "  \"op\": \"RBTreeSortedRecordSource\",\n" +
+                "  \"op\": \"RadixSortedRecordSource\",\n" +
                 "  \"byRowId\": false,\n" +
                 "  \"src\": {\n" +
                 "    \"op\": \"SelectedColumnsRecordSource\",\n" +
@@ -955,6 +956,36 @@ public class PrevAnalyticFunctionTest extends AbstractAnalyticRecordSourceTest {
                 "}", "select sym, prev(d) over() from abc");
     }
 
+    @Test
+    public void testPlanOrderedByTimestamp() throws Exception {
+        // journal is already in timestamp order, rows are not cached
+        assertPlan2("{\n" +
+                "  \"op\": \"SelectedColumnsRecordSource\",\n" +
+                "  \"src\": {\n" +
+                "    \"op\": \"AnalyticRecordSource\",\n" +
+                "    \"functions\": 1,\n" +
+                "    \"src\": {\n" +
+                "      \"op\": \"JournalRecordSource\",\n" +
+                "      \"psrc\": {\n" +
+                "        \"op\": \"JournalPartitionSource\",\n" +
+                "        \"journal\": \"abc\"\n" +
+                "      },\n" +
+                "      \"rsrc\": {\n" +
+                "        \"op\": \"AllRowSource\"\n" +
+                "      }\n" +
+                "    }\n" +
+                "  }\n" +
+                "}", "select sym, prev(d) over(partition by str order by timestamp) from abc");
+
+        final String expected;
+        try (RecordSource rs = compiler.compile(factory, "select str, d, prev(d) over (partition by str) from abc")) {
+            sink.clear();
+            printer.print(rs.prepareCursor(factory), true, rs.getMetadata());
+            expected = sink.toString();
+        }
+        assertThat(expected, "select str, d, prev(d) over (partition by str order by timestamp) from abc", true);
+    }
+
     @Test
     public void testPrevMixed() throws Exception {
         final String expected = "8920866532787660373\tBZ\t2016-05-01T10:21:00.000Z\t\tAX\n" +
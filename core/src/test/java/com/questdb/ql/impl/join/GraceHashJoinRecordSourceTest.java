@@ -0,0 +1,248 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl.join;
+
+import com.questdb.JournalEntryWriter;
+import com.questdb.JournalWriter;
+import com.questdb.factory.configuration.JournalStructure;
+import com.questdb.misc.Dates;
+import com.questdb.misc.Rnd;
+import com.questdb.misc.Unsafe;
+import com.questdb.net.http.ServerConfiguration;
+import com.questdb.ql.RecordCursor;
+import com.questdb.ql.RecordSource;
+import com.questdb.ql.impl.parallel.QueryWorkerPool;
+import com.questdb.ql.parser.AbstractOptimiserTest;
+import com.questdb.ql.parser.QueryCompiler;
+import com.questdb.test.tools.TestUtils;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.util.Arrays;
+
+public class GraceHashJoinRecordSourceTest extends AbstractOptimiserTest {
+
+    private static QueryWorkerPool pool;
+    private static QueryCompiler serial;
+    private static QueryCompiler parallel;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        try (JournalWriter w = factory.writer(new JournalStructure("trades")
+                .$sym("sym")
+                .$int("qty")
+                .$double("px")
+                .$str("note")
+                .$ts()
+                .$())) {
+            Rnd rnd = new Rnd();
+            String syms[] = {"ABC", "DEF", "GHI", "JKL", null};
+            long t = Dates.toMillis(2016, 5, 1, 0, 0);
+            for (int i = 0; i < 10000; i++) {
+                JournalEntryWriter ew = w.entryWriter(t + i * 1000);
+                ew.putSym(0, syms[rnd.nextPositiveInt() % syms.length]);
+                ew.putInt(1, rnd.nextPositiveInt() % 100);
+                ew.putDouble(2, rnd.nextDouble());
+                ew.putStr(3, i % 7 == 0 ? null : rnd.nextChars(rnd.nextPositiveInt() % 2 + 1));
+                ew.append();
+            }
+            w.commit();
+        }
+
+        try (JournalWriter w = factory.writer(new JournalStructure("names")
+                .$int("id")
+                .$str("name")
+                .$ts()
+                .$())) {
+            Rnd rnd = new Rnd();
+            long t = Dates.toMillis(2016, 5, 1, 0, 0);
+            for (int i = 0; i < 120; i++) {
+                JournalEntryWriter ew = w.entryWriter(t + i * 1000);
+                // two rows per id, ids above 59 do not match
+                ew.putInt(0, i % 60 + (i % 3 == 0 ? 100 : 0));
+                ew.putStr(1, i % 11 == 0 ? null : rnd.nextChars(rnd.nextPositiveInt() % 2 + 1));
+                ew.append();
+            }
+            w.commit();
+        }
+
+        ServerConfiguration configuration = new ServerConfiguration();
+        // trades are estimated at about 500Kb
+        configuration.setDbHashMemory(256 * 1024);
+        serial = new QueryCompiler(configuration);
+        pool = new QueryWorkerPool(3, 16);
+        pool.start();
+        parallel = new QueryCompiler(configuration, pool);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    public void testMatchesHashJoin() throws Exception {
+        assertSameAsHashJoin("names n join trades t on n.id = t.qty");
+        assertSameAsHashJoin("names n outer join trades t on n.id = t.qty");
+        assertSameAsHashJoin("names n join trades t on n.name = t.note");
+        assertSameAsHashJoin("names n join trades t on n.name = t.note and n.id = t.qty");
+        assertSameAsHashJoin("names n outer join (trades where px > 0.5) t on n.id = t.qty");
+        assertSameAsHashJoin("select n.name, t.sym, t.px from trades t join trades x on t.px = x.px join names n on n.id = t.qty");
+    }
+
+    @Test
+    public void testOrderBy() throws Exception {
+        // order by columns of master is not pushed down to master, join output is sorted instead
+        assertOrdered("select n.id, t.px from names n join trades t on n.id = t.qty order by id");
+        assertOrdered("select n.id, t.px from names n outer join trades t on n.id = t.qty order by id");
+        assertSameAsHashJoin("select n.id, t.px from names n join trades t on n.id = t.qty order by id");
+    }
+
+    @Test
+    public void testOrderedMasterRequired() throws Exception {
+        // as-of join and sampling need master rows in order of timestamp
+        assertPlanNotContains(parallel, "names n join trades t on n.id = t.qty asof join names x", "GraceHashJoinRecordSource");
+        assertPlanNotContains(parallel, "select n.id, count() from names n join trades t on n.id = t.qty sample by 1h", "GraceHashJoinRecordSource");
+        assertPlanNotContains(parallel, "(names n join trades t on n.id = t.qty) x asof join names y", "GraceHashJoinRecordSource");
+    }
+
+
+    @Test
+    public void testPlan() throws Exception {
+        assertPlanContains(parallel, "names n join trades t on n.id = t.qty", "GraceHashJoinRecordSource");
+        // slave small enough to be hashed in memory
+        assertPlanContains(parallel, "trades t join names n on n.id = t.qty", "\"op\":\"HashJoinRecordSource\"");
+    }
+
+    @Test
+    public void testSpillFilesRemoved() throws Exception {
+        long mem = Unsafe.getMemUsed();
+        File base = factory.getConfiguration().getJournalBase();
+        try (RecordSource rs = parallel.compile(factory, "trades x join trades t on x.px = t.px")) {
+            rs.prepareCursor(factory);
+            Assert.assertTrue(countSpills(base) > 0);
+
+            RecordCursor cursor = rs.prepareCursor(factory);
+            sink.clear();
+            printer.print(cursor, false, rs.getMetadata());
+            String expected = sink.toString();
+
+            // partitions are joined again from the start
+            sink.clear();
+            cursor.toTop();
+            printer.print(cursor, false, rs.getMetadata());
+            TestUtils.assertEquals(expected, sink);
+        }
+        Assert.assertEquals(0, countSpills(base));
+        Assert.assertEquals(mem, Unsafe.getMemUsed());
+    }
+
+    private static int countSpills(File dir) {
+        String names[] = dir.list(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith("join-");
+            }
+        });
+        return names == null ? 0 : names.length;
+    }
+
+    // rows of partitioned join are not in order of master
+    private static String sorted(CharSequence text) {
+        String lines[] = text.toString().split("\n");
+        Arrays.sort(lines);
+        StringBuilder b = new StringBuilder();
+        for (String l : lines) {
+            b.append(l).append('\n');
+        }
+        return b.toString();
+    }
+
+    private void assertOrdered(String query) throws Exception {
+        for (QueryCompiler c : new QueryCompiler[]{serial, parallel}) {
+            try (RecordSource rs = c.compile(factory, query)) {
+                sink.clear();
+                rs.toSink(sink);
+                Assert.assertTrue(sink.toString().contains("GraceHashJoinRecordSource"));
+
+                RecordCursor cursor = rs.prepareCursor(factory);
+                int count = 0;
+                int last = Integer.MIN_VALUE;
+                while (cursor.hasNext()) {
+                    int id = cursor.next().getInt(0);
+                    Assert.assertTrue(id >= last);
+                    last = id;
+                    count++;
+                }
+                Assert.assertTrue(count > 0);
+            }
+        }
+    }
+
+
+    private void assertPlanContains(QueryCompiler c, String query, String op) throws Exception {
+        try (RecordSource rs = c.compile(factory, query)) {
+            sink.clear();
+            rs.toSink(sink);
+            Assert.assertTrue(sink.toString(), sink.toString().contains(op));
+        }
+    }
+
+    private void assertPlanNotContains(QueryCompiler c, String query, String op) throws Exception {
+        try (RecordSource rs = c.compile(factory, query)) {
+            sink.clear();
+            rs.toSink(sink);
+            Assert.assertFalse(sink.toString(), sink.toString().contains(op));
+        }
+    }
+
+
+    private void assertSameAsHashJoin(String query) throws Exception {
+        final String expected;
+        try (RecordSource rs = compiler.compile(factory, query)) {
+            sink.clear();
+            printer.print(rs.prepareCursor(factory), true, rs.getMetadata());
+            expected = sorted(sink);
+        }
+
+        long mem = Unsafe.getMemUsed();
+        for (QueryCompiler c : new QueryCompiler[]{serial, parallel}) {
+            try (RecordSource rs = c.compile(factory, query)) {
+                sink.clear();
+                rs.toSink(sink);
+                Assert.assertTrue(sink.toString().contains("GraceHashJoinRecordSource"));
+
+                sink.clear();
+                printer.print(rs.prepareCursor(factory), true, rs.getMetadata());
+                TestUtils.assertEquals(expected, sorted(sink));
+            }
+            Assert.assertEquals(mem, Unsafe.getMemUsed());
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.ql.impl.parallel;
+
+import com.questdb.JournalEntryWriter;
+import com.questdb.JournalWriter;
+import com.questdb.PartitionBy;
+import com.questdb.factory.configuration.JournalStructure;
+import com.questdb.misc.Dates;
+import com.questdb.misc.Rnd;
+import com.questdb.net.http.ServerConfiguration;
+import com.questdb.ql.RecordSource;
+import com.questdb.ql.parser.AbstractOptimiserTest;
+import com.questdb.ql.parser.QueryCompiler;
+import com.questdb.test.tools.TestUtils;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class ParallelAggregationTest extends AbstractOptimiserTest {
+
+    private static QueryWorkerPool pool;
+    private static QueryCompiler parallelCompiler;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        try (JournalWriter w = factory.writer(new JournalStructure("trades")
+                .$sym("sym").index()
+                .$str("venue")
+                .$double("px")
+                .$int("qty")
+                .$long("l")
+                .$ts()
+                .partitionBy(PartitionBy.DAY)
+                .$())) {
+
+            Rnd rnd = new Rnd();
+            String[] sym = {"AX", "XX", "BZ", "KK", "PP", "UX", "LK"};
+            String[] venues = new String[40];
+            for (int i = 0; i < venues.length; i++) {
+                venues[i] = rnd.nextString(4);
+            }
+
+            long t = Dates.toMillis(2016, 5, 1, 10, 20);
+            for (int i = 0; i < 30000; i++) {
+                JournalEntryWriter ew = w.entryWriter(t += 10000);
+                ew.putSym(0, sym[rnd.nextPositiveInt() % sym.length]);
+                // some venues appear late in journal to create groups that are new to merge
+                ew.putStr(1, venues[rnd.nextPositiveInt() % (i < 20000 ? 30 : venues.length)]);
+                // prices are multiples of 1/8, which keeps sums exact regardless of order of addition
+                ew.putDouble(2, (rnd.nextPositiveInt() % 8000) / 8.0);
+                ew.putInt(3, rnd.nextPositiveInt() % 1000);
+                ew.putLong(4, rnd.nextLong());
+                ew.append();
+            }
+            w.commit();
+        }
+
+        ServerConfiguration configuration = new ServerConfiguration();
+        configuration.setDbParallelScanThreshold(1);
+        configuration.setDbParallelScanChunk(1000);
+        pool = new QueryWorkerPool(3, 16);
+        pool.start();
+        parallelCompiler = new QueryCompiler(configuration, pool);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    public void testFilteredGroupBy() throws Exception {
+        assertSameAsSerial("select venue, count(), sum(qty), max(l), first(px), last(qty) from trades where px > 300 and qty < 700");
+    }
+
+    @Test
+    public void testFirstLast() throws Exception {
+        assertSameAsSerial("select venue, first(px), last(px), first(qty), last(qty), first(l), last(l), first(timestamp), last(timestamp) from trades");
+    }
+
+    @Test
+    public void testMinMaxSumCount() throws Exception {
+        assertSameAsSerial("select sym, count(), count(venue), count(px), count(qty), sum(px), sum(qty), lsum(qty), sum(l), min(px), max(px), min(qty), max(qty), min(timestamp), max(timestamp) from trades");
+    }
+
+    @Test
+    public void testNoKeys() throws Exception {
+        assertSameAsSerial("select sum(qty), avg(px), vwap(px, qty) from trades");
+    }
+
+    @Test
+    public void testPlan() throws Exception {
+        String plan = plan("select sym, sum(qty) from trades");
+        Assert.assertTrue(plan, plan.contains("{\"op\":\"AggregatedRecordSource\",\"src\":{\"op\":\"ParallelFilteredRecordSource\""));
+
+        // plain unfiltered select does not engage workers
+        plan = plan("trades");
+        Assert.assertFalse(plan, plan.contains("ParallelFilteredRecordSource"));
+    }
+
+    @Test
+    public void testStats() throws Exception {
+        assertSameAsSerial("select sym, venue, avg(px), var(px), stddev(px), vwap(px, qty) from trades");
+    }
+
+    @Test
+    public void testVirtualKeyStaysSerial() throws Exception {
+        assertSameAsSerial("select sym, qty * 2 k, sum(px) from trades");
+    }
+
+    private static void assertSameAsSerial(String query) throws Exception {
+        sink.clear();
+        try (RecordSource rs = compiler.compile(factory, query)) {
+            printer.print(rs, factory);
+        }
+        String expected = sink.toString();
+
+        try (RecordSource rs = parallelCompiler.compile(factory, query)) {
+            for (int i = 0; i < 2; i++) {
+                sink.clear();
+                printer.print(rs, factory);
+                TestUtils.assertEquals(expected, sink);
+            }
+        }
+    }
+
+    private static String plan(String query) throws Exception {
+        sink.clear();
+        try (RecordSource rs = parallelCompiler.compile(factory, query)) {
+            rs.toSink(sink);
+        }
+        return sink.toString();
+    }
+}
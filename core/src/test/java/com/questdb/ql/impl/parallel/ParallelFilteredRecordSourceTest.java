@@ -0,0 +1,206 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.ql.impl.parallel;
+
+import com.questdb.JournalEntryWriter;
+import com.questdb.JournalWriter;
+import com.questdb.PartitionBy;
+import com.questdb.factory.configuration.JournalStructure;
+import com.questdb.misc.Dates;
+import com.questdb.misc.Rnd;
+import com.questdb.net.http.ServerConfiguration;
+import com.questdb.ql.Record;
+import com.questdb.ql.RecordCursor;
+import com.questdb.ql.RecordSource;
+import com.questdb.ql.parser.AbstractOptimiserTest;
+import com.questdb.ql.parser.QueryCompiler;
+import com.questdb.std.LongList;
+import com.questdb.std.ObjList;
+import com.questdb.test.tools.TestUtils;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class ParallelFilteredRecordSourceTest extends AbstractOptimiserTest {
+
+    private static QueryWorkerPool pool;
+    private static QueryCompiler parallelCompiler;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        try (JournalWriter w = factory.writer(new JournalStructure("tab")
+                .$int("i")
+                .$double("d")
+                .$sym("sym").index()
+                .$str("str")
+                .$ts()
+                .partitionBy(PartitionBy.DAY)
+                .$())) {
+
+            Rnd rnd = new Rnd();
+            String[] sym = {"AX", "XX", "BZ", "KK", "PP", "UX", "LK"};
+            long t = Dates.toMillis(2016, 5, 1, 10, 20);
+            for (int i = 0; i < 30000; i++) {
+                JournalEntryWriter ew = w.entryWriter(t += 10000);
+                ew.putInt(0, rnd.nextInt() % 100);
+                ew.putDouble(1, rnd.nextDouble());
+                ew.putSym(2, sym[rnd.nextPositiveInt() % sym.length]);
+                ew.putStr(3, rnd.nextString(rnd.nextPositiveInt() % 6));
+                ew.append();
+            }
+            w.commit();
+        }
+
+        ServerConfiguration configuration = new ServerConfiguration();
+        configuration.setDbParallelScanThreshold(1);
+        configuration.setDbParallelScanChunk(1000);
+        pool = new QueryWorkerPool(3, 16);
+        pool.start();
+        parallelCompiler = new QueryCompiler(configuration, pool);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    public void testBelowThreshold() throws Exception {
+        ServerConfiguration configuration = new ServerConfiguration();
+        configuration.setDbParallelScanChunk(1000);
+        configuration.setDbParallelScanThreshold(Integer.MAX_VALUE);
+        assertSameAsSerial(new QueryCompiler(configuration, pool), "tab where i > 10 and str ~ 'X'");
+    }
+
+    @Test
+    public void testFilter() throws Exception {
+        assertSameAsSerial(parallelCompiler, "tab where i > 10 and str ~ 'X'");
+    }
+
+    @Test
+    public void testFilterInterval() throws Exception {
+        assertSameAsSerial(parallelCompiler, "tab where timestamp = '2016-05-02;1d' and d > 0");
+    }
+
+    @Test
+    public void testFilterNoMatch() throws Exception {
+        assertSameAsSerial(parallelCompiler, "tab where i > 1000");
+    }
+
+    @Test
+    public void testFilterSelectiveWithOrder() throws Exception {
+        assertSameAsSerial(parallelCompiler, "(tab where str = 'XY' or i = 7) order by d");
+    }
+
+    @Test
+    public void testPlan() throws Exception {
+        try (RecordSource rs = parallelCompiler.compile(factory, "tab where i > 10")) {
+            Assert.assertTrue(rs instanceof ParallelFilteredRecordSource);
+        }
+
+        // key column lookups and "latest by" stay serial
+        try (RecordSource rs = parallelCompiler.compile(factory, "tab where sym = 'KK' and i > 10")) {
+            Assert.assertFalse(rs instanceof ParallelFilteredRecordSource);
+        }
+    }
+
+    @Test
+    public void testReadersShared() throws Exception {
+        ObjList<RecordSource> sources = new ObjList<>();
+        try {
+            for (int i = 0; i < 5; i++) {
+                RecordSource rs = parallelCompiler.compile(factory, "tab where i > 10");
+                sources.add(rs);
+                sink.clear();
+                printer.print(rs, factory);
+            }
+            // idle sources do not hold worker readers
+            Assert.assertTrue(pool.getIdleReaderCount() <= pool.getWorkerCount());
+        } finally {
+            for (int i = 0, n = sources.size(); i < n; i++) {
+                sources.getQuick(i).close();
+            }
+        }
+    }
+
+    @Test
+    public void testRowIdAccess() throws Exception {
+        try (RecordSource rs = parallelCompiler.compile(factory, "tab where i > 50")) {
+            RecordCursor cursor = rs.prepareCursor(factory);
+            LongList rowIds = new LongList();
+            LongList values = new LongList();
+            while (cursor.hasNext()) {
+                Record r = cursor.next();
+                rowIds.add(r.getRowId());
+                values.add(r.getInt(0));
+            }
+            Assert.assertTrue(rowIds.size() > 0);
+
+            Record record = cursor.newRecord();
+            for (int i = 0, n = rowIds.size(); i < n; i++) {
+                Assert.assertEquals(values.getQuick(i), cursor.recordAt(rowIds.getQuick(i)).getInt(0));
+                cursor.recordAt(record, rowIds.getQuick(i));
+                Assert.assertEquals(values.getQuick(i), record.getInt(0));
+            }
+        }
+    }
+
+    @Test
+    public void testToTop() throws Exception {
+        try (RecordSource rs = parallelCompiler.compile(factory, "tab where d > 0")) {
+            RecordCursor cursor = rs.prepareCursor(factory);
+            // abandon scan half way through
+            for (int i = 0; i < 100 && cursor.hasNext(); i++) {
+                cursor.next();
+            }
+            cursor.toTop();
+            sink.clear();
+            printer.print(cursor, false, rs.getMetadata());
+            String parallel = sink.toString();
+            sink.clear();
+            try (RecordSource serial = compiler.compile(factory, "tab where d > 0")) {
+                printer.print(serial, factory);
+            }
+            TestUtils.assertEquals(sink, parallel);
+        }
+    }
+
+    private static void assertSameAsSerial(QueryCompiler parallelCompiler, String query) throws Exception {
+        sink.clear();
+        try (RecordSource rs = compiler.compile(factory, query)) {
+            printer.print(rs, factory);
+        }
+        String expected = sink.toString();
+
+        // run query twice to make sure source can be re-executed
+        try (RecordSource rs = parallelCompiler.compile(factory, query)) {
+            for (int i = 0; i < 2; i++) {
+                sink.clear();
+                printer.print(rs, factory);
+                TestUtils.assertEquals(expected, sink);
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl.sort;
+
+import com.questdb.JournalEntryWriter;
+import com.questdb.JournalWriter;
+import com.questdb.factory.configuration.JournalStructure;
+import com.questdb.misc.Dates;
+import com.questdb.misc.Rnd;
+import com.questdb.misc.Unsafe;
+import com.questdb.net.http.ServerConfiguration;
+import com.questdb.ql.RecordSource;
+import com.questdb.ql.parser.AbstractOptimiserTest;
+import com.questdb.ql.parser.QueryCompiler;
+import com.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FilenameFilter;
+
+public class ExternalSortedRecordSourceTest extends AbstractOptimiserTest {
+
+    private static QueryCompiler external;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        ServerConfiguration configuration = new ServerConfiguration();
+        // small enough for dozens of runs
+        configuration.setDbSortMemory(16 * 1024);
+        external = new QueryCompiler(configuration);
+
+        try (JournalWriter w = factory.writer(new JournalStructure("trades")
+                .$sym("sym")
+                .$int("qty")
+                .$double("px")
+                .$str("note")
+                .$ts()
+                .$())) {
+            Rnd rnd = new Rnd();
+            String syms[] = {"ABC", "DEF", "GHI", "JKL", null};
+            long t = Dates.toMillis(2016, 5, 1, 0, 0);
+            for (int i = 0; i < 20000; i++) {
+                JournalEntryWriter ew = w.entryWriter(t + i * 1000);
+                ew.putSym(0, syms[rnd.nextPositiveInt() % syms.length]);
+                ew.putInt(1, rnd.nextPositiveInt() % 100);
+                ew.putDouble(2, rnd.nextDouble());
+                ew.putStr(3, i % 7 == 0 ? null : rnd.nextChars(rnd.nextPositiveInt() % 10));
+                ew.append();
+            }
+            w.commit();
+        }
+    }
+
+    @Test
+    public void testOrderMatchesInMemorySort() throws Exception {
+        assertSameAsInMemory("trades order by qty");
+        assertSameAsInMemory("trades order by sym, qty desc");
+        assertSameAsInMemory("trades order by note desc, px");
+        assertSameAsInMemory("(select sym, qty, note from trades where qty > 90) order by note");
+        assertSameAsInMemory("(select sym, count() c from trades) order by c");
+    }
+
+    @Test
+    public void testPlan() throws Exception {
+        try (RecordSource rs = external.compile(factory, "trades order by qty")) {
+            sink.clear();
+            rs.toSink(sink);
+            Assert.assertTrue(sink.toString().contains("ExternalSortedRecordSource"));
+        }
+    }
+
+    @Test
+    public void testRunsRemoved() throws Exception {
+        long mem = Unsafe.getMemUsed();
+        File base = factory.getConfiguration().getJournalBase();
+        try (RecordSource rs = external.compile(factory, "trades order by px")) {
+            rs.prepareCursor(factory);
+            Assert.assertTrue(countRuns(base) > 10);
+
+            // runs are merged again from the start
+            sink.clear();
+            printer.print(rs.prepareCursor(factory), false, rs.getMetadata());
+            String expected = sink.toString();
+            sink.clear();
+            printer.print(rs.prepareCursor(factory), false, rs.getMetadata());
+            TestUtils.assertEquals(expected, sink);
+        }
+        Assert.assertEquals(0, countRuns(base));
+        Assert.assertEquals(mem, Unsafe.getMemUsed());
+    }
+
+    private static int countRuns(File dir) {
+        String names[] = dir.list(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith("sort-");
+            }
+        });
+        return names == null ? 0 : names.length;
+    }
+
+    private void assertSameAsInMemory(String query) throws Exception {
+        final String expected;
+        try (RecordSource rs = compiler.compile(factory, query)) {
+            sink.clear();
+            printer.print(rs.prepareCursor(factory), true, rs.getMetadata());
+            expected = sink.toString();
+        }
+
+        try (RecordSource rs = external.compile(factory, query)) {
+            sink.clear();
+            printer.print(rs.prepareCursor(factory), true, rs.getMetadata());
+            TestUtils.assertEquals(expected, sink);
+
+            TestUtils.assertStrings(rs, factory);
+        }
+    }
+}
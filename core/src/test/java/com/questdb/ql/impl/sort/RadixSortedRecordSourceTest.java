@@ -0,0 +1,163 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl.sort;
+
+import com.questdb.JournalEntryWriter;
+import com.questdb.JournalWriter;
+import com.questdb.factory.configuration.JournalStructure;
+import com.questdb.misc.Dates;
+import com.questdb.misc.Numbers;
+import com.questdb.misc.Rnd;
+import com.questdb.net.http.ServerConfiguration;
+import com.questdb.ql.RecordSource;
+import com.questdb.ql.parser.AbstractOptimiserTest;
+import com.questdb.ql.parser.QueryCompiler;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class RadixSortedRecordSourceTest extends AbstractOptimiserTest {
+
+    private static QueryCompiler reference;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        // comparator based sort to check against
+        ServerConfiguration configuration = new ServerConfiguration();
+        configuration.setDbSortMemory(1024 * 1024);
+        reference = new QueryCompiler(configuration);
+
+        try (JournalWriter w = factory.writer(new JournalStructure("types")
+                .$bool("bo")
+                .$byte("by")
+                .$short("sh")
+                .$int("i")
+                .$long("l")
+                .$float("f")
+                .$double("d")
+                .$sym("sym")
+                .$date("dt")
+                .$str("s")
+                .$ts()
+                .$())) {
+            Rnd rnd = new Rnd();
+            String syms[] = {"XX", "A", "ABC", "B", "ZZZ", null};
+            long t = Dates.toMillis(2016, 5, 1, 0, 0);
+            for (int i = 0; i < 3000; i++) {
+                JournalEntryWriter ew = w.entryWriter(t + i * 1000);
+                ew.putBool(0, rnd.nextBoolean());
+                ew.put(1, (byte) (rnd.nextInt() % 4));
+                ew.putShort(2, (short) (rnd.nextInt() % 300));
+                ew.putInt(3, i % 11 == 0 ? Numbers.INT_NaN : rnd.nextInt() % 20);
+                ew.putLong(4, i % 13 == 0 ? Numbers.LONG_NaN : rnd.nextLong() % 1000);
+                ew.putFloat(5, i % 17 == 0 ? Float.NaN : (rnd.nextInt() % 100) / 8f);
+                ew.putDouble(6, i % 19 == 0 ? Double.NaN : i % 23 == 0 ? Double.NEGATIVE_INFINITY : (rnd.nextInt() % 100) / 4.0);
+                ew.putSym(7, syms[rnd.nextPositiveInt() % syms.length]);
+                ew.putDate(8, t + (rnd.nextPositiveInt() % 100) * Dates.DAY_MILLIS);
+                ew.putStr(9, rnd.nextChars(3));
+                ew.append();
+            }
+            w.commit();
+        }
+
+        try (JournalWriter w = factory.writer(new JournalStructure("zeros")
+                .$int("i")
+                .$float("f")
+                .$double("d")
+                .$())) {
+            Rnd rnd = new Rnd();
+            float floats[] = {-0f, 0f, Float.MIN_VALUE, -Float.MIN_VALUE, Float.NaN};
+            double doubles[] = {-0d, 0d, Double.MIN_VALUE, -Double.MIN_VALUE, Double.NaN};
+            for (int i = 0; i < 100; i++) {
+                JournalEntryWriter ew = w.entryWriter();
+                ew.putInt(0, i);
+                ew.putFloat(1, floats[rnd.nextPositiveInt() % floats.length]);
+                ew.putDouble(2, doubles[rnd.nextPositiveInt() % doubles.length]);
+                ew.append();
+            }
+            w.commit();
+        }
+    }
+
+    @Test
+    public void testCopiedRecords() throws Exception {
+        assertSameAsComparator("(types t join (select sym, count() c from types) x on t.sym = x.sym) order by x.c, t.d desc");
+        try (RecordSource rs = compiler.compile(factory, "(types t join (select sym, count() c from types) x on t.sym = x.sym) order by x.c")) {
+            sink.clear();
+            rs.toSink(sink);
+            Assert.assertTrue(sink.toString().contains("\"op\":\"RadixSortedRecordSource\",\"byRowId\":false"));
+        }
+    }
+
+    @Test
+    public void testPlan() throws Exception {
+        assertSortOp("types order by d, i", "RadixSortedRecordSource");
+        // strings need comparator
+        assertSortOp("types order by i, s", "RBTreeSortedRecordSource");
+    }
+
+    @Test
+    public void testSignedZeros() throws Exception {
+        // row number shows order of -0.0 and 0.0, which print the same
+        assertSameAsComparator("zeros order by d");
+        assertSameAsComparator("zeros order by d desc");
+        assertSameAsComparator("zeros order by f, d");
+        assertSameAsComparator("zeros order by f desc, i");
+    }
+
+    @Test
+    public void testTypes() throws Exception {
+        assertSameAsComparator("types order by bo, by");
+        assertSameAsComparator("types order by bo desc, by desc");
+        assertSameAsComparator("types order by sh");
+        assertSameAsComparator("types order by sh desc");
+        assertSameAsComparator("types order by i, l desc");
+        assertSameAsComparator("types order by i desc");
+        assertSameAsComparator("types order by l");
+        assertSameAsComparator("types order by f, d");
+        assertSameAsComparator("types order by f desc, d desc");
+        assertSameAsComparator("types order by sym, dt");
+        assertSameAsComparator("types order by sym desc, timestamp desc");
+        assertSameAsComparator("types order by dt desc, d");
+    }
+
+    private void assertSortOp(String query, String op) throws Exception {
+        try (RecordSource rs = compiler.compile(factory, query)) {
+            sink.clear();
+            rs.toSink(sink);
+            Assert.assertTrue(sink.toString().startsWith("{\"op\":\"" + op + "\""));
+        }
+    }
+
+    private void assertSameAsComparator(String query) throws Exception {
+        final String expected;
+        try (RecordSource rs = reference.compile(factory, query)) {
+            sink.clear();
+            printer.print(rs.prepareCursor(factory), true, rs.getMetadata());
+            expected = sink.toString();
+        }
+        assertThat(expected, query, true);
+    }
+}
@@ -0,0 +1,169 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl.sort;
+
+import com.questdb.JournalEntryWriter;
+import com.questdb.JournalWriter;
+import com.questdb.factory.configuration.JournalStructure;
+import com.questdb.misc.Dates;
+import com.questdb.misc.Rnd;
+import com.questdb.net.http.ServerConfiguration;
+import com.questdb.ql.RecordSource;
+import com.questdb.ql.parser.AbstractOptimiserTest;
+import com.questdb.ql.parser.QueryCompiler;
+import com.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TopNSortedRecordSourceTest extends AbstractOptimiserTest {
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        try (JournalWriter w = factory.writer(new JournalStructure("trades")
+                .$sym("sym")
+                .$int("qty")
+                .$double("px")
+                .$str("note")
+                .$ts()
+                .$())) {
+            Rnd rnd = new Rnd();
+            String syms[] = {"ABC", "DEF", "GHI", "JKL", null};
+            long t = Dates.toMillis(2016, 5, 1, 0, 0);
+            for (int i = 0; i < 5000; i++) {
+                JournalEntryWriter ew = w.entryWriter(t + i * 1000);
+                ew.putSym(0, syms[rnd.nextPositiveInt() % syms.length]);
+                // lots of equal values to check that order of ties is that of full sort
+                ew.putInt(1, rnd.nextPositiveInt() % 50);
+                ew.putDouble(2, rnd.nextDouble());
+                ew.putStr(3, i % 7 == 0 ? null : rnd.nextChars(rnd.nextPositiveInt() % 10));
+                ew.append();
+            }
+            w.commit();
+        }
+
+        try (JournalWriter w = factory.writer(new JournalStructure("names")
+                .$sym("sym")
+                .$str("name")
+                .$())) {
+            String syms[] = {"ABC", "DEF", "GHI", "JKL"};
+            for (int i = 0; i < syms.length; i++) {
+                JournalEntryWriter ew = w.entryWriter();
+                ew.putSym(0, syms[i]);
+                ew.putStr(1, i % 2 == 0 ? "even" : "odd");
+                ew.append();
+            }
+            w.commit();
+        }
+    }
+
+    @Test
+    public void testAggregatedRowIds() throws Exception {
+        assertSameAsFullSort("(select sym, note, sum(qty) s from trades) order by s desc", "limit 10");
+        assertSameAsFullSort("(select sym, note, sum(qty) s from trades) order by note, sym", "limit 5, 25");
+    }
+
+    @Test
+    public void testCopiedRecords() throws Exception {
+        // join does not support row ids
+        assertSameAsFullSort("trades t join names n on t.sym = n.sym order by n.name desc, t.qty", "limit 30");
+        assertSameAsFullSort("trades t join names n on t.sym = n.sym order by t.note, n.name", "limit 10, 20");
+
+        try (RecordSource rs = compiler.compile(factory, "trades t join names n on t.sym = n.sym order by n.name limit 5")) {
+            sink.clear();
+            rs.toSink(sink);
+            Assert.assertTrue(sink.toString().contains("\"op\":\"TopNSortedRecordSource\",\"byRowId\":false"));
+        }
+    }
+
+    @Test
+    public void testLimitOverRowCount() throws Exception {
+        assertSameAsFullSort("trades where sym = 'ABC' order by px", "limit 10000");
+        assertSameAsFullSort("trades order by qty", "limit 4990, 7000");
+        assertEmpty("trades order by qty limit 6000, 7000");
+        assertEmpty("trades order by qty limit 0");
+    }
+
+    @Test
+    public void testPlan() throws Exception {
+        try (RecordSource rs = compiler.compile(factory, "trades order by qty desc limit 100")) {
+            sink.clear();
+            rs.toSink(sink);
+            Assert.assertTrue(sink.toString().contains("TopNSortedRecordSource"));
+            Assert.assertFalse(sink.toString().contains("RBTreeSortedRecordSource"));
+        }
+    }
+
+    @Test
+    public void testRowIds() throws Exception {
+        assertSameAsFullSort("trades order by qty desc", "limit 100");
+        assertSameAsFullSort("trades order by qty, note desc", "limit 1");
+        assertSameAsFullSort("trades order by sym, qty", "limit 40, 60");
+        assertSameAsFullSort("select sym, qty, px from trades order by px desc", "limit 7");
+    }
+
+    @Test
+    public void testSortMemoryLimit() throws Exception {
+        ServerConfiguration configuration = new ServerConfiguration();
+        configuration.setDbSortMemory(16 * 1024);
+        QueryCompiler limited = new QueryCompiler(configuration);
+
+        // 100 row ids fit into sort memory
+        assertSameAsFullSort(limited, "trades order by qty desc", "limit 100", true);
+        // 2000 row ids do not, rows are sorted externally
+        assertSameAsFullSort(limited, "trades order by qty desc", "limit 2000", false);
+        assertSameAsFullSort(limited, "trades order by sym, qty", "limit 1500, 3000", false);
+    }
+
+    private void assertSameAsFullSort(QueryCompiler limited, String query, String limit, boolean topN) throws Exception {
+        final String expected;
+        try (RecordSource rs = compiler.compile(factory, "(" + query + ") " + limit)) {
+            sink.clear();
+            printer.print(rs.prepareCursor(factory), true, rs.getMetadata());
+            expected = sink.toString();
+        }
+
+        try (RecordSource rs = limited.compile(factory, query + " " + limit)) {
+            sink.clear();
+            rs.toSink(sink);
+            Assert.assertEquals(topN, sink.toString().contains("TopNSortedRecordSource"));
+
+            sink.clear();
+            printer.print(rs.prepareCursor(factory), true, rs.getMetadata());
+            TestUtils.assertEquals(expected, sink);
+        }
+    }
+
+    private void assertSameAsFullSort(String query, String limit) throws Exception {
+        final String expected;
+        // limit of outer query is applied to fully sorted sub-query
+        try (RecordSource rs = compiler.compile(factory, "(" + query + ") " + limit)) {
+            sink.clear();
+            printer.print(rs.prepareCursor(factory), true, rs.getMetadata());
+            expected = sink.toString();
+        }
+        assertThat(expected, query + " " + limit, true);
+    }
+}
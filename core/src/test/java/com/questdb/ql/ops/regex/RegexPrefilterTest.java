@@ -0,0 +1,139 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.ops.regex;
+
+import com.questdb.misc.Rnd;
+import com.questdb.regex.Pattern;
+import com.questdb.std.CharSequenceHashSet;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RegexPrefilterTest {
+
+    private static final String[] PATTERNS = {
+            "ab",
+            "^ab",
+            "ab$",
+            "^ab$",
+            "ERROR.*timeout",
+            "^a.b",
+            "a+b",
+            "ab*c",
+            "ab?c$",
+            "a{2}b",
+            "a{0,2}bc",
+            "[ab]c(d|e)f",
+            "\\.a\\*",
+            "a\\db",
+            "\\bab\\b",
+            "a(?:b)*c$",
+            "^\\ta\\n",
+            "ba+?c",
+            "b[]a]c"
+    };
+
+    @Test
+    public void testAgainstMatcher() throws Exception {
+        Rnd rnd = new Rnd();
+        String alphabet = "abcdefERORTim.*\t\n\r";
+        StringBuilder b = new StringBuilder();
+        for (String p : PATTERNS) {
+            RegexPrefilter prefilter = RegexPrefilter.of(p);
+            Assert.assertNotNull(p, prefilter);
+            Pattern pattern = Pattern.compile(p);
+            for (int i = 0; i < 20000; i++) {
+                b.setLength(0);
+                for (int k = 0, n = rnd.nextPositiveInt() % 12; k < n; k++) {
+                    b.append(alphabet.charAt(rnd.nextPositiveInt() % alphabet.length()));
+                }
+                if (i % 3 == 0) {
+                    // plant literal to get matches
+                    b.insert(rnd.nextPositiveInt() % (b.length() + 1), prefilter.getLiteral());
+                }
+                boolean expected = pattern.matcher(b).find();
+                boolean accepted = prefilter.accept(b);
+                if (expected) {
+                    Assert.assertTrue(p + " rejected " + b, accepted);
+                } else if (prefilter.isComplete()) {
+                    Assert.assertFalse(p + " accepted " + b, accepted);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testExactValues() throws Exception {
+        CharSequenceHashSet values = new CharSequenceHashSet();
+        Assert.assertTrue(RegexPrefilter.of("^ab\\.c$").collectExactValues(values));
+        Assert.assertTrue(values.contains("ab.c"));
+        Assert.assertTrue(values.contains("ab.c\n"));
+        for (int i = 0, n = values.size(); i < n; i++) {
+            Assert.assertTrue(Pattern.compile("^ab\\.c$").matcher(values.get(i)).find());
+        }
+
+        values.clear();
+        Assert.assertFalse(RegexPrefilter.of("^ab").collectExactValues(values));
+        Assert.assertFalse(RegexPrefilter.of("^a.c$").collectExactValues(values));
+        Assert.assertEquals(0, values.size());
+    }
+
+    @Test
+    public void testLiterals() throws Exception {
+        Assert.assertEquals("timeout", RegexPrefilter.of("ERROR.*timeout").getLiteral());
+        Assert.assertEquals("ERROR", RegexPrefilter.of("ERROR.*time").getLiteral());
+        Assert.assertEquals("bc", RegexPrefilter.of("a*bc").getLiteral());
+        Assert.assertTrue(RegexPrefilter.of("^ab$").isComplete());
+        Assert.assertFalse(RegexPrefilter.of("ab.").isComplete());
+        Assert.assertFalse(RegexPrefilter.of("a.b").isComplete());
+    }
+
+    @Test
+    public void testNoPrefilter() throws Exception {
+        Assert.assertNull(RegexPrefilter.of("a|b"));
+        Assert.assertNull(RegexPrefilter.of("(?i)abc"));
+        Assert.assertNull(RegexPrefilter.of("a*"));
+        Assert.assertNull(RegexPrefilter.of("[a-z]+\\d"));
+        Assert.assertNull(RegexPrefilter.of("(abc)"));
+        Assert.assertNull(RegexPrefilter.of("\\Qabc\\E"));
+    }
+
+    @Test
+    public void testOptionalSupplementaryChar() throws Exception {
+        String[] patterns = {"x\uD83D\uDE00?y", "x\uD83D\uDE00*y", "x\uD83D\uDE00{0,2}y", "\uD83D\uDE00x\uD83D\uDE00?"};
+        String[] values = {"xy", "x\uD83D\uDE00y", "x\uD83D\uDE00\uD83D\uDE00y", "\uD83D\uDE00x"};
+        for (String p : patterns) {
+            RegexPrefilter prefilter = RegexPrefilter.of(p);
+            Assert.assertNotNull(p, prefilter);
+            Pattern pattern = Pattern.compile(p);
+            for (String v : values) {
+                if (pattern.matcher(v).find()) {
+                    Assert.assertTrue(p + " rejected " + v, prefilter.accept(v));
+                }
+            }
+        }
+        Assert.assertEquals("x", RegexPrefilter.of("x\uD83D\uDE00?y").getLiteral());
+        Assert.assertEquals("\uD83D\uDE00x", RegexPrefilter.of("\uD83D\uDE00x\uD83D\uDE00*").getLiteral());
+    }
+}
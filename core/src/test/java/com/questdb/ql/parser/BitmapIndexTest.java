@@ -0,0 +1,171 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.parser;
+
+import com.questdb.Journal;
+import com.questdb.JournalEntryWriter;
+import com.questdb.JournalWriter;
+import com.questdb.PartitionBy;
+import com.questdb.factory.configuration.JournalStructure;
+import com.questdb.misc.Dates;
+import com.questdb.misc.Rnd;
+import com.questdb.ql.RecordSource;
+import com.questdb.store.BitmapIndex;
+import com.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class BitmapIndexTest extends AbstractOptimiserTest {
+
+    private static final String SYMS[] = {"ABC", "DEF", "GHI", "JKL", "MNO", null};
+    private static final String SIDES[] = {"BUY", "SELL"};
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        try (JournalWriter plain = factory.writer(structure("plain", false));
+             JournalWriter indexed = factory.writer(structure("indexed", true))) {
+            long t = Dates.toMillis(2016, 5, 1, 0, 0);
+            // more rows per partition than single chunk of bitmap index
+            for (int d = 0; d < 3; d++) {
+                append(plain, new Rnd(d, d + 1), t + d * Dates.DAY_MILLIS, 70000);
+                plain.commit();
+                append(indexed, new Rnd(d, d + 1), t + d * Dates.DAY_MILLIS, 70000);
+                indexed.commit();
+            }
+        }
+    }
+
+    @Test
+    public void testIndexCounts() throws Exception {
+        Journal r = factory.reader("indexed");
+        int sym = r.getMetadata().getColumnIndex("sym");
+        int side = r.getMetadata().getColumnIndex("side");
+
+        for (int i = 0, n = r.getPartitionCount(); i < n; i++) {
+            BitmapIndex symIndex = r.getPartition(i, true).getBitmapIndex(sym);
+            BitmapIndex sideIndex = r.getPartition(i, true).getBitmapIndex(side);
+            Assert.assertEquals(70000, symIndex.size());
+            Assert.assertEquals(70000, sideIndex.size());
+
+            long total = symIndex.getValueCount(-1);
+            for (int k = 0; k < SYMS.length - 1; k++) {
+                total += symIndex.getValueCount(k);
+            }
+            Assert.assertEquals(70000, total);
+            Assert.assertEquals(70000, sideIndex.getValueCount(0) + sideIndex.getValueCount(1));
+        }
+
+        try {
+            r.getPartition(0, true).getBitmapIndex(r.getMetadata().getColumnIndex("qty"));
+            Assert.fail();
+        } catch (Exception ignore) {
+        }
+    }
+
+    @Test
+    public void testQueriesMatchScan() throws Exception {
+        assertSameAsScan("where sym = 'DEF'");
+        assertSameAsScan("where sym in ('ABC', 'GHI') and side = 'BUY'");
+        assertSameAsScan("where sym in ('ABC', 'GHI') and side = 'BUY' and qty > 50");
+        assertSameAsScan("where sym != 'ABC' and side = 'SELL'");
+        assertSameAsScan("where sym != 'ABC' and sym != 'MNO'");
+        assertSameAsScan("where sym = 'XYZ'");
+        assertSameAsScan("where sym in ('XYZ', 'JKL')");
+        assertSameAsScan("where sym = 'ABC' and ts = '2016-05-02T10'");
+        assertSameAsScan("where sym = 'DEF' and ts > '2016-05-01T12:00:00.000Z' and ts < '2016-05-02T06:00:00.000Z'");
+
+        try (RecordSource rs = compiler.compile(factory, "indexed where sym in ('ABC', 'GHI') and side = 'BUY'")) {
+            sink.clear();
+            rs.toSink(sink);
+            Assert.assertTrue(sink.toString().contains("BitmapIndexRowSource"));
+        }
+    }
+
+    @Test
+    public void testRollback() throws Exception {
+        long t = Dates.toMillis(2016, 5, 1, 0, 0);
+        try (JournalWriter w = factory.writer(structure("indexed_tx", true))) {
+            append(w, new Rnd(), t, 1000);
+            w.commit();
+
+            append(w, new Rnd(), t + 1000 * 60000, 1000);
+            w.rollback();
+
+            assertThat("1000\n", "select count() from indexed_tx where side = 'BUY' or side = 'SELL'");
+
+            JournalEntryWriter ew = w.entryWriter(t + 1000 * 60000);
+            ew.putSym(0, "XYZ");
+            ew.putSym(1, "BUY");
+            ew.putInt(2, 1);
+            ew.append();
+            w.commit();
+        }
+
+        assertThat("XYZ\tBUY\t1\t2016-05-01T16:40:00.000Z\n", "indexed_tx where sym = 'XYZ' and side = 'BUY'");
+    }
+
+    private static void append(JournalWriter w, Rnd rnd, long t, int count) throws Exception {
+        for (int i = 0; i < count; i++) {
+            JournalEntryWriter ew = w.entryWriter(t + i * 1000);
+            ew.putSym(0, SYMS[rnd.nextPositiveInt() % SYMS.length]);
+            ew.putSym(1, SIDES[rnd.nextPositiveInt() % SIDES.length]);
+            ew.putInt(2, rnd.nextPositiveInt() % 100);
+            ew.append();
+        }
+    }
+
+    private static JournalStructure structure(String location, boolean bitmap) {
+        if (bitmap) {
+            return new JournalStructure(location)
+                    .$sym("sym").bitmapIndex()
+                    .$sym("side").bitmapIndex()
+                    .$int("qty")
+                    .$ts("ts")
+                    .partitionBy(PartitionBy.DAY);
+        }
+        return new JournalStructure(location)
+                .$sym("sym")
+                .$sym("side")
+                .$int("qty")
+                .$ts("ts")
+                .partitionBy(PartitionBy.DAY);
+    }
+
+    private void assertSameAsScan(String filter) throws Exception {
+        final String expected;
+        try (RecordSource rs = compiler.compile(factory, "plain " + filter)) {
+            sink.clear();
+            printer.print(rs.prepareCursor(factory), true, rs.getMetadata());
+            expected = sink.toString();
+        }
+
+        try (RecordSource rs = compiler.compile(factory, "indexed " + filter)) {
+            sink.clear();
+            printer.print(rs.prepareCursor(factory), true, rs.getMetadata());
+            TestUtils.assertEquals(expected, sink);
+        }
+    }
+}
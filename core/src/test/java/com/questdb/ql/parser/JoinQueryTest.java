@@ -1119,13 +1119,16 @@ public class JoinQueryTest extends AbstractOptimiserTest {
                 "  \"src\": {\n" +
                 "    \"op\": \"HashJoinRecordSource\",\n" +
                 "    \"master\": {\n" +
-                "      \"op\": \"RBTreeSortedRecordSource\",\n" +
+                "      \"op\": \"RadixSortedRecordSource\",\n" +
                 "      \"byRowId\": true,\n" +
                 "      \"src\": {\n" +
                 "        \"op\": \"JournalRecordSource\",\n" +
                 "        \"psrc\": {\n" +
-                "          \"op\": \"JournalPartitionSource\",\n" +
-                "          \"journal\": \"customers\"\n" +
+                "          \"op\": \"StatsPartitionSource\",\n" +
+                "          \"psrc\": {\n" +
+                "            \"op\": \"JournalPartitionSource\",\n" +
+                "            \"journal\": \"customers\"\n" +
+                "          }\n" +
                 "        },\n" +
                 "        \"rsrc\": {\n" +
                 "          \"op\": \"FilteredRowSource\",\n" +
@@ -1172,7 +1175,7 @@ public class JoinQueryTest extends AbstractOptimiserTest {
         assertThat(expected, sql);
 
         assertPlan2("{\n" +
-                "  \"op\": \"RBTreeSortedRecordSource\",\n" +
+                "  \"op\": \"RadixSortedRecordSource\",\n" +
                 "  \"byRowId\": false,\n" +
                 "  \"src\": {\n" +
                 "    \"op\": \"FilteredRecordSource\",\n" +
@@ -1181,8 +1184,11 @@ public class JoinQueryTest extends AbstractOptimiserTest {
                 "      \"master\": {\n" +
                 "        \"op\": \"JournalRecordSource\",\n" +
                 "        \"psrc\": {\n" +
-                "          \"op\": \"JournalPartitionSource\",\n" +
-                "          \"journal\": \"customers\"\n" +
+                "          \"op\": \"StatsPartitionSource\",\n" +
+                "          \"psrc\": {\n" +
+                "            \"op\": \"JournalPartitionSource\",\n" +
+                "            \"journal\": \"customers\"\n" +
+                "          }\n" +
                 "        },\n" +
                 "        \"rsrc\": {\n" +
                 "          \"op\": \"FilteredRowSource\",\n" +
@@ -1234,13 +1240,16 @@ public class JoinQueryTest extends AbstractOptimiserTest {
                 "    \"src\": {\n" +
                 "      \"op\": \"HashJoinRecordSource\",\n" +
                 "      \"master\": {\n" +
-                "        \"op\": \"RBTreeSortedRecordSource\",\n" +
+                "        \"op\": \"RadixSortedRecordSource\",\n" +
                 "        \"byRowId\": true,\n" +
                 "        \"src\": {\n" +
                 "          \"op\": \"JournalRecordSource\",\n" +
                 "          \"psrc\": {\n" +
-                "            \"op\": \"JournalPartitionSource\",\n" +
-                "            \"journal\": \"customers\"\n" +
+                "            \"op\": \"StatsPartitionSource\",\n" +
+                "            \"psrc\": {\n" +
+                "              \"op\": \"JournalPartitionSource\",\n" +
+                "              \"journal\": \"customers\"\n" +
+                "            }\n" +
                 "          },\n" +
                 "          \"rsrc\": {\n" +
                 "            \"op\": \"FilteredRowSource\",\n" +
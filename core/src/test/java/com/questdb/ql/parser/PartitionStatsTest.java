@@ -0,0 +1,190 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.ql.parser;
+
+import com.questdb.Journal;
+import com.questdb.JournalEntryWriter;
+import com.questdb.JournalWriter;
+import com.questdb.PartitionBy;
+import com.questdb.factory.configuration.JournalMetadata;
+import com.questdb.factory.configuration.JournalStructure;
+import com.questdb.misc.Dates;
+import com.questdb.ql.PartitionCursor;
+import com.questdb.ql.RecordSource;
+import com.questdb.ql.impl.JournalPartitionSource;
+import com.questdb.ql.impl.StatsPartitionSource;
+import com.questdb.ql.ops.constant.DoubleConstant;
+import com.questdb.ql.ops.constant.IntConstant;
+import com.questdb.store.PartitionStats;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class PartitionStatsTest extends AbstractOptimiserTest {
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        // each day has its own range of qty and px values
+        try (JournalWriter w = factory.writer(new JournalStructure("zones")
+                .$int("qty")
+                .$double("px")
+                .$long("id")
+                .$ts()
+                .partitionBy(PartitionBy.DAY)
+                .$())) {
+
+            long t = Dates.toMillis(2016, 5, 1, 0, 0);
+            for (int d = 0; d < 10; d++) {
+                for (int i = 0; i < 100; i++) {
+                    JournalEntryWriter ew = w.entryWriter(t + d * Dates.DAY_MILLIS + i * 60000);
+                    ew.putInt(0, d * 100 + i);
+                    ew.putDouble(1, d == 3 && i % 2 == 0 ? Double.NaN : d + i / 100.0);
+                    ew.putLong(2, d * 1000L + i);
+                    ew.append();
+                }
+                // commit per day so that statistics are updated incrementally
+                w.commit();
+            }
+        }
+    }
+
+    @Test
+    public void testPartitionSkipping() throws Exception {
+        JournalMetadata metadata = factory.reader("zones").getMetadata();
+
+        StatsPartitionSource ps = new StatsPartitionSource(new JournalPartitionSource(metadata, true));
+        ps.add(metadata.getColumnIndex("qty"), StatsPartitionSource.OP_GT, new IntConstant(750, 0));
+        assertSlices(3, 7, ps);
+
+        ps = new StatsPartitionSource(new JournalPartitionSource(metadata, true));
+        ps.add(metadata.getColumnIndex("qty"), StatsPartitionSource.OP_EQ, new IntConstant(305, 0));
+        assertSlices(1, 9, ps);
+
+        ps = new StatsPartitionSource(new JournalPartitionSource(metadata, true));
+        ps.add(metadata.getColumnIndex("px"), StatsPartitionSource.OP_LTE, new DoubleConstant(2.0, 0));
+        ps.add(metadata.getColumnIndex("qty"), StatsPartitionSource.OP_GTE, new IntConstant(150, 0));
+        assertSlices(2, 8, ps);
+
+        ps = new StatsPartitionSource(new JournalPartitionSource(metadata, true));
+        ps.add(metadata.getColumnIndex("px"), StatsPartitionSource.OP_LT, new DoubleConstant(Double.NaN, 0));
+        assertSlices(10, 0, ps);
+    }
+
+    @Test
+    public void testQueriesSkipPartitions() throws Exception {
+        assertSameAsUnpruned("zones where qty > 750", "zones where qty + 0 > 750");
+        assertSameAsUnpruned("zones where 750 < qty", "zones where qty + 0 > 750");
+        assertSameAsUnpruned("zones where qty = 305", "zones where qty + 0 = 305");
+        assertSameAsUnpruned("zones where px <= 2.0 and qty >= 150", "zones where px + 0 <= 2.0 and qty + 0 >= 150");
+        assertSameAsUnpruned("zones where px < 4 and id > 3010", "zones where px + 0 < 4 and id + 0 > 3010");
+        assertEmpty("zones where px > 1000");
+
+        try (RecordSource rs = compiler.compile(factory, "zones where qty > 750")) {
+            sink.clear();
+            rs.toSink(sink);
+            Assert.assertTrue(sink.toString().contains("StatsPartitionSource"));
+        }
+    }
+
+    @Test
+    public void testStatsWrittenOnCommit() throws Exception {
+        Journal r = factory.reader("zones");
+        PartitionStats stats = new PartitionStats(r.getMetadata());
+        int qty = r.getMetadata().getColumnIndex("qty");
+        int px = r.getMetadata().getColumnIndex("px");
+        int id = r.getMetadata().getColumnIndex("id");
+
+        Assert.assertEquals(10, r.getPartitionCount());
+        for (int d = 0; d < 10; d++) {
+            Assert.assertTrue(stats.read(r.getPartition(d, false).getPartitionDir()));
+            Assert.assertEquals(100, stats.getRowCount());
+            Assert.assertEquals(d * 100, stats.getMin(qty));
+            Assert.assertEquals(d * 100 + 99, stats.getMax(qty));
+            Assert.assertEquals(0, stats.getNullCount(qty));
+            Assert.assertEquals(d * 1000L, stats.getMin(id));
+            Assert.assertEquals(d * 1000L + 99, stats.getMax(id));
+            Assert.assertEquals(d == 3 ? 50 : 0, stats.getNullCount(px));
+            Assert.assertEquals(d == 3 ? d + 0.01 : d, stats.getDoubleMin(px), 0.000001);
+            Assert.assertEquals(d + 0.99, stats.getDoubleMax(px), 0.000001);
+        }
+    }
+
+    @Test
+    public void testTruncatedRowsRecounted() throws Exception {
+        long t = Dates.toMillis(2016, 5, 1, 0, 0);
+        try (JournalWriter w = factory.writer(new JournalStructure("zones_tx")
+                .$int("qty")
+                .$ts()
+                .partitionBy(PartitionBy.DAY)
+                .$())) {
+
+            for (int i = 0; i < 10; i++) {
+                JournalEntryWriter ew = w.entryWriter(t += 60000);
+                ew.putInt(0, i);
+                ew.append();
+            }
+            w.commit();
+
+            for (int i = 0; i < 10; i++) {
+                JournalEntryWriter ew = w.entryWriter(t += 60000);
+                ew.putInt(0, 5000 + i);
+                ew.append();
+            }
+            w.rollback();
+
+            assertEmpty("zones_tx where qty > 10");
+
+            // rows that replace rolled back ones must be accounted for
+            for (int i = 0; i < 5; i++) {
+                JournalEntryWriter ew = w.entryWriter(t += 60000);
+                ew.putInt(0, 100 + i);
+                ew.append();
+            }
+            w.commit();
+        }
+
+        assertThat("103\n104\n", "select qty from zones_tx where qty > 102");
+    }
+
+    private static void assertSlices(int expectedSlices, int expectedSkipped, StatsPartitionSource ps) {
+        PartitionCursor cursor = ps.prepareCursor(factory);
+        int slices = 0;
+        while (cursor.hasNext()) {
+            cursor.next();
+            slices++;
+        }
+        Assert.assertEquals(expectedSlices, slices);
+        Assert.assertEquals(expectedSkipped, ps.getSkipCount());
+    }
+
+    private void assertSameAsUnpruned(String query, String unpruned) throws Exception {
+        final String expected;
+        try (RecordSource rs = compiler.compile(factory, unpruned)) {
+            sink.clear();
+            printer.print(rs.prepareCursor(factory), true, rs.getMetadata());
+            expected = sink.toString();
+        }
+        assertThat(expected, query, true);
+    }
+}
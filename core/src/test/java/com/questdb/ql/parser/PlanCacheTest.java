@@ -0,0 +1,201 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.ql.parser;
+
+import com.questdb.JournalEntryWriter;
+import com.questdb.JournalWriter;
+import com.questdb.PartitionBy;
+import com.questdb.factory.configuration.JournalConfiguration;
+import com.questdb.factory.configuration.JournalStructure;
+import com.questdb.misc.Dates;
+import com.questdb.misc.Rnd;
+import com.questdb.misc.Unsafe;
+import com.questdb.ql.RecordSource;
+import com.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+
+public class PlanCacheTest extends AbstractOptimiserTest {
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        try (JournalWriter w = factory.writer(new JournalStructure("plans")
+                .$sym("sym").index()
+                .$sym("ccy")
+                .$double("px")
+                .$int("qty")
+                .$ts()
+                .partitionBy(PartitionBy.DAY)
+                .$())) {
+
+            Rnd rnd = new Rnd();
+            String[] sym = {"AX", "XX", "BZ", "KK"};
+            String[] ccy = {"EUR", "USD", "GBP"};
+
+            long t = Dates.toMillis(2016, 5, 1, 10, 20);
+            for (int i = 0; i < 1000; i++) {
+                JournalEntryWriter ew = w.entryWriter(t += 60000);
+                ew.putSym(0, sym[rnd.nextPositiveInt() % sym.length]);
+                ew.putSym(1, ccy[rnd.nextPositiveInt() % ccy.length]);
+                ew.putDouble(2, rnd.nextDouble());
+                ew.putInt(3, rnd.nextPositiveInt() % 1000);
+                ew.append();
+            }
+            w.commit();
+        }
+    }
+
+    @Test
+    public void testCompileTimeLiteralCachedByText() throws Exception {
+        try (PlanCache cache = new PlanCache(Long.MAX_VALUE)) {
+            PlanCache.Plan plan = cache.compile(compiler, factory, "plans where ccy ~ 'E.*'");
+            assertSameAsCompiled("plans where ccy ~ 'E.*'", plan);
+            cache.put(plan);
+
+            Assert.assertNull(cache.poll(factory, "plans where ccy ~ 'U.*'"));
+            PlanCache.Plan p = cache.poll(factory, "plans where ccy ~ 'E.*'");
+            Assert.assertSame(plan, p);
+            cache.put(p);
+        }
+    }
+
+    @Test
+    public void testIndexedKeyCachedByText() throws Exception {
+        try (PlanCache cache = new PlanCache(Long.MAX_VALUE)) {
+            PlanCache.Plan plan = cache.compile(compiler, factory, "plans where sym = 'AX'");
+            assertSameAsCompiled("plans where sym = 'AX'", plan);
+            cache.put(plan);
+
+            // parameter would turn index lookup into filter
+            Assert.assertNull(cache.poll(factory, "plans where sym = 'XX'"));
+
+            PlanCache.Plan p = cache.poll(factory, "plans where sym = 'AX'");
+            Assert.assertSame(plan, p);
+            cache.put(p);
+        }
+    }
+
+    @Test
+    public void testInvalidatedByMetadataChange() throws Exception {
+        try (PlanCache cache = new PlanCache(Long.MAX_VALUE)) {
+            cache.put(cache.compile(compiler, factory, "plans where qty > 500"));
+            Assert.assertEquals(1, cache.getIdleCount());
+
+            File meta = new File(new File(factory.getConfiguration().getJournalBase(), "plans"), JournalConfiguration.FILE_NAME);
+            long lastModified = meta.lastModified();
+            Assert.assertTrue(meta.setLastModified(lastModified - 10000));
+            try {
+                Assert.assertNull(cache.poll(factory, "plans where qty > 400"));
+                Assert.assertEquals(0, cache.getIdleCount());
+            } finally {
+                Assert.assertTrue(meta.setLastModified(lastModified));
+            }
+        }
+    }
+
+    @Test
+    public void testLiteralsShareNormalizedPlan() throws Exception {
+        try (PlanCache cache = new PlanCache(Long.MAX_VALUE)) {
+            PlanCache.Plan plan = cache.compile(compiler, factory, "plans where qty > 100 and ccy = 'EUR' limit 5");
+            assertSameAsCompiled("plans where qty > 100 and ccy = 'EUR' limit 5", plan);
+            cache.put(plan);
+
+            PlanCache.Plan p = cache.poll(factory, "plans where qty > 700 and ccy = 'USD' limit 10");
+            Assert.assertSame(plan, p);
+            assertSameAsCompiled("plans where qty > 700 and ccy = 'USD' limit 10", p);
+
+            // plan is checked out exclusively
+            Assert.assertNull(cache.poll(factory, "plans where qty > 700 and ccy = 'USD' limit 10"));
+            cache.put(p);
+        }
+    }
+
+    @Test
+    public void testLiteralTypeSelectsPlan() throws Exception {
+        try (PlanCache cache = new PlanCache(Long.MAX_VALUE)) {
+            PlanCache.Plan plan = cache.compile(compiler, factory, "select sym, qty from plans where qty < 10.5");
+            assertSameAsCompiled("select sym, qty from plans where qty < 10.5", plan);
+            cache.put(plan);
+
+            // integer literal picks different function, it must not reuse plan compiled for double
+            Assert.assertNull(cache.poll(factory, "select sym, qty from plans where qty < 10"));
+
+            PlanCache.Plan p = cache.poll(factory, "select sym, qty from plans where qty < 99.5");
+            Assert.assertSame(plan, p);
+            assertSameAsCompiled("select sym, qty from plans where qty < 99.5", p);
+            cache.put(p);
+        }
+    }
+
+    @Test
+    public void testMemoryLimit() throws Exception {
+        long memUsed = Unsafe.getMemUsed();
+        try (PlanCache cache = new PlanCache(Long.MAX_VALUE)) {
+            PlanCache.Plan plan = cache.compile(compiler, factory, "select ccy, sum(px) from plans where qty > 10");
+            assertSameAsCompiled("select ccy, sum(px) from plans where qty > 10", plan);
+            cache.put(plan);
+            Assert.assertEquals(1, cache.getIdleCount());
+            Assert.assertTrue(cache.getMemoryUsed() > 0);
+        }
+        Assert.assertEquals(memUsed, Unsafe.getMemUsed());
+
+        try (PlanCache cache = new PlanCache(1)) {
+            PlanCache.Plan plan = cache.compile(compiler, factory, "select ccy, sum(px) from plans where qty > 10");
+            assertSameAsCompiled("select ccy, sum(px) from plans where qty > 10", plan);
+            cache.put(plan);
+            Assert.assertEquals(0, cache.getIdleCount());
+            Assert.assertEquals(0, cache.getMemoryUsed());
+            Assert.assertEquals(memUsed, Unsafe.getMemUsed());
+        }
+    }
+
+    @Test
+    public void testMemoryReportedByRecordSource() throws Exception {
+        try (PlanCache cache = new PlanCache(Long.MAX_VALUE)) {
+            PlanCache.Plan plan = cache.compile(compiler, factory, "plans order by ccy, px");
+            assertSameAsCompiled("plans order by ccy, px", plan);
+            RecordSource rs = plan.getRecordSource();
+            cache.put(plan);
+            Assert.assertTrue(rs.getMemUsed() > 0);
+            Assert.assertEquals(rs.getMemUsed(), cache.getMemoryUsed());
+        }
+    }
+
+    private void assertSameAsCompiled(String query, PlanCache.Plan plan) throws Exception {
+        final String expected;
+        try (RecordSource rs = compiler.compile(factory, query)) {
+            sink.clear();
+            printer.print(rs.prepareCursor(factory), true, rs.getMetadata());
+            expected = sink.toString();
+        }
+
+        RecordSource rs = plan.getRecordSource();
+        sink.clear();
+        printer.print(rs.prepareCursor(factory), true, rs.getMetadata());
+        TestUtils.assertEquals(expected, sink);
+    }
+}
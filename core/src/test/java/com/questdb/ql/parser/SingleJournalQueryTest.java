@@ -2240,6 +2240,19 @@ public class SingleJournalQueryTest extends AbstractTest {
         assertThat("IBBTGPGWFFYUDEYYQEHBHF\t19:36\t2015-03-12T00:00:00.000Z\n", "tab where id ~ 'BT'");
     }
 
+    @Test
+    public void testRegexExactLiteral() throws Exception {
+        createTabWithNullsAndTime();
+        assertThat("IBBTGPGWFFYUDEYYQEHBHF\t19:36\t2015-03-12T00:00:00.000Z\n", "tab where id ~ '^IBBTGPGWFFYUDEYYQEHBHF$'");
+        try (RecordSource rs = compile("tab where id ~ '^IBBTGPGWFFYUDEYYQEHBHF$'")) {
+            sink.clear();
+            rs.toSink(sink);
+            // "$" also matches before trailing line terminator, hence lookup of several values
+            Assert.assertTrue(sink.toString().contains("KvIndexStrLookupRowSource"));
+            Assert.assertFalse(sink.toString().contains("FilteredJournalRecordSource"));
+        }
+    }
+
     @Test
     public void testRegexSyntaxError() throws Exception {
         createTabWithNaNs2();
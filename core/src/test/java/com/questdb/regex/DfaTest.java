@@ -0,0 +1,182 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.regex;
+
+import com.questdb.misc.Rnd;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DfaTest {
+
+    @Test
+    public void testAgainstMatcher() throws Exception {
+        Rnd rnd = new Rnd();
+        StringBuilder input = new StringBuilder();
+        String chars = "abc.\n\r\u0085x ";
+        int compiled = 0;
+        for (int i = 0; i < 2000; i++) {
+            String regex = randomRegex(rnd, 3);
+            if (rnd.nextBoolean()) {
+                regex = "^" + regex;
+            }
+            if (rnd.nextBoolean()) {
+                regex = regex + "$";
+            }
+
+            Pattern pattern;
+            try {
+                pattern = Pattern.compile(regex);
+            } catch (PatternSyntaxException e) {
+                continue;
+            }
+            Matcher matcher = pattern.matcher("");
+            Dfa dfa = Dfa.compile(regex, pattern.matcher(""));
+            if (dfa == null) {
+                continue;
+            }
+            compiled++;
+
+            for (int k = 0; k < 50; k++) {
+                input.setLength(0);
+                for (int j = 0, n = rnd.nextPositiveInt() % 10; j < n; j++) {
+                    input.append(chars.charAt(rnd.nextPositiveInt() % chars.length()));
+                }
+                Assert.assertEquals(regex + " on " + input, matcher.reset(input).find(), dfa.find(input));
+            }
+        }
+        Assert.assertTrue(compiled > 1000);
+    }
+
+    @Test
+    public void testAnchors() throws Exception {
+        assertFind(true, "^ab$", "ab");
+        assertFind(true, "^ab$", "ab\n");
+        assertFind(true, "^ab$", "ab\r\n");
+        assertFind(true, "^ab$", "ab\u2028");
+        assertFind(false, "^ab$", "ab\n\n");
+        assertFind(false, "^ab$", "xab");
+        assertFind(true, "b$", "xab");
+        assertFind(false, "^b", "xab");
+        assertFind(true, "", "");
+    }
+
+    @Test
+    public void testClasses() throws Exception {
+        assertFind(true, "[^a]", "\n");
+        assertFind(false, ".", "\n");
+        assertFind(false, ".", "\u0085");
+        assertFind(true, ".", "\u00e9");
+        assertFind(true, "\\W", "\u00e9");
+        assertFind(false, "\\w", "\u00e9");
+        assertFind(true, "a[]b]c", "a]c");
+        assertFind(true, "a[b-d-]e", "a-e");
+        assertFind(true, "\\d{2,3}x", "a123x");
+        assertFind(false, "\\d{4}x", "a123x");
+        assertFind(true, "ERROR.*timeout", "2016 ERROR: connection timeout");
+    }
+
+    @Test
+    public void testPathological() throws Exception {
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            b.append('a');
+        }
+        Dfa dfa = compile("(a|aa)*b");
+        long t = System.currentTimeMillis();
+        Assert.assertFalse(dfa.find(b));
+        Assert.assertTrue(System.currentTimeMillis() - t < 1000);
+    }
+
+    @Test
+    public void testSurrogates() throws Exception {
+        assertFind(true, "^a.b$", "a\uD83D\uDE00b");
+        assertFind(false, "^a..b$", "a\uD83D\uDE00b");
+    }
+
+    @Test
+    public void testUnsupported() throws Exception {
+        Assert.assertNull(compile("(a)\\1"));
+        Assert.assertNull(compile("a(?=b)"));
+        Assert.assertNull(compile("\\bab"));
+        Assert.assertNull(compile("(?i)ab"));
+        Assert.assertNull(compile("a*+b"));
+        Assert.assertNull(compile("^a|b"));
+        Assert.assertNull(compile("\u00e9"));
+        Assert.assertNull(compile("[a-z&&[^b]]"));
+    }
+
+    private static void assertFind(boolean expected, String regex, CharSequence input) {
+        Assert.assertEquals(expected, Pattern.compile(regex).matcher(input).find());
+        Assert.assertEquals(regex, expected, compile(regex).find(input));
+    }
+
+    private static Dfa compile(String regex) {
+        return Dfa.compile(regex, Pattern.compile(regex).matcher(""));
+    }
+
+    private static String randomRegex(Rnd rnd, int depth) {
+        StringBuilder b = new StringBuilder();
+        for (int i = 0, n = 1 + rnd.nextPositiveInt() % 3; i < n; i++) {
+            switch (rnd.nextPositiveInt() % (depth > 0 ? 8 : 6)) {
+                case 0:
+                    b.append('.');
+                    break;
+                case 1:
+                    b.append(rnd.nextBoolean() ? "[ab]" : "[^a\\n]");
+                    break;
+                case 2:
+                    b.append(rnd.nextBoolean() ? "\\s" : "\\W");
+                    break;
+                case 6:
+                    b.append('(').append(randomRegex(rnd, depth - 1)).append(')');
+                    break;
+                case 7:
+                    b.append("(?:").append(randomRegex(rnd, depth - 1)).append('|').append(randomRegex(rnd, depth - 1)).append(')');
+                    break;
+                default:
+                    b.append("abc".charAt(rnd.nextPositiveInt() % 3));
+                    break;
+            }
+
+            switch (rnd.nextPositiveInt() % 8) {
+                case 0:
+                    b.append('*');
+                    break;
+                case 1:
+                    b.append("+?");
+                    break;
+                case 2:
+                    b.append('?');
+                    break;
+                case 3:
+                    b.append("{1,2}");
+                    break;
+                default:
+                    break;
+            }
+        }
+        return b.toString();
+    }
+}
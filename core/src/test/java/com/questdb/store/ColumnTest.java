@@ -28,6 +28,7 @@ import com.questdb.ex.JournalException;
 import com.questdb.misc.ByteBuffers;
 import com.questdb.misc.Files;
 import com.questdb.misc.Rnd;
+import com.questdb.misc.Unsafe;
 import org.junit.*;
 import org.junit.rules.TemporaryFolder;
 
@@ -95,6 +96,54 @@ public class ColumnTest {
         }
     }
 
+    @Test
+    public void testFixedWidthVectors() throws Exception {
+        try (FixedColumn col = new FixedColumn(new MemoryFile(dataFile, 10, JournalMode.APPEND), 8)) {
+            for (int i = 0; i < 1000; i++) {
+                col.putLong(i);
+                col.commit();
+            }
+
+            // file is mapped as single region, vector spans all values
+            long row = 0;
+            int vectors = 0;
+            while (row < col.size()) {
+                long address = col.getVectorAddress(row);
+                long n = Math.min(col.getVectorSize(row), col.size() - row);
+                for (long i = 0; i < n; i++) {
+                    Assert.assertEquals(row + i, Unsafe.getUnsafe().getLong(address + i * 8));
+                }
+                row += n;
+                vectors++;
+            }
+            Assert.assertEquals(1, vectors);
+        }
+    }
+
+    @Test
+    public void testGrowthKeepsAddresses() throws Exception {
+        try (MemoryFile mf = new MemoryFile(dataFile, 12, JournalMode.APPEND)) {
+            long first = mf.addressOf(0, 8);
+            Unsafe.getUnsafe().putLong(first, 42);
+            // grow file well beyond initial region, values must be contiguous
+            // and previously obtained address must remain valid
+            long a = mf.addressOf(0, 1024 * 1024);
+            for (int i = 0; i < 1024 * 1024 / 8; i++) {
+                Unsafe.getUnsafe().putLong(a + i * 8, i);
+            }
+            mf.setAppendOffset(1024 * 1024);
+            Assert.assertEquals(0, Unsafe.getUnsafe().getLong(first));
+            Assert.assertEquals(1024 * 1024 - 8, mf.pageRemaining(8));
+        }
+
+        try (MemoryFile mf = new MemoryFile(dataFile, 12, JournalMode.BULK_READ)) {
+            Assert.assertEquals(1024 * 1024, mf.getAppendOffset());
+            for (int i = 0; i < 1024 * 1024 / 8; i++) {
+                Assert.assertEquals(i, Unsafe.getUnsafe().getLong(mf.addressOf(i * 8, 8)));
+            }
+        }
+    }
+
     @Test
     public void testTruncate() throws JournalException {
 
@@ -0,0 +1,220 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.store;
+
+import com.questdb.Journal;
+import com.questdb.JournalEntryWriter;
+import com.questdb.JournalMode;
+import com.questdb.JournalWriter;
+import com.questdb.PartitionBy;
+import com.questdb.factory.configuration.JournalStructure;
+import com.questdb.misc.Dates;
+import com.questdb.misc.Numbers;
+import com.questdb.misc.Rnd;
+import com.questdb.ql.RecordSource;
+import com.questdb.test.tools.AbstractTest;
+import com.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+public class CompressedColumnTest extends AbstractTest {
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testDoubleRoundTrip() throws Exception {
+        File d = new File(temporaryFolder.getRoot(), "col.d");
+        Rnd rnd = new Rnd();
+        int count = 10000;
+        try (FixedColumn col = new FixedColumn(new MemoryFile(d, 16, JournalMode.APPEND), 8)) {
+            for (int i = 0; i < count; i++) {
+                switch (i % 7) {
+                    case 0:
+                        col.putDouble(Double.NaN);
+                        break;
+                    case 1:
+                        col.putDouble(i % 2 == 0 ? Double.MAX_VALUE : -Double.MIN_VALUE);
+                        break;
+                    case 2:
+                        col.putDouble(rnd.nextDouble());
+                        break;
+                    default:
+                        col.putDouble(100 + (i / 100) * 0.25);
+                        break;
+                }
+            }
+            col.commit();
+            assertRoundTrip(col, ColumnType.DOUBLE);
+        }
+    }
+
+    @Test
+    public void testLongRoundTrip() throws Exception {
+        File d = new File(temporaryFolder.getRoot(), "col.d");
+        Rnd rnd = new Rnd();
+        int count = 10000;
+        long ts = Dates.toMillis(2016, 5, 1, 0, 0);
+        try (FixedColumn col = new FixedColumn(new MemoryFile(d, 16, JournalMode.APPEND), 8)) {
+            for (int i = 0; i < count; i++) {
+                if (i % 1000 == 7) {
+                    col.putLong(Numbers.LONG_NaN);
+                } else if (i % 1000 == 8) {
+                    col.putLong(Long.MAX_VALUE);
+                } else if (i % 500 == 9) {
+                    col.putLong(rnd.nextLong());
+                } else {
+                    col.putLong(ts += rnd.nextPositiveInt() % 1000);
+                }
+            }
+            col.commit();
+            assertRoundTrip(col, ColumnType.LONG);
+        }
+    }
+
+    @Test
+    public void testRollbackIntoSealedPartition() throws Exception {
+        long t = Dates.toMillis(2016, 5, 1, 0, 0);
+        try (JournalWriter w = factory.writer(structure("sealed_tx"))) {
+            Rnd rnd = new Rnd();
+            append(w, rnd, t, 100, 60000);
+            w.commit();
+            long txn = w.getTxn();
+            long txPin = w.getTxPin();
+
+            append(w, rnd, t + Dates.DAY_MILLIS, 100, 60000);
+            w.commit();
+            File dir = w.getPartition(0, false).getPartitionDir();
+            Assert.assertTrue(new File(dir, "qty.z").exists());
+
+            w.rollback(txn, txPin);
+            Assert.assertEquals(1, w.getPartitionCount());
+            Assert.assertFalse(new File(dir, "qty.z").exists());
+            Assert.assertTrue(new File(dir, "qty.d").exists());
+
+            append(w, rnd, t + 100 * 60000, 50, 1000);
+            w.commit();
+        }
+
+        assertThat("150\n", "select count() from sealed_tx");
+        assertThat("2016-05-01T01:40:49.000Z\n", "select max(ts) from sealed_tx");
+    }
+
+    @Test
+    public void testSealedPartitionsQuery() throws Exception {
+        long t = Dates.toMillis(2016, 5, 1, 0, 0);
+        try (JournalWriter plain = factory.writer(new JournalStructure("plain")
+                .$sym("sym")
+                .$double("px")
+                .$long("qty")
+                .$ts("ts")
+                .partitionBy(PartitionBy.DAY)
+                .$());
+             JournalWriter packed = factory.writer(structure("packed"))) {
+
+            for (int d = 0; d < 4; d++) {
+                // same sequence for both journals
+                append(plain, new Rnd(d, d + 1), t + d * Dates.DAY_MILLIS, 5000, 10000);
+                plain.commit();
+                append(packed, new Rnd(d, d + 1), t + d * Dates.DAY_MILLIS, 5000, 10000);
+                packed.commit();
+            }
+        }
+
+        Journal r = factory.reader("packed");
+        Assert.assertEquals(4, r.getPartitionCount());
+        for (int i = 0; i < 4; i++) {
+            File dir = r.getPartition(i, false).getPartitionDir();
+            for (String name : new String[]{"sym", "px", "qty", "ts"}) {
+                Assert.assertEquals(i < 3, new File(dir, name + CompressedColumn.FILE_SUFFIX).exists());
+                Assert.assertEquals(i == 3, new File(dir, name + ".d").exists());
+            }
+            Assert.assertEquals(i < 3, r.getPartition(i, true).getAbstractColumn(3) instanceof CompressedColumn);
+        }
+
+        // regular timestamps take about a bit per row
+        Assert.assertTrue(new File(r.getPartition(0, false).getPartitionDir(), "ts.z").length() * 16 < 5000 * 8);
+
+        assertSame("select sym, px, qty, ts from ");
+        assertSame("select sym, count(), sum(qty) from ");
+        assertSameFiltered("where px > 0.5 and sym = 'ABC'");
+        assertSameFiltered("where ts = '2016-05-02T01'");
+    }
+
+    private static void append(JournalWriter w, Rnd rnd, long t, int count, long step) throws Exception {
+        String syms[] = {"ABC", "DEF", "GHI", null};
+        for (int i = 0; i < count; i++) {
+            JournalEntryWriter ew = w.entryWriter(t + i * step);
+            ew.putSym(0, syms[rnd.nextPositiveInt() % syms.length]);
+            ew.putDouble(1, i % 100 == 0 ? Double.NaN : rnd.nextDouble());
+            ew.putLong(2, i % 10);
+            ew.append();
+        }
+    }
+
+    private void assertRoundTrip(FixedColumn col, int type) throws Exception {
+        File z = new File(temporaryFolder.getRoot(), "col.z");
+        CompressedColumn.write(col, type, z, 16);
+        try (CompressedColumn c = new CompressedColumn(new MemoryFile(z, 16, JournalMode.READ), 8)) {
+            Assert.assertEquals(col.size(), c.size());
+            // backwards to miss block cache
+            for (long i = col.size() - 1; i > -1; i--) {
+                Assert.assertEquals(col.getLong(i), c.getLong(i));
+            }
+        }
+    }
+
+    private static JournalStructure structure(String location) {
+        return new JournalStructure(location)
+                .$sym("sym")
+                .$double("px")
+                .$long("qty")
+                .$ts("ts")
+                .partitionBy(PartitionBy.DAY)
+                .compress("sym")
+                .compress("px")
+                .compress("qty")
+                .compress("ts");
+    }
+
+    // block buffers of compressed columns are owned by reader, which outlives query
+    private void assertSame(String query) throws Exception {
+        TestUtils.assertEquals(print(query + "plain"), print(query + "packed"));
+    }
+
+    private void assertSameFiltered(String filter) throws Exception {
+        TestUtils.assertEquals(print("plain " + filter), print("packed " + filter));
+    }
+
+    private String print(String query) throws Exception {
+        try (RecordSource rs = compile(query)) {
+            sink.clear();
+            printer.print(rs.prepareCursor(factory), true, rs.getMetadata());
+            return sink.toString();
+        }
+    }
+}
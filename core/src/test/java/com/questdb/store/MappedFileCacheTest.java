@@ -0,0 +1,199 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.store;
+
+import com.questdb.Journal;
+import com.questdb.JournalEntryWriter;
+import com.questdb.JournalMode;
+import com.questdb.JournalWriter;
+import com.questdb.factory.JournalCachingFactory;
+import com.questdb.factory.configuration.JournalStructure;
+import com.questdb.misc.Dates;
+import com.questdb.misc.Rnd;
+import com.questdb.misc.Rows;
+import com.questdb.ql.RecordSource;
+import com.questdb.ql.parser.QueryCompiler;
+import com.questdb.test.tools.AbstractTest;
+import com.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MappedFileCacheTest extends AbstractTest {
+    private final QueryCompiler compiler = new QueryCompiler();
+
+    @Test
+    public void testFactoriesShareMappings() throws Exception {
+        MappedFileCache cache = MappedFileCache.INSTANCE;
+        try (JournalWriter w = factory.writer(new JournalStructure("quotes")
+                .$sym("sym")
+                .$double("px")
+                .$str("venue")
+                .$ts()
+                .$())) {
+
+            Rnd rnd = new Rnd();
+            long t = Dates.toMillis(2016, 5, 1, 0, 0);
+            append(w, rnd, t, 1000);
+            w.commit();
+
+            int files = cache.getFileCount();
+            int regions = cache.getRegionCount();
+
+            try (JournalCachingFactory f1 = new JournalCachingFactory(factory.getConfiguration());
+                 JournalCachingFactory f2 = new JournalCachingFactory(factory.getConfiguration());
+                 JournalCachingFactory f3 = new JournalCachingFactory(factory.getConfiguration())) {
+
+                String expected = print(f1, "quotes");
+                int sharedFiles = cache.getFileCount();
+                int sharedRegions = cache.getRegionCount();
+                Assert.assertTrue(sharedFiles > files);
+                Assert.assertTrue(sharedRegions > regions);
+
+                TestUtils.assertEquals(expected, print(f2, "quotes"));
+                TestUtils.assertEquals(expected, print(f3, "quotes"));
+                Assert.assertEquals(sharedFiles, cache.getFileCount());
+                Assert.assertEquals(sharedRegions, cache.getRegionCount());
+
+                // regions outgrow reservations of readers
+                append(w, rnd, t + 1000 * 1000, 200000);
+                w.commit();
+
+                f1.refresh();
+                f2.refresh();
+                TestUtils.assertEquals("201000\t201000\n", print(f1, "select count(), count(venue) from quotes"));
+                TestUtils.assertEquals("201000\t201000\n", print(f2, "select count(), count(venue) from quotes"));
+                TestUtils.assertEquals(print(f1, "select sym, sum(px) from quotes"), print(f2, "select sym, sum(px) from quotes"));
+                Assert.assertEquals(sharedFiles, cache.getFileCount());
+            }
+
+            Assert.assertEquals(files, cache.getFileCount());
+            Assert.assertEquals(regions, cache.getRegionCount());
+        }
+    }
+
+    @Test
+    public void testReadersShareSymbolValues() throws Exception {
+        try (JournalWriter w = factory.writer(new JournalStructure("quotes")
+                .$sym("sym")
+                .$double("px")
+                .$str("venue")
+                .$ts()
+                .$())) {
+
+            Rnd rnd = new Rnd();
+            long t = Dates.toMillis(2016, 5, 1, 0, 0);
+            append(w, rnd, t, 100);
+            w.commit();
+
+            try (JournalCachingFactory f1 = new JournalCachingFactory(factory.getConfiguration());
+                 JournalCachingFactory f2 = new JournalCachingFactory(factory.getConfiguration())) {
+
+                Journal r1 = f1.reader("quotes");
+                Journal r2 = f2.reader("quotes");
+                MMappedSymbolTable tab1 = r1.getSymbolTable("sym");
+                MMappedSymbolTable tab2 = r2.getSymbolTable("sym");
+                Assert.assertSame(tab1.getCache(), tab2.getCache());
+                Assert.assertNotSame(w.getSymbolTable("sym").getCache(), tab1.getCache());
+
+                int key = tab1.get("DEF");
+                Assert.assertEquals("DEF", tab1.getCache().value(key));
+                Assert.assertEquals(key, tab2.get("DEF"));
+                Assert.assertEquals("DEF", tab2.value(key));
+
+                // value cached by reader of newer transaction is not visible to reader of older one
+                JournalEntryWriter ew = w.entryWriter(t + 1000 * 1000);
+                ew.putSym(0, "XYZ");
+                ew.append();
+                w.commit();
+
+                Assert.assertTrue(r2.refresh());
+                Assert.assertEquals(3, tab2.get("XYZ"));
+                Assert.assertEquals(SymbolTable.VALUE_NOT_FOUND, tab1.getQuick("XYZ"));
+                Assert.assertEquals(3, tab1.size());
+
+                Assert.assertTrue(r1.refresh());
+                Assert.assertEquals(3, tab1.get("XYZ"));
+            }
+        }
+    }
+
+    @Test
+    public void testReadersShareTxHead() throws Exception {
+        try (JournalWriter w = factory.writer(new JournalStructure("quotes")
+                .$sym("sym")
+                .$double("px")
+                .$str("venue")
+                .$ts()
+                .$())) {
+
+            Rnd rnd = new Rnd();
+            long t = Dates.toMillis(2016, 5, 1, 0, 0);
+            append(w, rnd, t, 100);
+            w.commit();
+
+            try (TxLog log1 = new TxLog(w.getLocation(), JournalMode.READ, 10);
+                 TxLog log2 = new TxLog(w.getLocation(), JournalMode.READ, 10)) {
+
+                Tx tx1 = new Tx();
+                Tx tx2 = new Tx();
+                Tx head = log1.snapshot(tx1);
+                Assert.assertNotSame(tx1, head);
+                Assert.assertSame(head, log2.snapshot(tx2));
+                Assert.assertEquals(w.getTxn(), head.txn);
+                Assert.assertNull(log1.snapshotIfChanged(tx1));
+
+                append(w, rnd, t + 1000 * 1000, 100);
+                w.commit();
+
+                // head is read once per commit
+                Tx next = log1.snapshotIfChanged(tx1);
+                Assert.assertNotNull(next);
+                Assert.assertNotSame(head, next);
+                Assert.assertSame(next, log2.snapshotIfChanged(tx2));
+                Assert.assertEquals(w.getTxn(), next.txn);
+                Assert.assertEquals(200, Rows.toLocalRowID(next.journalMaxRowID));
+            }
+        }
+    }
+
+    private static void append(JournalWriter w, Rnd rnd, long t, int count) throws Exception {
+        String syms[] = {"ABC", "DEF", "GHI"};
+        for (int i = 0; i < count; i++) {
+            JournalEntryWriter ew = w.entryWriter(t + i * 1000);
+            ew.putSym(0, syms[rnd.nextPositiveInt() % syms.length]);
+            ew.putDouble(1, rnd.nextDouble());
+            ew.putStr(2, rnd.nextChars(4));
+            ew.append();
+        }
+    }
+
+    private String print(JournalCachingFactory f, String query) throws Exception {
+        try (RecordSource rs = compiler.compile(f, query)) {
+            sink.clear();
+            printer.print(rs.prepareCursor(f), false, rs.getMetadata());
+            return sink.toString();
+        }
+    }
+}
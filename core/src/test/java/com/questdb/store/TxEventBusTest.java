@@ -0,0 +1,145 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.store;
+
+import com.questdb.Journal;
+import com.questdb.JournalEntryWriter;
+import com.questdb.JournalWriter;
+import com.questdb.factory.configuration.JournalStructure;
+import com.questdb.misc.Dates;
+import com.questdb.mp.Sequence;
+import com.questdb.mp.TimeoutBlockingWaitStrategy;
+import com.questdb.test.tools.AbstractTest;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class TxEventBusTest extends AbstractTest {
+
+    @Test
+    public void testAwait() throws Exception {
+        try (final JournalWriter w = factory.writer(structure("quotes"))) {
+            append(w, 0);
+            w.commit();
+
+            try (Journal r = factory.reader("quotes")) {
+                long txn = r.getTxn();
+                Assert.assertFalse(r.refresh());
+
+                // nothing committed
+                long t = System.currentTimeMillis();
+                Assert.assertFalse(TxEventBus.INSTANCE.await(r, txn, 200));
+                Assert.assertTrue(System.currentTimeMillis() - t >= 200);
+
+                final AtomicReference<Throwable> error = new AtomicReference<>();
+                new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            // let reader start waiting
+                            Thread.sleep(100);
+                            append(w, 1);
+                            w.commit();
+                        } catch (Throwable e) {
+                            error.set(e);
+                        }
+                    }
+                }.start();
+
+                Assert.assertTrue(TxEventBus.INSTANCE.await(r, txn, 30000));
+                Assert.assertNull(error.get());
+                Assert.assertEquals(txn + 1, r.getTxn());
+                Assert.assertEquals(2, r.size());
+
+                // commit is already visible
+                Assert.assertTrue(TxEventBus.INSTANCE.await(r, txn, 30000));
+            }
+        }
+    }
+
+    @Test
+    public void testCommitPublished() throws Exception {
+        Sequence sequence = TxEventBus.INSTANCE.subscribe(new TimeoutBlockingWaitStrategy(5, TimeUnit.SECONDS));
+        try (JournalWriter w = factory.writer(structure("trades"))) {
+            for (int i = 0; i < 3; i++) {
+                append(w, i);
+                w.commit();
+            }
+
+            for (int i = 0; i < 3; i++) {
+                long cursor = sequence.waitForNext();
+                TxEventBus.TxEvent event = TxEventBus.INSTANCE.getQueue().get(cursor);
+                Assert.assertEquals(w.getMetadata().getLocation(), event.getLocation());
+                Assert.assertEquals(w.getTxn(), event.getTxn() + 2 - i);
+                sequence.done(cursor);
+            }
+            Assert.assertTrue(sequence.next() < 0);
+        } finally {
+            TxEventBus.INSTANCE.unsubscribe(sequence);
+        }
+    }
+
+    @Test
+    public void testSlowSubscriberDoesNotBlockPublisher() throws Exception {
+        TxEventBus bus = new TxEventBus(4, 100);
+        Sequence sequence = bus.subscribe(new TimeoutBlockingWaitStrategy(5, TimeUnit.SECONDS));
+        try {
+            for (int i = 0; i < 10; i++) {
+                bus.publish("x", i);
+            }
+            Assert.assertEquals(6, bus.getDroppedCount());
+
+            // subscriber gets events that fit into queue
+            for (int i = 0; i < 4; i++) {
+                long cursor = sequence.next();
+                Assert.assertEquals(i, bus.getQueue().get(cursor).getTxn());
+                sequence.done(cursor);
+            }
+            Assert.assertTrue(sequence.next() < 0);
+
+            // there is room again
+            bus.publish("x", 10);
+            Assert.assertEquals(6, bus.getDroppedCount());
+            long cursor = sequence.next();
+            Assert.assertEquals(10, bus.getQueue().get(cursor).getTxn());
+            sequence.done(cursor);
+        } finally {
+            bus.unsubscribe(sequence);
+        }
+    }
+
+
+    private static void append(JournalWriter w, int i) throws Exception {
+        JournalEntryWriter ew = w.entryWriter(Dates.toMillis(2016, 5, 1, 0, 0) + i * 1000);
+        ew.putInt(0, i);
+        ew.append();
+    }
+
+    private static JournalStructure structure(String location) {
+        return new JournalStructure(location).$int("qty").$ts().$();
+    }
+}